@@ -16,6 +16,8 @@
 
 package io.github.davejoyce.id;
 
+import io.github.davejoyce.id.metrics.IdInstrumentation;
+
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
@@ -54,6 +56,27 @@ public class BiTemporalNamespaceId<T extends Comparable<T>>
     public static <T extends Comparable<T>> BiTemporalNamespaceId<T> fromString(
             final String idString,
             final Class<T> idType) {
+        if (!IdInstrumentation.ENABLED) {
+            return parse(idString, idType);
+        }
+        final long start = IdInstrumentation.startParse();
+        boolean success = false;
+        try {
+            final BiTemporalNamespaceId<T> id = parse(idString, idType);
+            success = true;
+            return id;
+        } finally {
+            IdInstrumentation.endParse(BiTemporalNamespaceId.class, idType, start, success);
+        }
+    }
+
+    /**
+     * Parse an ID string, as {@link #fromString(String, Class)} without
+     * instrumentation.
+     */
+    private static <T extends Comparable<T>> BiTemporalNamespaceId<T> parse(
+            final String idString,
+            final Class<T> idType) {
         String s = requireNonEmpty(idString, "ID string cannot be empty");
         int separatorPos1 = s.indexOf(SEPARATOR);
         int separatorPos2 = s.indexOf(SEPARATOR, (separatorPos1 + 1));
@@ -192,6 +215,26 @@ public class BiTemporalNamespaceId<T extends Comparable<T>>
         return Instant.ofEpochSecond(asAtTime[0], asAtTime[1]);
     }
 
+    /**
+     * Get the adjusted/observed (as at) time of this object in seconds since
+     * the UNIX epoch, without allocating an {@code Instant}.
+     *
+     * @return adjusted/observed (as at) time in seconds since UNIX epoch
+     */
+    public final long getAsAtEpochSecond() {
+        return asAtTime[0];
+    }
+
+    /**
+     * Get the nanosecond adjustment beyond the epoch second value of the
+     * adjusted/observed (as at) time of this object.
+     *
+     * @return nanosecond adjustment beyond epoch second value
+     */
+    public final int getAsAtNano() {
+        return (int)asAtTime[1];
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -232,6 +275,9 @@ public class BiTemporalNamespaceId<T extends Comparable<T>>
      * {@inheritDoc}
      */
     public TemporalNamespaceId<T> toTemporalNamespaceId() {
+        if (IdInstrumentation.ENABLED) {
+            IdInstrumentation.projected(getClass(), TemporalNamespaceId.class);
+        }
         return new TemporalNamespaceId<>(
                 getNamespace(),
                 getId(),
@@ -0,0 +1,461 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Sorting of large arrays of temporal IDs by radix sort of extracted keys,
+ * rather than by comparison.
+ * <p>
+ * Each ID is reduced to fixed-width columns: the ordinal of its namespace
+ * among the distinct namespaces of the array, a key of its ID value (the
+ * value itself for {@code Integer}, {@code Long}, {@code Short} and
+ * {@code Byte} values, otherwise its rank among the distinct values), and
+ * its timestamps. Each column is narrowed to the range of its values in
+ * the array, and the columns are packed into as few {@code long} words as
+ * they fit. The words are sorted by a stable least-significant-digit radix
+ * sort, skipping digits on which all keys agree, and the IDs are then
+ * permuted into the sorted order. The result is identical to that of
+ * {@code Arrays.sort}, including the relative order of equal IDs.
+ * </p>
+ * <p>
+ * Radix sort applies to arrays of exactly {@code TemporalNamespaceId} or
+ * exactly {@code BiTemporalNamespaceId} objects, with ID values all of one
+ * class whose natural order is consistent with {@code equals}. Other arrays,
+ * and arrays too small to benefit, are sorted by {@code Arrays.sort}.
+ * Radix sort takes extra heap of about 32 bytes per ID: a key and a key
+ * buffer, two index arrays and a copy of the array. It takes 8 more per
+ * additional key word.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdArrays {
+
+    /** Length below which comparison sort is faster. */
+    static final int RADIX_THRESHOLD = 1 << 13;
+
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = RADIX - 1;
+    private static final int MIN_CHUNK = 1 << 15;
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdArrays() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdArrays instances not allowed");
+    }
+
+    /**
+     * Sort the specified array of IDs into 'natural' order.
+     *
+     * @param ids IDs to be sorted
+     * @param <T> comparable type of ID attribute
+     * @throws IllegalArgumentException if <tt>ids</tt> is null
+     * @throws NullPointerException if <tt>ids</tt> contains null, as by
+     *                              {@code Arrays.sort}
+     */
+    public static <T extends Comparable<T>> void sort(final TemporalNamespaceId<T>[] ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        if (RADIX_THRESHOLD > ids.length || !radixSort(ids, false)) {
+            Arrays.sort(ids);
+        }
+    }
+
+    /**
+     * Sort the specified array of IDs into 'natural' order, using the
+     * common fork/join pool for key extraction and radix passes.
+     *
+     * @param ids IDs to be sorted
+     * @param <T> comparable type of ID attribute
+     * @throws IllegalArgumentException if <tt>ids</tt> is null
+     * @throws NullPointerException if <tt>ids</tt> contains null, as by
+     *                              {@code Arrays.parallelSort}
+     */
+    public static <T extends Comparable<T>> void parallelSort(final TemporalNamespaceId<T>[] ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        if (RADIX_THRESHOLD > ids.length || !radixSort(ids, true)) {
+            Arrays.parallelSort(ids);
+        }
+    }
+
+    /**
+     * Sort the specified IDs by radix sort, whatever their number.
+     *
+     * @return false, leaving the array unchanged, if the IDs are not
+     *         eligible for radix sort
+     */
+    static boolean radixSort(final TemporalNamespaceId<?>[] ids, final boolean parallel) {
+        final int n = ids.length;
+        if (2 > n) {
+            return true;
+        }
+        if (null == ids[0]) {
+            return false;
+        }
+        final int chunks = parallel
+                           ? Math.max(1, Math.min(n / MIN_CHUNK, 4 * ForkJoinPool.getCommonPoolParallelism()))
+                           : 1;
+        final Class<?> idClass = ids[0].getClass();
+        final Class<?> valueClass = ids[0].getId().getClass();
+        if (TemporalNamespaceId.class != idClass && BiTemporalNamespaceId.class != idClass) {
+            return false;
+        }
+        final boolean biTemporal = BiTemporalNamespaceId.class == idClass;
+        final boolean numeric = Integer.class == valueClass
+                                || Long.class == valueClass
+                                || Short.class == valueClass
+                                || Byte.class == valueClass;
+
+        // Survey the columns of the IDs
+        final Survey[] surveys = new Survey[chunks];
+        forEachChunk(n, chunks, (c, from, to) -> {
+            surveys[c] = new Survey(ids, from, to, idClass, valueClass, numeric, biTemporal);
+        });
+        final Survey survey = surveys[0];
+        for (int c = 1; chunks > c; c++) {
+            survey.merge(surveys[c]);
+        }
+        if (!survey.eligible) {
+            return false;
+        }
+        final String[] namespaces = survey.namespaces.toArray(new String[0]);
+        Arrays.sort(namespaces);
+        final Map<String, Integer> namespaceOrdinals = new HashMap<>(namespaces.length * 2);
+        for (int i = 0; namespaces.length > i; i++) {
+            namespaceOrdinals.put(namespaces[i], i);
+        }
+        final Map<Object, Integer> valueRanks = numeric ? null : rank(survey.values, parallel);
+
+        // Lay out the columns, most significant first, in as few words as
+        // they fit
+        final long[] min = {
+                0L,
+                numeric ? survey.min[VALUE] : 0L,
+                survey.min[AS_OF_SECOND],
+                survey.min[AS_OF_NANO],
+                survey.min[AS_AT_SECOND],
+                survey.min[AS_AT_NANO]
+        };
+        final long[] max = {
+                namespaces.length - 1,
+                numeric ? survey.max[VALUE] : valueRanks.size() - 1,
+                survey.max[AS_OF_SECOND],
+                survey.max[AS_OF_NANO],
+                survey.max[AS_AT_SECOND],
+                survey.max[AS_AT_NANO]
+        };
+        final int columns = biTemporal ? 6 : 4;
+        final int[] width = new int[columns];
+        final int[] word = new int[columns];
+        int words = 0;
+        int used = 64;
+        for (int c = 0; columns > c; c++) {
+            width[c] = 64 - Long.numberOfLeadingZeros(max[c] - min[c]);
+            if (0 == width[c]) {
+                continue;
+            }
+            if (64 < used + width[c]) {
+                words++;
+                used = 0;
+            }
+            word[c] = words - 1;
+            used += width[c];
+        }
+        if (0 == words) {
+            // All IDs are equal
+            return true;
+        }
+        final int[] shift = new int[columns];
+        final int[] wordBits = new int[words];
+        for (int c = columns - 1; 0 <= c; c--) {
+            if (0 != width[c]) {
+                shift[c] = wordBits[word[c]];
+                wordBits[word[c]] += width[c];
+            }
+        }
+
+        // Extract keys, and the bits in which the keys of each word differ
+        final long[][] keys = new long[words][n];
+        final long[][] differing = new long[chunks][words];
+        final int wordCount = words;
+        forEachChunk(n, chunks, (c, from, to) -> {
+            final long[] column = new long[columns];
+            final long[] or = new long[wordCount];
+            final long[] and = new long[wordCount];
+            Arrays.fill(and, -1L);
+            String lastNamespace = null;
+            long lastOrdinal = 0L;
+            for (int i = from; to > i; i++) {
+                final TemporalNamespaceId<?> id = ids[i];
+                final String ns = id.getNamespace();
+                if (ns != lastNamespace) {
+                    lastNamespace = ns;
+                    lastOrdinal = namespaceOrdinals.get(ns);
+                }
+                column[0] = lastOrdinal;
+                column[1] = numeric ? ((Number) id.getId()).longValue() : valueRanks.get(id.getId());
+                column[2] = id.getAsOfEpochSecond();
+                column[3] = id.getAsOfNano();
+                if (biTemporal) {
+                    final BiTemporalNamespaceId<?> b = (BiTemporalNamespaceId<?>) id;
+                    column[4] = b.getAsAtEpochSecond();
+                    column[5] = b.getAsAtNano();
+                }
+                for (int w = 0; wordCount > w; w++) {
+                    keys[w][i] = 0L;
+                }
+                for (int col = 0; columns > col; col++) {
+                    if (0 != width[col]) {
+                        keys[word[col]][i] |= (column[col] - min[col]) << shift[col];
+                    }
+                }
+                for (int w = 0; wordCount > w; w++) {
+                    or[w] |= keys[w][i];
+                    and[w] &= keys[w][i];
+                }
+            }
+            for (int w = 0; wordCount > w; w++) {
+                differing[c][w] = or[w] ^ and[w];
+            }
+        });
+
+        // Sort by each word, least significant first
+        final int[] identity = new int[n];
+        forEachChunk(n, chunks, (c, from, to) -> {
+            for (int i = from; to > i; i++) {
+                identity[i] = i;
+            }
+        });
+        int[] index = identity;
+        int[] indexBuffer = new int[n];
+        long[] keyBuffer = new long[n];
+        for (int w = words - 1; 0 <= w; w--) {
+            long[] key = keys[w];
+            if (words - 1 != w) {
+                // Gather the keys of this word into the order sorted so far
+                final long[] source = keys[w];
+                final long[] target = keyBuffer;
+                final int[] order = index;
+                forEachChunk(n, chunks, (c, from, to) -> {
+                    for (int i = from; to > i; i++) {
+                        target[i] = source[order[i]];
+                    }
+                });
+                keyBuffer = key;
+                key = target;
+            }
+            long differs = 0L;
+            for (int c = 0; chunks > c; c++) {
+                differs |= differing[c][w];
+            }
+            for (int digitShift = 0; wordBits[w] > digitShift; digitShift += DIGIT_BITS) {
+                if (0L == ((differs >>> digitShift) & DIGIT_MASK)) {
+                    continue;
+                }
+                scatter(key, index, keyBuffer, indexBuffer, digitShift, chunks);
+                final long[] k = key;
+                key = keyBuffer;
+                keyBuffer = k;
+                final int[] x = index;
+                index = indexBuffer;
+                indexBuffer = x;
+            }
+            keys[w] = null;
+        }
+
+        // Permute the IDs into sorted order
+        final TemporalNamespaceId<?>[] copy = ids.clone();
+        final int[] order = index;
+        forEachChunk(n, chunks, (c, from, to) -> {
+            for (int i = from; to > i; i++) {
+                ids[i] = copy[order[i]];
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Stable scatter of keys and indexes by one digit of the keys.
+     */
+    private static void scatter(final long[] key,
+                                final int[] index,
+                                final long[] keyOut,
+                                final int[] indexOut,
+                                final int digitShift,
+                                final int chunks) {
+        final int n = key.length;
+        final int[][] offsets = new int[chunks][RADIX];
+        forEachChunk(n, chunks, (c, from, to) -> {
+            final int[] count = offsets[c];
+            for (int i = from; to > i; i++) {
+                count[(int) (key[i] >>> digitShift) & DIGIT_MASK]++;
+            }
+        });
+        int position = 0;
+        for (int b = 0; RADIX > b; b++) {
+            for (int c = 0; chunks > c; c++) {
+                final int count = offsets[c][b];
+                offsets[c][b] = position;
+                position += count;
+            }
+        }
+        forEachChunk(n, chunks, (c, from, to) -> {
+            final int[] offset = offsets[c];
+            for (int i = from; to > i; i++) {
+                final int p = offset[(int) (key[i] >>> digitShift) & DIGIT_MASK]++;
+                keyOut[p] = key[i];
+                indexOut[p] = index[i];
+            }
+        });
+    }
+
+    /**
+     * Rank the specified distinct values in natural order, giving values
+     * which compare equal the same rank.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<Object, Integer> rank(final Set<Object> values, final boolean parallel) {
+        final Comparable[] sorted = values.toArray(new Comparable[0]);
+        if (parallel) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+        final Map<Object, Integer> ranks = new HashMap<>(sorted.length * 2);
+        int rank = 0;
+        for (int i = 0; sorted.length > i; i++) {
+            if (0 < i && 0 != sorted[i].compareTo(sorted[i - 1])) {
+                rank++;
+            }
+            ranks.put(sorted[i], rank);
+        }
+        return ranks;
+    }
+
+    private static void forEachChunk(final int n, final int chunks, final ChunkTask task) {
+        if (1 == chunks) {
+            task.run(0, 0, n);
+            return;
+        }
+        IntStream.range(0, chunks).parallel().forEach(c -> task.run(c,
+                                                                    (int) ((long) n * c / chunks),
+                                                                    (int) ((long) n * (c + 1) / chunks)));
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int chunk, int from, int to);
+    }
+
+    private static final int VALUE = 0;
+    private static final int AS_OF_SECOND = 1;
+    private static final int AS_OF_NANO = 2;
+    private static final int AS_AT_SECOND = 3;
+    private static final int AS_AT_NANO = 4;
+
+    /**
+     * Eligibility for radix sort and ranges of the columns of a chunk of
+     * IDs.
+     */
+    private static final class Survey {
+
+        boolean eligible = true;
+        final Set<String> namespaces = new HashSet<>();
+        final Set<Object> values;
+        final long[] min = new long[5];
+        final long[] max = new long[5];
+
+        Survey(final TemporalNamespaceId<?>[] ids,
+               final int from,
+               final int to,
+               final Class<?> idClass,
+               final Class<?> valueClass,
+               final boolean numeric,
+               final boolean biTemporal) {
+            values = numeric ? null : new HashSet<>();
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+            String lastNamespace = null;
+            for (int i = from; to > i; i++) {
+                final TemporalNamespaceId<?> id = ids[i];
+                if (null == id || idClass != id.getClass() || valueClass != id.getId().getClass()) {
+                    eligible = false;
+                    return;
+                }
+                final String ns = id.getNamespace();
+                if (ns != lastNamespace) {
+                    lastNamespace = ns;
+                    namespaces.add(ns);
+                }
+                if (numeric) {
+                    include(VALUE, ((Number) id.getId()).longValue());
+                } else {
+                    values.add(id.getId());
+                }
+                include(AS_OF_SECOND, id.getAsOfEpochSecond());
+                include(AS_OF_NANO, id.getAsOfNano());
+                if (biTemporal) {
+                    final BiTemporalNamespaceId<?> b = (BiTemporalNamespaceId<?>) id;
+                    include(AS_AT_SECOND, b.getAsAtEpochSecond());
+                    include(AS_AT_NANO, b.getAsAtNano());
+                }
+            }
+            if (!biTemporal) {
+                min[AS_AT_SECOND] = max[AS_AT_SECOND] = 0L;
+                min[AS_AT_NANO] = max[AS_AT_NANO] = 0L;
+            }
+        }
+
+        void merge(final Survey other) {
+            eligible &= other.eligible;
+            if (!eligible) {
+                return;
+            }
+            namespaces.addAll(other.namespaces);
+            if (null != values) {
+                values.addAll(other.values);
+            }
+            for (int c = 0; min.length > c; c++) {
+                min[c] = Math.min(min[c], other.min[c]);
+                max[c] = Math.max(max[c], other.max[c]);
+            }
+        }
+
+        private void include(final int column, final long value) {
+            if (min[column] > value) {
+                min[column] = value;
+            }
+            if (max[column] < value) {
+                max[column] = value;
+            }
+        }
+
+    }
+
+}
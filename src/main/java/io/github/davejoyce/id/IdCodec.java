@@ -0,0 +1,286 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Compact binary encoding of the {@link NamespaceId} type hierarchy. An
+ * encoded ID consists of:
+ * <ol>
+ *     <li>1 type byte ({@link #TYPE_NAMESPACE}, {@link #TYPE_TEMPORAL} or
+ *         {@link #TYPE_BITEMPORAL})</li>
+ *     <li>the <i>key</i>: the UTF-8 namespace and the UTF-8 string form of the
+ *         ID value, each prefixed with its length as an unsigned varint</li>
+ *     <li>for temporal IDs, the 'as of' epoch seconds (8 bytes) and
+ *         nanoseconds (4 bytes)</li>
+ *     <li>for bi-temporal IDs, the 'as at' epoch seconds (8 bytes) and
+ *         nanoseconds (4 bytes)</li>
+ * </ol>
+ * Multi-byte numbers are big-endian. The key bytes of every version of a
+ * {@code NamespaceId} are identical, regardless of the temporal type of the
+ * ID; see {@link #keyEnd(byte[], int)}. Decoding converts the ID value with
+ * the same semantics as the {@code fromString} factory methods.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdCodec {
+
+    /**
+     * Type byte of an encoded {@code NamespaceId}.
+     */
+    public static final byte TYPE_NAMESPACE = 1;
+
+    /**
+     * Type byte of an encoded {@code TemporalNamespaceId}.
+     */
+    public static final byte TYPE_TEMPORAL = 2;
+
+    /**
+     * Type byte of an encoded {@code BiTemporalNamespaceId}.
+     */
+    public static final byte TYPE_BITEMPORAL = 3;
+
+    /**
+     * Number of bytes in an encoded timestamp.
+     */
+    private static final int TIMESTAMP_BYTES = 12;
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdCodec() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdCodec instances not allowed");
+    }
+
+    /**
+     * Encode the specified ID to a new byte array.
+     *
+     * @param id ID to be encoded
+     * @return encoded ID
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public static byte[] encode(final NamespaceId<?> id) {
+        requireNonNull(id, "ID cannot be null");
+        final byte[] ns = id.getNamespace().getBytes(StandardCharsets.UTF_8);
+        final byte[] idVal = id.getId().toString().getBytes(StandardCharsets.UTF_8);
+        final byte type = typeOf(id);
+        int length = 1
+                     + varintLength(ns.length) + ns.length
+                     + varintLength(idVal.length) + idVal.length
+                     + (TIMESTAMP_BYTES * (type - 1));
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        write(id, type, ns, idVal, buf);
+        return buf.array();
+    }
+
+    /**
+     * Encode the specified ID into the given buffer, starting at the buffer's
+     * current position.
+     *
+     * @param id ID to be encoded
+     * @param buf destination buffer
+     * @throws IllegalArgumentException if either argument is null
+     * @throws java.nio.BufferOverflowException if the buffer has insufficient
+     *                                          space remaining
+     */
+    public static void encode(final NamespaceId<?> id, final ByteBuffer buf) {
+        requireNonNull(id, "ID cannot be null");
+        requireNonNull(buf, "Buffer cannot be null");
+        write(id,
+              typeOf(id),
+              id.getNamespace().getBytes(StandardCharsets.UTF_8),
+              id.getId().toString().getBytes(StandardCharsets.UTF_8),
+              buf);
+    }
+
+    /**
+     * Decode an ID with ID attribute of type <tt>T</tt> from the specified
+     * bytes. The runtime class of the result is determined by the encoded
+     * type byte.
+     *
+     * @param bytes encoded ID
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return decoded ID
+     * @throws IllegalArgumentException if <tt>bytes</tt> is not a valid
+     *                                  encoded ID, or its ID value cannot be
+     *                                  converted to type <tt>T</tt>
+     */
+    public static <T extends Comparable<T>> NamespaceId<T> decode(final byte[] bytes,
+                                                                  final Class<T> idType) {
+        requireNonNull(bytes, "Encoded ID cannot be null");
+        return decode(ByteBuffer.wrap(bytes), idType);
+    }
+
+    /**
+     * Decode an ID with ID attribute of type <tt>T</tt> from the specified
+     * buffer, starting at the buffer's current position. On return, the
+     * buffer is positioned after the decoded ID.
+     *
+     * @param buf buffer containing encoded ID
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return decoded ID
+     * @throws IllegalArgumentException if the buffer does not contain a valid
+     *                                  encoded ID, or its ID value cannot be
+     *                                  converted to type <tt>T</tt>
+     */
+    public static <T extends Comparable<T>> NamespaceId<T> decode(final ByteBuffer buf,
+                                                                  final Class<T> idType) {
+        requireNonNull(buf, "Buffer cannot be null");
+        requireNonNull(idType, "ID type cannot be null");
+        try {
+            final byte type = buf.get();
+            if (TYPE_NAMESPACE > type || TYPE_BITEMPORAL < type) {
+                throw new IllegalArgumentException("Unknown ID type byte: " + type);
+            }
+            final String ns = readString(buf);
+            final T id = NamespaceId.castId(readString(buf), idType);
+            if (TYPE_NAMESPACE == type) {
+                return new NamespaceId<>(ns, id);
+            }
+            final long asOfSeconds = buf.getLong();
+            final int asOfNanos = buf.getInt();
+            if (TYPE_TEMPORAL == type) {
+                return new TemporalNamespaceId<>(ns, id, asOfSeconds, asOfNanos);
+            }
+            final long asAtSeconds = buf.getLong();
+            final int asAtNanos = buf.getInt();
+            return new BiTemporalNamespaceId<>(ns, id, asOfSeconds, asOfNanos, asAtSeconds, asAtNanos);
+        } catch (BufferUnderflowException bue) {
+            throw new IllegalArgumentException("Truncated encoded ID", bue);
+        }
+    }
+
+    /**
+     * Get the index just past the key (namespace and ID value) of the encoded
+     * ID which starts at the specified offset. The key occupies the range
+     * <code>[offset + 1, keyEnd)</code>.
+     *
+     * @param bytes array containing encoded ID
+     * @param offset index of type byte of encoded ID
+     * @return index just past key of encoded ID
+     * @throws IllegalArgumentException if the key is truncated
+     */
+    public static int keyEnd(final byte[] bytes, final int offset) {
+        int p = offset + 1;
+        for (int segment = 0; segment < 2; segment++) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (p >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated encoded ID");
+                }
+                b = bytes[p++];
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (0 != (b & 0x80));
+            p += length;
+        }
+        if (p > bytes.length) {
+            throw new IllegalArgumentException("Truncated encoded ID");
+        }
+        return p;
+    }
+
+    /**
+     * Get the type byte of the specified ID.
+     *
+     * @param id ID to be typed
+     * @return type byte
+     */
+    static byte typeOf(final NamespaceId<?> id) {
+        if (id instanceof BiTemporalNamespaceId) {
+            return TYPE_BITEMPORAL;
+        }
+        if (id instanceof TemporalNamespaceId) {
+            return TYPE_TEMPORAL;
+        }
+        return TYPE_NAMESPACE;
+    }
+
+    private static void write(final NamespaceId<?> id,
+                              final byte type,
+                              final byte[] ns,
+                              final byte[] idVal,
+                              final ByteBuffer buf) {
+        buf.put(type);
+        writeVarint(ns.length, buf);
+        buf.put(ns);
+        writeVarint(idVal.length, buf);
+        buf.put(idVal);
+        if (TYPE_NAMESPACE != type) {
+            TemporalNamespaceId<?> tnsId = (TemporalNamespaceId<?>) id;
+            buf.putLong(tnsId.getAsOfEpochSecond());
+            buf.putInt(tnsId.getAsOfNano());
+        }
+        if (TYPE_BITEMPORAL == type) {
+            BiTemporalNamespaceId<?> btnsId = (BiTemporalNamespaceId<?>) id;
+            buf.putLong(btnsId.getAsAtEpochSecond());
+            buf.putInt(btnsId.getAsAtNano());
+        }
+    }
+
+    private static String readString(final ByteBuffer buf) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (0 != (b & 0x80));
+        if (0 > length || length > buf.remaining()) {
+            throw new IllegalArgumentException("Bad encoded string length: " + length);
+        }
+        if (buf.hasArray()) {
+            String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+            return s;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(final int value, final ByteBuffer buf) {
+        int v = value;
+        while (0 != (v & ~0x7F)) {
+            buf.put((byte)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte)v);
+    }
+
+    private static int varintLength(final int value) {
+        int length = 1;
+        int v = value >>> 7;
+        while (0 != v) {
+            length++;
+            v >>>= 7;
+        }
+        return length;
+    }
+
+}
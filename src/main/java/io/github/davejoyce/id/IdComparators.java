@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import java.util.Comparator;
+
+/**
+ * Factory of {@code Comparator} instances over the {@link NamespaceId} type
+ * hierarchy.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdComparators {
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdComparators() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdComparators instances not allowed");
+    }
+
+    /**
+     * Get a comparator that imposes the 'natural' order of the compared IDs,
+     * as defined by {@link NamespaceId#compareTo(NamespaceId)}.
+     *
+     * @param <T> comparable type of ID attribute
+     * @param <R> NamespaceId type to be compared
+     * @return natural order comparator
+     */
+    public static <T extends Comparable<T>, R extends NamespaceId<T>> Comparator<R> natural() {
+        return NamespaceId::compareTo;
+    }
+
+    /**
+     * Get a comparator that orders IDs by their {@code NamespaceId}
+     * projection only, disregarding any temporal components. The result of
+     * the comparison is identical to
+     * <code>a.toNamespaceId().compareTo(b.toNamespaceId())</code>, but no
+     * projection objects are allocated.
+     *
+     * @param <T> comparable type of ID attribute
+     * @param <R> NamespaceId type to be compared
+     * @return NamespaceId projection comparator
+     */
+    public static <T extends Comparable<T>, R extends NamespaceId<T>> Comparator<R> byNamespaceId() {
+        return IdComparators::compareNamespaceIds;
+    }
+
+    /**
+     * Compare the {@code NamespaceId} projections of the specified IDs.
+     *
+     * @param a first ID to be compared
+     * @param b second ID to be compared
+     * @param <T> comparable type of ID attribute
+     * @return negative integer, zero, or positive integer as the projection of
+     *         <tt>a</tt> is less than, equal to, or greater than the projection
+     *         of <tt>b</tt>
+     */
+    public static <T extends Comparable<T>> int compareNamespaceIds(final NamespaceId<T> a,
+                                                                    final NamespaceId<T> b) {
+        if (a == b) {
+            return 0;
+        }
+        int comp = a.getNamespace().compareTo(b.getNamespace());
+        if (0 != comp) {
+            return comp;
+        }
+        return a.getId().compareTo(b.getId());
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Parser of the string-encoded form of IDs directly from UTF-8 bytes. A
+ * parser accepts and rejects exactly the strings accepted and rejected by the
+ * corresponding {@code fromString} factory method, but avoids first decoding
+ * the whole string: separators are located in the byte form, and timestamps
+ * are parsed from a view of the bytes. Instances of this class are immutable
+ * and thread-safe.
+ *
+ * @param <R> NamespaceId type produced
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdParser<R extends NamespaceId<?>> {
+
+    private static final int NAMESPACE = 0;
+    private static final int TEMPORAL = 1;
+    private static final int BITEMPORAL = 2;
+
+    private static final byte SEPARATOR_BYTE = (byte)NamespaceId.SEPARATOR;
+
+    /**
+     * Create a parser of {@code NamespaceId} strings, equivalent to
+     * {@link NamespaceId#fromString(String, Class)}.
+     *
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return new parser
+     * @throws IllegalArgumentException if <tt>idType</tt> is null
+     */
+    public static <T extends Comparable<T>> IdParser<NamespaceId<T>> namespaceIds(final Class<T> idType) {
+        return new IdParser<>(NAMESPACE, idType);
+    }
+
+    /**
+     * Create a parser of {@code TemporalNamespaceId} strings, equivalent to
+     * {@link TemporalNamespaceId#fromString(String, Class)}.
+     *
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return new parser
+     * @throws IllegalArgumentException if <tt>idType</tt> is null
+     */
+    public static <T extends Comparable<T>> IdParser<TemporalNamespaceId<T>> temporalIds(final Class<T> idType) {
+        return new IdParser<>(TEMPORAL, idType);
+    }
+
+    /**
+     * Create a parser of {@code BiTemporalNamespaceId} strings, equivalent to
+     * {@link BiTemporalNamespaceId#fromString(String, Class)}.
+     *
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return new parser
+     * @throws IllegalArgumentException if <tt>idType</tt> is null
+     */
+    public static <T extends Comparable<T>> IdParser<BiTemporalNamespaceId<T>> biTemporalIds(final Class<T> idType) {
+        return new IdParser<>(BITEMPORAL, idType);
+    }
+
+    private final int kind;
+    private final Class<?> idType;
+
+    private IdParser(final int kind, final Class<?> idType) {
+        this.kind = kind;
+        this.idType = requireNonNull(idType, "ID type cannot be null");
+    }
+
+    /**
+     * Parse an ID from the UTF-8 encoded string in the specified range of
+     * bytes.
+     *
+     * @param bytes array containing encoded string
+     * @param offset index of first byte of string
+     * @param length number of bytes in string
+     * @return new ID object
+     * @throws IllegalArgumentException if the string cannot be converted to
+     *                                  an ID of this parser's type
+     */
+    public R parse(final byte[] bytes, final int offset, final int length) {
+        requireNonNull(bytes, "ID bytes cannot be null");
+        final int end = offset + length;
+        if (isBlank(bytes, offset, end)) {
+            throw new IllegalArgumentException("ID string cannot be empty");
+        }
+        switch (kind) {
+            case NAMESPACE:
+                return parseNamespaceId(bytes, offset, end);
+            case TEMPORAL:
+                return parseTemporalId(bytes, offset, end);
+            default:
+                return parseBiTemporalId(bytes, offset, end);
+        }
+    }
+
+    /**
+     * Parse an ID from the specified string.
+     *
+     * @param idString '/' separated ID string to be parsed
+     * @return new ID object
+     * @throws IllegalArgumentException if <tt>idString</tt> cannot be
+     *                                  converted to an ID of this parser's
+     *                                  type
+     */
+    public R parse(final String idString) {
+        requireNonNull(idString, "ID string cannot be empty");
+        byte[] bytes = idString.getBytes(StandardCharsets.UTF_8);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private R parseNamespaceId(final byte[] b, final int start, final int end) {
+        int sep1 = indexOf(b, start, end);
+        if (-1 == sep1) {
+            throw new IllegalArgumentException(
+                    "NamespaceId string must contain at least 1 '"
+                    + NamespaceId.SEPARATOR
+                    + "' separator");
+        }
+        // Disregard temporal components past 2nd separator, as fromString does
+        int sepLast = lastIndexOf(b, start, end);
+        int idEnd = (sep1 < sepLast) ? sepLast : end;
+        if (isBlank(b, start, sep1)) {
+            throw new IllegalArgumentException("Namespace segment cannot be empty");
+        }
+        if (isBlank(b, sep1 + 1, idEnd)) {
+            throw new IllegalArgumentException("Identifier segment cannot be empty");
+        }
+        String ns = decode(b, start, sep1);
+        Comparable id = castId(b, sep1 + 1, idEnd);
+        return (R) new NamespaceId(ns, id);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private R parseTemporalId(final byte[] b, final int start, final int end) {
+        int sep1 = indexOf(b, start, end);
+        int sep2 = lastIndexOf(b, start, end);
+        if (-1 == sep1 || sep2 == sep1) {
+            throw new IllegalArgumentException(
+                    "ID string must contain at least 2 '"
+                    + NamespaceId.SEPARATOR
+                    + "' separators");
+        }
+        String ns = decode(b, start, sep1);
+        Comparable id = castId(b, sep1 + 1, sep2);
+        Instant asOf;
+        try {
+            asOf = Instant.parse(new AsciiSequence(b, sep2 + 1, end));
+        } catch (DateTimeParseException dtpe) {
+            throw new IllegalArgumentException("Bad 'asOf' timestamp: "
+                                               + decode(b, sep2 + 1, end), dtpe);
+        }
+        return (R) new TemporalNamespaceId(ns, id, asOf);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private R parseBiTemporalId(final byte[] b, final int start, final int end) {
+        int sep1 = indexOf(b, start, end);
+        int sep2 = (-1 == sep1) ? -1 : indexOf(b, sep1 + 1, end);
+        int sep3 = lastIndexOf(b, start, end);
+        if (-1 == sep1 || -1 == sep2 || sep3 == sep2) {
+            throw new IllegalArgumentException(
+                    "ID string must contain at least 3 '"
+                    + NamespaceId.SEPARATOR
+                    + "' separators");
+        }
+        String ns = decode(b, start, sep1);
+        Comparable id = castId(b, sep1 + 1, sep2);
+        Instant asOf;
+        Instant asAt;
+        try {
+            asOf = Instant.parse(new AsciiSequence(b, sep2 + 1, sep3));
+            asAt = Instant.parse(new AsciiSequence(b, sep3 + 1, end));
+        } catch (DateTimeParseException dtpe) {
+            throw new IllegalArgumentException("Bad timestamp segment", dtpe);
+        }
+        return (R) new BiTemporalNamespaceId(ns, id, asOf, asAt);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparable castId(final byte[] b, final int start, final int end) {
+        return NamespaceId.castId(decode(b, start, end), (Class)idType);
+    }
+
+    private static String decode(final byte[] b, final int start, final int end) {
+        return new String(b, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Determine whether the specified range is empty after trimming, as
+     * {@code String.trim()} would; every character trimmed is a single byte
+     * in UTF-8.
+     */
+    private static boolean isBlank(final byte[] b, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if ((b[i] & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(final byte[] b, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (SEPARATOR_BYTE == b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(final byte[] b, final int start, final int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (SEPARATOR_BYTE == b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Character view of a range of bytes, for parsing timestamps without
+     * decoding them to a string. Any non-ASCII byte maps to a non-ASCII
+     * character, so it is still rejected by the ISO-8601 parser.
+     */
+    private static final class AsciiSequence implements CharSequence {
+
+        private final byte[] bytes;
+        private final int start;
+        private final int end;
+
+        AsciiSequence(final byte[] bytes, final int start, final int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char)(bytes[start + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            return new AsciiSequence(bytes, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+    }
+
+}
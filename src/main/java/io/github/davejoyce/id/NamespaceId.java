@@ -16,12 +16,10 @@
 
 package io.github.davejoyce.id;
 
+import io.github.davejoyce.id.convert.IdConverters;
+import io.github.davejoyce.id.metrics.IdInstrumentation;
 import io.github.davejoyce.versioned.Versioned;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 import static io.github.davejoyce.util.Arguments.requireNonEmpty;
 import static io.github.davejoyce.util.Arguments.requireNonNull;
 
@@ -64,6 +62,27 @@ public class NamespaceId<T extends Comparable<T>>
     public static <T extends Comparable<T>> NamespaceId<T> fromString(
             final String idString,
             final Class<T> idType) {
+        if (!IdInstrumentation.ENABLED) {
+            return parse(idString, idType);
+        }
+        final long start = IdInstrumentation.startParse();
+        boolean success = false;
+        try {
+            final NamespaceId<T> id = parse(idString, idType);
+            success = true;
+            return id;
+        } finally {
+            IdInstrumentation.endParse(NamespaceId.class, idType, start, success);
+        }
+    }
+
+    /**
+     * Parse an ID string, as {@link #fromString(String, Class)} without
+     * instrumentation.
+     */
+    private static <T extends Comparable<T>> NamespaceId<T> parse(
+            final String idString,
+            final Class<T> idType) {
         String s = requireNonEmpty(idString, "ID string cannot be empty");
         int separatorPos1 = s.indexOf(SEPARATOR);
         if (-1 == separatorPos1) {
@@ -110,38 +129,11 @@ public class NamespaceId<T extends Comparable<T>>
      * @param idType class of ID attribute type
      * @param <T> comparable type of ID attribute
      * @return converted ID attribute
+     * @see IdConverters#forType(Class)
      */
     protected static <T extends Comparable<T>> T castId(final String idValue,
                                                         final Class<T> idType) {
-        T id;
-        try {
-            // 1. Look for standard 'valueOf' factory method on type
-            Method valueOfMethod = idType.getMethod("valueOf", String.class);
-            id = idType.cast(valueOfMethod.invoke(null, idValue));
-        } catch (IllegalAccessException
-                | InvocationTargetException
-                | NoSuchMethodException e1) {
-            try {
-                // 2. Look for constructor that takes a string representation of
-                //    value
-                Constructor<T> c = idType.getConstructor(String.class);
-                id = c.newInstance(idValue);
-            } catch (IllegalAccessException
-                    | InstantiationException
-                    | InvocationTargetException
-                    | NoSuchMethodException e2) {
-                try {
-                    // 3. See if we can just cast it to the target type
-                    //    (last resort)
-                    id = idType.cast(idValue);
-                } catch (ClassCastException cce) {
-                    throw new IllegalArgumentException(
-                            "Identifier segment cannot be converted to type: "
-                            + idType.getCanonicalName());
-                }
-            }
-        }
-        return id;
+        return IdConverters.forType(idType).convert(idValue);
     }
 
     /**
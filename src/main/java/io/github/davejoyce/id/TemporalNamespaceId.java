@@ -16,6 +16,8 @@
 
 package io.github.davejoyce.id;
 
+import io.github.davejoyce.id.metrics.IdInstrumentation;
+
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
@@ -53,6 +55,27 @@ public class TemporalNamespaceId<T extends Comparable<T>>
     public static <T extends Comparable<T>> TemporalNamespaceId<T> fromString(
             final String idString,
             final Class<T> idType) {
+        if (!IdInstrumentation.ENABLED) {
+            return parse(idString, idType);
+        }
+        final long start = IdInstrumentation.startParse();
+        boolean success = false;
+        try {
+            final TemporalNamespaceId<T> id = parse(idString, idType);
+            success = true;
+            return id;
+        } finally {
+            IdInstrumentation.endParse(TemporalNamespaceId.class, idType, start, success);
+        }
+    }
+
+    /**
+     * Parse an ID string, as {@link #fromString(String, Class)} without
+     * instrumentation.
+     */
+    private static <T extends Comparable<T>> TemporalNamespaceId<T> parse(
+            final String idString,
+            final Class<T> idType) {
         String s = requireNonEmpty(idString, "ID string cannot be empty");
         int separatorPos1 = s.indexOf(SEPARATOR);
         int separatorPos2 = s.lastIndexOf(SEPARATOR);
@@ -168,6 +191,26 @@ public class TemporalNamespaceId<T extends Comparable<T>>
         return Instant.ofEpochSecond(asOfTime[0], asOfTime[1]);
     }
 
+    /**
+     * Get the effective (as of) time of this object in seconds since the UNIX
+     * epoch, without allocating an {@code Instant}.
+     *
+     * @return effective (as of) time in seconds since UNIX epoch
+     */
+    public final long getAsOfEpochSecond() {
+        return asOfTime[0];
+    }
+
+    /**
+     * Get the nanosecond adjustment beyond the epoch second value of the
+     * effective (as of) time of this object.
+     *
+     * @return nanosecond adjustment beyond epoch second value
+     */
+    public final int getAsOfNano() {
+        return (int)asOfTime[1];
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -209,6 +252,9 @@ public class TemporalNamespaceId<T extends Comparable<T>>
      */
     @Override
     public NamespaceId<T> toNamespaceId() {
+        if (IdInstrumentation.ENABLED) {
+            IdInstrumentation.projected(getClass(), NamespaceId.class);
+        }
         return new NamespaceId<>(getNamespace(), getId());
     }
 
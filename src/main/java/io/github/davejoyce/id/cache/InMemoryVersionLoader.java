@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.cache;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * In-memory stand-in for a backing store of latest versions, for testing
+ * caches and their clients without the store. Keeps the greatest version
+ * stored for each {@code NamespaceId}, counts the calls made to it, and may
+ * simulate the latency of a remote store.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class InMemoryVersionLoader<T extends Comparable<T>> implements VersionLoader<T> {
+
+    private final Map<NamespaceId<T>, TemporalNamespaceId<T>> versions = new ConcurrentHashMap<>();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadAllCount = new LongAdder();
+    private volatile long latencyNanos;
+
+    /**
+     * Store the specified version, unless a greater version of its
+     * {@code NamespaceId} is already stored.
+     *
+     * @param version version to be stored
+     * @return true if the version was stored
+     * @throws IllegalArgumentException if <tt>version</tt> is null
+     */
+    public boolean put(final TemporalNamespaceId<T> version) {
+        requireNonNull(version, "Version cannot be null");
+        final boolean[] stored = new boolean[1];
+        versions.compute(version.toNamespaceId(), (key, current) -> {
+            if (null == current || version.after(current)) {
+                stored[0] = true;
+                return version;
+            }
+            return current;
+        });
+        return stored[0];
+    }
+
+    /**
+     * Remove the stored version of the specified ID.
+     *
+     * @param id ID whose version is to be removed
+     * @return removed version, or null if none was stored
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public TemporalNamespaceId<T> remove(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        return versions.remove(id.toNamespaceId());
+    }
+
+    /**
+     * Set the time for which each call to this loader blocks before
+     * returning.
+     *
+     * @param latency simulated latency per call
+     * @throws IllegalArgumentException if <tt>latency</tt> is null or
+     *                                  negative
+     */
+    public void setLatency(final Duration latency) {
+        requireNonNull(latency, "Latency cannot be null");
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("Latency cannot be negative");
+        }
+        this.latencyNanos = latency.toNanos();
+    }
+
+    /**
+     * Get the number of calls made to {@link #load(NamespaceId)}.
+     *
+     * @return single load count
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * Get the number of calls made to {@link #loadAll(List)}.
+     *
+     * @return bulk load count
+     */
+    public long getLoadAllCount() {
+        return loadAllCount.sum();
+    }
+
+    @Override
+    public TemporalNamespaceId<T> load(final NamespaceId<T> id) {
+        loadCount.increment();
+        pause();
+        return versions.get(id);
+    }
+
+    @Override
+    public Map<NamespaceId<T>, TemporalNamespaceId<T>> loadAll(final List<NamespaceId<T>> ids) {
+        loadAllCount.increment();
+        pause();
+        final Map<NamespaceId<T>, TemporalNamespaceId<T>> loaded = new HashMap<>();
+        for (NamespaceId<T> id : ids) {
+            final TemporalNamespaceId<T> version = versions.get(id);
+            if (null != version) {
+                loaded.put(id, version);
+            }
+        }
+        return loaded;
+    }
+
+    private void pause() {
+        final long nanos = latencyNanos;
+        if (0L < nanos) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
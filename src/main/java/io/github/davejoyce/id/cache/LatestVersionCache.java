@@ -0,0 +1,559 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.cache;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import io.github.davejoyce.id.feed.FeedListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Read-through cache of the latest version of each {@code NamespaceId},
+ * loaded on a miss from a {@link VersionLoader}.
+ * <p>
+ * Concurrent misses of one ID are loaded once: the first caller loads, and
+ * the others wait for its result. {@link #getAll(Collection)} loads all the
+ * IDs it misses with one call to {@link VersionLoader#loadAll(List)}.
+ * Versions learned from elsewhere, such as a
+ * {@link io.github.davejoyce.id.feed.VersionFeed} to which this cache
+ * subscribes as a listener, are offered with
+ * {@link #accept(TemporalNamespaceId)}; a cached version is replaced only
+ * by a version {@link NamespaceId#after(NamespaceId) after} it, so a late
+ * or reordered notification cannot roll an entry back, and a load racing
+ * with a notification keeps the greater of the two.
+ * </p>
+ * <p>
+ * When the cache grows beyond its maximum size, the calling thread evicts
+ * the least frequently read entries, down to seven eighths of the maximum,
+ * and halves the read counts of the survivors so that formerly popular
+ * entries age out. Read counts are approximate. If a refresh interval is
+ * set, a read of an entry loaded longer ago than the interval returns the
+ * cached version at once and reloads the entry in the background.
+ * </p>
+ * <p>
+ * IDs with no version are not cached. All versions of an ID should be of
+ * one class, since IDs of different classes are not mutually comparable.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class LatestVersionCache<T extends Comparable<T>> implements FeedListener<T>, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(LatestVersionCache.class.getName());
+
+    private static final int MAX_FREQUENCY = 255;
+
+    private final VersionLoader<T> loader;
+    private final int maximumSize;
+    private final long refreshAfterMillis;
+    private final Clock clock;
+    private final Map<NamespaceId<T>, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final Map<NamespaceId<T>, CompletableFuture<TemporalNamespaceId<T>>> loading = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ExecutorService refresher;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+
+    /**
+     * Construct a cache of at most the specified number of IDs, without
+     * refresh.
+     *
+     * @param loader loader of versions missed by this cache
+     * @param maximumSize maximum number of IDs cached
+     * @throws IllegalArgumentException if <tt>loader</tt> is null, or
+     *                                  <tt>maximumSize</tt> is not positive
+     */
+    public LatestVersionCache(final VersionLoader<T> loader, final int maximumSize) {
+        this(loader, maximumSize, null, Clock.systemUTC());
+    }
+
+    /**
+     * Construct a cache of at most the specified number of IDs, which
+     * refreshes entries read after the specified interval since they were
+     * loaded.
+     *
+     * @param loader loader of versions missed by this cache
+     * @param maximumSize maximum number of IDs cached
+     * @param refreshAfter interval after which a read entry is reloaded in
+     *                     the background
+     * @throws IllegalArgumentException if any argument is null,
+     *                                  <tt>maximumSize</tt> is not positive,
+     *                                  or <tt>refreshAfter</tt> is zero or
+     *                                  negative
+     */
+    public LatestVersionCache(final VersionLoader<T> loader,
+                              final int maximumSize,
+                              final Duration refreshAfter) {
+        this(loader, maximumSize, requireNonNull(refreshAfter, "Refresh interval cannot be null"), Clock.systemUTC());
+    }
+
+    LatestVersionCache(final VersionLoader<T> loader,
+                       final int maximumSize,
+                       final Duration refreshAfter,
+                       final Clock clock) {
+        this.loader = requireNonNull(loader, "Loader cannot be null");
+        if (1 > maximumSize) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (null != refreshAfter && (refreshAfter.isZero() || refreshAfter.isNegative())) {
+            throw new IllegalArgumentException("Refresh interval must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+        if (null == refreshAfter) {
+            this.refreshAfterMillis = 0L;
+            this.refresher = null;
+        } else {
+            this.refreshAfterMillis = Math.max(1L, refreshAfter.toMillis());
+            this.refresher = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "id-cache-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Get the latest version of the specified ID, loading it on a miss.
+     *
+     * @param id ID, whose NamespaceId projection is looked up
+     * @return latest version, or null if the ID has no version
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     * @throws RuntimeException any exception thrown by the loader
+     */
+    public TemporalNamespaceId<T> get(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        final NamespaceId<T> key = id.toNamespaceId();
+        final Entry<T> entry = entries.get(key);
+        if (null != entry) {
+            // Read before hit, which may start a refresh that replaces it
+            final TemporalNamespaceId<T> version = entry.version;
+            hit(key, entry);
+            return version;
+        }
+        missCount.increment();
+        final CompletableFuture<TemporalNamespaceId<T>> future = new CompletableFuture<>();
+        final CompletableFuture<TemporalNamespaceId<T>> existing = loading.putIfAbsent(key, future);
+        if (null != existing) {
+            return join(existing);
+        }
+        try {
+            TemporalNamespaceId<T> version = cached(key);
+            if (null == version) {
+                loadCount.increment();
+                version = install(key, loader.load(key));
+            }
+            future.complete(version);
+            return version;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Get the latest versions of the specified IDs, loading all those missed
+     * with one call to the loader.
+     *
+     * @param ids IDs, whose NamespaceId projections are looked up
+     * @return latest versions by NamespaceId projection, omitting IDs with no
+     *         version
+     * @throws IllegalArgumentException if <tt>ids</tt> is or contains null
+     * @throws RuntimeException any exception thrown by the loader
+     */
+    public Map<NamespaceId<T>, TemporalNamespaceId<T>> getAll(final Collection<? extends NamespaceId<T>> ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        final Map<NamespaceId<T>, TemporalNamespaceId<T>> result = new HashMap<>();
+        final Map<NamespaceId<T>, CompletableFuture<TemporalNamespaceId<T>>> owned = new HashMap<>();
+        final Map<NamespaceId<T>, CompletableFuture<TemporalNamespaceId<T>>> awaited = new HashMap<>();
+        for (NamespaceId<T> id : ids) {
+            requireNonNull(id, "ID cannot be null");
+            final NamespaceId<T> key = id.toNamespaceId();
+            if (result.containsKey(key) || owned.containsKey(key) || awaited.containsKey(key)) {
+                continue;
+            }
+            final Entry<T> entry = entries.get(key);
+            if (null != entry) {
+                result.put(key, entry.version);
+                hit(key, entry);
+                continue;
+            }
+            missCount.increment();
+            final CompletableFuture<TemporalNamespaceId<T>> future = new CompletableFuture<>();
+            final CompletableFuture<TemporalNamespaceId<T>> existing = loading.putIfAbsent(key, future);
+            if (null != existing) {
+                awaited.put(key, existing);
+            } else {
+                owned.put(key, future);
+            }
+        }
+        if (!owned.isEmpty()) {
+            load(owned, result);
+        }
+        for (Map.Entry<NamespaceId<T>, CompletableFuture<TemporalNamespaceId<T>>> e : awaited.entrySet()) {
+            final TemporalNamespaceId<T> version = join(e.getValue());
+            if (null != version) {
+                result.put(e.getKey(), version);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the cached version of the specified ID, without loading it on a
+     * miss or counting a hit.
+     *
+     * @param id ID, whose NamespaceId projection is looked up
+     * @return cached version, or null if none
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public TemporalNamespaceId<T> getIfPresent(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        return cached(id.toNamespaceId());
+    }
+
+    /**
+     * Offer a newly accepted version to this cache. The version replaces the
+     * cached version of its {@code NamespaceId} only if it is after the
+     * cached version. A version of an ID not cached is cached only if a load
+     * of the ID is in progress, in which case the greater of the loaded and
+     * offered versions is kept.
+     *
+     * @param version accepted version
+     * @return true if the version was cached
+     * @throws IllegalArgumentException if <tt>version</tt> is null
+     */
+    public boolean accept(final TemporalNamespaceId<T> version) {
+        requireNonNull(version, "Version cannot be null");
+        final NamespaceId<T> key = version.toNamespaceId();
+        final boolean inFlight = loading.containsKey(key);
+        final boolean[] accepted = new boolean[1];
+        entries.compute(key, (k, current) -> {
+            if (null == current) {
+                if (!inFlight) {
+                    return null;
+                }
+                accepted[0] = true;
+                return new Entry<>(version, clock.millis());
+            }
+            if (version.after(current.version)) {
+                current.version = version;
+                current.loadedMillis = clock.millis();
+                accepted[0] = true;
+            }
+            return current;
+        });
+        if (accepted[0]) {
+            evictIfFull();
+        }
+        return accepted[0];
+    }
+
+    /**
+     * Offer each version of the specified batch to this cache, as by
+     * {@link #accept(TemporalNamespaceId)}.
+     *
+     * @param batch batch of accepted versions
+     */
+    @Override
+    public void onBatch(final List<TemporalNamespaceId<T>> batch) {
+        for (TemporalNamespaceId<T> version : batch) {
+            accept(version);
+        }
+    }
+
+    /**
+     * Discard the cached version of the specified ID, whatever its version.
+     *
+     * @param id ID, whose NamespaceId projection is discarded
+     * @return discarded version, or null if none was cached
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public TemporalNamespaceId<T> invalidate(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        final Entry<T> entry = entries.remove(id.toNamespaceId());
+        return (null == entry) ? null : entry.version;
+    }
+
+    /**
+     * Get the number of IDs cached.
+     *
+     * @return cached ID count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of lookups answered from this cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Get the number of lookups not answered from this cache, including
+     * those which waited for a load by another caller.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Get the number of calls made to the loader, counting a bulk load as
+     * one call.
+     *
+     * @return load count
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * Get the number of entries evicted to keep this cache within its
+     * maximum size.
+     *
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Get the number of background refreshes started.
+     *
+     * @return refresh count
+     */
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    /**
+     * Stop background refresh, if enabled. The cache remains usable, without
+     * refresh.
+     */
+    @Override
+    public void close() {
+        if (null != refresher) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private TemporalNamespaceId<T> cached(final NamespaceId<T> key) {
+        final Entry<T> entry = entries.get(key);
+        return (null == entry) ? null : entry.version;
+    }
+
+    private void hit(final NamespaceId<T> key, final Entry<T> entry) {
+        hitCount.increment();
+        final int frequency = entry.frequency;
+        if (MAX_FREQUENCY > frequency) {
+            entry.frequency = frequency + 1;
+        }
+        if (null != refresher
+            && refreshAfterMillis <= clock.millis() - entry.loadedMillis
+            && entry.refreshing.compareAndSet(false, true)) {
+            refresh(key, entry);
+        }
+    }
+
+    private void refresh(final NamespaceId<T> key, final Entry<T> entry) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    loadCount.increment();
+                    final TemporalNamespaceId<T> version = loader.load(key);
+                    entries.computeIfPresent(key, (k, current) -> {
+                        if (null != version && version.after(current.version)) {
+                            current.version = version;
+                        }
+                        current.loadedMillis = clock.millis();
+                        return current;
+                    });
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Refresh of cached version of " + key + " failed", e);
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+            refreshCount.increment();
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void load(final Map<NamespaceId<T>, CompletableFuture<TemporalNamespaceId<T>>> owned,
+                      final Map<NamespaceId<T>, TemporalNamespaceId<T>> result) {
+        try {
+            final List<NamespaceId<T>> keys = new ArrayList<>(owned.size());
+            for (Map.Entry<NamespaceId<T>, CompletableFuture<TemporalNamespaceId<T>>> e : owned.entrySet()) {
+                // Loaded by another caller since the miss
+                final TemporalNamespaceId<T> version = cached(e.getKey());
+                if (null == version) {
+                    keys.add(e.getKey());
+                } else {
+                    e.getValue().complete(version);
+                    result.put(e.getKey(), version);
+                }
+            }
+            if (!keys.isEmpty()) {
+                loadCount.increment();
+                final Map<NamespaceId<T>, TemporalNamespaceId<T>> loaded = loader.loadAll(keys);
+                for (NamespaceId<T> key : keys) {
+                    final TemporalNamespaceId<T> version = install(key, loaded.get(key));
+                    owned.get(key).complete(version);
+                    if (null != version) {
+                        result.put(key, version);
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            for (CompletableFuture<TemporalNamespaceId<T>> future : owned.values()) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<NamespaceId<T>, CompletableFuture<TemporalNamespaceId<T>>> e : owned.entrySet()) {
+                loading.remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private TemporalNamespaceId<T> install(final NamespaceId<T> key, final TemporalNamespaceId<T> version) {
+        final Entry<T> installed = entries.compute(key, (k, current) -> {
+            if (null == current) {
+                return (null == version) ? null : new Entry<>(version, clock.millis());
+            }
+            if (null != version && version.after(current.version)) {
+                current.version = version;
+            }
+            current.loadedMillis = clock.millis();
+            return current;
+        });
+        if (null == installed) {
+            return null;
+        }
+        evictIfFull();
+        return installed.version;
+    }
+
+    private void evictIfFull() {
+        if (maximumSize >= entries.size() || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            final int size = entries.size();
+            if (maximumSize >= size) {
+                return;
+            }
+            final int excess = size - (maximumSize - maximumSize / 8);
+            final int[] histogram = new int[MAX_FREQUENCY + 1];
+            for (Entry<T> entry : entries.values()) {
+                histogram[entry.frequency]++;
+            }
+            // Evict all entries read less often than the threshold, and as
+            // many read as often as the threshold as make up the excess
+            int threshold = 0;
+            int below = 0;
+            while (MAX_FREQUENCY > threshold && excess > below + histogram[threshold]) {
+                below += histogram[threshold++];
+            }
+            int atThreshold = excess - below;
+            final Iterator<Map.Entry<NamespaceId<T>, Entry<T>>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<NamespaceId<T>, Entry<T>> e = it.next();
+                final Entry<T> entry = e.getValue();
+                final int frequency = entry.frequency;
+                if (threshold > frequency || (threshold == frequency && 0 < atThreshold)) {
+                    if (entries.remove(e.getKey(), entry)) {
+                        evictionCount.increment();
+                    }
+                    if (threshold == frequency) {
+                        atThreshold--;
+                    }
+                } else {
+                    entry.frequency = frequency >>> 1;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static <T extends Comparable<T>> TemporalNamespaceId<T> join(
+            final CompletableFuture<TemporalNamespaceId<T>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry<T extends Comparable<T>> {
+
+        volatile TemporalNamespaceId<T> version;
+        volatile long loadedMillis;
+        /** Racy, approximate count of reads, saturating and aged by eviction. */
+        int frequency = 1;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(final TemporalNamespaceId<T> version, final long loadedMillis) {
+            this.version = version;
+            this.loadedMillis = loadedMillis;
+        }
+
+    }
+
+}
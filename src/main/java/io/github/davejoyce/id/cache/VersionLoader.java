@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.cache;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Source from which a {@link LatestVersionCache} loads the latest versions
+ * of IDs on a miss, typically a slower backing store.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@FunctionalInterface
+public interface VersionLoader<T extends Comparable<T>> {
+
+    /**
+     * Load the latest version of the specified ID.
+     *
+     * @param id NamespaceId projection of the ID to be loaded
+     * @return latest version, or null if the ID has no version
+     */
+    TemporalNamespaceId<T> load(NamespaceId<T> id);
+
+    /**
+     * Load the latest versions of the specified IDs. The default
+     * implementation calls {@link #load(NamespaceId)} once per ID; loaders
+     * able to fetch many IDs in one request to their store should override
+     * it.
+     *
+     * @param ids distinct NamespaceId projections of the IDs to be loaded
+     * @return latest versions by NamespaceId projection, omitting IDs with no
+     *         version
+     */
+    default Map<NamespaceId<T>, TemporalNamespaceId<T>> loadAll(final List<NamespaceId<T>> ids) {
+        final Map<NamespaceId<T>, TemporalNamespaceId<T>> versions = new HashMap<>();
+        for (NamespaceId<T> id : ids) {
+            final TemporalNamespaceId<T> version = load(id);
+            if (null != version) {
+                versions.put(id, version);
+            }
+        }
+        return versions;
+    }
+
+}
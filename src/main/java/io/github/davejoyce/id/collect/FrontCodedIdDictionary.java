@@ -0,0 +1,628 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.collect;
+
+import io.github.davejoyce.id.IdComparators;
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Immutable, sorted dictionary of string-valued IDs, compressed by front
+ * coding. Entries are the {@code NamespaceId} projections of the IDs from
+ * which the dictionary is built, in 'natural' order, and each entry has a
+ * rank: its position in that order.
+ * <p>
+ * The distinct namespaces are held once each, with the rank of the first
+ * entry of each. ID values are encoded to bytes, one to three per UTF-16
+ * char, which preserves the order of {@code String.compareTo}, and grouped
+ * in blocks of consecutive entries. The first value of each block is stored
+ * whole; every other value is stored as the length of the prefix it shares
+ * with the previous value, plus the rest of its bytes. The first values
+ * form a sampled index: a lookup binary searches them without decoding, then
+ * decodes at most one block. Values with long common prefixes, such as
+ * hierarchical codes, take a few bytes each.
+ * </p>
+ * <p>
+ * Entries are decoded to {@code NamespaceId} objects on demand, by
+ * {@link #get(int) rank}, in sequence by {@link #stream(boolean) stream} or
+ * by {@link #withPrefix(String, String) prefix}. Instances of this class are
+ * thread-safe.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class FrontCodedIdDictionary {
+
+    /**
+     * Default number of entries per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED
+                                               | Spliterator.DISTINCT
+                                               | Spliterator.SORTED
+                                               | Spliterator.SIZED
+                                               | Spliterator.SUBSIZED
+                                               | Spliterator.NONNULL
+                                               | Spliterator.IMMUTABLE;
+
+    /**
+     * Build a dictionary of the {@code NamespaceId} projections of the
+     * specified IDs, with the default block size. Duplicate projections are
+     * included once.
+     *
+     * @param ids IDs, in any order
+     * @return new dictionary
+     * @throws IllegalArgumentException if <tt>ids</tt> is null or contains
+     *                                  null
+     */
+    public static FrontCodedIdDictionary of(final Collection<? extends NamespaceId<String>> ids) {
+        return of(ids, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Build a dictionary of the {@code NamespaceId} projections of the
+     * specified IDs. Duplicate projections are included once. Larger blocks
+     * compress better; smaller blocks decode less per lookup.
+     *
+     * @param ids IDs, in any order
+     * @param blockSize number of entries per block
+     * @return new dictionary
+     * @throws IllegalArgumentException if <tt>ids</tt> is null or contains
+     *                                  null, or <tt>blockSize</tt> is less
+     *                                  than 1
+     */
+    public static FrontCodedIdDictionary of(final Collection<? extends NamespaceId<String>> ids,
+                                            final int blockSize) {
+        requireNonNull(ids, "IDs cannot be null");
+        if (1 > blockSize) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        final NamespaceId<String>[] sorted = ids.toArray(newIdArray(0));
+        for (NamespaceId<String> id : sorted) {
+            requireNonNull(id, "IDs cannot contain null");
+        }
+        Arrays.sort(sorted, IdComparators::compareNamespaceIds);
+
+        final List<String> namespaces = new ArrayList<>();
+        final int[] nsStart = new int[sorted.length + 1];
+        final int[] blockOffsets = new int[(sorted.length + blockSize - 1) / blockSize];
+        final ByteSink data = new ByteSink(Math.max(16, sorted.length * 8));
+        byte[] previous = new byte[0];
+        NamespaceId<String> previousId = null;
+        int size = 0;
+        for (NamespaceId<String> id : sorted) {
+            if (null != previousId && 0 == IdComparators.compareNamespaceIds(previousId, id)) {
+                continue;
+            }
+            if (null == previousId || !previousId.getNamespace().equals(id.getNamespace())) {
+                nsStart[namespaces.size()] = size;
+                namespaces.add(id.getNamespace());
+            }
+            final byte[] value = encode(id.getId());
+            if (0 == size % blockSize) {
+                blockOffsets[size / blockSize] = data.size();
+                data.writeVarint(value.length);
+                data.write(value, 0, value.length);
+            } else {
+                final int common = commonPrefix(previous, value);
+                data.writeVarint(common);
+                data.writeVarint(value.length - common);
+                data.write(value, common, value.length - common);
+            }
+            previous = value;
+            previousId = id;
+            size++;
+        }
+        nsStart[namespaces.size()] = size;
+        return new FrontCodedIdDictionary(namespaces.toArray(new String[0]),
+                                          Arrays.copyOf(nsStart, namespaces.size() + 1),
+                                          data.toByteArray(),
+                                          Arrays.copyOf(blockOffsets, (size + blockSize - 1) / blockSize),
+                                          blockSize,
+                                          size);
+    }
+
+    private final String[] namespaces;
+    private final int[] nsStart;
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final int blockSize;
+    private final int size;
+
+    private FrontCodedIdDictionary(final String[] namespaces,
+                                   final int[] nsStart,
+                                   final byte[] data,
+                                   final int[] blockOffsets,
+                                   final int blockSize,
+                                   final int size) {
+        this.namespaces = namespaces;
+        this.nsStart = nsStart;
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.blockSize = blockSize;
+        this.size = size;
+    }
+
+    /**
+     * Get number of entries of this dictionary.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the entry of the specified rank (<i>select</i>).
+     *
+     * @param rank rank of entry
+     * @return entry at <tt>rank</tt>
+     * @throws IndexOutOfBoundsException if <tt>rank</tt> is out of range
+     */
+    public NamespaceId<String> get(final int rank) {
+        if (0 > rank || rank >= size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of dictionary of size " + size);
+        }
+        Cursor cursor = new Cursor();
+        cursor.seek(rank);
+        return new NamespaceId<>(namespaces[namespaceIndexOf(rank)], cursor.value());
+    }
+
+    /**
+     * Get the rank of the {@code NamespaceId} projection of the specified ID.
+     *
+     * @param id ID to be looked up
+     * @return rank of <tt>id</tt>, or -1 if it is not in this dictionary
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public int indexOf(final NamespaceId<String> id) {
+        requireNonNull(id, "ID cannot be null");
+        int r = search(id.getNamespace(), encode(id.getId()), false);
+        return (0 <= r) ? r : -1;
+    }
+
+    /**
+     * Get the number of entries less than the {@code NamespaceId} projection
+     * of the specified ID (<i>rank</i>), which need not be in this
+     * dictionary.
+     *
+     * @param id ID to be ranked
+     * @return number of entries less than <tt>id</tt>
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public int rank(final NamespaceId<String> id) {
+        requireNonNull(id, "ID cannot be null");
+        int r = search(id.getNamespace(), encode(id.getId()), false);
+        return (0 <= r) ? r : -(r + 1);
+    }
+
+    /**
+     * Determine whether the {@code NamespaceId} projection of the specified
+     * ID is in this dictionary.
+     *
+     * @param id ID to be looked up
+     * @return true if <tt>id</tt> is in this dictionary
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean contains(final NamespaceId<String> id) {
+        return 0 <= indexOf(id);
+    }
+
+    /**
+     * Create a stream of the entries of the specified namespace whose ID
+     * values start with the specified prefix, in 'natural' order.
+     *
+     * @param namespace namespace of entries
+     * @param idPrefix prefix of ID values; empty for all entries of
+     *                 <tt>namespace</tt>
+     * @return stream of entries
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public Stream<NamespaceId<String>> withPrefix(final String namespace, final String idPrefix) {
+        requireNonNull(namespace, "Namespace cannot be null");
+        requireNonNull(idPrefix, "ID prefix cannot be null");
+        final byte[] prefix = encode(idPrefix);
+        final int lower = search(namespace, prefix, false);
+        final int from = (0 <= lower) ? lower : -(lower + 1);
+        final int to = -(search(namespace, prefix, true) + 1);
+        return StreamSupport.stream(new EntrySpliterator(from, to), false);
+    }
+
+    /**
+     * Create a stream of the entries of this dictionary, in 'natural' order.
+     *
+     * @param parallel whether stream is parallel
+     * @return stream of entries
+     */
+    public Stream<NamespaceId<String>> stream(final boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    /**
+     * Create a spliterator over the entries of this dictionary, in 'natural'
+     * order. The spliterator splits at block boundaries.
+     *
+     * @return sized, sorted, distinct spliterator
+     */
+    public Spliterator<NamespaceId<String>> spliterator() {
+        return new EntrySpliterator(0, size);
+    }
+
+    /**
+     * Get the approximate number of bytes of heap taken by this dictionary.
+     *
+     * @return heap size estimate
+     */
+    public long getByteSize() {
+        long bytes = 16L * 6;
+        bytes += 16L + data.length;
+        bytes += 16L + 4L * blockOffsets.length;
+        bytes += 16L + 4L * nsStart.length;
+        bytes += 16L + 4L * namespaces.length;
+        for (String namespace : namespaces) {
+            bytes += 40L + 2L * namespace.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Search for an entry by namespace and encoded ID value. If <tt>upper</tt>
+     * is true, every value which starts with <tt>value</tt> compares less
+     * than it, so that the search finds the end of the range of entries with
+     * the prefix.
+     *
+     * @return rank of entry if found, otherwise <code>(-(insertion point) -
+     *         1)</code>
+     */
+    private int search(final String namespace, final byte[] value, final boolean upper) {
+        final int nsIndex = Arrays.binarySearch(namespaces, namespace);
+        if (0 > nsIndex) {
+            return -nsStart[-(nsIndex + 1)] - 1;
+        }
+        final int lo = nsStart[nsIndex];
+        final int hi = nsStart[nsIndex + 1];
+        // Find the last block of the namespace whose first value is not
+        // greater than the value sought; blocks after the one containing the
+        // first entry of the namespace begin with an entry of the namespace
+        int block = lo / blockSize;
+        int low = block + 1;
+        int high = (hi - 1) / blockSize;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int offset = blockOffsets[mid];
+            final int length = readVarint(data, offset);
+            final int c = compare(data, offset + varintLength(length), length, value, upper);
+            if (0 == c) {
+                return mid * blockSize;
+            } else if (0 > c) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        final Cursor cursor = new Cursor();
+        final int end = Math.min(hi, (block + 1) * blockSize);
+        cursor.seek(Math.max(lo, block * blockSize));
+        for (int r = cursor.rank; r < end; r++) {
+            if (r > cursor.rank) {
+                cursor.next();
+            }
+            final int c = compare(cursor.buf, 0, cursor.length, value, upper);
+            if (0 == c) {
+                return r;
+            } else if (0 < c) {
+                return -r - 1;
+            }
+        }
+        return -end - 1;
+    }
+
+    private int namespaceIndexOf(final int rank) {
+        final int i = Arrays.binarySearch(nsStart, rank);
+        return (0 <= i) ? i : -(i + 1) - 1;
+    }
+
+    /**
+     * Compare encoded bytes with a sought value, unsigned.
+     */
+    private static int compare(final byte[] a,
+                               final int offset,
+                               final int length,
+                               final byte[] value,
+                               final boolean upper) {
+        final int n = Math.min(length, value.length);
+        for (int i = 0; i < n; i++) {
+            final int c = (a[offset + i] & 0xFF) - (value[i] & 0xFF);
+            if (0 != c) {
+                return c;
+            }
+        }
+        if (upper && length >= value.length) {
+            return -1;
+        }
+        return length - value.length;
+    }
+
+    private static int commonPrefix(final byte[] a, final byte[] b) {
+        final int n = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < n && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Encode a string to bytes, each char as a UTF-8 sequence of one to three
+     * bytes by its code unit value. Unlike standard UTF-8, the byte order of
+     * the encoding is the order of {@code String.compareTo}.
+     */
+    static byte[] encode(final String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += (0x80 > c) ? 1 : (0x800 > c) ? 2 : 3;
+        }
+        final byte[] bytes = new byte[length];
+        int p = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (0x80 > c) {
+                bytes[p++] = (byte)c;
+            } else if (0x800 > c) {
+                bytes[p++] = (byte)(0xC0 | (c >> 6));
+                bytes[p++] = (byte)(0x80 | (c & 0x3F));
+            } else {
+                bytes[p++] = (byte)(0xE0 | (c >> 12));
+                bytes[p++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                bytes[p++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Decode bytes encoded by {@link #encode(String)}.
+     */
+    static String decode(final byte[] bytes, final int length) {
+        final char[] chars = new char[length];
+        int n = 0;
+        int p = 0;
+        while (p < length) {
+            int b = bytes[p++] & 0xFF;
+            if (0x80 > b) {
+                chars[n++] = (char)b;
+            } else if (0xE0 > b) {
+                chars[n++] = (char)(((b & 0x1F) << 6) | (bytes[p++] & 0x3F));
+            } else {
+                chars[n++] = (char)(((b & 0x0F) << 12) | ((bytes[p++] & 0x3F) << 6) | (bytes[p++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static int readVarint(final byte[] bytes, final int offset) {
+        int value = 0;
+        int shift = 0;
+        int p = offset;
+        int b;
+        do {
+            b = bytes[p++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (0 != (b & 0x80));
+        return value;
+    }
+
+    private static int varintLength(final int value) {
+        int length = 1;
+        int v = value >>> 7;
+        while (0 != v) {
+            length++;
+            v >>>= 7;
+        }
+        return length;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static NamespaceId<String>[] newIdArray(final int length) {
+        return new NamespaceId[length];
+    }
+
+    /**
+     * Sequential decoder of entries, holding the encoded value of the current
+     * entry.
+     */
+    private final class Cursor {
+
+        private byte[] buf = new byte[32];
+        private int length;
+        private int position;
+        private int rank = -1;
+
+        /**
+         * Position this cursor at the specified rank, decoding from the start
+         * of its block.
+         */
+        void seek(final int target) {
+            final int block = target / blockSize;
+            position = blockOffsets[block];
+            rank = block * blockSize;
+            length = readVarint(data, position);
+            position += varintLength(length);
+            ensureCapacity(length);
+            System.arraycopy(data, position, buf, 0, length);
+            position += length;
+            while (rank < target) {
+                next();
+            }
+        }
+
+        /**
+         * Advance this cursor to the next entry.
+         */
+        void next() {
+            rank++;
+            if (0 == rank % blockSize) {
+                seek(rank);
+                return;
+            }
+            final int common = readVarint(data, position);
+            position += varintLength(common);
+            final int suffix = readVarint(data, position);
+            position += varintLength(suffix);
+            length = common + suffix;
+            ensureCapacity(length);
+            System.arraycopy(data, position, buf, common, suffix);
+            position += suffix;
+        }
+
+        String value() {
+            return decode(buf, length);
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (buf.length < capacity) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, buf.length << 1));
+            }
+        }
+
+    }
+
+    /**
+     * Spliterator over a range of ranks, which decodes sequentially and
+     * splits at block boundaries.
+     */
+    private final class EntrySpliterator implements Spliterator<NamespaceId<String>> {
+
+        private int index;
+        private final int fence;
+        private Cursor cursor;
+        private int nsIndex;
+
+        EntrySpliterator(final int origin, final int fence) {
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super NamespaceId<String>> action) {
+            requireNonNull(action, "Action cannot be null");
+            if (index >= fence) {
+                return false;
+            }
+            if (null == cursor) {
+                cursor = new Cursor();
+                cursor.seek(index);
+                nsIndex = namespaceIndexOf(index);
+            } else {
+                cursor.next();
+                while (nsStart[nsIndex + 1] <= index) {
+                    nsIndex++;
+                }
+            }
+            index++;
+            action.accept(new NamespaceId<>(namespaces[nsIndex], cursor.value()));
+            return true;
+        }
+
+        @Override
+        public Spliterator<NamespaceId<String>> trySplit() {
+            final int mid = ((index + fence) >>> 1) / blockSize * blockSize;
+            if (mid <= index || mid >= fence || null != cursor) {
+                return null;
+            }
+            EntrySpliterator prefix = new EntrySpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super NamespaceId<String>> getComparator() {
+            return null;
+        }
+
+    }
+
+    /**
+     * Growable byte array.
+     */
+    private static final class ByteSink {
+
+        private byte[] bytes;
+        private int size;
+
+        ByteSink(final int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void write(final byte[] b, final int offset, final int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(b, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarint(final int value) {
+            ensureCapacity(size + 5);
+            int v = value;
+            while (0 != (v & ~0x7F)) {
+                bytes[size++] = (byte)((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte)v;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (bytes.length < capacity) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+            }
+        }
+
+    }
+
+}
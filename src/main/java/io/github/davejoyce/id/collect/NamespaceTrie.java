@@ -0,0 +1,544 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.collect;
+
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Index of IDs by namespace, in a radix tree over the characters of their
+ * namespaces. Each node of the tree holds the IDs of the namespace which
+ * ends at it, sorted, so that the IDs of all namespaces with a given prefix
+ * are the IDs of one subtree. A prefix query walks the prefix, then
+ * enumerates the subtree in 'natural' order, in time proportional to the
+ * length of the prefix plus the size of the result. Paths without branches
+ * are compressed into single nodes.
+ * <p>
+ * Namespaces are often hierarchical, with levels delimited by a separator
+ * such as <code>'.'</code> in <code>emea.trading.fx</code>;
+ * {@link #under(String)} selects a namespace and the namespaces beneath it,
+ * but not siblings which merely share its prefix.
+ * </p>
+ * <p>
+ * The tree is persistent: an update copies the path from the root to the
+ * changed node and publishes the new root, so reads never lock and every
+ * stream traverses the snapshot current when it was created. Updates are
+ * serialized. All IDs of a trie should be of one class, since IDs of
+ * different classes are not mutually comparable.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class NamespaceTrie<T extends Comparable<T>> {
+
+    /**
+     * Default separator of namespace hierarchy levels.
+     */
+    public static final char DEFAULT_SEPARATOR = '.';
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED
+                                               | Spliterator.DISTINCT
+                                               | Spliterator.SORTED
+                                               | Spliterator.SIZED
+                                               | Spliterator.NONNULL
+                                               | Spliterator.IMMUTABLE;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+    private static final NamespaceId<?>[] NO_IDS = new NamespaceId<?>[0];
+
+    private final char separator;
+    private final Comparator<NamespaceId<T>> order = NamespaceId::compareTo;
+    private volatile Node<T> root = emptyRoot();
+
+    /**
+     * Construct an empty trie with the default separator.
+     */
+    public NamespaceTrie() {
+        this(DEFAULT_SEPARATOR);
+    }
+
+    /**
+     * Construct an empty trie with the specified separator of namespace
+     * hierarchy levels.
+     *
+     * @param separator separator of namespace levels
+     */
+    public NamespaceTrie(final char separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * Add the specified ID.
+     *
+     * @param id ID to be added
+     * @return true if this trie changed as a result
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean add(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        return update(id.getNamespace(), ids -> {
+            int i = Arrays.binarySearch(ids, id, order);
+            if (0 <= i) {
+                return ids;
+            }
+            i = -(i + 1);
+            NamespaceId<T>[] updated = newArray(noIds(), ids.length + 1);
+            System.arraycopy(ids, 0, updated, 0, i);
+            updated[i] = id;
+            System.arraycopy(ids, i, updated, i + 1, ids.length - i);
+            return updated;
+        });
+    }
+
+    /**
+     * Add the specified IDs. The IDs of each namespace are merged into the
+     * trie at once, and the result is published as one update.
+     *
+     * @param ids IDs to be added
+     * @return true if this trie changed as a result
+     * @throws IllegalArgumentException if <tt>ids</tt> is null or contains
+     *                                  null
+     */
+    public boolean addAll(final Collection<? extends NamespaceId<T>> ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        final Map<String, List<NamespaceId<T>>> byNamespace = new HashMap<>();
+        for (NamespaceId<T> id : ids) {
+            requireNonNull(id, "IDs cannot contain null");
+            byNamespace.computeIfAbsent(id.getNamespace(), k -> new ArrayList<>()).add(id);
+        }
+        synchronized (this) {
+            final Node<T> original = root;
+            Node<T> current = original;
+            for (Map.Entry<String, List<NamespaceId<T>>> entry : byNamespace.entrySet()) {
+                final List<NamespaceId<T>> added = entry.getValue();
+                added.sort(order);
+                current = update(current, entry.getKey(), 0, existing -> merge(existing, added), true);
+            }
+            root = current;
+            return current != original;
+        }
+    }
+
+    /**
+     * Remove the specified ID.
+     *
+     * @param id ID to be removed
+     * @return true if this trie changed as a result
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean remove(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        return update(id.getNamespace(), ids -> {
+            int i = Arrays.binarySearch(ids, id, order);
+            if (0 > i) {
+                return ids;
+            }
+            NamespaceId<T>[] updated = newArray(noIds(), ids.length - 1);
+            System.arraycopy(ids, 0, updated, 0, i);
+            System.arraycopy(ids, i + 1, updated, i, ids.length - i - 1);
+            return updated;
+        });
+    }
+
+    /**
+     * Determine whether the specified ID is in this trie.
+     *
+     * @param id ID to be looked up
+     * @return true if <tt>id</tt> is in this trie
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean contains(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        Node<T> node = find(root, id.getNamespace(), true);
+        return null != node && 0 <= Arrays.binarySearch(node.ids, id, order);
+    }
+
+    /**
+     * Get number of IDs of this trie.
+     *
+     * @return ID count
+     */
+    public int size() {
+        return root.size;
+    }
+
+    /**
+     * Get the IDs of the specified namespace.
+     *
+     * @param namespace namespace of IDs
+     * @return unmodifiable list of IDs of <tt>namespace</tt>, in 'natural'
+     *         order
+     * @throws IllegalArgumentException if <tt>namespace</tt> is null
+     */
+    public List<NamespaceId<T>> get(final String namespace) {
+        requireNonNull(namespace, "Namespace cannot be null");
+        Node<T> node = find(root, namespace, true);
+        return (null == node) ? Collections.<NamespaceId<T>>emptyList()
+                              : Collections.unmodifiableList(Arrays.asList(node.ids));
+    }
+
+    /**
+     * Count the IDs whose namespaces start with the specified prefix.
+     *
+     * @param prefix namespace prefix; empty for all IDs
+     * @return ID count
+     * @throws IllegalArgumentException if <tt>prefix</tt> is null
+     */
+    public int countWithPrefix(final String prefix) {
+        requireNonNull(prefix, "Prefix cannot be null");
+        Node<T> node = find(root, prefix, false);
+        return (null == node) ? 0 : node.size;
+    }
+
+    /**
+     * Create a stream of the IDs whose namespaces start with the specified
+     * prefix, in 'natural' order.
+     *
+     * @param prefix namespace prefix; empty for all IDs
+     * @return stream of IDs
+     * @throws IllegalArgumentException if <tt>prefix</tt> is null
+     */
+    public Stream<NamespaceId<T>> withPrefix(final String prefix) {
+        requireNonNull(prefix, "Prefix cannot be null");
+        return subtree(find(root, prefix, false));
+    }
+
+    /**
+     * Create a stream of the IDs of the specified namespace and of the
+     * namespaces beneath it in the hierarchy, which start with
+     * <tt>namespace</tt> followed by the separator, in 'natural' order.
+     *
+     * @param namespace namespace at root of hierarchy
+     * @return stream of IDs
+     * @throws IllegalArgumentException if <tt>namespace</tt> is null
+     */
+    public Stream<NamespaceId<T>> under(final String namespace) {
+        requireNonNull(namespace, "Namespace cannot be null");
+        final Node<T> snapshot = root;
+        final Node<T> node = find(snapshot, namespace, true);
+        final Stream<NamespaceId<T>> own = (null == node) ? Stream.<NamespaceId<T>>empty()
+                                                          : Arrays.stream(node.ids);
+        return Stream.concat(own, subtree(find(snapshot, namespace + separator, false)));
+    }
+
+    /**
+     * Create a stream of all IDs of this trie, in 'natural' order.
+     *
+     * @return stream of IDs
+     */
+    public Stream<NamespaceId<T>> stream() {
+        return subtree(root);
+    }
+
+    private synchronized boolean update(final String namespace,
+                                        final UnaryOperator<NamespaceId<T>[]> operator) {
+        final Node<T> original = root;
+        root = update(original, namespace, 0, operator, true);
+        return root != original;
+    }
+
+    /**
+     * Apply an operator to the IDs of a namespace, copying the path to its
+     * node and returning the new subtree, which is null if it is empty.
+     *
+     * @param node subtree root
+     * @param namespace namespace to be updated
+     * @param depth number of characters of <tt>namespace</tt> matched on the
+     *              path to and including <tt>node</tt>
+     */
+    private Node<T> update(final Node<T> node,
+                           final String namespace,
+                           final int depth,
+                           final UnaryOperator<NamespaceId<T>[]> operator,
+                           final boolean isRoot) {
+        if (depth == namespace.length()) {
+            return normalize(node.withIds(operator.apply(node.ids)), isRoot);
+        }
+        final char c = namespace.charAt(depth);
+        final int i = Arrays.binarySearch(node.keys, c);
+        if (0 > i) {
+            NamespaceId<T>[] ids = operator.apply(noIds());
+            if (0 == ids.length) {
+                return node;
+            }
+            Node<T> leaf = new Node<>(namespace.substring(depth), NO_KEYS, noChildren(), ids);
+            return node.insertChild(-(i + 1), c, leaf);
+        }
+        final Node<T> child = node.children[i];
+        final String label = child.label;
+        int common = 0;
+        final int max = Math.min(label.length(), namespace.length() - depth);
+        while (common < max && label.charAt(common) == namespace.charAt(depth + common)) {
+            common++;
+        }
+        Node<T> updated;
+        if (common < label.length()) {
+            if (0 == operator.apply(noIds()).length) {
+                return node;
+            }
+            // Split the edge where the namespace diverges from it
+            Node<T>[] children = newArray(noChildren(), 1);
+            children[0] = child.withLabel(label.substring(common));
+            Node<T> split = new Node<>(label.substring(0, common),
+                                       new char[]{ label.charAt(common) },
+                                       children,
+                                       noIds());
+            updated = update(split, namespace, depth + common, operator, false);
+        } else {
+            updated = update(child, namespace, depth + label.length(), operator, false);
+        }
+        if (updated == child) {
+            return node;
+        }
+        return normalize((null == updated) ? node.removeChild(i) : node.withChild(i, updated), isRoot);
+    }
+
+    /**
+     * Remove a node without IDs or children, and merge a node without IDs
+     * into its only child.
+     */
+    private Node<T> normalize(final Node<T> node, final boolean isRoot) {
+        if (isRoot || 0 != node.ids.length) {
+            return node;
+        }
+        if (0 == node.children.length) {
+            return null;
+        }
+        if (1 == node.children.length) {
+            Node<T> child = node.children[0];
+            return child.withLabel(node.label + child.label);
+        }
+        return node;
+    }
+
+    /**
+     * Find the node of a namespace, or with <tt>exact</tt> false, the root of
+     * the subtree of namespaces with a prefix.
+     */
+    private Node<T> find(final Node<T> from, final String key, final boolean exact) {
+        Node<T> node = from;
+        int depth = 0;
+        while (depth < key.length()) {
+            int i = Arrays.binarySearch(node.keys, key.charAt(depth));
+            if (0 > i) {
+                return null;
+            }
+            Node<T> child = node.children[i];
+            int remaining = key.length() - depth;
+            if (remaining < child.label.length()) {
+                return (!exact && child.label.regionMatches(0, key, depth, remaining)) ? child : null;
+            }
+            if (!key.regionMatches(depth, child.label, 0, child.label.length())) {
+                return null;
+            }
+            node = child;
+            depth += child.label.length();
+        }
+        return node;
+    }
+
+    private Stream<NamespaceId<T>> subtree(final Node<T> node) {
+        if (null == node) {
+            return Stream.empty();
+        }
+        return StreamSupport.stream(Spliterators.spliterator(new SubtreeIterator<>(node),
+                                                             node.size,
+                                                             CHARACTERISTICS),
+                                    false);
+    }
+
+    private NamespaceId<T>[] merge(final NamespaceId<T>[] ids, final List<NamespaceId<T>> added) {
+        final NamespaceId<T>[] merged = newArray(noIds(), ids.length + added.size());
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < ids.length || j < added.size()) {
+            NamespaceId<T> next;
+            if (j == added.size()) {
+                next = ids[i++];
+            } else if (i == ids.length) {
+                next = added.get(j++);
+            } else {
+                int c = order.compare(ids[i], added.get(j));
+                next = (0 < c) ? added.get(j++) : ids[i++];
+                if (0 == c) {
+                    j++;
+                }
+            }
+            if (0 == n || 0 != order.compare(merged[n - 1], next)) {
+                merged[n++] = next;
+            }
+        }
+        return (n == ids.length) ? ids : Arrays.copyOf(merged, n);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> Node<T> emptyRoot() {
+        return new Node<>("", NO_KEYS, (Node<T>[])NO_CHILDREN, (NamespaceId<T>[])NO_IDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> Node<T>[] noChildren() {
+        return (Node<T>[])NO_CHILDREN;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> NamespaceId<T>[] noIds() {
+        return (NamespaceId<T>[])NO_IDS;
+    }
+
+    /**
+     * Create an array of the specified length, of the same component type
+     * as the given empty array, which is itself returned for length 0.
+     */
+    private static <E> E[] newArray(final E[] empty, final int length) {
+        return (0 == length) ? empty : Arrays.copyOf(empty, length);
+    }
+
+    /**
+     * Immutable node of the tree. The label is the part of the namespace on
+     * the edge from the parent; children are sorted by the first character
+     * of their labels.
+     */
+    private static final class Node<T extends Comparable<T>> {
+
+        final String label;
+        final char[] keys;
+        final Node<T>[] children;
+        final NamespaceId<T>[] ids;
+        final int size;
+
+        Node(final String label, final char[] keys, final Node<T>[] children, final NamespaceId<T>[] ids) {
+            this.label = label;
+            this.keys = keys;
+            this.children = children;
+            this.ids = ids;
+            int s = ids.length;
+            for (Node<T> child : children) {
+                s += child.size;
+            }
+            this.size = s;
+        }
+
+        Node<T> withIds(final NamespaceId<T>[] newIds) {
+            return (newIds == ids) ? this : new Node<>(label, keys, children, newIds);
+        }
+
+        Node<T> withLabel(final String newLabel) {
+            return new Node<>(newLabel, keys, children, ids);
+        }
+
+        Node<T> withChild(final int i, final Node<T> child) {
+            Node<T>[] newChildren = children.clone();
+            newChildren[i] = child;
+            return new Node<>(label, keys, newChildren, ids);
+        }
+
+        Node<T> insertChild(final int i, final char key, final Node<T> child) {
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            newKeys[i] = key;
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            Node<T>[] newChildren = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            newChildren[i] = child;
+            return new Node<>(label, newKeys, newChildren, ids);
+        }
+
+        Node<T> removeChild(final int i) {
+            char[] newKeys = new char[keys.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            Node<T>[] newChildren = Arrays.copyOf(children, children.length - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            return new Node<>(label, newKeys, newChildren, ids);
+        }
+
+    }
+
+    /**
+     * Pre-order iterator over the IDs of a subtree: the IDs of a node, then
+     * the subtrees of its children in order of their labels, which is the
+     * 'natural' order of the IDs.
+     */
+    private static final class SubtreeIterator<T extends Comparable<T>> implements Iterator<NamespaceId<T>> {
+
+        private final Deque<Node<T>> stack = new ArrayDeque<>();
+        private NamespaceId<T>[] ids;
+        private int index;
+
+        SubtreeIterator(final Node<T> node) {
+            stack.push(node);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return null != ids;
+        }
+
+        @Override
+        public NamespaceId<T> next() {
+            if (null == ids) {
+                throw new NoSuchElementException();
+            }
+            NamespaceId<T> id = ids[index++];
+            if (index == ids.length) {
+                advance();
+            }
+            return id;
+        }
+
+        private void advance() {
+            ids = null;
+            while (!stack.isEmpty()) {
+                Node<T> node = stack.pop();
+                for (int i = node.children.length - 1; i >= 0; i--) {
+                    stack.push(node.children[i]);
+                }
+                if (0 < node.ids.length) {
+                    ids = node.ids;
+                    index = 0;
+                    return;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.function.Function;
+
+/**
+ * Provider of converters to the JDK types commonly used as ID attributes.
+ * Each converter gives the same result as the reflective conversion of its
+ * type, without the use of reflection.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class BuiltInConverters implements IdConverterProvider {
+
+    @Override
+    public void registerConverters(final IdConverterRegistry registry) {
+        registry.register(String.class, s -> s);
+        registry.register(Integer.class, numeric(Integer.class, Integer::valueOf));
+        registry.register(Long.class, numeric(Long.class, Long::valueOf));
+        registry.register(Short.class, numeric(Short.class, Short::valueOf));
+        registry.register(Byte.class, numeric(Byte.class, Byte::valueOf));
+        registry.register(Double.class, numeric(Double.class, Double::valueOf));
+        registry.register(Float.class, numeric(Float.class, Float::valueOf));
+        registry.register(Boolean.class, Boolean::valueOf);
+        registry.register(BigInteger.class, numeric(BigInteger.class, BigInteger::new));
+        registry.register(BigDecimal.class, numeric(BigDecimal.class, BigDecimal::new));
+    }
+
+    /**
+     * Wrap a numeric parse function, translating its
+     * {@code NumberFormatException} as the reflective conversion does.
+     */
+    private static <T extends Comparable<T>> IdConverter<T> numeric(final Class<T> idType,
+                                                                    final Function<String, T> parser) {
+        return idValue -> {
+            try {
+                return parser.apply(idValue);
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException(
+                        "Identifier segment cannot be converted to type: "
+                        + idType.getCanonicalName(), nfe);
+            }
+        };
+    }
+
+}
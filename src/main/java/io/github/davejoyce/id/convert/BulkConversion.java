@@ -0,0 +1,234 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Handle of a batch submitted to a {@link BulkConversionService}. Elements
+ * are claimed in input order by a bounded number of workers. Every element
+ * eventually gets exactly one {@link ConversionResult}: once cancelled, or
+ * once its deadline has passed, unconverted elements are given a
+ * <tt>CANCELLED</tt> or <tt>TIMED_OUT</tt> result and workers still running
+ * converters are interrupted. The deadline is enforced by a timer of the
+ * service, whether or not any thread awaits the batch.
+ *
+ * @param <S> input element type
+ * @param <R> converted type
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class BulkConversion<S, R> {
+
+    private final List<? extends S> inputs;
+    private final Function<? super S, ? extends R> converter;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final AtomicReferenceArray<ConversionResult<R>> results;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<Future<?>> workers = new ArrayList<>();
+    private volatile boolean stopped;
+    private volatile Future<?> timer;
+
+    BulkConversion(final List<? extends S> inputs,
+                   final Function<? super S, ? extends R> converter,
+                   final long timeoutNanos) {
+        this.inputs = inputs;
+        this.converter = converter;
+        this.hasDeadline = (0L <= timeoutNanos);
+        this.deadline = System.nanoTime() + (hasDeadline ? timeoutNanos : 0L);
+        this.results = new AtomicReferenceArray<>(inputs.size());
+        if (inputs.isEmpty()) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Add a worker task; called by the service before any worker runs.
+     */
+    void addWorker(final Future<?> worker) {
+        synchronized (workers) {
+            workers.add(worker);
+        }
+        if (stopped) {
+            worker.cancel(true);
+        }
+    }
+
+    /**
+     * Schedule the timeout of the batch at its deadline, if it has one;
+     * called by the service before any worker runs.
+     */
+    void scheduleDeadline(final ScheduledExecutorService scheduler) {
+        if (!hasDeadline || isDone()) {
+            return;
+        }
+        final Future<?> scheduled = scheduler.schedule(() -> stop(ConversionResult.Status.TIMED_OUT),
+                                                       deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        timer = scheduled;
+        if (isDone()) {
+            scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * Convert elements until none remain, the batch is stopped or its
+     * deadline passes.
+     */
+    void work() {
+        final int size = inputs.size();
+        while (!stopped) {
+            if (hasDeadline && 0L < System.nanoTime() - deadline) {
+                stop(ConversionResult.Status.TIMED_OUT);
+                return;
+            }
+            int i = next.getAndIncrement();
+            if (i >= size) {
+                return;
+            }
+            ConversionResult<R> result;
+            try {
+                result = ConversionResult.converted(i, converter.apply(inputs.get(i)));
+            } catch (RuntimeException e) {
+                result = ConversionResult.failed(i, e);
+            }
+            if (stopped) {
+                // Converter may have been interrupted; stop() gives the
+                // element its result
+                return;
+            }
+            finish(i, result);
+        }
+    }
+
+    /**
+     * Get number of elements in the batch.
+     *
+     * @return batch size
+     */
+    public int size() {
+        return results.length();
+    }
+
+    /**
+     * Determine whether every element has a result.
+     *
+     * @return true if batch is complete
+     */
+    public boolean isDone() {
+        return 0L == done.getCount();
+    }
+
+    /**
+     * Cancel the conversion. Elements not yet converted are given a
+     * <tt>CANCELLED</tt> result, and workers still converting are
+     * interrupted.
+     *
+     * @return true if this call completed the batch, false if it was already
+     *         complete
+     */
+    public boolean cancel() {
+        if (isDone()) {
+            return false;
+        }
+        stop(ConversionResult.Status.CANCELLED);
+        return true;
+    }
+
+    /**
+     * Wait for the batch to complete, or for its deadline to pass, and get
+     * the results.
+     *
+     * @return result of each element, in input order
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<ConversionResult<R>> await() throws InterruptedException {
+        if (hasDeadline) {
+            if (!done.await(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                stop(ConversionResult.Status.TIMED_OUT);
+            }
+        } else {
+            done.await();
+        }
+        return snapshot();
+    }
+
+    /**
+     * Wait up to the specified time for the batch to complete, and get the
+     * results. The batch continues if this wait times out.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of <tt>timeout</tt>
+     * @return result of each element, in input order
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if the batch does not complete in time
+     */
+    public List<ConversionResult<R>> await(final long timeout, final TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        if (hasDeadline && 0L <= (System.nanoTime() + unit.toNanos(timeout)) - deadline) {
+            return await();
+        }
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("Bulk conversion incomplete after " + timeout + " " + unit);
+        }
+        return snapshot();
+    }
+
+    private void stop(final ConversionResult.Status status) {
+        stopped = true;
+        synchronized (workers) {
+            for (Future<?> worker : workers) {
+                worker.cancel(true);
+            }
+        }
+        for (int i = 0, n = results.length(); i < n; i++) {
+            if (null == results.get(i)) {
+                finish(i, ConversionResult.<R>unfinished(i, status));
+            }
+        }
+    }
+
+    private void finish(final int i, final ConversionResult<R> result) {
+        if (results.compareAndSet(i, null, result) && finished.incrementAndGet() == results.length()) {
+            done.countDown();
+            final Future<?> scheduled = timer;
+            if (null != scheduled) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+
+    private List<ConversionResult<R>> snapshot() {
+        int n = results.length();
+        List<ConversionResult<R>> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(results.get(i));
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Service which converts batches of elements concurrently. Each batch is
+ * worked by at most <tt>concurrency</tt> workers, which claim elements in
+ * input order, so a converter which blocks delays only its own element.
+ * <p>
+ * Workers run on virtual threads when the running JVM provides them (Java
+ * 21 or later), so that a high concurrency costs little; otherwise they run
+ * on a bounded pool of <tt>concurrency</tt> daemon platform threads, shared
+ * by all batches. The library is compiled for Java 8, so the virtual thread
+ * executor is found by reflection.
+ * </p>
+ * <p>
+ * For example, to validate a batch of ID values within a second:
+ * </p>
+ * <pre>
+ *     try (BulkConversionService service = BulkConversionService.create()) {
+ *         List&lt;ConversionResult&lt;AccountNumber&gt;&gt; results = service
+ *                 .submit(values, IdConverters.forType(AccountNumber.class)::convert,
+ *                         Duration.ofSeconds(1))
+ *                 .await();
+ *     }
+ * </pre>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class BulkConversionService implements AutoCloseable {
+
+    /**
+     * Default maximum number of concurrent conversions per batch.
+     */
+    public static final int DEFAULT_CONCURRENCY = 64;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /**
+     * Create a service with the {@link #DEFAULT_CONCURRENCY default}
+     * concurrency.
+     *
+     * @return new service
+     */
+    public static BulkConversionService create() {
+        return create(DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Create a service which runs up to the specified number of conversions
+     * per batch at once, on virtual threads if available, or else on a pool
+     * of that many platform threads.
+     *
+     * @param concurrency maximum number of concurrent conversions per batch
+     * @return new service
+     * @throws IllegalArgumentException if <tt>concurrency</tt> is not positive
+     */
+    public static BulkConversionService create(final int concurrency) {
+        checkConcurrency(concurrency);
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (null != executor) {
+            return new BulkConversionService(executor, concurrency, true);
+        }
+        return new BulkConversionService(newPlatformThreadExecutor(concurrency), concurrency, false);
+    }
+
+    /**
+     * Create a service which runs up to the specified number of conversions
+     * per batch at once, on a pool of that many platform threads, even if
+     * virtual threads are available.
+     *
+     * @param concurrency maximum number of concurrent conversions per batch
+     * @return new service
+     * @throws IllegalArgumentException if <tt>concurrency</tt> is not positive
+     */
+    public static BulkConversionService createWithPlatformThreads(final int concurrency) {
+        checkConcurrency(concurrency);
+        return new BulkConversionService(newPlatformThreadExecutor(concurrency), concurrency, false);
+    }
+
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private final int concurrency;
+    private final boolean virtualThreads;
+
+    private BulkConversionService(final ExecutorService executor,
+                                  final int concurrency,
+                                  final boolean virtualThreads) {
+        this.executor = executor;
+        this.deadlines = newDeadlineExecutor();
+        this.concurrency = concurrency;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Determine whether this service runs conversions on virtual threads.
+     *
+     * @return true if virtual threads are used
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Get maximum number of concurrent conversions per batch.
+     *
+     * @return concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Submit a batch for conversion without a deadline.
+     *
+     * @param inputs elements to be converted; must not be modified until the
+     *               conversion is done
+     * @param converter function which converts one element
+     * @param <S> input element type
+     * @param <R> converted type
+     * @return handle of conversion
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public <S, R> BulkConversion<S, R> submit(final List<? extends S> inputs,
+                                              final Function<? super S, ? extends R> converter) {
+        return submit(inputs, converter, -1L);
+    }
+
+    /**
+     * Submit a batch for conversion, which must complete within the
+     * specified time of submission. Elements not converted by the deadline
+     * are given a <tt>TIMED_OUT</tt> result.
+     *
+     * @param inputs elements to be converted; must not be modified until the
+     *               conversion is done
+     * @param converter function which converts one element
+     * @param timeout time allowed for conversion of the batch
+     * @param <S> input element type
+     * @param <R> converted type
+     * @return handle of conversion
+     * @throws IllegalArgumentException if any argument is null, or
+     *                                  <tt>timeout</tt> is negative
+     */
+    public <S, R> BulkConversion<S, R> submit(final List<? extends S> inputs,
+                                              final Function<? super S, ? extends R> converter,
+                                              final Duration timeout) {
+        requireNonNull(timeout, "Timeout cannot be null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        long nanos;
+        try {
+            nanos = timeout.toNanos();
+        } catch (ArithmeticException ae) {
+            nanos = Long.MAX_VALUE >> 1;
+        }
+        return submit(inputs, converter, nanos);
+    }
+
+    /**
+     * Shut down this service. Batches already submitted run to completion,
+     * or to their deadlines.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        deadlines.shutdown();
+    }
+
+    private <S, R> BulkConversion<S, R> submit(final List<? extends S> inputs,
+                                               final Function<? super S, ? extends R> converter,
+                                               final long timeoutNanos) {
+        requireNonNull(inputs, "Inputs cannot be null");
+        requireNonNull(converter, "Converter cannot be null");
+        BulkConversion<S, R> conversion = new BulkConversion<>(inputs, converter, timeoutNanos);
+        conversion.scheduleDeadline(deadlines);
+        int workerCount = Math.min(concurrency, inputs.size());
+        for (int i = 0; i < workerCount; i++) {
+            conversion.addWorker(executor.submit(conversion::work));
+        }
+        return conversion;
+    }
+
+    private static void checkConcurrency(final int concurrency) {
+        if (0 >= concurrency) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+    }
+
+    /**
+     * Create a virtual thread per task executor, if the running JVM provides
+     * one.
+     *
+     * @return executor, or null if virtual threads are not available
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 20 or earlier, or preview API not enabled
+            return null;
+        }
+    }
+
+    /**
+     * Create the executor of batch deadlines: one daemon thread, started
+     * when a deadline is first scheduled and stopped when idle. Deadlines of
+     * batches completed in time are removed as they are cancelled.
+     */
+    private static ScheduledThreadPoolExecutor newDeadlineExecutor() {
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, "id-convert-deadline-" + THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, factory);
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setKeepAliveTime(60L, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(final int threads) {
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, "id-convert-" + THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                                                             60L, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(),
+                                                             factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
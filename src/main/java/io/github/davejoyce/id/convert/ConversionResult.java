@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+/**
+ * Outcome of the conversion of one element of a bulk conversion.
+ *
+ * @param <R> converted type
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class ConversionResult<R> {
+
+    /**
+     * Status of the conversion of an element.
+     */
+    public enum Status {
+        /** Element was converted. */
+        CONVERTED,
+        /** Converter threw an exception. */
+        FAILED,
+        /** Conversion was cancelled before the element was converted. */
+        CANCELLED,
+        /** Deadline passed before the element was converted. */
+        TIMED_OUT
+    }
+
+    private final int index;
+    private final Status status;
+    private final R value;
+    private final RuntimeException failure;
+
+    private ConversionResult(final int index,
+                             final Status status,
+                             final R value,
+                             final RuntimeException failure) {
+        this.index = index;
+        this.status = status;
+        this.value = value;
+        this.failure = failure;
+    }
+
+    static <R> ConversionResult<R> converted(final int index, final R value) {
+        return new ConversionResult<>(index, Status.CONVERTED, value, null);
+    }
+
+    static <R> ConversionResult<R> failed(final int index, final RuntimeException failure) {
+        return new ConversionResult<>(index, Status.FAILED, null, failure);
+    }
+
+    static <R> ConversionResult<R> unfinished(final int index, final Status status) {
+        return new ConversionResult<>(index, status, null, null);
+    }
+
+    /**
+     * Get index of the element in the input batch.
+     *
+     * @return element index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get status of the conversion.
+     *
+     * @return conversion status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Determine whether the element was converted.
+     *
+     * @return true if status is {@link Status#CONVERTED CONVERTED}
+     */
+    public boolean isConverted() {
+        return Status.CONVERTED == status;
+    }
+
+    /**
+     * Get converted value of the element.
+     *
+     * @return converted value
+     * @throws IllegalStateException if the element was not converted
+     */
+    public R getValue() {
+        if (!isConverted()) {
+            throw new IllegalStateException("Element " + index + " not converted: " + status);
+        }
+        return value;
+    }
+
+    /**
+     * Get exception thrown by the converter.
+     *
+     * @return converter failure, or null if status is not
+     *         {@link Status#FAILED FAILED}
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionResult{" +
+                "index=" + index +
+                ", status=" + status +
+                (isConverted() ? ", value=" + value : "") +
+                (null != failure ? ", failure=" + failure : "") +
+                '}';
+    }
+
+}
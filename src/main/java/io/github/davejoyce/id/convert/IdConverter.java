@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+/**
+ * Converter of the string form of an ID attribute value to its actual type.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@FunctionalInterface
+public interface IdConverter<T extends Comparable<T>> {
+
+    /**
+     * Convert the specified string to an ID attribute value.
+     *
+     * @param idValue string to be converted
+     * @return converted ID attribute
+     * @throws IllegalArgumentException if <tt>idValue</tt> cannot be
+     *                                  converted
+     */
+    T convert(String idValue);
+
+}
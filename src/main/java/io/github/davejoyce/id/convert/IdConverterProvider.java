@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+/**
+ * Service provider of {@link IdConverter} instances. Providers are discovered
+ * with {@code java.util.ServiceLoader} when {@link IdConverters} is
+ * initialized; list implementations in
+ * <code>META-INF/services/io.github.davejoyce.id.convert.IdConverterProvider</code>.
+ * Implementations must have a public no-argument constructor.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface IdConverterProvider {
+
+    /**
+     * Register the converters of this provider.
+     *
+     * @param registry registry of converters
+     */
+    void registerConverters(IdConverterRegistry registry);
+
+}
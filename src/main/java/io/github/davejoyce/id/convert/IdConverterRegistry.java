@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+/**
+ * Registry of {@link IdConverter} instances by ID attribute type, to which an
+ * {@link IdConverterProvider} contributes its converters.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface IdConverterRegistry {
+
+    /**
+     * Register the converter of string values to the specified type,
+     * replacing any converter already registered for the type.
+     *
+     * @param idType class of ID attribute type
+     * @param converter converter to <tt>idType</tt>
+     * @param <T> comparable type of ID attribute
+     * @throws IllegalArgumentException if <tt>idType</tt> or
+     *                                  <tt>converter</tt> is null
+     */
+    <T extends Comparable<T>> void register(Class<T> idType, IdConverter<T> converter);
+
+}
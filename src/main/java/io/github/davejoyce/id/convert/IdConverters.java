@@ -0,0 +1,281 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import io.github.davejoyce.id.metrics.ConversionStrategy;
+import io.github.davejoyce.id.metrics.IdInstrumentation;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Factory of {@link IdConverter} instances. The converter of a type is either
+ * registered for it, without reflection, or looked up by reflection. These
+ * converters are registered when this class is initialized:
+ * <ul>
+ *     <li>converters to <code>String</code>, the boxed numeric types,
+ *         <code>Boolean</code>, <code>BigInteger</code> and
+ *         <code>BigDecimal</code></li>
+ *     <li>converters of each {@link IdConverterProvider} found by
+ *         {@code java.util.ServiceLoader}</li>
+ * </ul>
+ * and more may be registered with {@link #register(Class, IdConverter)}.
+ * Reflective lookup of the converters of other types can be disabled, as in
+ * a native image which should need no reflection configuration, by setting
+ * system property {@value #REFLECTION_PROPERTY} to <tt>false</tt>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdConverters {
+
+    /**
+     * System property which enables reflective lookup of converters of
+     * types without a registered converter (default <tt>true</tt>).
+     */
+    public static final String REFLECTION_PROPERTY = "io.github.davejoyce.id.convert.reflection";
+
+    private static final boolean REFLECTION_ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty(REFLECTION_PROPERTY));
+
+    private static final Logger LOGGER = Logger.getLogger(IdConverters.class.getName());
+
+    private static final ConcurrentMap<Class<?>, IdConverter<?>> REGISTERED = new ConcurrentHashMap<>();
+
+    private static final IdConverterRegistry REGISTRY = new IdConverterRegistry() {
+        @Override
+        public <T extends Comparable<T>> void register(final Class<T> idType, final IdConverter<T> converter) {
+            IdConverters.register(idType, converter);
+        }
+    };
+
+    private static final ClassValue<IdConverter<?>> CONVERTERS =
+            new ClassValue<IdConverter<?>>() {
+                @Override
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                protected IdConverter<?> computeValue(final Class<?> type) {
+                    IdConverter<?> registered = REGISTERED.get(type);
+                    if (null != registered) {
+                        return IdInstrumentation.ENABLED
+                               ? new InstrumentedConverter(type, registered)
+                               : registered;
+                    }
+                    if (!REFLECTION_ENABLED) {
+                        throw new IllegalArgumentException(
+                                "No converter registered for type: " + type.getCanonicalName());
+                    }
+                    return new ReflectiveConverter(type);
+                }
+            };
+
+    static {
+        new BuiltInConverters().registerConverters(REGISTRY);
+        Iterator<IdConverterProvider> providers =
+                ServiceLoader.load(IdConverterProvider.class, IdConverters.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                providers.next().registerConverters(REGISTRY);
+            } catch (ServiceConfigurationError sce) {
+                LOGGER.log(Level.WARNING, "Cannot load ID converter provider", sce);
+            }
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdConverters() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdConverters instances not allowed");
+    }
+
+    /**
+     * Get the converter of string values to the specified type. The
+     * registered converter of the type is used if there is one. Otherwise,
+     * unless reflection is disabled, the converter tries, in order:
+     * <ol>
+     *     <li>a public static <code>valueOf(String)</code> factory method</li>
+     *     <li>a public constructor taking a single <code>String</code></li>
+     *     <li>a cast of the string to the type</li>
+     * </ol>
+     * falling through to the next way if a way is absent or fails. The
+     * methods of the type are looked up once, and the converter is shared by
+     * all callers.
+     *
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return converter to <tt>idType</tt>
+     * @throws IllegalArgumentException if <tt>idType</tt> is null, or if no
+     *                                  converter is registered for it and
+     *                                  reflection is disabled
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Comparable<T>> IdConverter<T> forType(final Class<T> idType) {
+        requireNonNull(idType, "ID type cannot be null");
+        return (IdConverter<T>) CONVERTERS.get(idType);
+    }
+
+    /**
+     * Register the converter of string values to the specified type,
+     * replacing any converter already registered or looked up for the type.
+     *
+     * @param idType class of ID attribute type
+     * @param converter converter to <tt>idType</tt>
+     * @param <T> comparable type of ID attribute
+     * @throws IllegalArgumentException if <tt>idType</tt> or
+     *                                  <tt>converter</tt> is null
+     */
+    public static <T extends Comparable<T>> void register(final Class<T> idType, final IdConverter<T> converter) {
+        requireNonNull(idType, "ID type cannot be null");
+        requireNonNull(converter, "Converter cannot be null");
+        REGISTERED.put(idType, converter);
+        CONVERTERS.remove(idType);
+    }
+
+    /**
+     * Determine whether reflective lookup of converters is enabled.
+     *
+     * @return true if types without a registered converter are converted by
+     *         reflection
+     */
+    public static boolean isReflectionEnabled() {
+        return REFLECTION_ENABLED;
+    }
+
+    /**
+     * Converter which reports conversions by a registered converter to
+     * instrumentation.
+     */
+    static final class InstrumentedConverter<T extends Comparable<T>> implements IdConverter<T> {
+
+        private final Class<T> idType;
+        private final IdConverter<T> converter;
+
+        InstrumentedConverter(final Class<T> idType, final IdConverter<T> converter) {
+            this.idType = idType;
+            this.converter = converter;
+        }
+
+        @Override
+        public T convert(final String idValue) {
+            boolean success = false;
+            try {
+                T id = converter.convert(idValue);
+                success = true;
+                return id;
+            } finally {
+                IdInstrumentation.converted(idType, ConversionStrategy.REGISTERED, success);
+            }
+        }
+
+    }
+
+    /**
+     * Converter which invokes the conversion methods of a type by reflection.
+     * The lookup of the methods is done once; the fallback from one way to
+     * the next on failure is still done per conversion.
+     */
+    static final class ReflectiveConverter<T extends Comparable<T>> implements IdConverter<T> {
+
+        private final Class<T> idType;
+        private final Method valueOfMethod;
+        private final Constructor<T> constructor;
+
+        ReflectiveConverter(final Class<T> idType) {
+            this.idType = idType;
+            Method m;
+            try {
+                m = idType.getMethod("valueOf", String.class);
+            } catch (NoSuchMethodException e) {
+                m = null;
+            }
+            this.valueOfMethod = m;
+            Constructor<T> c;
+            try {
+                c = idType.getConstructor(String.class);
+            } catch (NoSuchMethodException e) {
+                c = null;
+            }
+            this.constructor = c;
+        }
+
+        @Override
+        public T convert(final String idValue) {
+            if (null != valueOfMethod) {
+                try {
+                    // 1. Standard 'valueOf' factory method on type
+                    T id = idType.cast(valueOfMethod.invoke(null, idValue));
+                    if (IdInstrumentation.ENABLED) {
+                        IdInstrumentation.converted(idType, ConversionStrategy.VALUE_OF, true);
+                    }
+                    return id;
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    if (IdInstrumentation.ENABLED) {
+                        IdInstrumentation.converted(idType, ConversionStrategy.VALUE_OF, false);
+                    }
+                }
+            }
+            if (null != constructor) {
+                try {
+                    // 2. Constructor that takes a string representation of
+                    //    value
+                    T id = constructor.newInstance(idValue);
+                    if (IdInstrumentation.ENABLED) {
+                        IdInstrumentation.converted(idType, ConversionStrategy.CONSTRUCTOR, true);
+                    }
+                    return id;
+                } catch (IllegalAccessException
+                        | InstantiationException
+                        | InvocationTargetException e) {
+                    if (IdInstrumentation.ENABLED) {
+                        IdInstrumentation.converted(idType, ConversionStrategy.CONSTRUCTOR, false);
+                    }
+                }
+            }
+            try {
+                // 3. See if we can just cast it to the target type
+                //    (last resort)
+                T id = idType.cast(idValue);
+                if (IdInstrumentation.ENABLED) {
+                    IdInstrumentation.converted(idType, ConversionStrategy.CAST, true);
+                }
+                return id;
+            } catch (ClassCastException cce) {
+                if (IdInstrumentation.ENABLED) {
+                    IdInstrumentation.converted(idType, ConversionStrategy.CAST, false);
+                }
+                throw new IllegalArgumentException(
+                        "Identifier segment cannot be converted to type: "
+                        + idType.getCanonicalName());
+            }
+        }
+
+    }
+
+}
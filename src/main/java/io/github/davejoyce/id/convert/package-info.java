@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/**
+ * Conversion of the string form of ID attribute values to their actual
+ * types, singly or in bulk. Bulk conversion runs converters concurrently,
+ * so that converters which block (for example, on I/O-backed lookups) do
+ * not limit the throughput of a batch. Converters may be registered by type,
+ * directly or by an {@link io.github.davejoyce.id.convert.IdConverterProvider},
+ * so that conversion needs no reflection.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+package io.github.davejoyce.id.convert;
@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.feed;
+
+import io.github.davejoyce.id.IdCodec;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Listener which carries the batches of one {@link VersionFeed} to another
+ * as encoded frames, standing in for delivery between processes.
+ * <p>
+ * Each batch is encoded into a frame of a version count followed by the
+ * versions in the format of {@link IdCodec}, as it would be written to a
+ * socket or shared memory; the loopback bridge decodes the frame within the
+ * same process and publishes the versions to its target feed. The frame
+ * format is available to real transports through
+ * {@link #encode(List, ByteBuffer)} and {@link #decode(ByteBuffer, Class)}.
+ * A target feed should receive from one bridge only, since the bridge is
+ * its publisher.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class FeedBridge<T extends Comparable<T>> implements FeedListener<T> {
+
+    private static final int INITIAL_FRAME_BYTES = 4096;
+
+    private final Class<T> idType;
+    private final VersionFeed<T> target;
+    private ByteBuffer frame = ByteBuffer.allocate(INITIAL_FRAME_BYTES);
+    private volatile long frameCount;
+    private volatile long byteCount;
+
+    private FeedBridge(final Class<T> idType, final VersionFeed<T> target) {
+        this.idType = idType;
+        this.target = target;
+    }
+
+    /**
+     * Create a bridge which decodes each frame in process and publishes its
+     * versions to the specified feed.
+     *
+     * @param idType class of ID attribute type
+     * @param target feed to which decoded versions are published
+     * @param <T> comparable type of ID attribute
+     * @return loopback bridge
+     * @throws IllegalArgumentException if either argument is null
+     */
+    public static <T extends Comparable<T>> FeedBridge<T> loopback(final Class<T> idType,
+                                                                   final VersionFeed<T> target) {
+        requireNonNull(idType, "ID type cannot be null");
+        requireNonNull(target, "Target feed cannot be null");
+        return new FeedBridge<>(idType, target);
+    }
+
+    /**
+     * Encode the specified batch of versions as a frame into the given
+     * buffer, starting at the buffer's current position.
+     *
+     * @param batch versions to be encoded
+     * @param buf destination buffer
+     * @throws IllegalArgumentException if either argument is null
+     * @throws BufferOverflowException if the buffer has insufficient space
+     *                                 remaining
+     */
+    public static void encode(final List<? extends TemporalNamespaceId<?>> batch, final ByteBuffer buf) {
+        requireNonNull(batch, "Batch cannot be null");
+        requireNonNull(buf, "Buffer cannot be null");
+        buf.putInt(batch.size());
+        for (TemporalNamespaceId<?> version : batch) {
+            IdCodec.encode(version, buf);
+        }
+    }
+
+    /**
+     * Decode a frame of versions with ID attribute of type <tt>T</tt> from
+     * the specified buffer, starting at the buffer's current position. On
+     * return, the buffer is positioned after the decoded frame.
+     *
+     * @param buf buffer containing encoded frame
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return decoded versions
+     * @throws IllegalArgumentException if either argument is null, or the
+     *                                  buffer does not contain a valid frame
+     *                                  of temporal IDs
+     */
+    public static <T extends Comparable<T>> List<TemporalNamespaceId<T>> decode(final ByteBuffer buf,
+                                                                               final Class<T> idType) {
+        requireNonNull(buf, "Buffer cannot be null");
+        requireNonNull(idType, "ID type cannot be null");
+        final int count;
+        try {
+            count = buf.getInt();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame", e);
+        }
+        if (0 > count) {
+            throw new IllegalArgumentException("Invalid version count: " + count);
+        }
+        final List<TemporalNamespaceId<T>> batch = new ArrayList<>(Math.min(count, buf.remaining()));
+        for (int i = 0; count > i; i++) {
+            final NamespaceId<T> id = IdCodec.decode(buf, idType);
+            if (!(id instanceof TemporalNamespaceId)) {
+                throw new IllegalArgumentException("Frame contains non-temporal ID: " + id);
+            }
+            batch.add((TemporalNamespaceId<T>)id);
+        }
+        return batch;
+    }
+
+    /**
+     * Get the number of frames carried by this bridge.
+     *
+     * @return frame count
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Get the total number of bytes of the frames carried by this bridge.
+     *
+     * @return byte count
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    @Override
+    public void onBatch(final List<TemporalNamespaceId<T>> batch) {
+        while (true) {
+            frame.clear();
+            try {
+                encode(batch, frame);
+                break;
+            } catch (BufferOverflowException e) {
+                frame = ByteBuffer.allocate(frame.capacity() * 2);
+            }
+        }
+        frame.flip();
+        byteCount += frame.remaining();
+        frameCount++;
+        target.publishAll(decode(frame, idType));
+    }
+
+}
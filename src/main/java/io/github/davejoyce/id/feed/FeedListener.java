@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.feed;
+
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.util.List;
+
+/**
+ * Receiver of the batches of versions delivered by a subscription to a
+ * {@link VersionFeed}.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@FunctionalInterface
+public interface FeedListener<T extends Comparable<T>> {
+
+    /**
+     * Receive a batch of published versions, in order of publication. The
+     * list is valid only for the duration of the call, and must not be
+     * retained.
+     *
+     * @param batch non-empty batch of versions
+     */
+    void onBatch(List<TemporalNamespaceId<T>> batch);
+
+}
@@ -0,0 +1,515 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.feed;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Change feed which fans accepted versions of IDs out to many subscribers
+ * through a single-writer ring buffer.
+ * <p>
+ * Versions are published by exactly one thread at a time; publication
+ * writes the version into the next slot of the ring and advances a cursor,
+ * without locks or allocation. Each subscription reads the ring on its own
+ * thread, delivering to its {@link FeedListener} every version published
+ * since the previous batch, up to a maximum batch size, and advances its
+ * own sequence; the publisher never overwrites a slot which some
+ * subscription has yet to read, so a slow subscriber applies backpressure
+ * to the publisher rather than losing versions. A subscription may
+ * coalesce each batch, delivering only the newest version of each
+ * {@code NamespaceId} in the batch. How waiting threads wait is chosen per
+ * subscription, and for the publisher, by {@link WaitStrategy}.
+ * </p>
+ * <p>
+ * A typical source of versions is a
+ * {@link io.github.davejoyce.id.temporal.ViewChangeListener} of a
+ * {@link io.github.davejoyce.id.temporal.BitemporalSnapshotView}, which
+ * publishes each record as it is accepted. Subscribers in other processes
+ * may be reached through a {@link FeedBridge}.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class VersionFeed<T extends Comparable<T>> implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(VersionFeed.class.getName());
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final Subscription<?>[] NONE = new Subscription<?>[0];
+
+    private final Object[] entries;
+    private final int mask;
+    private final WaitStrategy publisherWait;
+    private final AtomicLong cursor = new AtomicLong(-1L);
+    private volatile Subscription<T>[] subscriptions;
+    private volatile boolean closed;
+
+    // Fields below are confined to the publishing thread
+    private long nextSequence;
+    private long cachedGatingSequence = -1L;
+
+    /**
+     * Construct a feed whose ring has at least the specified capacity. The
+     * publisher yields while it waits for space in the ring.
+     *
+     * @param minCapacity minimum number of versions held by the ring, rounded
+     *                    up to a power of two
+     * @throws IllegalArgumentException if <tt>minCapacity</tt> is not positive
+     */
+    public VersionFeed(final int minCapacity) {
+        this(minCapacity, WaitStrategy.yielding());
+    }
+
+    /**
+     * Construct a feed whose ring has at least the specified capacity, with
+     * the specified strategy for the publisher to wait for space in the ring.
+     *
+     * @param minCapacity minimum number of versions held by the ring, rounded
+     *                    up to a power of two
+     * @param publisherWait strategy by which the publisher waits
+     * @throws IllegalArgumentException if <tt>minCapacity</tt> is not positive
+     *                                  or greater than 2<sup>30</sup>, or
+     *                                  <tt>publisherWait</tt> is null
+     */
+    @SuppressWarnings("unchecked")
+    public VersionFeed(final int minCapacity, final WaitStrategy publisherWait) {
+        if (1 > minCapacity || (1 << 30) < minCapacity) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        this.publisherWait = requireNonNull(publisherWait, "Wait strategy cannot be null");
+        final int capacity = (1 == minCapacity) ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+        this.entries = new Object[capacity];
+        this.mask = capacity - 1;
+        this.subscriptions = (Subscription<T>[])NONE;
+    }
+
+    /**
+     * Get the number of versions held by the ring of this feed.
+     *
+     * @return ring capacity
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Get the sequence number of the latest version published to this feed.
+     *
+     * @return latest published sequence, or -1 if none
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Publish the specified version to all subscriptions. Must be called by
+     * one thread at a time. Blocks, by the publisher wait strategy, while the
+     * slowest subscription has yet to read the slot to be reused.
+     *
+     * @param version version to be published
+     * @return sequence number of the published version
+     * @throws IllegalArgumentException if <tt>version</tt> is null
+     * @throws IllegalStateException if this feed is closed
+     */
+    public long publish(final TemporalNamespaceId<T> version) {
+        requireNonNull(version, "Version cannot be null");
+        final long sequence = claim(1);
+        entries[(int)sequence & mask] = version;
+        cursor.lazySet(sequence);
+        return sequence;
+    }
+
+    /**
+     * Publish the specified versions, in order, to all subscriptions. The
+     * cursor is advanced once per run of slots claimed, rather than once per
+     * version. Must be called by one thread at a time.
+     *
+     * @param versions versions to be published
+     * @return sequence number of the last published version, or the current
+     *         cursor if <tt>versions</tt> is empty
+     * @throws IllegalArgumentException if <tt>versions</tt> is or contains null
+     * @throws IllegalStateException if this feed is closed
+     */
+    public long publishAll(final List<? extends TemporalNamespaceId<T>> versions) {
+        requireNonNull(versions, "Versions cannot be null");
+        for (TemporalNamespaceId<T> version : versions) {
+            requireNonNull(version, "Version cannot be null");
+        }
+        long sequence = cursor.get();
+        final int size = versions.size();
+        int i = 0;
+        while (size > i) {
+            final int n = Math.min(size - i, entries.length);
+            final long last = claim(n);
+            for (long s = last - n + 1; last >= s; s++) {
+                entries[(int)s & mask] = versions.get(i++);
+            }
+            cursor.lazySet(last);
+            sequence = last;
+        }
+        return sequence;
+    }
+
+    /**
+     * Subscribe the specified listener to versions published after this
+     * call, delivered in batches of up to the capacity of the ring, without
+     * coalescing; the subscription thread yields while it waits.
+     *
+     * @param listener listener to receive batches
+     * @return subscription, to be closed when no longer required
+     * @throws IllegalArgumentException if <tt>listener</tt> is null
+     * @throws IllegalStateException if this feed is closed
+     */
+    public Subscription<T> subscribe(final FeedListener<T> listener) {
+        return subscribe(listener, entries.length, false, WaitStrategy.yielding());
+    }
+
+    /**
+     * Subscribe the specified listener to versions published after this
+     * call. Each batch holds the versions published since the previous batch,
+     * up to <tt>maxBatch</tt> of them; if <tt>coalesce</tt> is true, only the
+     * greatest version of each {@code NamespaceId} in a batch is delivered,
+     * at the position of the first version of that {@code NamespaceId} in the
+     * batch.
+     *
+     * @param listener listener to receive batches
+     * @param maxBatch maximum number of versions read per batch
+     * @param coalesce whether to coalesce versions of each NamespaceId within
+     *                 a batch
+     * @param waitStrategy strategy by which the subscription thread waits
+     * @return subscription, to be closed when no longer required
+     * @throws IllegalArgumentException if <tt>listener</tt> or
+     *                                  <tt>waitStrategy</tt> is null, or
+     *                                  <tt>maxBatch</tt> is not positive
+     * @throws IllegalStateException if this feed is closed
+     */
+    public synchronized Subscription<T> subscribe(final FeedListener<T> listener,
+                                                  final int maxBatch,
+                                                  final boolean coalesce,
+                                                  final WaitStrategy waitStrategy) {
+        requireNonNull(listener, "Listener cannot be null");
+        requireNonNull(waitStrategy, "Wait strategy cannot be null");
+        if (1 > maxBatch) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (closed) {
+            throw new IllegalStateException("Feed is closed");
+        }
+        final Subscription<T> subscription = new Subscription<>(this, listener, maxBatch, coalesce, waitStrategy);
+        // Gate the publisher before fixing the start, so that no slot after
+        // the start can be overwritten by a publisher that missed this
+        // subscription when computing its gating sequence
+        subscription.sequence.set(cursor.get());
+        final Subscription<T>[] current = subscriptions;
+        final Subscription<T>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+        subscription.sequence.set(cursor.get());
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Get the subscriptions to this feed which remain open.
+     *
+     * @return open subscriptions
+     */
+    public List<Subscription<T>> getSubscriptions() {
+        return Collections.unmodifiableList(Arrays.asList(subscriptions));
+    }
+
+    /**
+     * Close this feed to further publication and subscription, and wait for
+     * each subscription to deliver the versions already published before
+     * closing it. Should be called by the publishing thread, after its last
+     * publication.
+     */
+    @Override
+    public void close() {
+        final Subscription<T>[] current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = subscriptions;
+        }
+        for (Subscription<T> subscription : current) {
+            subscription.awaitTermination();
+        }
+    }
+
+    private long claim(final int n) {
+        if (closed) {
+            throw new IllegalStateException("Feed is closed");
+        }
+        final long last = nextSequence + n - 1;
+        final long wrapPoint = last - entries.length;
+        if (wrapPoint > cachedGatingSequence) {
+            long gating = minimumSequence();
+            int attempt = 0;
+            while (wrapPoint > gating) {
+                if (closed) {
+                    throw new IllegalStateException("Feed is closed");
+                }
+                publisherWait.idle(attempt++);
+                gating = minimumSequence();
+            }
+            cachedGatingSequence = gating;
+        }
+        nextSequence = last + 1;
+        return last;
+    }
+
+    private long minimumSequence() {
+        long minimum = cursor.get();
+        for (Subscription<T> subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    private synchronized void remove(final Subscription<T> subscription) {
+        final Subscription<T>[] current = subscriptions;
+        for (int i = 0; current.length > i; i++) {
+            if (current[i] == subscription) {
+                final Subscription<T>[] updated = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Subscription of a listener to a {@link VersionFeed}, reading the ring
+     * on a thread of its own. A runtime exception thrown by the listener is
+     * logged and delivery continues; an error ends the subscription, which
+     * then no longer holds back the publisher.
+     *
+     * @param <T> comparable type of ID attribute
+     */
+    public static final class Subscription<T extends Comparable<T>> implements AutoCloseable {
+
+        private final VersionFeed<T> feed;
+        private final FeedListener<T> listener;
+        private final int maxBatch;
+        private final boolean coalesce;
+        private final WaitStrategy waitStrategy;
+        private final AtomicLong sequence = new AtomicLong(-1L);
+        private final ExecutorService executor;
+        private volatile boolean running = true;
+        private volatile long batchCount;
+        private volatile long deliveredCount;
+        private volatile long coalescedCount;
+        private volatile Thread thread;
+
+        private Subscription(final VersionFeed<T> feed,
+                             final FeedListener<T> listener,
+                             final int maxBatch,
+                             final boolean coalesce,
+                             final WaitStrategy waitStrategy) {
+            this.feed = feed;
+            this.listener = listener;
+            this.maxBatch = maxBatch;
+            this.coalesce = coalesce;
+            this.waitStrategy = waitStrategy;
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "id-feed-subscriber-" + THREAD_COUNT.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /**
+         * Get the sequence number of the latest version read by this
+         * subscription.
+         *
+         * @return latest sequence read
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * Get the number of batches delivered to the listener.
+         *
+         * @return batch count
+         */
+        public long getBatchCount() {
+            return batchCount;
+        }
+
+        /**
+         * Get the number of versions delivered to the listener.
+         *
+         * @return delivered version count
+         */
+        public long getDeliveredCount() {
+            return deliveredCount;
+        }
+
+        /**
+         * Get the number of versions read but not delivered, because a newer
+         * version of the same {@code NamespaceId} was delivered in their
+         * place.
+         *
+         * @return coalesced version count
+         */
+        public long getCoalescedCount() {
+            return coalescedCount;
+        }
+
+        /**
+         * Stop delivery to the listener and release the publisher from
+         * waiting on this subscription. Versions not yet delivered are
+         * discarded. Unless called by the listener itself, waits for any batch
+         * in progress to be delivered.
+         */
+        @Override
+        public void close() {
+            running = false;
+            feed.remove(this);
+            awaitTermination();
+        }
+
+        private void start() {
+            executor.execute(this::run);
+            executor.shutdown();
+        }
+
+        private void awaitTermination() {
+            if (Thread.currentThread() == thread) {
+                return;
+            }
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            thread = Thread.currentThread();
+            try {
+                deliver();
+            } finally {
+                // Release the publisher even if delivery fails with an error
+                running = false;
+                feed.remove(this);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void deliver() {
+            final Object[] entries = feed.entries;
+            final int mask = feed.mask;
+            final List<TemporalNamespaceId<T>> batch = new ArrayList<>(Math.min(maxBatch, entries.length));
+            final Map<NamespaceId<T>, Integer> positions = coalesce ? new HashMap<>() : null;
+            int attempt = 0;
+            while (running) {
+                final boolean closed = feed.closed;
+                final long next = sequence.get() + 1;
+                final long available = feed.cursor.get();
+                if (available < next) {
+                    if (closed) {
+                        break;
+                    }
+                    waitStrategy.idle(attempt++);
+                    continue;
+                }
+                attempt = 0;
+                final long end = Math.min(available, next + maxBatch - 1);
+                for (long s = next; end >= s; s++) {
+                    final TemporalNamespaceId<T> version = (TemporalNamespaceId<T>)entries[(int)s & mask];
+                    if (null == positions) {
+                        batch.add(version);
+                    } else {
+                        coalesce(batch, positions, version);
+                    }
+                }
+                if (null != positions) {
+                    positions.clear();
+                    coalescedCount += (end - next + 1) - batch.size();
+                }
+                try {
+                    listener.onBatch(Collections.unmodifiableList(batch));
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Delivery of version batch failed", e);
+                }
+                batchCount++;
+                deliveredCount += batch.size();
+                batch.clear();
+                sequence.lazySet(end);
+            }
+        }
+
+        private static <T extends Comparable<T>> void coalesce(final List<TemporalNamespaceId<T>> batch,
+                                                               final Map<NamespaceId<T>, Integer> positions,
+                                                               final TemporalNamespaceId<T> version) {
+            final Integer position = positions.putIfAbsent(version.toNamespaceId(), batch.size());
+            if (null == position) {
+                batch.add(version);
+            } else if (isNewer(version, batch.get(position))) {
+                batch.set(position, version);
+            }
+        }
+
+        /**
+         * Compare versions of one {@code NamespaceId} on 'as of' time, then
+         * on 'as at' time where both have one; unlike {@code compareTo}, the
+         * versions may be of different classes.
+         */
+        private static boolean isNewer(final TemporalNamespaceId<?> version, final TemporalNamespaceId<?> current) {
+            int comp = Long.compare(version.getAsOfEpochSecond(), current.getAsOfEpochSecond());
+            if (0 == comp) {
+                comp = Integer.compare(version.getAsOfNano(), current.getAsOfNano());
+            }
+            if (0 == comp && version instanceof BiTemporalNamespaceId && current instanceof BiTemporalNamespaceId) {
+                final BiTemporalNamespaceId<?> v = (BiTemporalNamespaceId<?>) version;
+                final BiTemporalNamespaceId<?> c = (BiTemporalNamespaceId<?>) current;
+                comp = Long.compare(v.getAsAtEpochSecond(), c.getAsAtEpochSecond());
+                if (0 == comp) {
+                    comp = Integer.compare(v.getAsAtNano(), c.getAsAtNano());
+                }
+            }
+            return 0 < comp;
+        }
+
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.feed;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Strategy by which a thread of a {@link VersionFeed} waits while it cannot
+ * progress: a subscriber waiting for versions to be published, or the
+ * publisher waiting for the slowest subscriber to free space in the ring.
+ * The strategies trade CPU for latency; busy-spinning delivers fastest but
+ * occupies a core per waiting thread, while parking frees the core at the
+ * cost of the wake-up latency of the scheduler.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public abstract class WaitStrategy {
+
+    private static final WaitStrategy BUSY_SPIN = new WaitStrategy() {
+        @Override
+        public void idle(final int attempt) {
+            // Spin
+        }
+
+        @Override
+        public String toString() {
+            return "busy-spin";
+        }
+    };
+
+    private static final WaitStrategy YIELDING = new WaitStrategy() {
+        @Override
+        public void idle(final int attempt) {
+            if (SPIN_TRIES > attempt) {
+                return;
+            }
+            Thread.yield();
+        }
+
+        @Override
+        public String toString() {
+            return "yielding";
+        }
+    };
+
+    /** Attempts spent spinning before a yielding or parking wait backs off. */
+    static final int SPIN_TRIES = 100;
+
+    /**
+     * Restricted constructor; instances are obtained from the static
+     * factory methods of this class.
+     */
+    WaitStrategy() {
+    }
+
+    /**
+     * Get a strategy which spins without yielding the processor. Latency is
+     * lowest, but each waiting thread occupies a core.
+     *
+     * @return busy-spin strategy
+     */
+    public static WaitStrategy busySpin() {
+        return BUSY_SPIN;
+    }
+
+    /**
+     * Get a strategy which spins briefly and then yields the processor to
+     * other runnable threads between attempts.
+     *
+     * @return yielding strategy
+     */
+    public static WaitStrategy yielding() {
+        return YIELDING;
+    }
+
+    /**
+     * Get a strategy which spins briefly, yields briefly, and then parks the
+     * waiting thread for the specified period between attempts.
+     *
+     * @param period period for which to park per attempt
+     * @return parking strategy
+     * @throws IllegalArgumentException if <tt>period</tt> is null, zero or
+     *                                  negative
+     */
+    public static WaitStrategy parking(final Duration period) {
+        requireNonNull(period, "Period cannot be null");
+        if (period.isZero() || period.isNegative()) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        final long nanos = period.toNanos();
+        return new WaitStrategy() {
+            @Override
+            public void idle(final int attempt) {
+                if (SPIN_TRIES > attempt) {
+                    return;
+                }
+                if ((2 * SPIN_TRIES) > attempt) {
+                    Thread.yield();
+                    return;
+                }
+                LockSupport.parkNanos(nanos);
+            }
+
+            @Override
+            public String toString() {
+                return "parking(" + period + ")";
+            }
+        };
+    }
+
+    /**
+     * Wait once, before the caller checks again whether it can progress.
+     *
+     * @param attempt number of consecutive attempts for which the caller has
+     *                been unable to progress, starting at zero
+     */
+    public abstract void idle(int attempt);
+
+}
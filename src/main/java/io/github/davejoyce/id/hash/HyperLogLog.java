@@ -0,0 +1,331 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct 64-bit
+ * fingerprints added to it, in a fixed <i>2<sup>precision</sup></i> bytes of
+ * memory. Following HyperLogLog++, full 64-bit hashes are used, so no large
+ * range correction is needed, and sketches with few occupied registers are
+ * serialized sparsely. Estimates use the improved estimator of Ertl, which is
+ * unbiased across the whole cardinality range without empirical bias tables.
+ * The relative standard error is approximately
+ * <i>1.04/&radic;(2<sup>precision</sup>)</i>.
+ * <p>
+ * Sketches of equal precision can be {@link #merge(HyperLogLog) merged}; the
+ * merged sketch estimates the cardinality of the union of their inputs.
+ * Instances of this class are not thread-safe.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see <a href="https://arxiv.org/abs/1702.01284">New cardinality estimation
+ *      algorithms for HyperLogLog sketches</a>
+ */
+public final class HyperLogLog {
+
+    /**
+     * Minimum precision of a sketch.
+     */
+    public static final int MIN_PRECISION = 4;
+
+    /**
+     * Maximum precision of a sketch.
+     */
+    public static final int MAX_PRECISION = 18;
+
+    private static final byte FORMAT_DENSE = 1;
+    private static final byte FORMAT_SPARSE = 2;
+
+    /**
+     * Reconstruct a sketch from its serialized form.
+     *
+     * @param bytes serialized sketch, as produced by {@link #toBytes()}
+     * @return reconstructed HyperLogLog object
+     * @throws IllegalArgumentException if <tt>bytes</tt> is not a valid
+     *                                  serialized sketch
+     */
+    public static HyperLogLog fromBytes(final byte[] bytes) {
+        requireNonNull(bytes, "Serialized sketch cannot be null");
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        try {
+            byte format = buf.get();
+            HyperLogLog hll = new HyperLogLog(buf.get());
+            if (FORMAT_DENSE == format) {
+                // 6-bit registers, packed 4 to every 3 bytes
+                for (int i = 0; i < hll.registers.length; i += 4) {
+                    int packed = ((buf.get() & 0xFF) << 16) | ((buf.get() & 0xFF) << 8) | (buf.get() & 0xFF);
+                    hll.registers[i] = (byte)((packed >>> 18) & 0x3F);
+                    hll.registers[i + 1] = (byte)((packed >>> 12) & 0x3F);
+                    hll.registers[i + 2] = (byte)((packed >>> 6) & 0x3F);
+                    hll.registers[i + 3] = (byte)(packed & 0x3F);
+                }
+            } else if (FORMAT_SPARSE == format) {
+                // Ascending (index delta, value) pairs
+                int count = buf.getInt();
+                int index = -1;
+                for (int i = 0; i < count; i++) {
+                    index += readVarint(buf);
+                    hll.registers[index] = buf.get();
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown sketch format: " + format);
+            }
+            if (buf.hasRemaining()) {
+                throw new IllegalArgumentException("Corrupt serialized HyperLogLog");
+            }
+            for (byte register : hll.registers) {
+                if (0 > register || hll.maxRank < register) {
+                    throw new IllegalArgumentException("Corrupt serialized HyperLogLog");
+                }
+            }
+            return hll;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt serialized HyperLogLog", e);
+        }
+    }
+
+    /**
+     * Ensure that the specified sketch precision is in range.
+     *
+     * @param precision precision to be checked
+     * @return specified <tt>precision</tt>
+     * @throws IllegalArgumentException if <tt>precision</tt> is less than
+     *                                  {@link #MIN_PRECISION} or greater than
+     *                                  {@link #MAX_PRECISION}
+     */
+    static int checkPrecision(final int precision) {
+        if (MIN_PRECISION > precision || MAX_PRECISION < precision) {
+            throw new IllegalArgumentException("Precision must be between "
+                                               + MIN_PRECISION + " and "
+                                               + MAX_PRECISION);
+        }
+        return precision;
+    }
+
+    private final int precision;
+    private final int maxRank;
+    private final byte[] registers;
+
+    /**
+     * Construct an empty {@code HyperLogLog} sketch of the specified
+     * precision.
+     *
+     * @param precision number of fingerprint bits which select a register
+     * @throws IllegalArgumentException if <tt>precision</tt> is less than
+     *                                  {@link #MIN_PRECISION} or greater than
+     *                                  {@link #MAX_PRECISION}
+     */
+    public HyperLogLog(final int precision) {
+        this.precision = checkPrecision(precision);
+        this.maxRank = Long.SIZE - precision + 1;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Add the specified fingerprint to this sketch.
+     *
+     * @param fingerprint 64-bit fingerprint
+     * @return true if this sketch changed as a result, false otherwise
+     */
+    public boolean addFingerprint(final long fingerprint) {
+        final int index = (int)(fingerprint >>> (Long.SIZE - precision));
+        final int rank = Math.min(maxRank, Long.numberOfLeadingZeros(fingerprint << precision) + 1);
+        if (registers[index] < rank) {
+            registers[index] = (byte)rank;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merge the specified sketch into this one.
+     *
+     * @param other sketch to be merged into this one
+     * @throws IllegalArgumentException if <tt>other</tt> is null or has a
+     *                                  different precision
+     */
+    public void merge(final HyperLogLog other) {
+        requireNonNull(other, "Sketch cannot be null");
+        if (precision != other.precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision "
+                                               + precision + " and " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of distinct fingerprints added to this sketch.
+     *
+     * @return estimated cardinality
+     */
+    public long cardinality() {
+        final int m = registers.length;
+        final int q = Long.SIZE - precision;
+        final int[] counts = new int[q + 2];
+        for (byte register : registers) {
+            counts[register]++;
+        }
+        double z = m * tau(1.0 - (double)counts[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z = 0.5 * (z + counts[k]);
+        }
+        z += m * sigma((double)counts[0] / m);
+        return Math.round(m * (m / (2.0 * Math.log(2.0))) / z);
+    }
+
+    /**
+     * Get the precision of this sketch.
+     *
+     * @return number of fingerprint bits which select a register
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Get the approximate relative standard error of estimates of this
+     * sketch.
+     *
+     * @return relative standard error
+     */
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * Create an independent copy of this sketch.
+     *
+     * @return new HyperLogLog object
+     */
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    /**
+     * Serialize this sketch, sparsely if few registers are occupied and as
+     * packed 6-bit registers otherwise.
+     *
+     * @return serialized sketch
+     */
+    public byte[] toBytes() {
+        int occupied = 0;
+        for (byte register : registers) {
+            if (0 != register) {
+                occupied++;
+            }
+        }
+        final int denseLength = 2 + (registers.length / 4) * 3;
+        // Worst case of 3 bytes for each delta plus 1 byte for each value
+        if (6 + occupied * 4 < denseLength) {
+            ByteBuffer buf = ByteBuffer.allocate(6 + occupied * 4);
+            buf.put(FORMAT_SPARSE);
+            buf.put((byte)precision);
+            buf.putInt(occupied);
+            int last = -1;
+            for (int i = 0; i < registers.length; i++) {
+                if (0 != registers[i]) {
+                    writeVarint(i - last, buf);
+                    buf.put(registers[i]);
+                    last = i;
+                }
+            }
+            return Arrays.copyOf(buf.array(), buf.position());
+        }
+        ByteBuffer buf = ByteBuffer.allocate(denseLength);
+        buf.put(FORMAT_DENSE);
+        buf.put((byte)precision);
+        for (int i = 0; i < registers.length; i += 4) {
+            int packed = (registers[i] << 18) | (registers[i + 1] << 12) | (registers[i + 2] << 6) | registers[i + 3];
+            buf.put((byte)(packed >>> 16));
+            buf.put((byte)(packed >>> 8));
+            buf.put((byte)packed);
+        }
+        return buf.array();
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog[precision=" + precision + ", cardinality=" + cardinality() + "]";
+    }
+
+    private static double sigma(final double x) {
+        if (1.0 == x) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double xk = x;
+        double y = 1.0;
+        double z = x;
+        double zPrev;
+        do {
+            xk *= xk;
+            zPrev = z;
+            z += xk * y;
+            y += y;
+        } while (zPrev != z);
+        return z;
+    }
+
+    private static double tau(final double x) {
+        if (0.0 == x || 1.0 == x) {
+            return 0.0;
+        }
+        double xk = x;
+        double y = 1.0;
+        double z = 1.0 - x;
+        double zPrev;
+        do {
+            xk = Math.sqrt(xk);
+            zPrev = z;
+            y *= 0.5;
+            z -= (1.0 - xk) * (1.0 - xk) * y;
+        } while (zPrev != z);
+        return z / 3.0;
+    }
+
+    private static void writeVarint(final int value, final ByteBuffer buf) {
+        int v = value;
+        while (0 != (v & ~0x7F)) {
+            buf.put((byte)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte)v);
+    }
+
+    private static int readVarint(final ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (0 != (b & 0x80));
+        return value;
+    }
+
+}
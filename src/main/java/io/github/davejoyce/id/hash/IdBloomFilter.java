@@ -0,0 +1,408 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.util.Hash64;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Approximate membership filter of IDs, for answering "has this ID ever been
+ * added?" without consulting storage. A negative answer is always correct; a
+ * positive answer is wrong with a probability bounded by the false positive
+ * rate chosen at construction.
+ * <p>
+ * The filter is a <i>blocked</i> Bloom filter: every ID sets all of its bits
+ * within one 512-bit block (a single cache line), so each insert or lookup
+ * touches one cache line. IDs may be added concurrently from multiple threads
+ * without external synchronization. Filters with the same geometry, such as
+ * filters built in parallel over partitions of an ID set, can be
+ * {@link #merge(IdBloomFilter) merged}, and a filter can be
+ * {@link #toBytes() serialized} for a fast warm start.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdBloomFilter {
+
+    /**
+     * Number of bits per block.
+     */
+    private static final int BLOCK_BITS = 512;
+
+    /**
+     * Number of hash bits which select a bit within a block.
+     */
+    private static final int BLOCK_SHIFT = 9;
+
+    /**
+     * Number of bit selections drawn from each mixed 64-bit hash value; bit
+     * selections are independent, unlike double hashing, which correlates
+     * badly within a block this small.
+     */
+    private static final int BITS_PER_MIX = Long.SIZE / BLOCK_SHIFT;
+
+    /**
+     * Additive constant of the mixing sequence of bit selections.
+     */
+    private static final long SALT = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Number of longs per block.
+     */
+    private static final int BLOCK_LONGS = BLOCK_BITS / Long.SIZE;
+
+    /**
+     * Maximum number of bits set per ID.
+     */
+    private static final int MAX_HASHES = 16;
+
+    /**
+     * Leading bytes of the serialized form.
+     */
+    private static final int MAGIC = 0x49444246; // "IDBF"
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Length of the serialized form before the filter words: magic, format
+     * version, key, hash count and word count.
+     */
+    private static final int HEADER_BYTES = 11;
+
+    /**
+     * Create a new, empty filter sized to hold the specified number of IDs at
+     * the specified false positive rate.
+     *
+     * @param expectedIds expected number of distinct IDs (keys)
+     * @param falsePositiveRate desired false positive rate, between 0 and 1
+     *                          (exclusive)
+     * @param key part of the ID identity upon which the filter is keyed
+     * @return new IdBloomFilter object
+     * @throws IllegalArgumentException if <tt>expectedIds</tt> is less than 1,
+     *                                  <tt>falsePositiveRate</tt> is out of
+     *                                  range or <tt>key</tt> is null
+     */
+    public static IdBloomFilter create(final long expectedIds,
+                                       final double falsePositiveRate,
+                                       final IdKey key) {
+        if (1L > expectedIds) {
+            throw new IllegalArgumentException("Expected ID count must be at least 1");
+        }
+        if (!(0.0 < falsePositiveRate && 1.0 > falsePositiveRate)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        requireNonNull(key, "Key cannot be null");
+        // Find the fewest bits per ID (and the best hash count for it) at
+        // which the modelled false positive rate of a blocked filter meets
+        // the target; block load varies, so this exceeds the classic bound
+        double bitsPerId = -Math.log(falsePositiveRate) / (Math.log(2.0) * Math.log(2.0));
+        int hashes;
+        while (true) {
+            hashes = bestHashCount(bitsPerId);
+            if (falsePositiveRate >= blockedFalsePositiveRate(bitsPerId, hashes)) {
+                break;
+            }
+            bitsPerId *= 1.02;
+        }
+        long blocks = (long)Math.ceil(expectedIds * bitsPerId / BLOCK_BITS);
+        if ((Integer.MAX_VALUE / BLOCK_LONGS) < blocks) {
+            throw new IllegalArgumentException("Filter would be too large");
+        }
+        return new IdBloomFilter(key, hashes, new AtomicLongArray((int)blocks * BLOCK_LONGS));
+    }
+
+    /**
+     * Reconstruct a filter from its serialized form.
+     *
+     * @param bytes serialized filter, as produced by {@link #toBytes()}
+     * @return reconstructed IdBloomFilter object
+     * @throws IllegalArgumentException if <tt>bytes</tt> is not a valid
+     *                                  serialized filter
+     */
+    public static IdBloomFilter fromBytes(final byte[] bytes) {
+        requireNonNull(bytes, "Serialized filter cannot be null");
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        try {
+            if (MAGIC != buf.getInt() || FORMAT_VERSION != buf.get()) {
+                throw new IllegalArgumentException("Not a serialized IdBloomFilter");
+            }
+            IdKey key = IdKey.values()[buf.get()];
+            int hashes = buf.get();
+            int length = buf.getInt();
+            if (1 > hashes || MAX_HASHES < hashes
+                || 0 >= length || 0 != (length % BLOCK_LONGS)
+                || buf.remaining() != (long)length * Long.BYTES) {
+                throw new IllegalArgumentException("Corrupt serialized IdBloomFilter");
+            }
+            AtomicLongArray bits = new AtomicLongArray(length);
+            for (int i = 0; i < length; i++) {
+                bits.set(i, buf.getLong());
+            }
+            return new IdBloomFilter(key, hashes, bits);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt serialized IdBloomFilter", e);
+        }
+    }
+
+    /**
+     * Get the hash count which minimizes the false positive rate of a blocked
+     * filter at the specified bits per ID.
+     */
+    private static int bestHashCount(final double bitsPerId) {
+        int best = 1;
+        double bestRate = 1.0;
+        for (int k = 1; k <= MAX_HASHES; k++) {
+            double rate = blockedFalsePositiveRate(bitsPerId, k);
+            if (rate < bestRate) {
+                best = k;
+                bestRate = rate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Model the false positive rate of a blocked filter, as the rate of a
+     * single-block filter averaged over the Poisson distribution of block
+     * loads.
+     */
+    private static double blockedFalsePositiveRate(final double bitsPerId, final int k) {
+        final double meanLoad = BLOCK_BITS / bitsPerId;
+        final int maxLoad = (int)(meanLoad + 10.0 * Math.sqrt(meanLoad) + 20.0);
+        double rate = 0.0;
+        double logPmf = -meanLoad;
+        for (int load = 0; load <= maxLoad; load++) {
+            if (0 < load) {
+                logPmf += Math.log(meanLoad / load);
+            }
+            double bitSet = 1.0 - Math.pow(1.0 - 1.0 / BLOCK_BITS, (double)k * load);
+            rate += Math.exp(logPmf) * Math.pow(bitSet, k);
+        }
+        return rate;
+    }
+
+    private final IdKey key;
+    private final int hashes;
+    private final int blocks;
+    private final AtomicLongArray bits;
+
+    private IdBloomFilter(final IdKey key, final int hashes, final AtomicLongArray bits) {
+        this.key = key;
+        this.hashes = hashes;
+        this.blocks = bits.length() / BLOCK_LONGS;
+        this.bits = bits;
+    }
+
+    /**
+     * Add the specified ID to this filter.
+     *
+     * @param id ID to be added
+     * @return true if this filter changed as a result (the ID was definitely
+     *         not present before), false otherwise
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean add(final NamespaceId<?> id) {
+        return addFingerprint(key.fingerprint(id));
+    }
+
+    /**
+     * Add the specified fingerprint, computed by this filter's
+     * {@link #getKey() key}, to this filter.
+     *
+     * @param fingerprint 64-bit fingerprint
+     * @return true if this filter changed as a result, false otherwise
+     */
+    public boolean addFingerprint(final long fingerprint) {
+        final int base = blockOf(fingerprint) * BLOCK_LONGS;
+        long state = fingerprint;
+        long h = 0L;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            if (0 == i % BITS_PER_MIX) {
+                state += SALT;
+                h = Hash64.mix(state);
+            }
+            int bit = (int)h & (BLOCK_BITS - 1);
+            h >>>= BLOCK_SHIFT;
+            int index = base + (bit >>> 6);
+            long mask = 1L << bit;
+            long word = bits.get(index);
+            while (0L == (word & mask)) {
+                if (bits.compareAndSet(index, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+                word = bits.get(index);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Determine whether the specified ID might have been added to this
+     * filter.
+     *
+     * @param id ID to be checked
+     * @return false if <tt>id</tt> was definitely never added, true if it
+     *         probably was
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean mightContain(final NamespaceId<?> id) {
+        return mightContainFingerprint(key.fingerprint(id));
+    }
+
+    /**
+     * Determine whether the specified fingerprint, computed by this filter's
+     * {@link #getKey() key}, might have been added to this filter.
+     *
+     * @param fingerprint 64-bit fingerprint
+     * @return false if <tt>fingerprint</tt> was definitely never added, true
+     *         if it probably was
+     */
+    public boolean mightContainFingerprint(final long fingerprint) {
+        final int base = blockOf(fingerprint) * BLOCK_LONGS;
+        long state = fingerprint;
+        long h = 0L;
+        for (int i = 0; i < hashes; i++) {
+            if (0 == i % BITS_PER_MIX) {
+                state += SALT;
+                h = Hash64.mix(state);
+            }
+            int bit = (int)h & (BLOCK_BITS - 1);
+            h >>>= BLOCK_SHIFT;
+            if (0L == (bits.get(base + (bit >>> 6)) & (1L << bit))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add all IDs of the specified filter to this filter. This filter then
+     * answers as if every ID added to either filter had been added to it.
+     *
+     * @param other filter to be merged into this one
+     * @throws IllegalArgumentException if <tt>other</tt> is null or does not
+     *                                  have the same key, size and hash count
+     *                                  as this filter
+     */
+    public void merge(final IdBloomFilter other) {
+        requireNonNull(other, "Filter cannot be null");
+        if (key != other.key || hashes != other.hashes || blocks != other.blocks) {
+            throw new IllegalArgumentException("Cannot merge filters of different geometry");
+        }
+        for (int i = 0; i < bits.length(); i++) {
+            long otherWord = other.bits.get(i);
+            long word = bits.get(i);
+            while ((word | otherWord) != word
+                   && !bits.compareAndSet(i, word, word | otherWord)) {
+                word = bits.get(i);
+            }
+        }
+    }
+
+    /**
+     * Create an empty filter with the same geometry as this one, suitable for
+     * building in parallel and later merging into this filter.
+     *
+     * @return new, empty IdBloomFilter object
+     */
+    public IdBloomFilter emptyCopy() {
+        return new IdBloomFilter(key, hashes, new AtomicLongArray(bits.length()));
+    }
+
+    /**
+     * Serialize this filter. Concurrent additions during serialization may or
+     * may not be reflected in the result.
+     *
+     * @return serialized filter
+     * @throws IllegalStateException if this filter is too large to be
+     *                               serialized to a single byte array
+     */
+    public byte[] toBytes() {
+        final long size = HEADER_BYTES + (long)bits.length() * Long.BYTES;
+        if (Integer.MAX_VALUE < size) {
+            throw new IllegalStateException("Filter of " + getBitSize()
+                                            + " bits is too large to serialize");
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int)size);
+        buf.putInt(MAGIC);
+        buf.put(FORMAT_VERSION);
+        buf.put((byte)key.ordinal());
+        buf.put((byte)hashes);
+        buf.putInt(bits.length());
+        for (int i = 0; i < bits.length(); i++) {
+            buf.putLong(bits.get(i));
+        }
+        return buf.array();
+    }
+
+    /**
+     * Get the part of the ID identity upon which this filter is keyed.
+     *
+     * @return filter key
+     */
+    public IdKey getKey() {
+        return key;
+    }
+
+    /**
+     * Get the number of bits of this filter.
+     *
+     * @return bit count
+     */
+    public long getBitSize() {
+        return (long)bits.length() * Long.SIZE;
+    }
+
+    /**
+     * Get the number of bits set per ID.
+     *
+     * @return hash count
+     */
+    public int getHashCount() {
+        return hashes;
+    }
+
+    /**
+     * Estimate the current false positive rate of this filter, from the
+     * fraction of its bits which are set. The estimate assumes evenly loaded
+     * blocks, so the actual rate is somewhat higher.
+     *
+     * @return estimated false positive rate
+     */
+    public double estimatedFalsePositiveRate() {
+        long set = 0L;
+        for (int i = 0; i < bits.length(); i++) {
+            set += Long.bitCount(bits.get(i));
+        }
+        return Math.pow((double)set / getBitSize(), hashes);
+    }
+
+    private int blockOf(final long fingerprint) {
+        return (int)(((fingerprint >>> 32) * blocks) >>> 32);
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import io.github.davejoyce.util.Hash64;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Stable, well-mixed 64-bit fingerprints of IDs. Unlike
+ * {@link NamespaceId#hashCode()}, a fingerprint depends only upon the
+ * canonical (string) form of the namespace and ID value, so it is identical
+ * across JVMs, across releases and across ID value types with the same
+ * string form.
+ * <p>
+ * The {@link #of(NamespaceId) key fingerprint} disregards temporal components,
+ * so that all versions of a {@code NamespaceId} share it. It is the XXH64
+ * hash of the key bytes of the ID as encoded by
+ * {@link io.github.davejoyce.id.IdCodec}. The
+ * {@link #ofVersion(NamespaceId) version fingerprint} additionally includes
+ * the 'as of' and 'as at' times of temporal IDs.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdFingerprint {
+
+    /**
+     * Per-thread scratch buffer for key bytes, so that fingerprinting does
+     * not allocate in the common case.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdFingerprint() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdFingerprint instances not allowed");
+    }
+
+    /**
+     * Compute the key fingerprint of the specified ID, which is shared by all
+     * versions of its {@code NamespaceId} projection.
+     *
+     * @param id ID to be fingerprinted
+     * @return 64-bit key fingerprint
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public static long of(final NamespaceId<?> id) {
+        requireNonNull(id, "ID cannot be null");
+        final String ns = id.getNamespace();
+        final String idVal = id.getId().toString();
+        final int nsLength = utf8Length(ns);
+        final int idLength = utf8Length(idVal);
+        final int length = 10 + nsLength + idLength;
+        byte[] buf = SCRATCH.get();
+        if (buf.length < length) {
+            buf = new byte[Math.max(length, buf.length << 1)];
+            SCRATCH.set(buf);
+        }
+        int p = writeVarint(nsLength, buf, 0);
+        p = writeUtf8(ns, buf, p);
+        p = writeVarint(idLength, buf, p);
+        p = writeUtf8(idVal, buf, p);
+        return Hash64.hash(buf, 0, p, 0L);
+    }
+
+    /**
+     * Compute the version fingerprint of the specified ID, which covers its
+     * full temporal identity. For a plain {@code NamespaceId} the version
+     * fingerprint is equal to the key fingerprint.
+     *
+     * @param id ID to be fingerprinted
+     * @return 64-bit version fingerprint
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public static long ofVersion(final NamespaceId<?> id) {
+        long fp = of(id);
+        if (id instanceof TemporalNamespaceId) {
+            TemporalNamespaceId<?> tnsId = (TemporalNamespaceId<?>) id;
+            fp = Hash64.combine(fp, tnsId.getAsOfEpochSecond());
+            fp = Hash64.combine(fp, tnsId.getAsOfNano());
+        }
+        if (id instanceof BiTemporalNamespaceId) {
+            BiTemporalNamespaceId<?> btnsId = (BiTemporalNamespaceId<?>) id;
+            fp = Hash64.combine(fp, btnsId.getAsAtEpochSecond());
+            fp = Hash64.combine(fp, btnsId.getAsAtNano());
+        }
+        return fp;
+    }
+
+    /**
+     * Compute the number of bytes in the UTF-8 encoding of the specified
+     * string, as produced by {@code String.getBytes(UTF_8)}.
+     */
+    private static int utf8Length(final String s) {
+        final int n = s.length();
+        int length = n;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (0x80 <= c) {
+                if (0x800 > c) {
+                    length += 1;
+                } else if (Character.isHighSurrogate(c)
+                           && (i + 1) < n
+                           && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    length += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    // 3 byte character; a malformed surrogate is encoded as '?'
+                    length += 2;
+                }
+            }
+        }
+        return length;
+    }
+
+    private static int writeUtf8(final String s, final byte[] buf, final int offset) {
+        final int n = s.length();
+        int p = offset;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (0x80 > c) {
+                buf[p++] = (byte)c;
+            } else if (0x800 > c) {
+                buf[p++] = (byte)(0xC0 | (c >> 6));
+                buf[p++] = (byte)(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)
+                       && (i + 1) < n
+                       && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[p++] = (byte)(0xF0 | (cp >> 18));
+                buf[p++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+                buf[p++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+                buf[p++] = (byte)(0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[p++] = (byte)'?';
+            } else {
+                buf[p++] = (byte)(0xE0 | (c >> 12));
+                buf[p++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                buf[p++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        return p;
+    }
+
+    private static int writeVarint(final int value, final byte[] buf, final int offset) {
+        int v = value;
+        int p = offset;
+        while (0 != (v & ~0x7F)) {
+            buf[p++] = (byte)((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[p++] = (byte)v;
+        return p;
+    }
+
+}
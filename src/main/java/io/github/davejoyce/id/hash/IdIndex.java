@@ -0,0 +1,260 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Static, read-only index of a fixed set of IDs, which maps each of the
+ * <i>n</i> IDs of the set to a distinct index from 0 to <i>n</i> - 1, and
+ * any other ID to -1. The index is a {@link MinimalPerfectHash} over the
+ * fingerprints of the IDs, plus the fingerprints in index order so that a
+ * lookup is verified by one fingerprint comparison. It takes about 8.5 bytes
+ * per ID, and does not retain the IDs themselves; values associated with
+ * the IDs are kept in arrays parallel to the index, as by
+ * {@link IdLookupTable}.
+ * <p>
+ * An index can be {@link #write(Path) written} to a file and
+ * {@link #open(Path) opened} again by memory-mapping the file, which loads
+ * nothing onto the heap. The file consists of:
+ * </p>
+ * <ol>
+ *     <li>the 4 byte magic number {@code "IDIX"}, 1 version byte and the
+ *         ordinal of the {@link IdKey} byte</li>
+ *     <li>the minimal perfect hash function, in the form written by
+ *         {@link MinimalPerfectHash#writeTo(ByteBuffer)}</li>
+ *     <li>the <i>n</i> fingerprints (8 bytes each), in index order</li>
+ * </ol>
+ * <p>
+ * Multi-byte numbers are big-endian, and files are limited to 2 GiB.
+ * Instances of this class are immutable and thread-safe.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdIndex {
+
+    /**
+     * Magic number of an index file.
+     */
+    static final int MAGIC = 0x49444958; // "IDIX"
+
+    /**
+     * Version of the file layout.
+     */
+    static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = 6;
+
+    /**
+     * Number of IDs at or above which fingerprints are computed and checked
+     * for duplicates in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * Build the index of the specified IDs.
+     *
+     * @param ids distinct IDs, by <tt>key</tt>
+     * @param key part of the ID identity upon which the index is keyed
+     * @return new IdIndex object
+     * @throws IllegalArgumentException if any argument is null, <tt>ids</tt>
+     *                                  contains null or duplicate IDs, or
+     *                                  the index would exceed 2 GiB
+     */
+    public static IdIndex build(final Collection<? extends NamespaceId<?>> ids, final IdKey key) {
+        requireNonNull(ids, "IDs cannot be null");
+        requireNonNull(key, "Key cannot be null");
+        final long[] fingerprints = (PARALLEL_THRESHOLD <= ids.size())
+                                    ? ids.parallelStream().mapToLong(key::fingerprint).toArray()
+                                    : ids.stream().mapToLong(key::fingerprint).toArray();
+        if (containsDuplicate(fingerprints)) {
+            throw new IllegalArgumentException("IDs contain duplicates by key " + key);
+        }
+        final MinimalPerfectHash hash = MinimalPerfectHash.build(fingerprints);
+        final long byteSize = HEADER_SIZE + (long)hash.getByteSize() + 8L * fingerprints.length;
+        if (Integer.MAX_VALUE < byteSize) {
+            throw new IllegalArgumentException("Index would exceed 2 GiB");
+        }
+        final ByteBuffer buf = ByteBuffer.allocate((int)byteSize);
+        buf.putInt(MAGIC);
+        buf.put(VERSION);
+        buf.put((byte)key.ordinal());
+        hash.writeTo(buf);
+        final int fingerprintsStart = buf.position();
+        IntStream indexes = IntStream.range(0, fingerprints.length);
+        if (PARALLEL_THRESHOLD <= fingerprints.length) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            long fp = fingerprints[i];
+            buf.putLong(fingerprintsStart + 8 * hash.indexOf(fp), fp);
+        });
+        buf.position(0);
+        return new IdIndex(buf);
+    }
+
+    private static boolean containsDuplicate(final long[] fingerprints) {
+        final long[] sorted = fingerprints.clone();
+        if (PARALLEL_THRESHOLD <= sorted.length) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1] == sorted[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Open and map the specified index file.
+     *
+     * @param file path of file to be opened
+     * @return mapped index
+     * @throws IllegalArgumentException if <tt>file</tt> is null or is not a
+     *                                  valid index file
+     * @throws IOException if the file cannot be read
+     */
+    public static IdIndex open(final Path file) throws IOException {
+        requireNonNull(file, "File cannot be null");
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (Integer.MAX_VALUE < size) {
+                throw new IllegalArgumentException("Index file exceeds 2 GiB: " + file);
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        }
+        return new IdIndex(buf);
+    }
+
+    private final ByteBuffer buf;
+    private final IdKey key;
+    private final MinimalPerfectHash hash;
+    private final int fingerprintsStart;
+
+    private IdIndex(final ByteBuffer buf) {
+        this.buf = buf;
+        if (HEADER_SIZE > buf.limit() || MAGIC != buf.getInt(0)) {
+            throw new IllegalArgumentException("Not an index file");
+        }
+        if (VERSION != buf.get(4)) {
+            throw new IllegalArgumentException("Unsupported index file version: " + buf.get(4));
+        }
+        final int ordinal = buf.get(5);
+        if (0 > ordinal || IdKey.values().length <= ordinal) {
+            throw new IllegalArgumentException("Bad index key: " + ordinal);
+        }
+        this.key = IdKey.values()[ordinal];
+        final ByteBuffer dup = buf.duplicate();
+        dup.position(HEADER_SIZE);
+        this.hash = MinimalPerfectHash.read(dup);
+        this.fingerprintsStart = dup.position();
+        if (buf.limit() != fingerprintsStart + 8L * hash.size()) {
+            throw new IllegalArgumentException("Bad index file length: " + buf.limit());
+        }
+    }
+
+    /**
+     * Get the index of the specified ID.
+     *
+     * @param id ID to be looked up
+     * @return index from 0 to <code>size() - 1</code>, or -1 if <tt>id</tt>
+     *         is not in this index
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public int indexOf(final NamespaceId<?> id) {
+        return indexOfFingerprint(key.fingerprint(id));
+    }
+
+    /**
+     * Get the index of the specified fingerprint, computed by this index's
+     * {@link #getKey() key}.
+     *
+     * @param fingerprint 64-bit fingerprint
+     * @return index from 0 to <code>size() - 1</code>, or -1 if
+     *         <tt>fingerprint</tt> is not in this index
+     */
+    public int indexOfFingerprint(final long fingerprint) {
+        final int i = hash.indexOf(fingerprint);
+        return (0 <= i && fingerprint == buf.getLong(fingerprintsStart + 8 * i)) ? i : -1;
+    }
+
+    /**
+     * Get the number of IDs of this index.
+     *
+     * @return ID count
+     */
+    public int size() {
+        return hash.size();
+    }
+
+    /**
+     * Get the part of the ID identity upon which this index is keyed.
+     *
+     * @return index key
+     */
+    public IdKey getKey() {
+        return key;
+    }
+
+    /**
+     * Get the number of bytes of this index, as written to a file.
+     *
+     * @return byte size
+     */
+    public int getByteSize() {
+        return buf.limit();
+    }
+
+    /**
+     * Write this index to a new file or over an existing file.
+     *
+     * @param file path of file to be written
+     * @throws IllegalArgumentException if <tt>file</tt> is null
+     * @throws IOException if writing fails
+     */
+    public void write(final Path file) throws IOException {
+        requireNonNull(file, "File cannot be null");
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer dup = buf.duplicate();
+            dup.position(0);
+            while (dup.hasRemaining()) {
+                channel.write(dup);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+
+/**
+ * Part of the identity of an ID upon which a hash-based structure is keyed.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public enum IdKey {
+
+    /**
+     * Key on the {@code NamespaceId} projection of an ID; all versions of a
+     * {@code NamespaceId} are treated as the same key.
+     */
+    NAMESPACE_ID {
+        @Override
+        public long fingerprint(final NamespaceId<?> id) {
+            return IdFingerprint.of(id);
+        }
+    },
+
+    /**
+     * Key on the full temporal identity of an ID; each version of a
+     * {@code NamespaceId} is a distinct key.
+     */
+    VERSION {
+        @Override
+        public long fingerprint(final NamespaceId<?> id) {
+            return IdFingerprint.ofVersion(id);
+        }
+    };
+
+    /**
+     * Compute the fingerprint of the specified ID by this key.
+     *
+     * @param id ID to be fingerprinted
+     * @return 64-bit fingerprint
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public abstract long fingerprint(NamespaceId<?> id);
+
+}
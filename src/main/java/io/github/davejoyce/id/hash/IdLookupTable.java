@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Read-only map of a fixed set of IDs to values, for large, rarely changing
+ * reference data. The table is an {@link IdIndex} plus an array of values
+ * parallel to it, so that it holds no entry objects and no IDs; each entry
+ * costs about 8.5 bytes plus the value reference, against several dozen
+ * bytes for a {@code HashMap} entry and its key ID. A lookup computes one
+ * fingerprint, evaluates the index in constant time and verifies one stored
+ * fingerprint.
+ * <p>
+ * The index of a table may be written to a file and memory-mapped again;
+ * the values, in index order, are persisted by the caller and reattached
+ * with {@link #of(IdIndex, List)}. Instances of this class are immutable
+ * and thread-safe, if the values are.
+ * </p>
+ *
+ * @param <V> type of value
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdLookupTable<V> {
+
+    /**
+     * Build a table of the specified IDs and their values, given as parallel
+     * lists.
+     *
+     * @param ids distinct IDs, by <tt>key</tt>
+     * @param values values of the IDs, by position; may contain null
+     * @param key part of the ID identity upon which the table is keyed
+     * @param <V> type of value
+     * @return new IdLookupTable object
+     * @throws IllegalArgumentException if any argument is null, the lists
+     *                                  differ in size, or <tt>ids</tt>
+     *                                  contains null or duplicate IDs
+     */
+    public static <V> IdLookupTable<V> build(final List<? extends NamespaceId<?>> ids,
+                                             final List<? extends V> values,
+                                             final IdKey key) {
+        requireNonNull(ids, "IDs cannot be null");
+        requireNonNull(values, "Values cannot be null");
+        if (ids.size() != values.size()) {
+            throw new IllegalArgumentException("IDs and values differ in size: "
+                                               + ids.size() + " != " + values.size());
+        }
+        final IdIndex index = IdIndex.build(ids, key);
+        final Object[] ordered = new Object[ids.size()];
+        Iterator<? extends V> valueIterator = values.iterator();
+        for (NamespaceId<?> id : ids) {
+            ordered[index.indexOf(id)] = valueIterator.next();
+        }
+        return new IdLookupTable<>(index, ordered);
+    }
+
+    /**
+     * Build a table of the entries of the specified map.
+     *
+     * @param entries IDs and their values
+     * @param key part of the ID identity upon which the table is keyed
+     * @param <V> type of value
+     * @return new IdLookupTable object
+     * @throws IllegalArgumentException if any argument is null, or
+     *                                  <tt>entries</tt> contains a null ID
+     *                                  or IDs which are duplicates by
+     *                                  <tt>key</tt>
+     */
+    public static <V> IdLookupTable<V> build(final Map<? extends NamespaceId<?>, ? extends V> entries,
+                                             final IdKey key) {
+        requireNonNull(entries, "Entries cannot be null");
+        return build(new ArrayList<>(entries.keySet()), new ArrayList<>(entries.values()), key);
+    }
+
+    /**
+     * Create a table of the specified index and its values.
+     *
+     * @param index index of IDs
+     * @param values values in index order, as returned by {@link #values()}
+     * @param <V> type of value
+     * @return new IdLookupTable object
+     * @throws IllegalArgumentException if any argument is null, or the size
+     *                                  of <tt>values</tt> differs from the
+     *                                  size of <tt>index</tt>
+     */
+    public static <V> IdLookupTable<V> of(final IdIndex index, final List<? extends V> values) {
+        requireNonNull(index, "Index cannot be null");
+        requireNonNull(values, "Values cannot be null");
+        if (index.size() != values.size()) {
+            throw new IllegalArgumentException("Index and values differ in size: "
+                                               + index.size() + " != " + values.size());
+        }
+        return new IdLookupTable<>(index, values.toArray());
+    }
+
+    private final IdIndex index;
+    private final Object[] values;
+
+    private IdLookupTable(final IdIndex index, final Object[] values) {
+        this.index = index;
+        this.values = values;
+    }
+
+    /**
+     * Get the value of the specified ID.
+     *
+     * @param id ID to be looked up
+     * @return value of <tt>id</tt>, or null if it is not in this table
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final NamespaceId<?> id) {
+        final int i = index.indexOf(id);
+        return (0 > i) ? null : (V)values[i];
+    }
+
+    /**
+     * Determine whether the specified ID is in this table.
+     *
+     * @param id ID to be looked up
+     * @return true if <tt>id</tt> is in this table
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean containsId(final NamespaceId<?> id) {
+        return 0 <= index.indexOf(id);
+    }
+
+    /**
+     * Get the number of entries of this table.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Get the index of the IDs of this table.
+     *
+     * @return ID index
+     */
+    public IdIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Get an unmodifiable view of the values of this table, in index order.
+     *
+     * @return list of values
+     */
+    public List<V> values() {
+        return new AbstractList<V>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public V get(final int i) {
+                return (V)values[i];
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.List;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Router of IDs to a fixed number of partitions (shards), by the
+ * {@link IdFingerprint#of(NamespaceId) key fingerprint} of each ID. All
+ * versions of a {@code NamespaceId} are routed to the same partition.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface IdPartitioner {
+
+    /**
+     * Create a partitioner which uses the jump consistent hash algorithm of
+     * Lamping and Veach. Jump hashing needs no memory and runs in
+     * <i>O(log n)</i> time; when the partition count grows from <i>n</i> to
+     * <i>n+1</i>, only <i>1/(n+1)</i> of IDs move, all of them to the new
+     * partition. Partitions can only be added or removed at the end.
+     *
+     * @param partitionCount number of partitions
+     * @return new jump hash partitioner
+     * @throws IllegalArgumentException if <tt>partitionCount</tt> is less
+     *                                  than 1
+     */
+    static IdPartitioner jump(final int partitionCount) {
+        return new JumpHashPartitioner(partitionCount);
+    }
+
+    /**
+     * Create a partitioner which uses rendezvous (highest random weight)
+     * hashing over the specified named nodes. Each ID is routed to the node
+     * which scores highest for its fingerprint, in <i>O(n)</i> time. Removing
+     * any node moves only the IDs which were routed to that node. Partition
+     * numbers are indices into <tt>nodeNames</tt>.
+     *
+     * @param nodeNames distinct names of nodes
+     * @return new rendezvous hash partitioner
+     * @throws IllegalArgumentException if <tt>nodeNames</tt> is null, empty or
+     *                                  contains an empty name
+     */
+    static IdPartitioner rendezvous(final List<String> nodeNames) {
+        return new RendezvousPartitioner(requireNonNull(nodeNames, "Node names cannot be null"));
+    }
+
+    /**
+     * Get the number of partitions of this partitioner.
+     *
+     * @return partition count
+     */
+    int getPartitionCount();
+
+    /**
+     * Get the partition of the specified key fingerprint.
+     *
+     * @param fingerprint 64-bit key fingerprint
+     * @return partition number, from 0 (inclusive) to
+     *         {@link #getPartitionCount()} (exclusive)
+     */
+    int partition(long fingerprint);
+
+    /**
+     * Get the partition of the specified ID.
+     *
+     * @param id ID to be routed
+     * @return partition number, from 0 (inclusive) to
+     *         {@link #getPartitionCount()} (exclusive)
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    default int partition(final NamespaceId<?> id) {
+        return partition(IdFingerprint.of(id));
+    }
+
+    /**
+     * Get the partitions of all of the specified IDs.
+     *
+     * @param ids IDs to be routed
+     * @return partition numbers, at the same indices as their IDs
+     * @throws IllegalArgumentException if <tt>ids</tt> is null or contains a
+     *                                  null ID
+     */
+    default int[] partitionAll(final NamespaceId<?>[] ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        int[] partitions = new int[ids.length];
+        partitionAll(ids, partitions);
+        return partitions;
+    }
+
+    /**
+     * Get the partitions of all of the specified IDs into the given array.
+     *
+     * @param ids IDs to be routed
+     * @param partitions destination of partition numbers, at the same indices
+     *                   as their IDs
+     * @throws IllegalArgumentException if either argument is null, if
+     *                                  <tt>ids</tt> contains a null ID, or if
+     *                                  <tt>partitions</tt> is shorter than
+     *                                  <tt>ids</tt>
+     */
+    default void partitionAll(final NamespaceId<?>[] ids, final int[] partitions) {
+        requireNonNull(ids, "IDs cannot be null");
+        requireNonNull(partitions, "Partitions cannot be null");
+        if (partitions.length < ids.length) {
+            throw new IllegalArgumentException("Partitions array is too short");
+        }
+        for (int i = 0; i < ids.length; i++) {
+            partitions[i] = partition(IdFingerprint.of(ids[i]));
+        }
+    }
+
+    /**
+     * Get the partitions of all of the specified key fingerprints into the
+     * given array.
+     *
+     * @param fingerprints 64-bit key fingerprints
+     * @param partitions destination of partition numbers, at the same indices
+     *                   as their fingerprints
+     * @throws IllegalArgumentException if either argument is null, or if
+     *                                  <tt>partitions</tt> is shorter than
+     *                                  <tt>fingerprints</tt>
+     */
+    default void partitionAll(final long[] fingerprints, final int[] partitions) {
+        requireNonNull(fingerprints, "Fingerprints cannot be null");
+        requireNonNull(partitions, "Partitions cannot be null");
+        if (partitions.length < fingerprints.length) {
+            throw new IllegalArgumentException("Partitions array is too short");
+        }
+        for (int i = 0; i < fingerprints.length; i++) {
+            partitions[i] = partition(fingerprints[i]);
+        }
+    }
+
+}
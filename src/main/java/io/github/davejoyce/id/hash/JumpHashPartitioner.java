@@ -0,0 +1,60 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+/**
+ * Partitioner which implements the jump consistent hash algorithm.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see <a href="https://arxiv.org/abs/1406.2294">A Fast, Minimal Memory,
+ *      Consistent Hash Algorithm</a>
+ */
+final class JumpHashPartitioner implements IdPartitioner {
+
+    private final int partitionCount;
+
+    JumpHashPartitioner(final int partitionCount) {
+        if (1 > partitionCount) {
+            throw new IllegalArgumentException("Partition count must be at least 1");
+        }
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    @Override
+    public int partition(final long fingerprint) {
+        long key = fingerprint;
+        long b = -1L;
+        long j = 0L;
+        while (j < partitionCount) {
+            b = j;
+            key = key * 2862933555777941757L + 1L;
+            j = (long)((b + 1L) * ((double)(1L << 31) / (double)((key >>> 33) + 1L)));
+        }
+        return (int)b;
+    }
+
+    @Override
+    public String toString() {
+        return "JumpHashPartitioner[" + partitionCount + "]";
+    }
+
+}
@@ -0,0 +1,397 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.util.Hash64;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Minimal perfect hash function over a fixed set of 64-bit fingerprints,
+ * which maps the <i>n</i> fingerprints of the set one-to-one onto the
+ * indexes 0 to <i>n</i> - 1. The function takes about 3.5 bits per
+ * fingerprint, and does not store the fingerprints themselves; the index of
+ * a fingerprint outside the set is either -1 or arbitrary.
+ * <p>
+ * The function is built in the manner of BBHash: each fingerprint is hashed
+ * to a bit of the first level bit array, and those which collide with
+ * another are hashed again to the next, smaller level, until none remain.
+ * The index of a fingerprint is the rank of its bit among all set bits,
+ * which is computed in constant time from a rank sample per 512 bits. The
+ * few fingerprints which still collide after the last level are kept in a
+ * sorted fallback array. Levels of large sets are built in parallel.
+ * </p>
+ * <p>
+ * The function is held in a single {@code ByteBuffer}, in the form written
+ * by {@link #writeTo(ByteBuffer)}, so that a function
+ * {@link #read(ByteBuffer) read} from a memory-mapped file is used in place,
+ * without copying. Instances of this class are immutable and thread-safe.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class MinimalPerfectHash {
+
+    /**
+     * Leading bytes of the serialized form.
+     */
+    static final int MAGIC = 0x49445048; // "IDPH"
+
+    /**
+     * Version of the serialized form.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Size of the fixed header: magic, version, level count, size, fallback
+     * count and word count.
+     */
+    private static final int HEADER_SIZE = 18;
+
+    /**
+     * Bits per fingerprint of each level. Larger values take more space but
+     * resolve more fingerprints per level, so lookups probe fewer levels.
+     */
+    private static final double GAMMA = 2.0;
+
+    /**
+     * Maximum number of levels before colliding fingerprints fall back.
+     */
+    private static final int MAX_LEVELS = 32;
+
+    /**
+     * Number of 64-bit words per rank sample.
+     */
+    private static final int RANK_WORDS = 8;
+
+    /**
+     * Additive constant which derives the hash of each level.
+     */
+    private static final long SALT = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Number of fingerprints at or above which a level is built in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * Number of fingerprints per parallel task.
+     */
+    private static final int CHUNK_SIZE = 1 << 12;
+
+    /**
+     * Build the minimal perfect hash function of the specified fingerprints.
+     *
+     * @param fingerprints distinct fingerprints
+     * @return new MinimalPerfectHash object
+     * @throws IllegalArgumentException if <tt>fingerprints</tt> is null,
+     *                                  contains duplicates or is too large
+     */
+    public static MinimalPerfectHash build(final long[] fingerprints) {
+        requireNonNull(fingerprints, "Fingerprints cannot be null");
+        final List<long[]> levels = new ArrayList<>();
+        long totalWords = 0L;
+        long[] keys = fingerprints;
+        while (0 < keys.length && MAX_LEVELS > levels.size()) {
+            final long[] level = buildLevel(keys, levels.size());
+            keys = survivors(keys, levels.size(), level);
+            levels.add(level);
+            totalWords += level.length;
+        }
+        final long[] fallback = keys.clone();
+        Arrays.sort(fallback);
+        for (int i = 1; i < fallback.length; i++) {
+            if (fallback[i - 1] == fallback[i]) {
+                throw new IllegalArgumentException("Duplicate fingerprint: " + Long.toHexString(fallback[i]));
+            }
+        }
+        final long rankSamples = (totalWords + RANK_WORDS - 1) / RANK_WORDS;
+        final long byteSize = HEADER_SIZE + 4L * (levels.size() + 1) + 8L * totalWords
+                              + 4L * rankSamples + 8L * fallback.length;
+        if (Integer.MAX_VALUE < byteSize) {
+            throw new IllegalArgumentException("Too many fingerprints: " + fingerprints.length);
+        }
+        final ByteBuffer buf = ByteBuffer.allocate((int)byteSize);
+        buf.putInt(MAGIC);
+        buf.put(VERSION);
+        buf.put((byte)levels.size());
+        buf.putInt(fingerprints.length);
+        buf.putInt(fallback.length);
+        buf.putInt((int)totalWords);
+        int offset = 0;
+        buf.putInt(offset);
+        for (long[] level : levels) {
+            offset += level.length;
+            buf.putInt(offset);
+        }
+        for (long[] level : levels) {
+            for (long word : level) {
+                buf.putLong(word);
+            }
+        }
+        // Rank sample j counts the set bits of the words before word 8j
+        int rank = 0;
+        int w = 0;
+        for (long[] level : levels) {
+            for (long word : level) {
+                if (0 == w % RANK_WORDS) {
+                    buf.putInt(rank);
+                }
+                rank += Long.bitCount(word);
+                w++;
+            }
+        }
+        for (long fp : fallback) {
+            buf.putLong(fp);
+        }
+        buf.flip();
+        return new MinimalPerfectHash(buf);
+    }
+
+    /**
+     * Read a function in its serialized form from the specified buffer,
+     * starting at its position. The function uses the content of the buffer
+     * in place, which must therefore not be modified. The position of the
+     * buffer is advanced past the function.
+     *
+     * @param buf buffer containing a serialized function
+     * @return function read
+     * @throws IllegalArgumentException if <tt>buf</tt> is null or does not
+     *                                  contain a valid serialized function
+     */
+    public static MinimalPerfectHash read(final ByteBuffer buf) {
+        requireNonNull(buf, "Buffer cannot be null");
+        final int start = buf.position();
+        if (HEADER_SIZE > buf.remaining() || MAGIC != buf.getInt(start)) {
+            throw new IllegalArgumentException("Not a serialized MinimalPerfectHash");
+        }
+        if (VERSION != buf.get(start + 4)) {
+            throw new IllegalArgumentException("Unsupported MinimalPerfectHash version: " + buf.get(start + 4));
+        }
+        final int levels = buf.get(start + 5);
+        final int words = buf.getInt(start + 14);
+        final int fallback = buf.getInt(start + 10);
+        if (0 > levels || MAX_LEVELS < levels || 0 > words || 0 > fallback) {
+            throw new IllegalArgumentException("Corrupt serialized MinimalPerfectHash");
+        }
+        final long byteSize = HEADER_SIZE + 4L * (levels + 1) + 8L * words
+                              + 4L * ((words + RANK_WORDS - 1) / RANK_WORDS) + 8L * fallback;
+        if (buf.remaining() < byteSize) {
+            throw new IllegalArgumentException("Truncated serialized MinimalPerfectHash");
+        }
+        final ByteBuffer dup = buf.duplicate();
+        dup.position(start);
+        dup.limit(start + (int)byteSize);
+        buf.position(start + (int)byteSize);
+        return new MinimalPerfectHash(dup.slice());
+    }
+
+    /**
+     * Build one level: the bits of the fingerprints which do not collide
+     * with another at the level.
+     */
+    private static long[] buildLevel(final long[] keys, final int level) {
+        final int words = (int)Math.max(1L, (long)Math.ceil(GAMMA * keys.length / Long.SIZE));
+        final long bits = (long)words << 6;
+        final AtomicLongArray seen = new AtomicLongArray(words);
+        final AtomicLongArray collided = new AtomicLongArray(words);
+        final int chunks = (keys.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream tasks = IntStream.range(0, chunks);
+        if (PARALLEL_THRESHOLD <= keys.length) {
+            tasks = tasks.parallel();
+        }
+        tasks.forEach(c -> {
+            final int end = Math.min(keys.length, (c + 1) * CHUNK_SIZE);
+            for (int i = c * CHUNK_SIZE; i < end; i++) {
+                long pos = position(keys[i], level, bits);
+                if (setBit(seen, pos)) {
+                    setBit(collided, pos);
+                }
+            }
+        });
+        final long[] result = new long[words];
+        for (int i = 0; i < words; i++) {
+            result[i] = seen.get(i) & ~collided.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Get the fingerprints which collided at a level: those whose bit is not
+     * set in it.
+     */
+    private static long[] survivors(final long[] keys, final int level, final long[] levelBits) {
+        final long bits = (long)levelBits.length << 6;
+        LongStream stream = LongStream.of(keys);
+        if (PARALLEL_THRESHOLD <= keys.length) {
+            stream = stream.parallel();
+        }
+        return stream.filter(fp -> {
+            long pos = position(fp, level, bits);
+            return 0L == (levelBits[(int)(pos >>> 6)] & (1L << pos));
+        }).toArray();
+    }
+
+    /**
+     * Set a bit of an array, returning whether it was already set.
+     */
+    private static boolean setBit(final AtomicLongArray array, final long pos) {
+        final int index = (int)(pos >>> 6);
+        final long mask = 1L << pos;
+        long word = array.get(index);
+        while (0L == (word & mask)) {
+            if (array.compareAndSet(index, word, word | mask)) {
+                return false;
+            }
+            word = array.get(index);
+        }
+        return true;
+    }
+
+    /**
+     * Hash a fingerprint to a bit of a level with the specified number of
+     * bits (at most 2<sup>32</sup>).
+     */
+    private static long position(final long fingerprint, final int level, final long bits) {
+        long h = Hash64.mix(fingerprint + (level + 1) * SALT);
+        return ((h >>> 32) * bits) >>> 32;
+    }
+
+    private final ByteBuffer buf;
+    private final int size;
+    private final int fallbackCount;
+    private final int[] levelOffsets;
+    private final int bitsStart;
+    private final int ranksStart;
+    private final int fallbackStart;
+
+    private MinimalPerfectHash(final ByteBuffer buf) {
+        this.buf = buf;
+        final int levels = buf.get(5);
+        this.size = buf.getInt(6);
+        this.fallbackCount = buf.getInt(10);
+        final int words = buf.getInt(14);
+        this.levelOffsets = new int[levels + 1];
+        for (int i = 0; i <= levels; i++) {
+            levelOffsets[i] = buf.getInt(HEADER_SIZE + 4 * i);
+        }
+        if (0 != levelOffsets[0] || words != levelOffsets[levels] || fallbackCount > size) {
+            throw new IllegalArgumentException("Corrupt serialized MinimalPerfectHash");
+        }
+        this.bitsStart = HEADER_SIZE + 4 * (levels + 1);
+        this.ranksStart = bitsStart + 8 * words;
+        this.fallbackStart = ranksStart + 4 * ((words + RANK_WORDS - 1) / RANK_WORDS);
+    }
+
+    /**
+     * Get the index of the specified fingerprint.
+     *
+     * @param fingerprint 64-bit fingerprint
+     * @return index from 0 to <code>size() - 1</code> of a fingerprint of
+     *         the set; -1 or an arbitrary index of any other fingerprint
+     */
+    public int indexOf(final long fingerprint) {
+        final int levels = levelOffsets.length - 1;
+        for (int level = 0; level < levels; level++) {
+            final long start = (long)levelOffsets[level] << 6;
+            final long bits = ((long)levelOffsets[level + 1] << 6) - start;
+            final long bit = start + position(fingerprint, level, bits);
+            final int word = (int)(bit >>> 6);
+            final long value = buf.getLong(bitsStart + 8 * word);
+            if (0L != (value & (1L << bit))) {
+                return rank(word, value & ((1L << bit) - 1L));
+            }
+        }
+        int low = 0;
+        int high = fallbackCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long fp = buf.getLong(fallbackStart + 8 * mid);
+            if (fp < fingerprint) {
+                low = mid + 1;
+            } else if (fp > fingerprint) {
+                high = mid - 1;
+            } else {
+                return size - fallbackCount + mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of fingerprints of this function.
+     *
+     * @return fingerprint count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of bytes of the serialized form of this function.
+     *
+     * @return serialized size
+     */
+    public int getByteSize() {
+        return buf.limit();
+    }
+
+    /**
+     * Get the number of bits of this function per fingerprint.
+     *
+     * @return bits per fingerprint
+     */
+    public double getBitsPerFingerprint() {
+        return (0 == size) ? 0.0 : (8.0 * buf.limit()) / size;
+    }
+
+    /**
+     * Write the serialized form of this function to the specified buffer, at
+     * its position.
+     *
+     * @param out buffer to be written
+     * @throws IllegalArgumentException if <tt>out</tt> is null
+     * @throws java.nio.BufferOverflowException if <tt>out</tt> has fewer than
+     *                                          {@link #getByteSize()} bytes
+     *                                          remaining
+     */
+    public void writeTo(final ByteBuffer out) {
+        requireNonNull(out, "Buffer cannot be null");
+        out.put(buf.duplicate());
+    }
+
+    /**
+     * Count the set bits preceding a bit in the specified word.
+     */
+    private int rank(final int word, final long lowerBits) {
+        final int sample = word / RANK_WORDS;
+        int rank = buf.getInt(ranksStart + 4 * sample);
+        for (int w = sample * RANK_WORDS; w < word; w++) {
+            rank += Long.bitCount(buf.getLong(bitsStart + 8 * w));
+        }
+        return rank + Long.bitCount(lowerBits);
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collector;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Approximate counts of distinct IDs and of distinct ID versions, per
+ * namespace. Each namespace has a pair of {@link HyperLogLog} sketches: one
+ * fed with the {@link IdKey#NAMESPACE_ID key} fingerprint of each ID, and one
+ * with its {@link IdKey#VERSION version} fingerprint. Memory is fixed per
+ * namespace, regardless of the number of IDs counted.
+ * <p>
+ * IDs may be added concurrently from multiple threads. Instances built over
+ * separate parts of an ID stream can be {@link #merge(NamespaceCardinalities)
+ * merged}; see {@link #collector(int)} for parallel stream accumulation.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class NamespaceCardinalities {
+
+    /**
+     * Get a collector which accumulates IDs into a new
+     * {@code NamespaceCardinalities} of the specified precision. The
+     * collector supports parallel streams, merging the per-thread partial
+     * results.
+     *
+     * @param precision precision of each sketch
+     * @param <R> NamespaceId type to be collected
+     * @return new collector
+     * @throws IllegalArgumentException if <tt>precision</tt> is out of range
+     */
+    public static <R extends NamespaceId<?>> Collector<R, ?, NamespaceCardinalities> collector(final int precision) {
+        // Validate eagerly, rather than upon the first supplier call
+        HyperLogLog.checkPrecision(precision);
+        return Collector.of(() -> new NamespaceCardinalities(precision),
+                            NamespaceCardinalities::add,
+                            (a, b) -> {
+                                a.merge(b);
+                                return a;
+                            },
+                            Collector.Characteristics.UNORDERED,
+                            Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    private final int precision;
+    private final ConcurrentMap<String, Sketches> sketches = new ConcurrentHashMap<>();
+
+    /**
+     * Construct an empty {@code NamespaceCardinalities} whose sketches are of
+     * the specified precision.
+     *
+     * @param precision precision of each sketch
+     * @throws IllegalArgumentException if <tt>precision</tt> is out of range
+     */
+    public NamespaceCardinalities(final int precision) {
+        this.precision = HyperLogLog.checkPrecision(precision);
+    }
+
+    /**
+     * Count the specified ID.
+     *
+     * @param id ID to be counted
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public void add(final NamespaceId<?> id) {
+        final long keyFp = IdFingerprint.of(id);
+        final long versionFp = IdFingerprint.ofVersion(id);
+        Sketches s = sketches.computeIfAbsent(id.getNamespace(), ns -> new Sketches(precision));
+        synchronized (s) {
+            s.ids.addFingerprint(keyFp);
+            s.versions.addFingerprint(versionFp);
+        }
+    }
+
+    /**
+     * Merge the counts of the specified instance into this one.
+     *
+     * @param other instance to be merged into this one
+     * @throws IllegalArgumentException if <tt>other</tt> is null or has a
+     *                                  different precision
+     */
+    public void merge(final NamespaceCardinalities other) {
+        requireNonNull(other, "Cardinalities cannot be null");
+        if (precision != other.precision) {
+            throw new IllegalArgumentException("Cannot merge cardinalities of different precision");
+        }
+        other.sketches.forEach((ns, otherSketches) -> {
+            HyperLogLog otherIds;
+            HyperLogLog otherVersions;
+            synchronized (otherSketches) {
+                otherIds = otherSketches.ids.copy();
+                otherVersions = otherSketches.versions.copy();
+            }
+            Sketches s = sketches.computeIfAbsent(ns, n -> new Sketches(precision));
+            synchronized (s) {
+                s.ids.merge(otherIds);
+                s.versions.merge(otherVersions);
+            }
+        });
+    }
+
+    /**
+     * Get the namespaces counted by this instance.
+     *
+     * @return namespaces
+     */
+    public Set<String> getNamespaces() {
+        return Collections.unmodifiableSet(sketches.keySet());
+    }
+
+    /**
+     * Estimate the number of distinct {@code NamespaceId} projections counted
+     * in the specified namespace.
+     *
+     * @param namespace namespace of IDs
+     * @return estimated distinct ID count
+     */
+    public long distinctIds(final String namespace) {
+        Sketches s = sketches.get(namespace);
+        if (null == s) {
+            return 0L;
+        }
+        synchronized (s) {
+            return s.ids.cardinality();
+        }
+    }
+
+    /**
+     * Estimate the number of distinct ID versions (full temporal identities)
+     * counted in the specified namespace.
+     *
+     * @param namespace namespace of IDs
+     * @return estimated distinct version count
+     */
+    public long distinctVersions(final String namespace) {
+        Sketches s = sketches.get(namespace);
+        if (null == s) {
+            return 0L;
+        }
+        synchronized (s) {
+            return s.versions.cardinality();
+        }
+    }
+
+    /**
+     * Estimate the mean number of distinct versions per distinct ID in the
+     * specified namespace.
+     *
+     * @param namespace namespace of IDs
+     * @return estimated mean versions per ID, or 0 if no IDs were counted
+     */
+    public double meanVersionsPerId(final String namespace) {
+        long ids = distinctIds(namespace);
+        return (0L == ids) ? 0.0 : (double)distinctVersions(namespace) / ids;
+    }
+
+    /**
+     * Get a copy of the distinct ID sketch of the specified namespace, for
+     * serialization or further merging.
+     *
+     * @param namespace namespace of IDs
+     * @return sketch copy, or null if the namespace was not counted
+     */
+    public HyperLogLog idSketch(final String namespace) {
+        Sketches s = sketches.get(namespace);
+        if (null == s) {
+            return null;
+        }
+        synchronized (s) {
+            return s.ids.copy();
+        }
+    }
+
+    /**
+     * Get a copy of the distinct version sketch of the specified namespace,
+     * for serialization or further merging.
+     *
+     * @param namespace namespace of IDs
+     * @return sketch copy, or null if the namespace was not counted
+     */
+    public HyperLogLog versionSketch(final String namespace) {
+        Sketches s = sketches.get(namespace);
+        if (null == s) {
+            return null;
+        }
+        synchronized (s) {
+            return s.versions.copy();
+        }
+    }
+
+    /**
+     * Pair of sketches of one namespace, guarded by its own monitor.
+     */
+    private static final class Sketches {
+
+        private final HyperLogLog ids;
+        private final HyperLogLog versions;
+
+        Sketches(final int precision) {
+            this.ids = new HyperLogLog(precision);
+            this.versions = new HyperLogLog(precision);
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.util.Hash64;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.github.davejoyce.util.Arguments.requireNonEmpty;
+
+/**
+ * Partitioner which implements rendezvous (highest random weight) hashing.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class RendezvousPartitioner implements IdPartitioner {
+
+    /**
+     * Per-node seeds, derived from node names so that scores do not depend
+     * upon node order.
+     */
+    private final long[] nodeSeeds;
+
+    RendezvousPartitioner(final List<String> nodeNames) {
+        if (nodeNames.isEmpty()) {
+            throw new IllegalArgumentException("Node names cannot be empty");
+        }
+        Set<String> unique = new HashSet<>();
+        this.nodeSeeds = new long[nodeNames.size()];
+        for (int i = 0; i < nodeSeeds.length; i++) {
+            String name = requireNonEmpty(nodeNames.get(i), "Node name cannot be empty");
+            if (!unique.add(name)) {
+                throw new IllegalArgumentException("Duplicate node name: " + name);
+            }
+            nodeSeeds[i] = Hash64.hash(name.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return nodeSeeds.length;
+    }
+
+    @Override
+    public int partition(final long fingerprint) {
+        int best = 0;
+        long bestScore = Long.MIN_VALUE;
+        for (int i = 0; i < nodeSeeds.length; i++) {
+            long score = Hash64.combine(nodeSeeds[i], fingerprint);
+            // Scores are compared as unsigned; ties go to the lower seed so
+            // that the result does not depend upon node order
+            int comp = Long.compareUnsigned(score, bestScore);
+            if (0 == i || 0 < comp || (0 == comp && nodeSeeds[i] < nodeSeeds[best])) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        return "RendezvousPartitioner[" + nodeSeeds.length + "]";
+    }
+
+}
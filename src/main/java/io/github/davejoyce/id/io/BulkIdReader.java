@@ -0,0 +1,218 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.io;
+
+import io.github.davejoyce.id.IdParser;
+import io.github.davejoyce.id.NamespaceId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Reader of newline-delimited ID strings in bulk. Input is read in chunks of
+ * bytes and each line is parsed in place by an {@link IdParser}, without
+ * first being decoded to a string. Lines are terminated by <tt>'\n'</tt> or
+ * <tt>"\r\n"</tt>; empty lines are skipped. A line which cannot be parsed is
+ * reported to an error handler as an {@link IdParseError}, and reading
+ * continues with the next line.
+ * <p>
+ * Streams are read sequentially, by the calling thread. Files are split at
+ * line boundaries into ranges which are parsed in parallel by fork-join
+ * workers; for files, the consumer and error handler must therefore be
+ * thread-safe, and IDs are not delivered in file order.
+ * </p>
+ * <p>
+ * Instances of this class are immutable and thread-safe.
+ * </p>
+ *
+ * @param <R> NamespaceId type produced
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class BulkIdReader<R extends NamespaceId<?>> {
+
+    /**
+     * Default size in bytes of chunks read from input.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final IdParser<R> parser;
+    private final int chunkSize;
+
+    /**
+     * Construct a reader which reads chunks of the
+     * {@link #DEFAULT_CHUNK_SIZE default} size.
+     *
+     * @param parser parser of each line
+     * @throws IllegalArgumentException if <tt>parser</tt> is null
+     */
+    public BulkIdReader(final IdParser<R> parser) {
+        this(parser, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Construct a reader which reads chunks of the specified size. Files
+     * smaller than two chunks are not split.
+     *
+     * @param parser parser of each line
+     * @param chunkSize size in bytes of chunks read from input
+     * @throws IllegalArgumentException if <tt>parser</tt> is null or
+     *                                  <tt>chunkSize</tt> is not positive
+     */
+    public BulkIdReader(final IdParser<R> parser, final int chunkSize) {
+        this.parser = requireNonNull(parser, "Parser cannot be null");
+        if (0 >= chunkSize) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read all IDs from the specified stream, in order. The stream is not
+     * closed.
+     *
+     * @param in stream of UTF-8 encoded, newline-delimited ID strings
+     * @param action consumer of parsed IDs
+     * @param errors handler of lines which cannot be parsed
+     * @return number of IDs delivered to <tt>action</tt>
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if reading from <tt>in</tt> fails
+     */
+    public long read(final InputStream in,
+                     final Consumer<? super R> action,
+                     final Consumer<? super IdParseError> errors) throws IOException {
+        requireNonNull(in, "Input stream cannot be null");
+        requireNonNull(action, "Action cannot be null");
+        requireNonNull(errors, "Error handler cannot be null");
+        LineBuffer lines = new LineBuffer(chunkSize, 0L) {
+            @Override
+            protected int read(final byte[] b, final int off, final int len, final long position)
+                    throws IOException {
+                return in.read(b, off, len);
+            }
+        };
+        long count = 0L;
+        long lineNumber = 0L;
+        while (lines.nextLine()) {
+            lineNumber++;
+            if (0 == lines.lineLength()) {
+                continue;
+            }
+            R id;
+            try {
+                id = parser.parse(lines.bytes(), lines.lineStart(), lines.lineLength());
+            } catch (IllegalArgumentException iae) {
+                errors.accept(new IdParseError(lines.lineOffset(), lineNumber, lines.lineText(), iae));
+                continue;
+            }
+            action.accept(id);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Read all IDs from the specified file, in parallel on the common
+     * fork-join pool. To use another pool, invoke this method from a task
+     * submitted to that pool.
+     *
+     * @param file file of UTF-8 encoded, newline-delimited ID strings
+     * @param action thread-safe consumer of parsed IDs
+     * @param errors thread-safe handler of lines which cannot be parsed
+     * @return number of IDs delivered to <tt>action</tt>
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if reading from <tt>file</tt> fails
+     */
+    public long read(final Path file,
+                     final Consumer<? super R> action,
+                     final Consumer<? super IdParseError> errors) throws IOException {
+        requireNonNull(action, "Action cannot be null");
+        final LongAdder count = new LongAdder();
+        try (Stream<R> ids = stream(file, errors)) {
+            ids.parallel().forEach(id -> {
+                action.accept(id);
+                count.increment();
+            });
+        } catch (UncheckedIOException uioe) {
+            throw uioe.getCause();
+        }
+        return count.sum();
+    }
+
+    /**
+     * Open a stream of the IDs in the specified file. The returned stream is
+     * sequential, and may be made parallel; it must be closed to release the
+     * file.
+     *
+     * @param file file of UTF-8 encoded, newline-delimited ID strings
+     * @param errors handler of lines which cannot be parsed; must be
+     *               thread-safe if the stream is made parallel
+     * @return stream of IDs, in file order unless made parallel
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if <tt>file</tt> cannot be opened
+     */
+    public Stream<R> stream(final Path file,
+                            final Consumer<? super IdParseError> errors) throws IOException {
+        requireNonNull(file, "File cannot be null");
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return StreamSupport.stream(spliterator(channel, errors), false)
+                                .onClose(() -> {
+                                    try {
+                                        channel.close();
+                                    } catch (IOException ioe) {
+                                        throw new UncheckedIOException(ioe);
+                                    }
+                                });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create a spliterator of the IDs in the specified channel, from its
+     * start to its current size. The spliterator splits at line boundaries
+     * until traversal begins. Reading failures are thrown as
+     * {@code UncheckedIOException}. The channel is not closed.
+     *
+     * @param channel channel of UTF-8 encoded, newline-delimited ID strings
+     * @param errors handler of lines which cannot be parsed; must be
+     *               thread-safe if the spliterator is split
+     * @return spliterator of IDs
+     * @throws IllegalArgumentException if any argument is null
+     * @throws IOException if the size of <tt>channel</tt> cannot be read
+     */
+    public Spliterator<R> spliterator(final FileChannel channel,
+                                      final Consumer<? super IdParseError> errors) throws IOException {
+        requireNonNull(channel, "Channel cannot be null");
+        requireNonNull(errors, "Error handler cannot be null");
+        long size = channel.size();
+        return new LineSpliterator<>(channel, parser, errors, chunkSize, 0L, size, size);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.io;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Record of a line of bulk input which could not be parsed as an ID.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdParseError {
+
+    private final long offset;
+    private final long lineNumber;
+    private final String line;
+    private final IllegalArgumentException cause;
+
+    /**
+     * Construct an error record.
+     *
+     * @param offset byte offset of the start of the line in its input
+     * @param lineNumber 1-based number of the line in its input, or -1 if
+     *                   not known
+     * @param line text of the line, without line terminator
+     * @param cause exception thrown by the parser
+     * @throws IllegalArgumentException if <tt>line</tt> or <tt>cause</tt> is
+     *                                  null
+     */
+    public IdParseError(final long offset,
+                        final long lineNumber,
+                        final String line,
+                        final IllegalArgumentException cause) {
+        this.offset = offset;
+        this.lineNumber = lineNumber;
+        this.line = requireNonNull(line, "Line cannot be null");
+        this.cause = requireNonNull(cause, "Cause cannot be null");
+    }
+
+    /**
+     * Get byte offset of the start of the line in its input.
+     *
+     * @return byte offset of line
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get 1-based number of the line in its input. Line numbers are not
+     * known for lines parsed from a split file; the byte offset always is.
+     *
+     * @return line number, or -1 if not known
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get text of the line which could not be parsed.
+     *
+     * @return line text, without line terminator
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Get exception thrown by the parser.
+     *
+     * @return parse failure
+     */
+    public IllegalArgumentException getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return "IdParseError{" +
+                "offset=" + offset +
+                ", lineNumber=" + lineNumber +
+                ", line='" + line + '\'' +
+                ", message='" + cause.getMessage() + '\'' +
+                '}';
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe collector of {@link IdParseError} records. Only the first
+ * <tt>maxRetained</tt> errors are retained, so that a badly malformed input
+ * cannot exhaust memory; all errors are counted.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdParseErrors implements Consumer<IdParseError> {
+
+    private final int maxRetained;
+    private final List<IdParseError> errors = new ArrayList<>();
+    private long count;
+
+    /**
+     * Construct a collector which retains at most the specified number of
+     * errors.
+     *
+     * @param maxRetained maximum number of errors retained
+     * @throws IllegalArgumentException if <tt>maxRetained</tt> is negative
+     */
+    public IdParseErrors(final int maxRetained) {
+        if (0 > maxRetained) {
+            throw new IllegalArgumentException("Maximum retained errors cannot be negative");
+        }
+        this.maxRetained = maxRetained;
+    }
+
+    @Override
+    public synchronized void accept(final IdParseError error) {
+        count++;
+        if (errors.size() < maxRetained) {
+            errors.add(error);
+        }
+    }
+
+    /**
+     * Get total number of errors reported to this collector.
+     *
+     * @return error count
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Get retained errors, in the order they were reported.
+     *
+     * @return copy of retained errors
+     */
+    public synchronized List<IdParseError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Chunked scanner of newline-delimited lines from a byte source. Lines are
+ * exposed in place, as a range of the internal buffer, and are only valid
+ * until the next call to {@link #nextLine()}. A line is terminated by
+ * <tt>'\n'</tt> (optionally preceded by <tt>'\r'</tt>) or by the end of
+ * input. The buffer grows to hold any line longer than the chunk size.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+abstract class LineBuffer {
+
+    private byte[] buf;
+    private int bufLen;
+    private int next;
+    private long bufOffset;
+    private boolean eof;
+
+    private int lineStart;
+    private int lineEnd;
+    private long lineOffset;
+
+    LineBuffer(final int chunkSize, final long startOffset) {
+        this.buf = new byte[chunkSize];
+        this.bufOffset = startOffset;
+    }
+
+    /**
+     * Read bytes from the underlying source.
+     *
+     * @param b destination array
+     * @param off index of first byte written
+     * @param len maximum number of bytes written
+     * @param position source offset of first byte to be read
+     * @return number of bytes read, or -1 at end of input
+     * @throws IOException if read fails
+     */
+    protected abstract int read(byte[] b, int off, int len, long position) throws IOException;
+
+    /**
+     * Advance to the next line of input.
+     *
+     * @return true if a line is available, false at end of input
+     * @throws IOException if read fails
+     */
+    final boolean nextLine() throws IOException {
+        int scan = next;
+        for (;;) {
+            int nl = indexOfNewline(buf, scan, bufLen);
+            if (-1 != nl || (eof && next < bufLen)) {
+                int stop = (-1 != nl) ? nl : bufLen;
+                lineStart = next;
+                lineOffset = bufOffset + next;
+                next = (-1 != nl) ? (nl + 1) : bufLen;
+                lineEnd = (stop > lineStart && '\r' == buf[stop - 1]) ? (stop - 1) : stop;
+                return true;
+            }
+            if (eof) {
+                return false;
+            }
+            // Retain partial line at head of buffer, then read more
+            if (0 < next) {
+                System.arraycopy(buf, next, buf, 0, bufLen - next);
+                bufOffset += next;
+                bufLen -= next;
+                next = 0;
+            }
+            scan = bufLen;
+            if (bufLen == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length << 1);
+            }
+            int n = read(buf, bufLen, buf.length - bufLen, bufOffset + bufLen);
+            if (0 > n) {
+                eof = true;
+            } else {
+                bufLen += n;
+            }
+        }
+    }
+
+    final byte[] bytes() {
+        return buf;
+    }
+
+    final int lineStart() {
+        return lineStart;
+    }
+
+    final int lineLength() {
+        return lineEnd - lineStart;
+    }
+
+    final long lineOffset() {
+        return lineOffset;
+    }
+
+    final String lineText() {
+        return new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOfNewline(final byte[] b, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if ('\n' == b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
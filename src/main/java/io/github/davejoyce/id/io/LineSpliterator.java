@@ -0,0 +1,184 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.io;
+
+import io.github.davejoyce.id.IdParser;
+import io.github.davejoyce.id.NamespaceId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator of IDs parsed from the lines of a file. Each instance covers
+ * the lines which <em>start</em> within its byte range; ranges are split at
+ * line boundaries, so that each line is parsed by exactly one instance.
+ * Instances read the file with positional reads, which may proceed
+ * concurrently on a shared channel.
+ *
+ * @param <R> NamespaceId type produced
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class LineSpliterator<R extends NamespaceId<?>> implements Spliterator<R> {
+
+    private static final int SCAN_SIZE = 256;
+
+    private final FileChannel channel;
+    private final IdParser<R> parser;
+    private final Consumer<? super IdParseError> errors;
+    private final int chunkSize;
+    private final long limit;
+    private final long end;
+    private long pos;
+    private LineBuffer lines;
+
+    LineSpliterator(final FileChannel channel,
+                    final IdParser<R> parser,
+                    final Consumer<? super IdParseError> errors,
+                    final int chunkSize,
+                    final long pos,
+                    final long end,
+                    final long limit) {
+        this.channel = channel;
+        this.parser = parser;
+        this.errors = errors;
+        this.chunkSize = chunkSize;
+        this.pos = pos;
+        this.end = end;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super R> action) {
+        if (pos >= end) {
+            return false;
+        }
+        if (null == lines) {
+            lines = new ChannelLineBuffer(chunkSize, pos);
+        }
+        try {
+            while (lines.nextLine() && lines.lineOffset() < end) {
+                if (0 == lines.lineLength()) {
+                    continue;
+                }
+                R id;
+                try {
+                    id = parser.parse(lines.bytes(), lines.lineStart(), lines.lineLength());
+                } catch (IllegalArgumentException iae) {
+                    errors.accept(new IdParseError(lines.lineOffset(), -1L, lines.lineText(), iae));
+                    continue;
+                }
+                action.accept(id);
+                return true;
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        pos = end;
+        return false;
+    }
+
+    /**
+     * Split off the first half of the remaining range, at the first line
+     * boundary past its midpoint. Splitting is not supported once traversal
+     * has begun.
+     */
+    @Override
+    public Spliterator<R> trySplit() {
+        long remaining = end - pos;
+        if (null != lines || remaining < (2L * chunkSize)) {
+            return null;
+        }
+        long split;
+        try {
+            split = nextLineStart(pos + (remaining >>> 1));
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        if (split >= end) {
+            return null;
+        }
+        LineSpliterator<R> prefix =
+                new LineSpliterator<>(channel, parser, errors, chunkSize, pos, split, limit);
+        pos = split;
+        return prefix;
+    }
+
+    /**
+     * Returns the number of bytes remaining, which is an upper bound of the
+     * number of IDs remaining.
+     */
+    @Override
+    public long estimateSize() {
+        return end - pos;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private long nextLineStart(final long from) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long p = from - 1;
+        while (p < limit) {
+            scan.clear();
+            int n = channel.read(scan, p);
+            if (0 > n) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if ('\n' == scan.get(i)) {
+                    return p + i + 1;
+                }
+            }
+            p += n;
+        }
+        return limit;
+    }
+
+    private final class ChannelLineBuffer extends LineBuffer {
+
+        ChannelLineBuffer(final int chunkSize, final long startOffset) {
+            super(chunkSize, startOffset);
+        }
+
+        @Override
+        protected int read(final byte[] b, final int off, final int len, final long position)
+                throws IOException {
+            if (position >= limit) {
+                return -1;
+            }
+            int max = (int)Math.min(len, limit - position);
+            ByteBuffer dst = ByteBuffer.wrap(b, off, max);
+            int total = 0;
+            while (dst.hasRemaining()) {
+                int n = channel.read(dst, position + total);
+                if (0 > n) {
+                    break;
+                }
+                total += n;
+            }
+            return (0 == total) ? -1 : total;
+        }
+
+    }
+
+}
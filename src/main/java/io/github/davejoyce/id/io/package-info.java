@@ -0,0 +1,28 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/**
+ * Bulk ingestion of newline-delimited {@code NamespaceId} hierarchy IDs.
+ * Readers in this package scan their input in large byte chunks and parse
+ * each line directly from those bytes; a line which cannot be parsed is
+ * reported to an error handler and skipped, rather than aborting the load.
+ * Files may be split at line boundaries and parsed in parallel by fork-join
+ * workers.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see io.github.davejoyce.id.IdParser
+ */
+package io.github.davejoyce.id.io;
@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+/**
+ * Way by which the string form of an ID attribute value is converted to its
+ * actual type.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see io.github.davejoyce.id.convert.IdConverters#forType(Class)
+ */
+public enum ConversionStrategy {
+
+    /** Public static <code>valueOf(String)</code> factory method. */
+    VALUE_OF,
+
+    /** Public constructor taking a single <code>String</code>. */
+    CONSTRUCTOR,
+
+    /** Cast of the string to the type. */
+    CAST,
+
+    /** Converter registered for the type, without reflection. */
+    REGISTERED
+
+}
@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Dispatcher of instrumentation of the hot paths of this library to the
+ * registered {@link IdMetrics} sinks. Whether instrumentation is enabled is
+ * fixed when this class is initialized, from these system properties:
+ * <dl>
+ *     <dt>{@value #ENABLED_PROPERTY}</dt>
+ *     <dd><tt>true</tt> to enable instrumentation (default <tt>false</tt>)</dd>
+ *     <dt>{@value #SAMPLE_INTERVAL_PROPERTY}</dt>
+ *     <dd>mean number of parses per timed parse (default 1, timing every
+ *         parse); parses are always counted</dd>
+ *     <dt>{@value #JFR_PROPERTY}</dt>
+ *     <dd><tt>true</tt> to register a sink which emits JDK Flight Recorder
+ *         events, if running on Java 11 or later (default <tt>false</tt>)</dd>
+ * </dl>
+ * Instrumented code tests the {@link #ENABLED} constant before invoking any
+ * other method of this class.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdInstrumentation {
+
+    /**
+     * System property which enables instrumentation.
+     */
+    public static final String ENABLED_PROPERTY = "io.github.davejoyce.id.metrics";
+
+    /**
+     * System property of the mean number of parses per timed parse.
+     */
+    public static final String SAMPLE_INTERVAL_PROPERTY = "io.github.davejoyce.id.metrics.sampleInterval";
+
+    /**
+     * System property which enables JDK Flight Recorder events.
+     */
+    public static final String JFR_PROPERTY = "io.github.davejoyce.id.metrics.jfr";
+
+    /**
+     * Whether instrumentation is enabled.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static final int SAMPLE_INTERVAL = Math.max(1, Integer.getInteger(SAMPLE_INTERVAL_PROPERTY, 1));
+
+    private static final String JFR_SINK_CLASS = "io.github.davejoyce.id.metrics.jfr.JfrIdMetrics";
+
+    private static final Logger LOGGER = Logger.getLogger(IdInstrumentation.class.getName());
+
+    private static final IdMetrics[] NO_SINKS = new IdMetrics[0];
+
+    private static volatile IdMetrics[] sinks = NO_SINKS;
+
+    static {
+        if (ENABLED) {
+            loadSinks();
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdInstrumentation() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdInstrumentation instances not allowed");
+    }
+
+    /**
+     * Register a sink of instrumentation. Sinks only receive instrumentation
+     * if it is {@link #ENABLED enabled}.
+     *
+     * @param metrics sink to be registered
+     * @throws IllegalArgumentException if <tt>metrics</tt> is null
+     */
+    public static synchronized void register(final IdMetrics metrics) {
+        requireNonNull(metrics, "Metrics cannot be null");
+        IdMetrics[] current = sinks;
+        IdMetrics[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = metrics;
+        sinks = updated;
+    }
+
+    /**
+     * Unregister a sink of instrumentation.
+     *
+     * @param metrics sink to be unregistered
+     * @return true if the sink was registered
+     */
+    public static synchronized boolean unregister(final IdMetrics metrics) {
+        IdMetrics[] current = sinks;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == metrics) {
+                IdMetrics[] updated = new IdMetrics[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                sinks = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Start instrumentation of a parse.
+     *
+     * @return start time to pass to {@link #endParse}, or -1 if this parse
+     *         is not timed
+     */
+    public static long startParse() {
+        if (1 == SAMPLE_INTERVAL || 0 == ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL)) {
+            return System.nanoTime();
+        }
+        return -1L;
+    }
+
+    /**
+     * End instrumentation of a parse.
+     *
+     * @param idClass class of ID parsed
+     * @param idType class of ID attribute type
+     * @param start value returned by {@link #startParse()}
+     * @param success false if the parse threw an exception
+     */
+    public static void endParse(final Class<?> idClass,
+                                final Class<?> idType,
+                                final long start,
+                                final boolean success) {
+        long nanos = (0L > start) ? -1L : Math.max(0L, System.nanoTime() - start);
+        for (IdMetrics sink : sinks) {
+            sink.parsed(idClass, idType, nanos, success);
+        }
+    }
+
+    /**
+     * Instrument an attempt to convert an ID attribute value.
+     *
+     * @param idType class of ID attribute type
+     * @param strategy strategy attempted
+     * @param success false if the strategy failed
+     */
+    public static void converted(final Class<?> idType,
+                                 final ConversionStrategy strategy,
+                                 final boolean success) {
+        for (IdMetrics sink : sinks) {
+            sink.converted(idType, strategy, success);
+        }
+    }
+
+    /**
+     * Instrument the allocation of a projection of an ID.
+     *
+     * @param fromClass class of projected ID
+     * @param toClass class of projection
+     */
+    public static void projected(final Class<?> fromClass, final Class<?> toClass) {
+        for (IdMetrics sink : sinks) {
+            sink.projected(fromClass, toClass);
+        }
+    }
+
+    private static void loadSinks() {
+        Iterator<IdMetrics> providers = ServiceLoader.load(IdMetrics.class).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                register(providers.next());
+            } catch (ServiceConfigurationError sce) {
+                LOGGER.log(Level.WARNING, "Cannot load ID metrics provider", sce);
+            }
+        }
+        if (Boolean.getBoolean(JFR_PROPERTY)) {
+            try {
+                register((IdMetrics) Class.forName(JFR_SINK_CLASS).getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LOGGER.log(Level.WARNING, "JDK Flight Recorder events require Java 11 or later", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+/**
+ * Service provider interface of sinks of ID instrumentation. Sinks are
+ * {@link IdInstrumentation#register(IdMetrics) registered} explicitly, or
+ * discovered with {@code java.util.ServiceLoader} when instrumentation is
+ * initialized. Methods are invoked on the instrumented thread, so they must
+ * be thread-safe and fast.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface IdMetrics {
+
+    /**
+     * Record a call of a {@code fromString} factory method.
+     *
+     * @param idClass class of ID parsed: {@code NamespaceId},
+     *                {@code TemporalNamespaceId} or
+     *                {@code BiTemporalNamespaceId}
+     * @param idType class of ID attribute type
+     * @param nanos duration of the call, or -1 if the call was not timed
+     * @param success false if the call threw an exception
+     */
+    default void parsed(Class<?> idClass, Class<?> idType, long nanos, boolean success) {
+        // No-op
+    }
+
+    /**
+     * Record an attempt to convert an ID attribute value by the specified
+     * strategy. A failed attempt falls through to the next strategy, except
+     * for {@link ConversionStrategy#CAST CAST}, which is the last.
+     *
+     * @param idType class of ID attribute type
+     * @param strategy strategy attempted
+     * @param success false if the strategy failed
+     */
+    default void converted(Class<?> idType, ConversionStrategy strategy, boolean success) {
+        // No-op
+    }
+
+    /**
+     * Record the allocation of a projection of an ID to a less specific ID
+     * class, such as by {@code toNamespaceId()}.
+     *
+     * @param fromClass class of projected ID
+     * @param toClass class of projection
+     */
+    default void projected(Class<?> fromClass, Class<?> toClass) {
+        // No-op
+    }
+
+}
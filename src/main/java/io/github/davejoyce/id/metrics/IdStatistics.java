@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link IdMetrics} sink, which keeps counters and latency
+ * histograms that may be read at any time. Parse statistics are kept per ID
+ * class and ID attribute type; conversion statistics per ID attribute type
+ * and strategy; projection counts per pair of ID classes.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdStatistics implements IdMetrics {
+
+    private final Map<Class<?>, Map<Class<?>, ParseStats>> parses = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<ConversionStrategy, LongAdder[]>> conversions = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<Class<?>, LongAdder>> projections = new ConcurrentHashMap<>();
+
+    @Override
+    public void parsed(final Class<?> idClass, final Class<?> idType, final long nanos, final boolean success) {
+        ParseStats stats = parses.computeIfAbsent(idClass, k -> new ConcurrentHashMap<>())
+                                 .computeIfAbsent(idType, k -> new ParseStats());
+        (success ? stats.successes : stats.failures).increment();
+        if (0L <= nanos) {
+            stats.latency.record(nanos);
+        }
+    }
+
+    @Override
+    public void converted(final Class<?> idType, final ConversionStrategy strategy, final boolean success) {
+        LongAdder[] counters = conversions.computeIfAbsent(idType, k -> new ConcurrentHashMap<>())
+                                          .computeIfAbsent(strategy, k -> new LongAdder[]{ new LongAdder(),
+                                                                                           new LongAdder() });
+        counters[success ? 0 : 1].increment();
+    }
+
+    @Override
+    public void projected(final Class<?> fromClass, final Class<?> toClass) {
+        projections.computeIfAbsent(fromClass, k -> new ConcurrentHashMap<>())
+                   .computeIfAbsent(toClass, k -> new LongAdder())
+                   .increment();
+    }
+
+    /**
+     * Get number of successful parses.
+     *
+     * @param idClass class of ID parsed
+     * @param idType class of ID attribute type
+     * @return parse count
+     */
+    public long getParseCount(final Class<?> idClass, final Class<?> idType) {
+        ParseStats stats = parseStats(idClass, idType);
+        return (null == stats) ? 0L : stats.successes.sum();
+    }
+
+    /**
+     * Get number of failed parses.
+     *
+     * @param idClass class of ID parsed
+     * @param idType class of ID attribute type
+     * @return parse failure count
+     */
+    public long getParseFailureCount(final Class<?> idClass, final Class<?> idType) {
+        ParseStats stats = parseStats(idClass, idType);
+        return (null == stats) ? 0L : stats.failures.sum();
+    }
+
+    /**
+     * Get histogram of timed parse latencies, in nanoseconds.
+     *
+     * @param idClass class of ID parsed
+     * @param idType class of ID attribute type
+     * @return latency histogram, or null if nothing was parsed
+     */
+    public LatencyHistogram getParseLatency(final Class<?> idClass, final Class<?> idType) {
+        ParseStats stats = parseStats(idClass, idType);
+        return (null == stats) ? null : stats.latency;
+    }
+
+    /**
+     * Get number of successful conversions by a strategy.
+     *
+     * @param idType class of ID attribute type
+     * @param strategy conversion strategy
+     * @return conversion count
+     */
+    public long getConversionCount(final Class<?> idType, final ConversionStrategy strategy) {
+        LongAdder[] counters = conversionCounters(idType, strategy);
+        return (null == counters) ? 0L : counters[0].sum();
+    }
+
+    /**
+     * Get number of failed conversion attempts by a strategy.
+     *
+     * @param idType class of ID attribute type
+     * @param strategy conversion strategy
+     * @return conversion failure count
+     */
+    public long getConversionFailureCount(final Class<?> idType, final ConversionStrategy strategy) {
+        LongAdder[] counters = conversionCounters(idType, strategy);
+        return (null == counters) ? 0L : counters[1].sum();
+    }
+
+    /**
+     * Get number of projections allocated.
+     *
+     * @param fromClass class of projected ID
+     * @param toClass class of projection
+     * @return projection count
+     */
+    public long getProjectionCount(final Class<?> fromClass, final Class<?> toClass) {
+        Map<Class<?>, LongAdder> byTo = projections.get(fromClass);
+        LongAdder counter = (null == byTo) ? null : byTo.get(toClass);
+        return (null == counter) ? 0L : counter.sum();
+    }
+
+    private ParseStats parseStats(final Class<?> idClass, final Class<?> idType) {
+        Map<Class<?>, ParseStats> byType = parses.get(idClass);
+        return (null == byType) ? null : byType.get(idType);
+    }
+
+    private LongAdder[] conversionCounters(final Class<?> idType, final ConversionStrategy strategy) {
+        Map<ConversionStrategy, LongAdder[]> byStrategy = conversions.get(idType);
+        return (null == byStrategy) ? null : byStrategy.get(strategy);
+    }
+
+    private static final class ParseStats {
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+}
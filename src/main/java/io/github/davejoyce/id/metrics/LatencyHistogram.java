@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of non-negative values, such as latencies in
+ * nanoseconds, with bounded relative error. Each power of two range of
+ * values is divided into {@value #SUB_BUCKETS} linear buckets, so recorded
+ * values are resolved to within 1/{@value #SUB_BUCKETS} of their magnitude;
+ * values below {@value #SUB_BUCKETS} are exact. Memory use is fixed, and
+ * recording is lock-free.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Number of buckets per power of two range of values.
+     */
+    public static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BITS = 4;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Record a value.
+     *
+     * @param value value to be recorded
+     * @throws IllegalArgumentException if <tt>value</tt> is negative
+     */
+    public void record(final long value) {
+        if (0L > value) {
+            throw new IllegalArgumentException("Value cannot be negative: " + value);
+        }
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Get number of values recorded.
+     *
+     * @return value count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get arithmetic mean of the values recorded.
+     *
+     * @return mean value, or 0 if none are recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return (0L == n) ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Get the value at or below which the specified percentage of recorded
+     * values fall, to within the resolution of this histogram. The highest
+     * value of the containing bucket is returned, so the result is never
+     * below the true percentile.
+     *
+     * @param percentile percentile, from 0 to 100
+     * @return value at <tt>percentile</tt>, or 0 if none are recorded
+     * @throws IllegalArgumentException if <tt>percentile</tt> is out of range
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (!(0.0 <= percentile && percentile <= 100.0)) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        long total = 0L;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (0L == total) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    /**
+     * Get the highest value of the bucket containing the largest recorded
+     * value.
+     *
+     * @return approximate maximum value, or 0 if none are recorded
+     */
+    public long getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (0L != counts.get(i)) {
+                return highestValueOf(i);
+            }
+        }
+        return 0L;
+    }
+
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lowest = (1L << exponent) | (sub << (exponent - SUB_BITS));
+        long width = 1L << (exponent - SUB_BITS);
+        long highest = lowest + width - 1L;
+        return (0L > highest) ? Long.MAX_VALUE : highest;
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/**
+ * Optional instrumentation of the hot paths of the {@code NamespaceId}
+ * hierarchy: parsing, ID value conversion and projection. Instrumentation is
+ * disabled unless the {@value io.github.davejoyce.id.metrics.IdInstrumentation#ENABLED_PROPERTY}
+ * system property is <tt>true</tt> when the library is loaded; when
+ * disabled, each instrumented path costs one constant branch, which the JIT
+ * compiler removes.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+package io.github.davejoyce.id.metrics;
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+
+/**
+ * {@link IdView} of bi-temporal IDs only, mirroring the accessors of
+ * {@link BiTemporalNamespaceId}. The 'as of' and 'as at' timestamps are
+ * always present.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface BiTemporalIdView<T extends Comparable<T>> extends TemporalIdView<T> {
+
+    @Override
+    default boolean isBiTemporal() {
+        return true;
+    }
+
+    /**
+     * Get an immutable ID object equal to the viewed ID.
+     *
+     * @return viewed ID
+     */
+    @Override
+    BiTemporalNamespaceId<T> toImmutable();
+
+}
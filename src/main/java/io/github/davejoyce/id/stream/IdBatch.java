@@ -0,0 +1,327 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Immutable, columnar batch of sorted, distinct IDs. Each attribute of the
+ * IDs is held in its own array, and timestamps are held as primitives; the
+ * timestamp columns are only allocated if the IDs in the batch have them.
+ * <p>
+ * A batch may be traversed as ID objects, which are allocated per element,
+ * or through a flyweight {@link IdView} which is re-pointed at each row.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdBatch<T extends Comparable<T>> {
+
+    private static final byte NAMESPACE = 0;
+    private static final byte TEMPORAL = 1;
+    private static final byte BITEMPORAL = 2;
+
+    /**
+     * Create a batch of the specified IDs, which must be in strictly
+     * increasing 'natural' order.
+     *
+     * @param ids sorted, distinct IDs
+     * @param <T> comparable type of ID attribute
+     * @return new batch
+     * @throws IllegalArgumentException if <tt>ids</tt> is null, contains null
+     *                                  or is not strictly increasing
+     */
+    public static <T extends Comparable<T>> IdBatch<T> of(final List<? extends NamespaceId<T>> ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        return new IdBatch<>(ids);
+    }
+
+    private final int size;
+    private final byte[] types;
+    private final String[] namespaces;
+    private final Object[] values;
+    private final long[] asOfSeconds;
+    private final int[] asOfNanos;
+    private final long[] asAtSeconds;
+    private final int[] asAtNanos;
+
+    private IdBatch(final List<? extends NamespaceId<T>> ids) {
+        size = ids.size();
+        types = new byte[size];
+        namespaces = new String[size];
+        values = new Object[size];
+        boolean temporal = false;
+        boolean biTemporal = false;
+        NamespaceId<T> previous = null;
+        int i = 0;
+        for (NamespaceId<T> id : ids) {
+            requireNonNull(id, "IDs cannot contain null");
+            if (null != previous && 0 <= previous.compareTo(id)) {
+                throw new IllegalArgumentException("IDs not strictly increasing at index " + i);
+            }
+            // Share namespace strings between consecutive rows
+            namespaces[i] = (null != previous && previous.getNamespace().equals(id.getNamespace()))
+                            ? namespaces[i - 1]
+                            : id.getNamespace();
+            values[i] = id.getId();
+            if (id instanceof BiTemporalNamespaceId) {
+                types[i] = BITEMPORAL;
+                biTemporal = true;
+            } else if (id instanceof TemporalNamespaceId) {
+                types[i] = TEMPORAL;
+                temporal = true;
+            }
+            previous = id;
+            i++;
+        }
+        temporal |= biTemporal;
+        asOfSeconds = temporal ? new long[size] : null;
+        asOfNanos = temporal ? new int[size] : null;
+        asAtSeconds = biTemporal ? new long[size] : null;
+        asAtNanos = biTemporal ? new int[size] : null;
+        i = 0;
+        for (NamespaceId<T> id : ids) {
+            if (NAMESPACE != types[i]) {
+                TemporalNamespaceId<T> tnsId = (TemporalNamespaceId<T>) id;
+                asOfSeconds[i] = tnsId.getAsOfEpochSecond();
+                asOfNanos[i] = tnsId.getAsOfNano();
+            }
+            if (BITEMPORAL == types[i]) {
+                BiTemporalNamespaceId<T> btnsId = (BiTemporalNamespaceId<T>) id;
+                asAtSeconds[i] = btnsId.getAsAtEpochSecond();
+                asAtNanos[i] = btnsId.getAsAtNano();
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Get number of IDs in this batch.
+     *
+     * @return batch size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the ID at the specified row of this batch. A new ID object is
+     * allocated by each call.
+     *
+     * @param row index of ID
+     * @return ID at <tt>row</tt>
+     * @throws IndexOutOfBoundsException if <tt>row</tt> is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public NamespaceId<T> get(final int row) {
+        if (0 > row || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of batch of size " + size);
+        }
+        T id = (T) values[row];
+        switch (types[row]) {
+            case NAMESPACE:
+                return new NamespaceId<>(namespaces[row], id);
+            case TEMPORAL:
+                return new TemporalNamespaceId<>(namespaces[row], id,
+                                                 asOfSeconds[row], asOfNanos[row]);
+            default:
+                return new BiTemporalNamespaceId<>(namespaces[row], id,
+                                                   asOfSeconds[row], asOfNanos[row],
+                                                   asAtSeconds[row], asAtNanos[row]);
+        }
+    }
+
+    /**
+     * Create a spliterator over the IDs of this batch, in 'natural' order.
+     *
+     * @return sized, sorted, distinct spliterator
+     */
+    public Spliterator<NamespaceId<T>> spliterator() {
+        return new RowSpliterator(0, size);
+    }
+
+    /**
+     * Create a flyweight spliterator over the rows of this batch. Each split
+     * of the spliterator passes a single view, re-pointed at each row, to its
+     * consumer.
+     *
+     * @return sized spliterator of views
+     */
+    public Spliterator<IdView<T>> viewSpliterator() {
+        return new ViewSpliterator(0, size);
+    }
+
+    /**
+     * Create a stream of the IDs of this batch.
+     *
+     * @param parallel whether stream is parallel
+     * @return stream of IDs
+     */
+    public Stream<NamespaceId<T>> stream(final boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    /**
+     * Create a flyweight stream of views of the rows of this batch. Views
+     * must not be retained past the operation that receives them; map them
+     * with {@link IdView#toId()} to collect IDs.
+     *
+     * @param parallel whether stream is parallel
+     * @return stream of views
+     */
+    public Stream<IdView<T>> viewStream(final boolean parallel) {
+        return StreamSupport.stream(viewSpliterator(), parallel);
+    }
+
+    private final class RowSpliterator extends IndexedSpliterator<NamespaceId<T>> {
+
+        RowSpliterator(final int origin, final int fence) {
+            super(origin, fence);
+        }
+
+        @Override
+        NamespaceId<T> element(final int i) {
+            return get(i);
+        }
+
+        @Override
+        IndexedSpliterator<NamespaceId<T>> split(final int origin, final int fence) {
+            return new RowSpliterator(origin, fence);
+        }
+
+        @Override
+        public int characteristics() {
+            return IdSpliterators.SORTED_ID_CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super NamespaceId<T>> getComparator() {
+            // Natural order
+            return null;
+        }
+
+    }
+
+    private final class ViewSpliterator extends IndexedSpliterator<IdView<T>> {
+
+        private RowView view;
+
+        ViewSpliterator(final int origin, final int fence) {
+            super(origin, fence);
+        }
+
+        @Override
+        IdView<T> element(final int i) {
+            if (null == view) {
+                view = new RowView();
+            }
+            view.row = i;
+            return view;
+        }
+
+        @Override
+        IndexedSpliterator<IdView<T>> split(final int origin, final int fence) {
+            return new ViewSpliterator(origin, fence);
+        }
+
+        @Override
+        public int characteristics() {
+            return IdSpliterators.VIEW_CHARACTERISTICS;
+        }
+
+    }
+
+    private final class RowView implements IdView<T> {
+
+        private int row;
+
+        @Override
+        public String getNamespace() {
+            return namespaces[row];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getId() {
+            return (T) values[row];
+        }
+
+        @Override
+        public boolean isTemporal() {
+            return NAMESPACE != types[row];
+        }
+
+        @Override
+        public boolean isBiTemporal() {
+            return BITEMPORAL == types[row];
+        }
+
+        @Override
+        public long getAsOfEpochSecond() {
+            checkTemporal();
+            return asOfSeconds[row];
+        }
+
+        @Override
+        public int getAsOfNano() {
+            checkTemporal();
+            return asOfNanos[row];
+        }
+
+        @Override
+        public long getAsAtEpochSecond() {
+            checkBiTemporal();
+            return asAtSeconds[row];
+        }
+
+        @Override
+        public int getAsAtNano() {
+            checkBiTemporal();
+            return asAtNanos[row];
+        }
+
+        @Override
+        public NamespaceId<T> toId() {
+            return get(row);
+        }
+
+        private void checkTemporal() {
+            if (!isTemporal()) {
+                throw new IllegalStateException("Row " + row + " is not temporal");
+            }
+        }
+
+        private void checkBiTemporal() {
+            if (!isBiTemporal()) {
+                throw new IllegalStateException("Row " + row + " is not bi-temporal");
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.NamespaceId;
+
+/**
+ * Receiver of the events produced by a {@link SortedIdDiff} of two sorted ID
+ * sources. All methods have empty default implementations, so that an
+ * implementation need only override the events of interest.
+ *
+ * @param <R> NamespaceId type being compared
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface IdDiffListener<R extends NamespaceId<?>> {
+
+    /**
+     * Receive an ID that is present in the left source only.
+     *
+     * @param left ID present in left source only
+     */
+    default void onlyLeft(R left) {
+    }
+
+    /**
+     * Receive an ID that is present in the right source only.
+     *
+     * @param right ID present in right source only
+     */
+    default void onlyRight(R right) {
+    }
+
+    /**
+     * Receive an ID that is present in both sources.
+     *
+     * @param left ID as present in left source
+     * @param right equal ID as present in right source
+     */
+    default void both(R left, R right) {
+    }
+
+    /**
+     * Receive the latest versions of a {@code NamespaceId} that is present in
+     * both sources, but whose latest versions differ.
+     *
+     * @param left latest version of NamespaceId in left source
+     * @param right latest version of NamespaceId in right source
+     */
+    default void versionChanged(R left, R right) {
+    }
+
+}
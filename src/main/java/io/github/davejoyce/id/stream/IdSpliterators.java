@@ -0,0 +1,155 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Factory of parallel-capable {@code Spliterator} instances over sorted
+ * stores of {@code NamespaceId} hierarchy IDs. Spliterators created by this
+ * class report the <tt>SIZED</tt>, <tt>SUBSIZED</tt>, <tt>SORTED</tt>,
+ * <tt>DISTINCT</tt>, <tt>ORDERED</tt>, <tt>NONNULL</tt> and
+ * <tt>IMMUTABLE</tt> characteristics, and split in exact halves, so that
+ * parallel streams over them are balanced.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see java.util.stream.StreamSupport#stream(Spliterator, boolean)
+ */
+public final class IdSpliterators {
+
+    /**
+     * Characteristics of spliterators over sorted, distinct IDs.
+     */
+    static final int SORTED_ID_CHARACTERISTICS =
+            Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED | Spliterator.DISTINCT
+            | Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+    /**
+     * Characteristics of flyweight view spliterators. Views are neither
+     * distinct nor comparable objects, so only the order and size of the
+     * underlying store are reported.
+     */
+    static final int VIEW_CHARACTERISTICS =
+            Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.NONNULL;
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdSpliterators() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdSpliterators instances not allowed");
+    }
+
+    /**
+     * Create a spliterator over the specified array of IDs, which must be in
+     * strictly increasing 'natural' order. The spliterator's comparator is
+     * null, denoting the 'natural' order of {@code NamespaceId#compareTo}.
+     *
+     * @param ids sorted, distinct IDs
+     * @param <R> NamespaceId type of elements
+     * @return spliterator over <tt>ids</tt>
+     * @throws IllegalArgumentException if <tt>ids</tt> is null, contains null
+     *                                  or is not strictly increasing
+     */
+    public static <R extends NamespaceId<?>> Spliterator<R> ofSorted(final R[] ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        return ofSorted(ids, 0, ids.length, null);
+    }
+
+    /**
+     * Create a spliterator over the specified range of an array of IDs,
+     * which must be in strictly increasing order of the given comparator. The
+     * array is checked, but not copied; it must not be modified while the
+     * spliterator is in use.
+     *
+     * @param ids array of sorted, distinct IDs
+     * @param from index of first ID of range
+     * @param to index past last ID of range
+     * @param comparator order of IDs, or null for 'natural' order; must be
+     *                   consistent with {@code equals}
+     * @param <R> NamespaceId type of elements
+     * @return spliterator over <tt>ids[from, to)</tt>
+     * @throws IllegalArgumentException if <tt>ids</tt> is null, the range is
+     *                                  out of bounds, or the range contains
+     *                                  null or is not strictly increasing
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <R extends NamespaceId<?>> Spliterator<R> ofSorted(final R[] ids,
+                                                                   final int from,
+                                                                   final int to,
+                                                                   final Comparator<? super R> comparator) {
+        requireNonNull(ids, "IDs cannot be null");
+        if (0 > from || from > to || to > ids.length) {
+            throw new IllegalArgumentException("Bad range [" + from + ", " + to + ") of "
+                                               + ids.length + " IDs");
+        }
+        for (int i = from; i < to; i++) {
+            requireNonNull(ids[i], "IDs cannot contain null");
+            if (i > from) {
+                int comp = (null == comparator)
+                           ? ((Comparable)ids[i - 1]).compareTo(ids[i])
+                           : comparator.compare(ids[i - 1], ids[i]);
+                if (0 <= comp) {
+                    throw new IllegalArgumentException("IDs not strictly increasing at index " + i);
+                }
+            }
+        }
+        return new ArraySpliterator<>(ids, from, to, comparator);
+    }
+
+    private static final class ArraySpliterator<R> extends IndexedSpliterator<R> {
+
+        private final R[] ids;
+        private final Comparator<? super R> comparator;
+
+        ArraySpliterator(final R[] ids,
+                         final int origin,
+                         final int fence,
+                         final Comparator<? super R> comparator) {
+            super(origin, fence);
+            this.ids = ids;
+            this.comparator = comparator;
+        }
+
+        @Override
+        R element(final int i) {
+            return ids[i];
+        }
+
+        @Override
+        IndexedSpliterator<R> split(final int origin, final int fence) {
+            return new ArraySpliterator<>(ids, origin, fence, comparator);
+        }
+
+        @Override
+        public int characteristics() {
+            return SORTED_ID_CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super R> getComparator() {
+            return comparator;
+        }
+
+    }
+
+}
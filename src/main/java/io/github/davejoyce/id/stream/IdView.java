@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Mutable, read-only view of one ID in a store of IDs. Flyweight cursors
+ * re-point a single view at each ID in turn, instead of allocating an ID
+ * object per element; a view must therefore not be retained past the call
+ * in which it was received. Use {@link #toImmutable()} to obtain an
+ * immutable copy of the ID currently viewed.
+ * <p>
+ * {@link TemporalIdView} and {@link BiTemporalIdView} narrow this interface
+ * to views of temporal and bi-temporal IDs only; {@link MutableIdView},
+ * {@link MutableTemporalIdView} and {@link MutableBiTemporalIdView} are
+ * cursors which scanning code re-points by setting their components.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface IdView<T extends Comparable<T>> {
+
+    /**
+     * Get namespace of the viewed ID.
+     *
+     * @return namespace
+     */
+    String getNamespace();
+
+    /**
+     * Get ID attribute of the viewed ID.
+     *
+     * @return ID value
+     */
+    T getId();
+
+    /**
+     * Determine whether the viewed ID has an 'as of' timestamp.
+     *
+     * @return true if viewed ID is temporal or bi-temporal
+     */
+    boolean isTemporal();
+
+    /**
+     * Determine whether the viewed ID has an 'as at' timestamp.
+     *
+     * @return true if viewed ID is bi-temporal
+     */
+    boolean isBiTemporal();
+
+    /**
+     * Get seconds from the epoch of the 'as of' timestamp of the viewed ID.
+     *
+     * @return 'as of' epoch seconds
+     * @throws IllegalStateException if viewed ID is not temporal
+     */
+    long getAsOfEpochSecond();
+
+    /**
+     * Get nanosecond adjustment of the 'as of' timestamp of the viewed ID.
+     *
+     * @return 'as of' nanoseconds, from 0 to 999,999,999
+     * @throws IllegalStateException if viewed ID is not temporal
+     */
+    int getAsOfNano();
+
+    /**
+     * Get seconds from the epoch of the 'as at' timestamp of the viewed ID.
+     *
+     * @return 'as at' epoch seconds
+     * @throws IllegalStateException if viewed ID is not bi-temporal
+     */
+    long getAsAtEpochSecond();
+
+    /**
+     * Get nanosecond adjustment of the 'as at' timestamp of the viewed ID.
+     *
+     * @return 'as at' nanoseconds, from 0 to 999,999,999
+     * @throws IllegalStateException if viewed ID is not bi-temporal
+     */
+    int getAsAtNano();
+
+    /**
+     * Get an immutable ID object equal to the viewed ID.
+     *
+     * @return viewed ID, as {@code NamespaceId}, {@code TemporalNamespaceId}
+     *         or {@code BiTemporalNamespaceId}
+     */
+    NamespaceId<T> toId();
+
+    /**
+     * Get an immutable ID object equal to the viewed ID, for a value which
+     * must outlive the current position of the view. Equivalent to
+     * {@link #toId()}; sub-interfaces narrow the type of the result.
+     *
+     * @return viewed ID
+     */
+    default NamespaceId<T> toImmutable() {
+        return toId();
+    }
+
+    /**
+     * Compare the viewed ID with the specified immutable ID, in the
+     * 'natural' order of {@link NamespaceId#compareTo(NamespaceId)}, without
+     * allocating. Timestamps are compared only where both IDs have them, as
+     * by the {@code compareTo} of the less specific of the two ID classes.
+     *
+     * @param other ID to be compared
+     * @return negative integer, zero, or positive integer as the viewed ID is
+     *         less than, equal to, or greater than <tt>other</tt>
+     * @throws IllegalArgumentException if <tt>other</tt> is null
+     */
+    default int compareTo(final NamespaceId<T> other) {
+        requireNonNull(other, "ID cannot be null");
+        int comp = getNamespace().compareTo(other.getNamespace());
+        if (0 != comp) {
+            return comp;
+        }
+        comp = getId().compareTo(other.getId());
+        if (0 != comp || !isTemporal() || !(other instanceof TemporalNamespaceId)) {
+            return comp;
+        }
+        final TemporalNamespaceId<T> temporal = (TemporalNamespaceId<T>) other;
+        comp = Long.compare(getAsOfEpochSecond(), temporal.getAsOfEpochSecond());
+        if (0 != comp) {
+            return comp;
+        }
+        comp = Integer.compare(getAsOfNano(), temporal.getAsOfNano());
+        if (0 != comp || !isBiTemporal() || !(other instanceof BiTemporalNamespaceId)) {
+            return comp;
+        }
+        final BiTemporalNamespaceId<T> biTemporal = (BiTemporalNamespaceId<T>) other;
+        comp = Long.compare(getAsAtEpochSecond(), biTemporal.getAsAtEpochSecond());
+        if (0 != comp) {
+            return comp;
+        }
+        return Integer.compare(getAsAtNano(), biTemporal.getAsAtNano());
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Base spliterator over a range of indexes of a random access store. The
+ * range is split exactly in half, so that every split is balanced and
+ * reports an exact size.
+ *
+ * @param <E> element type
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+abstract class IndexedSpliterator<E> implements Spliterator<E> {
+
+    private int index;
+    private final int fence;
+
+    IndexedSpliterator(final int origin, final int fence) {
+        this.index = origin;
+        this.fence = fence;
+    }
+
+    /**
+     * Get element at the specified index of the store.
+     *
+     * @param i index of element
+     * @return element
+     */
+    abstract E element(int i);
+
+    /**
+     * Create a spliterator of the same kind over the specified range.
+     *
+     * @param origin first index of range
+     * @param fence index past end of range
+     * @return new spliterator
+     */
+    abstract IndexedSpliterator<E> split(int origin, int fence);
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super E> action) {
+        requireNonNull(action, "Action cannot be null");
+        if (index < fence) {
+            action.accept(element(index++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super E> action) {
+        requireNonNull(action, "Action cannot be null");
+        int i = index;
+        index = fence;
+        for (; i < fence; i++) {
+            action.accept(element(i));
+        }
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        int lo = index;
+        int mid = (lo + fence) >>> 1;
+        if (lo >= mid) {
+            return null;
+        }
+        index = mid;
+        return split(lo, mid);
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return fence - index;
+    }
+
+}
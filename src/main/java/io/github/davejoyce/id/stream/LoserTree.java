@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tournament tree of losers over <i>k</i> sorted sources. The winner (least
+ * current element) of all sources is available in constant time, and is
+ * replaced in <i>log<sub>2</sub>(k)</i> comparisons after its source
+ * advances. Ties between sources are broken by source index, so the merge
+ * order is stable.
+ *
+ * @param <E> type of source element
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class LoserTree<E> {
+
+    private final SortedSource<E>[] sources;
+    private final Comparator<? super E> comparator;
+    /**
+     * Internal nodes holding the source index of the loser at each node;
+     * element 0 holds the overall winner.
+     */
+    private final int[] tree;
+    private final int k;
+
+    LoserTree(final List<SortedSource<E>> sourceList,
+              final Comparator<? super E> comparator) {
+        this.k = sourceList.size();
+        this.sources = sourceList.toArray(newSourceArray(k));
+        this.comparator = comparator;
+        this.tree = new int[Math.max(1, k)];
+        // Virtual source index k beats every other source; seeding all nodes
+        // with it lets the first replay of each leaf build the tree
+        for (int i = 0; i < tree.length; i++) {
+            tree[i] = k;
+        }
+        for (int i = k - 1; i >= 0; i--) {
+            replay(i);
+        }
+    }
+
+    /**
+     * Get the index of the source holding the least current element.
+     *
+     * @return winning source index, or -1 if all sources are exhausted
+     */
+    int winner() {
+        if (0 == k) {
+            return -1;
+        }
+        int w = tree[0];
+        return (null == sources[w].current()) ? -1 : w;
+    }
+
+    /**
+     * Get the source at the specified index.
+     *
+     * @param index source index
+     * @return source
+     */
+    SortedSource<E> source(final int index) {
+        return sources[index];
+    }
+
+    /**
+     * Advance the winning source and restore the tree.
+     */
+    void advanceWinner() {
+        int w = tree[0];
+        sources[w].advance();
+        replay(w);
+    }
+
+    private void replay(final int leaf) {
+        int winner = leaf;
+        for (int node = (leaf + k) >>> 1; node > 0; node >>>= 1) {
+            int opponent = tree[node];
+            if (beats(opponent, winner)) {
+                tree[node] = winner;
+                winner = opponent;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    private boolean beats(final int a, final int b) {
+        if (a == k) {
+            return true;
+        }
+        if (b == k) {
+            return false;
+        }
+        E ea = sources[a].current();
+        E eb = sources[b].current();
+        if (null == ea) {
+            return false;
+        }
+        if (null == eb) {
+            return true;
+        }
+        int comp = comparator.compare(ea, eb);
+        return (0 > comp) || (0 == comp && a < b);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> SortedSource<E>[] newSourceArray(final int length) {
+        return new SortedSource[length];
+    }
+
+}
@@ -0,0 +1,489 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.IdCodec;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.convert.IdConverter;
+import io.github.davejoyce.id.convert.IdConverters;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Memory-mapped, read-only file of sorted, distinct IDs. The file consists
+ * of:
+ * <ol>
+ *     <li>the 4 byte magic number {@code "IDSF"} and 1 version byte</li>
+ *     <li>the number <i>n</i> of IDs (4 bytes)</li>
+ *     <li><i>n</i> + 1 file offsets (4 bytes each) of the records, the last
+ *         being the file length</li>
+ *     <li><i>n</i> records, each an ID encoded by {@link IdCodec}</li>
+ * </ol>
+ * Multi-byte numbers are big-endian, and files are limited to 2 GiB. The
+ * offset table gives random access to every record, so spliterators over a
+ * file split by count and report exact sizes.
+ * <p>
+ * Instances of this class are thread-safe. The mapping of the file remains
+ * valid until the instance is garbage collected.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class MappedIdFile<T extends Comparable<T>> {
+
+    /**
+     * Magic number of an ID file.
+     */
+    static final int MAGIC = 0x49445346;
+
+    /**
+     * Version of the file layout.
+     */
+    static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = 9;
+
+    /**
+     * Write the specified IDs, which must be in strictly increasing 'natural'
+     * order, to a new file or over an existing file.
+     *
+     * @param file path of file to be written
+     * @param ids sorted, distinct IDs
+     * @param <T> comparable type of ID attribute
+     * @throws IllegalArgumentException if any argument is null, <tt>ids</tt>
+     *                                  contains null or is not strictly
+     *                                  increasing, or the file would exceed
+     *                                  2 GiB
+     * @throws IOException if writing fails
+     */
+    public static <T extends Comparable<T>> void write(final Path file,
+                                                       final Collection<? extends NamespaceId<T>> ids)
+            throws IOException {
+        requireNonNull(file, "File cannot be null");
+        requireNonNull(ids, "IDs cannot be null");
+        final int count = ids.size();
+        final long dataStart = HEADER_SIZE + 4L * (count + 1);
+        if (Integer.MAX_VALUE < dataStart) {
+            throw new IllegalArgumentException("Too many IDs for one file: " + count);
+        }
+        final ByteBuffer offsets = ByteBuffer.allocate(4 * (count + 1));
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(dataStart);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            long offset = dataStart;
+            NamespaceId<T> previous = null;
+            int i = 0;
+            for (NamespaceId<T> id : ids) {
+                requireNonNull(id, "IDs cannot contain null");
+                if (null != previous && 0 <= previous.compareTo(id)) {
+                    throw new IllegalArgumentException("IDs not strictly increasing at index " + i);
+                }
+                byte[] record = IdCodec.encode(id);
+                offsets.putInt((int)offset);
+                out.write(record);
+                offset += record.length;
+                if (Integer.MAX_VALUE < offset) {
+                    throw new IllegalArgumentException("ID file would exceed 2 GiB");
+                }
+                previous = id;
+                i++;
+            }
+            offsets.putInt((int)offset);
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).put(VERSION).putInt(count).flip();
+            offsets.flip();
+            long p = 0L;
+            while (header.hasRemaining()) {
+                p += channel.write(header, p);
+            }
+            while (offsets.hasRemaining()) {
+                p += channel.write(offsets, p);
+            }
+        }
+    }
+
+    /**
+     * Open and map the specified ID file.
+     *
+     * @param file path of file to be opened
+     * @param idType class of ID attribute type
+     * @param <T> comparable type of ID attribute
+     * @return mapped ID file
+     * @throws IllegalArgumentException if any argument is null, or the file
+     *                                  is not a valid ID file
+     * @throws IOException if the file cannot be read
+     */
+    public static <T extends Comparable<T>> MappedIdFile<T> open(final Path file,
+                                                                 final Class<T> idType)
+            throws IOException {
+        requireNonNull(file, "File cannot be null");
+        requireNonNull(idType, "ID type cannot be null");
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (Integer.MAX_VALUE < size) {
+                throw new IllegalArgumentException("ID file exceeds 2 GiB: " + file);
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        }
+        return new MappedIdFile<>(buf, idType);
+    }
+
+    private final ByteBuffer buf;
+    private final Class<T> idType;
+    private final int size;
+
+    private MappedIdFile(final ByteBuffer buf, final Class<T> idType) {
+        this.buf = buf;
+        this.idType = idType;
+        int limit = buf.limit();
+        if (HEADER_SIZE > limit || MAGIC != buf.getInt(0)) {
+            throw new IllegalArgumentException("Not an ID file");
+        }
+        if (VERSION != buf.get(4)) {
+            throw new IllegalArgumentException("Unsupported ID file version: " + buf.get(4));
+        }
+        this.size = buf.getInt(5);
+        long dataStart = HEADER_SIZE + 4L * (size + 1);
+        if (0 > size || dataStart > limit) {
+            throw new IllegalArgumentException("Bad ID count: " + size);
+        }
+        int previous = (int)dataStart;
+        for (int i = 0; i <= size; i++) {
+            int offset = offset(i);
+            if (offset < previous || offset > limit) {
+                throw new IllegalArgumentException("Bad offset of ID record " + i + ": " + offset);
+            }
+            previous = offset;
+        }
+    }
+
+    /**
+     * Get number of IDs in this file.
+     *
+     * @return ID count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decode the ID at the specified index of this file.
+     *
+     * @param index index of ID
+     * @return ID at <tt>index</tt>
+     * @throws IndexOutOfBoundsException if <tt>index</tt> is out of range
+     * @throws IllegalArgumentException if the record cannot be decoded
+     */
+    public NamespaceId<T> get(final int index) {
+        if (0 > index || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of file of size " + size);
+        }
+        return decode(buf.duplicate(), index);
+    }
+
+    /**
+     * Create a spliterator over the IDs of this file, in 'natural' order.
+     *
+     * @return sized, sorted, distinct spliterator
+     */
+    public Spliterator<NamespaceId<T>> spliterator() {
+        return new RecordSpliterator(0, size);
+    }
+
+    /**
+     * Create a flyweight spliterator over the records of this file. Each
+     * split of the spliterator passes a single view, re-pointed at each
+     * record, to its consumer. Timestamps are read directly from the mapped
+     * file, and the namespace string is shared between consecutive records
+     * of the same namespace.
+     *
+     * @return sized spliterator of views
+     */
+    public Spliterator<IdView<T>> viewSpliterator() {
+        return new ViewSpliterator(0, size);
+    }
+
+    /**
+     * Create a stream of the IDs of this file.
+     *
+     * @param parallel whether stream is parallel
+     * @return stream of IDs
+     */
+    public Stream<NamespaceId<T>> stream(final boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    /**
+     * Create a flyweight stream of views of the records of this file. Views
+     * must not be retained past the operation that receives them; map them
+     * with {@link IdView#toId()} to collect IDs.
+     *
+     * @param parallel whether stream is parallel
+     * @return stream of views
+     */
+    public Stream<IdView<T>> viewStream(final boolean parallel) {
+        return StreamSupport.stream(viewSpliterator(), parallel);
+    }
+
+    private int offset(final int index) {
+        return buf.getInt(HEADER_SIZE + 4 * index);
+    }
+
+    private NamespaceId<T> decode(final ByteBuffer dup, final int index) {
+        dup.limit(offset(index + 1)).position(offset(index));
+        return IdCodec.decode(dup, idType);
+    }
+
+    private final class RecordSpliterator extends IndexedSpliterator<NamespaceId<T>> {
+
+        private ByteBuffer dup;
+
+        RecordSpliterator(final int origin, final int fence) {
+            super(origin, fence);
+        }
+
+        @Override
+        NamespaceId<T> element(final int i) {
+            if (null == dup) {
+                dup = buf.duplicate();
+            }
+            return decode(dup, i);
+        }
+
+        @Override
+        IndexedSpliterator<NamespaceId<T>> split(final int origin, final int fence) {
+            return new RecordSpliterator(origin, fence);
+        }
+
+        @Override
+        public int characteristics() {
+            return IdSpliterators.SORTED_ID_CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super NamespaceId<T>> getComparator() {
+            // Natural order
+            return null;
+        }
+
+    }
+
+    private final class ViewSpliterator extends IndexedSpliterator<IdView<T>> {
+
+        private RecordView view;
+
+        ViewSpliterator(final int origin, final int fence) {
+            super(origin, fence);
+        }
+
+        @Override
+        IdView<T> element(final int i) {
+            if (null == view) {
+                view = new RecordView();
+            }
+            view.moveTo(i);
+            return view;
+        }
+
+        @Override
+        IndexedSpliterator<IdView<T>> split(final int origin, final int fence) {
+            return new ViewSpliterator(origin, fence);
+        }
+
+        @Override
+        public int characteristics() {
+            return IdSpliterators.VIEW_CHARACTERISTICS;
+        }
+
+    }
+
+    private final class RecordView implements IdView<T> {
+
+        private final ByteBuffer dup = buf.duplicate();
+        private int index = -1;
+        private byte type;
+        private int nsStart;
+        private int nsLength;
+        private int valStart;
+        private int valLength;
+        private int timeStart;
+        private String namespace;
+        private int namespaceStart = -1;
+        private int namespaceLength;
+        private byte[] valBytes = new byte[16];
+        private IdConverter<T> converter;
+        private T value;
+        private NamespaceId<T> id;
+
+        void moveTo(final int i) {
+            index = i;
+            value = null;
+            id = null;
+            int p = offset(i);
+            type = buf.get(p++);
+            // Namespace and ID value are each prefixed with varint length
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf.get(p++);
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (0 != (b & 0x80));
+            nsStart = p;
+            nsLength = length;
+            p += length;
+            length = 0;
+            shift = 0;
+            do {
+                b = buf.get(p++);
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (0 != (b & 0x80));
+            valStart = p;
+            valLength = length;
+            timeStart = p + length;
+        }
+
+        @Override
+        public String getNamespace() {
+            if (null == namespace || !sameNamespaceBytes()) {
+                byte[] bytes = new byte[nsLength];
+                dup.limit(nsStart + nsLength).position(nsStart);
+                dup.get(bytes);
+                namespace = new String(bytes, StandardCharsets.UTF_8);
+            }
+            namespaceStart = nsStart;
+            namespaceLength = nsLength;
+            return namespace;
+        }
+
+        @Override
+        public T getId() {
+            if (null != id) {
+                return id.getId();
+            }
+            if (null == value) {
+                // Decode the value field alone, leaving namespace and
+                // timestamps in the mapped file
+                if (valBytes.length < valLength) {
+                    valBytes = new byte[Math.max(valLength, valBytes.length << 1)];
+                }
+                dup.limit(valStart + valLength).position(valStart);
+                dup.get(valBytes, 0, valLength);
+                if (null == converter) {
+                    converter = IdConverters.forType(idType);
+                }
+                value = converter.convert(new String(valBytes, 0, valLength, StandardCharsets.UTF_8));
+            }
+            return value;
+        }
+
+        @Override
+        public boolean isTemporal() {
+            return IdCodec.TYPE_NAMESPACE != type;
+        }
+
+        @Override
+        public boolean isBiTemporal() {
+            return IdCodec.TYPE_BITEMPORAL == type;
+        }
+
+        @Override
+        public long getAsOfEpochSecond() {
+            checkTemporal();
+            return buf.getLong(timeStart);
+        }
+
+        @Override
+        public int getAsOfNano() {
+            checkTemporal();
+            return buf.getInt(timeStart + 8);
+        }
+
+        @Override
+        public long getAsAtEpochSecond() {
+            checkBiTemporal();
+            return buf.getLong(timeStart + 12);
+        }
+
+        @Override
+        public int getAsAtNano() {
+            checkBiTemporal();
+            return buf.getInt(timeStart + 20);
+        }
+
+        @Override
+        public NamespaceId<T> toId() {
+            if (null == id) {
+                id = decode(dup, index);
+            }
+            return id;
+        }
+
+        private boolean sameNamespaceBytes() {
+            if (nsStart == namespaceStart) {
+                return true;
+            }
+            if (nsLength != namespaceLength) {
+                return false;
+            }
+            for (int i = 0; i < nsLength; i++) {
+                if (buf.get(nsStart + i) != buf.get(namespaceStart + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void checkTemporal() {
+            if (!isTemporal()) {
+                throw new IllegalStateException("Record " + index + " is not temporal");
+            }
+        }
+
+        private void checkBiTemporal() {
+            if (!isBiTemporal()) {
+                throw new IllegalStateException("Record " + index + " is not bi-temporal");
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Cursor over bi-temporal IDs, re-pointed by setting its components.
+ * Components are validated as by the ID constructors only when
+ * {@link #toImmutable()} is called. Instances are not thread-safe.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class MutableBiTemporalIdView<T extends Comparable<T>> implements BiTemporalIdView<T> {
+
+    private String namespace;
+    private T id;
+    private long asOfSecond;
+    private int asOfNano;
+    private long asAtSecond;
+    private int asAtNano;
+
+    /**
+     * Re-point this cursor at a {@code BiTemporalNamespaceId}.
+     *
+     * @param ns namespace
+     * @param idValue ID value
+     * @param asOfEpochSecond 'as of' seconds from the epoch
+     * @param asOfNanos 'as of' nanosecond adjustment
+     * @param asAtEpochSecond 'as at' seconds from the epoch
+     * @param asAtNanos 'as at' nanosecond adjustment
+     * @return this cursor
+     * @throws IllegalArgumentException if <tt>ns</tt> or <tt>idValue</tt> is
+     *                                  null
+     */
+    public MutableBiTemporalIdView<T> set(final String ns,
+                                          final T idValue,
+                                          final long asOfEpochSecond,
+                                          final int asOfNanos,
+                                          final long asAtEpochSecond,
+                                          final int asAtNanos) {
+        this.namespace = requireNonNull(ns, "Namespace cannot be null");
+        this.id = requireNonNull(idValue, "ID value cannot be null");
+        this.asOfSecond = asOfEpochSecond;
+        this.asOfNano = asOfNanos;
+        this.asAtSecond = asAtEpochSecond;
+        this.asAtNano = asAtNanos;
+        return this;
+    }
+
+    /**
+     * Re-point this cursor at a copy of the specified ID.
+     *
+     * @param other ID to be copied
+     * @return this cursor
+     * @throws IllegalArgumentException if <tt>other</tt> is null
+     */
+    public MutableBiTemporalIdView<T> set(final BiTemporalNamespaceId<T> other) {
+        requireNonNull(other, "ID cannot be null");
+        return set(other.getNamespace(), other.getId(),
+                   other.getAsOfEpochSecond(), other.getAsOfNano(),
+                   other.getAsAtEpochSecond(), other.getAsAtNano());
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public T getId() {
+        return id;
+    }
+
+    @Override
+    public long getAsOfEpochSecond() {
+        return asOfSecond;
+    }
+
+    @Override
+    public int getAsOfNano() {
+        return asOfNano;
+    }
+
+    @Override
+    public long getAsAtEpochSecond() {
+        return asAtSecond;
+    }
+
+    @Override
+    public int getAsAtNano() {
+        return asAtNano;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if this cursor has not been set
+     * @throws IllegalArgumentException if the namespace is empty
+     */
+    @Override
+    public BiTemporalNamespaceId<T> toImmutable() {
+        if (null == namespace) {
+            throw new IllegalStateException("Cursor has not been set");
+        }
+        return new BiTemporalNamespaceId<>(namespace, id, asOfSecond, asOfNano, asAtSecond, asAtNano);
+    }
+
+    @Override
+    public String toString() {
+        return (null == namespace) ? "MutableBiTemporalIdView[unset]" : toImmutable().toString();
+    }
+
+}
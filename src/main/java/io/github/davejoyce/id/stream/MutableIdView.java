@@ -0,0 +1,216 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Cursor over IDs of any of the three types of the {@code NamespaceId}
+ * hierarchy, re-pointed by setting its components. Scanning code hands one
+ * cursor to its consumer for every element, instead of allocating an ID
+ * per element; components are validated as by the ID constructors only
+ * when {@link #toImmutable()} is called. Instances are not thread-safe.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class MutableIdView<T extends Comparable<T>> implements IdView<T> {
+
+    private static final byte NAMESPACE = 0;
+    private static final byte TEMPORAL = 1;
+    private static final byte BITEMPORAL = 2;
+
+    private String namespace;
+    private T id;
+    private byte type;
+    private long asOfSecond;
+    private int asOfNano;
+    private long asAtSecond;
+    private int asAtNano;
+
+    /**
+     * Re-point this cursor at a {@code NamespaceId}.
+     *
+     * @param ns namespace
+     * @param idValue ID value
+     * @return this cursor
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public MutableIdView<T> set(final String ns, final T idValue) {
+        this.namespace = requireNonNull(ns, "Namespace cannot be null");
+        this.id = requireNonNull(idValue, "ID value cannot be null");
+        this.type = NAMESPACE;
+        return this;
+    }
+
+    /**
+     * Re-point this cursor at a {@code TemporalNamespaceId}.
+     *
+     * @param ns namespace
+     * @param idValue ID value
+     * @param asOfEpochSecond 'as of' seconds from the epoch
+     * @param asOfNanos 'as of' nanosecond adjustment
+     * @return this cursor
+     * @throws IllegalArgumentException if <tt>ns</tt> or <tt>idValue</tt> is
+     *                                  null
+     */
+    public MutableIdView<T> set(final String ns,
+                                final T idValue,
+                                final long asOfEpochSecond,
+                                final int asOfNanos) {
+        set(ns, idValue);
+        this.asOfSecond = asOfEpochSecond;
+        this.asOfNano = asOfNanos;
+        this.type = TEMPORAL;
+        return this;
+    }
+
+    /**
+     * Re-point this cursor at a {@code BiTemporalNamespaceId}.
+     *
+     * @param ns namespace
+     * @param idValue ID value
+     * @param asOfEpochSecond 'as of' seconds from the epoch
+     * @param asOfNanos 'as of' nanosecond adjustment
+     * @param asAtEpochSecond 'as at' seconds from the epoch
+     * @param asAtNanos 'as at' nanosecond adjustment
+     * @return this cursor
+     * @throws IllegalArgumentException if <tt>ns</tt> or <tt>idValue</tt> is
+     *                                  null
+     */
+    public MutableIdView<T> set(final String ns,
+                                final T idValue,
+                                final long asOfEpochSecond,
+                                final int asOfNanos,
+                                final long asAtEpochSecond,
+                                final int asAtNanos) {
+        set(ns, idValue, asOfEpochSecond, asOfNanos);
+        this.asAtSecond = asAtEpochSecond;
+        this.asAtNano = asAtNanos;
+        this.type = BITEMPORAL;
+        return this;
+    }
+
+    /**
+     * Re-point this cursor at a copy of the specified ID.
+     *
+     * @param other ID to be copied
+     * @return this cursor
+     * @throws IllegalArgumentException if <tt>other</tt> is null
+     */
+    public MutableIdView<T> set(final NamespaceId<T> other) {
+        requireNonNull(other, "ID cannot be null");
+        if (other instanceof BiTemporalNamespaceId) {
+            final BiTemporalNamespaceId<T> b = (BiTemporalNamespaceId<T>) other;
+            return set(b.getNamespace(), b.getId(),
+                       b.getAsOfEpochSecond(), b.getAsOfNano(),
+                       b.getAsAtEpochSecond(), b.getAsAtNano());
+        }
+        if (other instanceof TemporalNamespaceId) {
+            final TemporalNamespaceId<T> t = (TemporalNamespaceId<T>) other;
+            return set(t.getNamespace(), t.getId(), t.getAsOfEpochSecond(), t.getAsOfNano());
+        }
+        return set(other.getNamespace(), other.getId());
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public T getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isTemporal() {
+        return NAMESPACE != type;
+    }
+
+    @Override
+    public boolean isBiTemporal() {
+        return BITEMPORAL == type;
+    }
+
+    @Override
+    public long getAsOfEpochSecond() {
+        checkTemporal();
+        return asOfSecond;
+    }
+
+    @Override
+    public int getAsOfNano() {
+        checkTemporal();
+        return asOfNano;
+    }
+
+    @Override
+    public long getAsAtEpochSecond() {
+        checkBiTemporal();
+        return asAtSecond;
+    }
+
+    @Override
+    public int getAsAtNano() {
+        checkBiTemporal();
+        return asAtNano;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if this cursor has not been set
+     * @throws IllegalArgumentException if the namespace is empty
+     */
+    @Override
+    public NamespaceId<T> toId() {
+        if (null == namespace) {
+            throw new IllegalStateException("Cursor has not been set");
+        }
+        switch (type) {
+            case BITEMPORAL:
+                return new BiTemporalNamespaceId<>(namespace, id, asOfSecond, asOfNano, asAtSecond, asAtNano);
+            case TEMPORAL:
+                return new TemporalNamespaceId<>(namespace, id, asOfSecond, asOfNano);
+            default:
+                return new NamespaceId<>(namespace, id);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (null == namespace) ? "MutableIdView[unset]" : toId().toString();
+    }
+
+    private void checkTemporal() {
+        if (!isTemporal()) {
+            throw new IllegalStateException("Viewed ID is not temporal");
+        }
+    }
+
+    private void checkBiTemporal() {
+        if (!isBiTemporal()) {
+            throw new IllegalStateException("Viewed ID is not bi-temporal");
+        }
+    }
+
+}
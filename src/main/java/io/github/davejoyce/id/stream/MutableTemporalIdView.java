@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Cursor over temporal IDs, re-pointed by setting its components. Components
+ * are validated as by the ID constructors only when {@link #toImmutable()}
+ * is called. Instances are not thread-safe.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class MutableTemporalIdView<T extends Comparable<T>> implements TemporalIdView<T> {
+
+    private String namespace;
+    private T id;
+    private long asOfSecond;
+    private int asOfNano;
+
+    /**
+     * Re-point this cursor at a {@code TemporalNamespaceId}.
+     *
+     * @param ns namespace
+     * @param idValue ID value
+     * @param asOfEpochSecond 'as of' seconds from the epoch
+     * @param asOfNanos 'as of' nanosecond adjustment
+     * @return this cursor
+     * @throws IllegalArgumentException if <tt>ns</tt> or <tt>idValue</tt> is
+     *                                  null
+     */
+    public MutableTemporalIdView<T> set(final String ns,
+                                        final T idValue,
+                                        final long asOfEpochSecond,
+                                        final int asOfNanos) {
+        this.namespace = requireNonNull(ns, "Namespace cannot be null");
+        this.id = requireNonNull(idValue, "ID value cannot be null");
+        this.asOfSecond = asOfEpochSecond;
+        this.asOfNano = asOfNanos;
+        return this;
+    }
+
+    /**
+     * Re-point this cursor at a copy of the {@code TemporalNamespaceId}
+     * projection of the specified ID.
+     *
+     * @param other ID to be copied
+     * @return this cursor
+     * @throws IllegalArgumentException if <tt>other</tt> is null
+     */
+    public MutableTemporalIdView<T> set(final TemporalNamespaceId<T> other) {
+        requireNonNull(other, "ID cannot be null");
+        return set(other.getNamespace(), other.getId(), other.getAsOfEpochSecond(), other.getAsOfNano());
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public T getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isBiTemporal() {
+        return false;
+    }
+
+    @Override
+    public long getAsOfEpochSecond() {
+        return asOfSecond;
+    }
+
+    @Override
+    public int getAsOfNano() {
+        return asOfNano;
+    }
+
+    @Override
+    public long getAsAtEpochSecond() {
+        throw new IllegalStateException("Viewed ID is not bi-temporal");
+    }
+
+    @Override
+    public int getAsAtNano() {
+        throw new IllegalStateException("Viewed ID is not bi-temporal");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if this cursor has not been set
+     * @throws IllegalArgumentException if the namespace is empty
+     */
+    @Override
+    public TemporalNamespaceId<T> toImmutable() {
+        if (null == namespace) {
+            throw new IllegalStateException("Cursor has not been set");
+        }
+        return new TemporalNamespaceId<>(namespace, id, asOfSecond, asOfNano);
+    }
+
+    @Override
+    public String toString() {
+        return (null == namespace) ? "MutableTemporalIdView[unset]" : toImmutable().toString();
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.IdComparators;
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.Comparator;
+import java.util.Iterator;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Streaming difference of two sources of IDs which are each sorted in
+ * 'natural' order. The sources are walked in a single merge pass that holds
+ * no more than two IDs from each source at a time, so memory use is constant
+ * regardless of source size.
+ * <p>
+ * Every ID is reported exactly once. IDs which are equal by
+ * {@link NamespaceId#compareTo(NamespaceId) compareTo} are reported as present
+ * in {@link IdDiffListener#both both} sources. When the
+ * {@link NamespaceId#toNamespaceId() NamespaceId projection} of an ID is
+ * present in both sources, and the latest version of it in <i>each</i> source
+ * is absent from the other source, those two latest versions are reported as
+ * a {@link IdDiffListener#versionChanged version change}. All other IDs are
+ * reported as present in only one source; in particular, if the latest
+ * version in one source is matched in the other (e.g. left {@code [v1, v2]}
+ * and right {@code [v2, v3]}), it is reported as present in both and the
+ * newer version is reported as present in only one source.
+ * <p>
+ * Events are reported in order of {@code NamespaceId} projection. Within a
+ * projection, IDs present in one or both sources are reported in sort
+ * order, and a version change, if any, is reported last: its left or right
+ * version may follow newer versions reported before it (e.g. left
+ * {@code [v1]} and right {@code [v2, v3]} report {@code v2} as present only
+ * in the right source, then {@code v1} changed to {@code v3}).
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class SortedIdDiff {
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private SortedIdDiff() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("SortedIdDiff instances not allowed");
+    }
+
+    /**
+     * Compute the difference of the specified sorted sources, reporting each
+     * element of the result to the given listener in the order described
+     * above.
+     *
+     * @param left sorted left source of IDs
+     * @param right sorted right source of IDs
+     * @param listener receiver of difference events
+     * @param <T> comparable type of ID attribute
+     * @param <R> NamespaceId type being compared
+     * @throws IllegalArgumentException if any argument is null, or if either
+     *                                  source contains a null ID
+     * @throws IllegalStateException if either source is not sorted
+     */
+    public static <T extends Comparable<T>, R extends NamespaceId<T>> void diff(
+            final Iterator<? extends R> left,
+            final Iterator<? extends R> right,
+            final IdDiffListener<? super R> listener) {
+        requireNonNull(listener, "Listener cannot be null");
+        final Comparator<R> natural = IdComparators.natural();
+        final SortedSource<R> l = new SortedSource<>(left, natural);
+        final SortedSource<R> r = new SortedSource<>(right, natural);
+        R lId = l.current();
+        R rId = r.current();
+        while (null != lId && null != rId) {
+            int comp = IdComparators.compareNamespaceIds(lId, rId);
+            if (0 > comp) {
+                listener.onlyLeft(lId);
+                lId = l.advance();
+            } else if (0 < comp) {
+                listener.onlyRight(rId);
+                rId = r.advance();
+            } else {
+                comp = lId.compareTo(rId);
+                if (0 == comp) {
+                    listener.both(lId, rId);
+                    lId = l.advance();
+                    rId = r.advance();
+                    continue;
+                }
+                // Same NamespaceId, different versions. Unmatched versions are
+                // reported singly until the latest version on each side is
+                // reached; those are paired as a version change.
+                boolean lastL = isLastVersion(lId, l.peek());
+                boolean lastR = isLastVersion(rId, r.peek());
+                if (lastL && lastR) {
+                    listener.versionChanged(lId, rId);
+                    lId = l.advance();
+                    rId = r.advance();
+                } else if ((0 > comp && !lastL) || (0 < comp && lastR)) {
+                    listener.onlyLeft(lId);
+                    lId = l.advance();
+                } else {
+                    listener.onlyRight(rId);
+                    rId = r.advance();
+                }
+            }
+        }
+        while (null != lId) {
+            listener.onlyLeft(lId);
+            lId = l.advance();
+        }
+        while (null != rId) {
+            listener.onlyRight(rId);
+            rId = r.advance();
+        }
+    }
+
+    private static <T extends Comparable<T>> boolean isLastVersion(final NamespaceId<T> id,
+                                                                   final NamespaceId<T> next) {
+        return (null == next) || (0 != IdComparators.compareNamespaceIds(id, next));
+    }
+
+}
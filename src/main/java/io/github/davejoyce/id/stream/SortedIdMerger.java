@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.IdComparators;
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * N-way merge of sources of IDs which are each sorted in 'natural' order. The
+ * merge is driven by a tournament tree of losers, so each merged ID costs
+ * <i>log<sub>2</sub>(N)</i> comparisons and only the current head of each
+ * source is held in memory. Equal IDs from different sources are returned in
+ * order of source index.
+ *
+ * @param <T> comparable type of ID attribute
+ * @param <R> NamespaceId type being merged
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class SortedIdMerger<T extends Comparable<T>, R extends NamespaceId<T>>
+    implements Iterator<R> {
+
+    /**
+     * Create a new merger of the specified sorted sources.
+     *
+     * @param sources sorted sources of IDs
+     * @param <T> comparable type of ID attribute
+     * @param <R> NamespaceId type being merged
+     * @return new SortedIdMerger object
+     * @throws IllegalArgumentException if <tt>sources</tt> is null or contains
+     *                                  a null source
+     */
+    public static <T extends Comparable<T>, R extends NamespaceId<T>> SortedIdMerger<T, R> of(
+            final List<? extends Iterator<? extends R>> sources) {
+        return new SortedIdMerger<>(requireNonNull(sources, "Sources cannot be null"));
+    }
+
+    private final LoserTree<R> tree;
+    private final int sourceCount;
+    private int lastSource = -1;
+
+    private SortedIdMerger(final List<? extends Iterator<? extends R>> sources) {
+        final Comparator<R> natural = IdComparators.natural();
+        List<SortedSource<R>> sortedSources = new ArrayList<>(sources.size());
+        for (Iterator<? extends R> source : sources) {
+            sortedSources.add(new SortedSource<R>(source, natural));
+        }
+        this.tree = new LoserTree<>(sortedSources, natural);
+        this.sourceCount = sortedSources.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (-1 != tree.winner());
+    }
+
+    @Override
+    public R next() {
+        int w = tree.winner();
+        if (-1 == w) {
+            throw new NoSuchElementException();
+        }
+        R id = tree.source(w).current();
+        lastSource = w;
+        tree.advanceWinner();
+        return id;
+    }
+
+    /**
+     * Get the index of the source from which the ID most recently returned by
+     * {@link #next()} was taken.
+     *
+     * @return source index, or -1 if no ID has been returned yet
+     */
+    public int lastSource() {
+        return lastSource;
+    }
+
+    /**
+     * Get the number of sources of this merger.
+     *
+     * @return source count
+     */
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    /**
+     * Consume the remaining merged IDs as groups of IDs which are equal by the
+     * specified comparator. The given action receives the first (least) ID of
+     * each group and the set of indices of the sources which contributed to
+     * the group. Grouping by {@link IdComparators#natural() natural} order
+     * reports the sources containing each distinct ID; grouping by
+     * {@link IdComparators#byNamespaceId() NamespaceId} reports the sources
+     * containing any version of each distinct {@code NamespaceId}.
+     * <p>
+     * The <tt>BitSet</tt> passed to the action is reused between groups and
+     * must not be retained by the action.
+     *
+     * @param grouping comparator which determines group membership; must be
+     *                 consistent with (no finer than) natural order
+     * @param action receiver of each group
+     * @throws IllegalArgumentException if either argument is null
+     */
+    public void forEachGroup(final Comparator<? super R> grouping,
+                             final BiConsumer<? super R, BitSet> action) {
+        requireNonNull(grouping, "Grouping comparator cannot be null");
+        requireNonNull(action, "Group action cannot be null");
+        final BitSet groupSources = new BitSet(sourceCount);
+        R first = null;
+        while (hasNext()) {
+            R id = next();
+            if (null != first && 0 != grouping.compare(first, id)) {
+                action.accept(first, groupSources);
+                groupSources.clear();
+                first = null;
+            }
+            if (null == first) {
+                first = id;
+            }
+            groupSources.set(lastSource);
+        }
+        if (null != first) {
+            action.accept(first, groupSources);
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import java.util.Comparator;
+import java.util.Iterator;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Look-ahead wrapper of a sorted {@code Iterator}, which holds the current
+ * element and the element after it. Each element is checked against its
+ * predecessor as it is read, so that a source which is not sorted is detected
+ * without buffering.
+ *
+ * @param <E> type of source element
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class SortedSource<E> {
+
+    private final Iterator<? extends E> iterator;
+    private final Comparator<? super E> comparator;
+    private E current;
+    private E next;
+
+    SortedSource(final Iterator<? extends E> iterator,
+                 final Comparator<? super E> comparator) {
+        this.iterator = requireNonNull(iterator, "Source iterator cannot be null");
+        this.comparator = comparator;
+        this.current = read(null);
+        this.next = (null == current) ? null : read(current);
+    }
+
+    /**
+     * Get the current element of this source.
+     *
+     * @return current element, or null if this source is exhausted
+     */
+    E current() {
+        return current;
+    }
+
+    /**
+     * Get the element after the current element of this source.
+     *
+     * @return next element, or null if there is none
+     */
+    E peek() {
+        return next;
+    }
+
+    /**
+     * Move this source to its next element.
+     *
+     * @return new current element, or null if this source is exhausted
+     */
+    E advance() {
+        current = next;
+        next = (null == current) ? null : read(current);
+        return current;
+    }
+
+    private E read(final E previous) {
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        E e = requireNonNull(iterator.next(), "Source cannot contain null elements");
+        if (null != previous && 0 < comparator.compare(previous, e)) {
+            throw new IllegalStateException("Source is not sorted: "
+                                            + previous
+                                            + " precedes "
+                                            + e);
+        }
+        return e;
+    }
+
+}
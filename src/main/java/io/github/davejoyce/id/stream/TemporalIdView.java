@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+/**
+ * {@link IdView} of temporal IDs only, mirroring the accessors of
+ * {@link TemporalNamespaceId}. The 'as of' timestamp is always present.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface TemporalIdView<T extends Comparable<T>> extends IdView<T> {
+
+    @Override
+    default boolean isTemporal() {
+        return true;
+    }
+
+    @Override
+    default NamespaceId<T> toId() {
+        return toImmutable();
+    }
+
+    /**
+     * Get an immutable ID object equal to the viewed ID.
+     *
+     * @return viewed ID, as {@code TemporalNamespaceId} or
+     *         {@code BiTemporalNamespaceId}
+     */
+    @Override
+    TemporalNamespaceId<T> toImmutable();
+
+}
@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/**
+ * Streaming operations over sorted sources of {@code NamespaceId} hierarchy
+ * IDs. Operations in this package consume {@code Iterator} sources which are
+ * already in 'natural' sort order and hold only a constant number of IDs in
+ * memory, regardless of the size of their inputs.
+ * <p>
+ * Sorted stores of IDs - arrays, columnar {@link io.github.davejoyce.id.stream.IdBatch batches}
+ * and memory-mapped {@link io.github.davejoyce.id.stream.MappedIdFile files} -
+ * are also exposed as sized, balanced {@code Spliterator} sources for
+ * parallel streams, either of ID objects or of flyweight
+ * {@link io.github.davejoyce.id.stream.IdView views}.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see io.github.davejoyce.id.NamespaceId#compareTo(io.github.davejoyce.id.NamespaceId)
+ */
+package io.github.davejoyce.id.stream;
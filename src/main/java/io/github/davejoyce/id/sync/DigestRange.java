@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.sync;
+
+import io.github.davejoyce.id.NamespaceId;
+
+import static io.github.davejoyce.util.Arguments.requireNonEmpty;
+
+/**
+ * Range of leaves of a namespace tree of a {@link MerkleDigest}. A range
+ * covers a contiguous span of the 64-bit key token space of one namespace;
+ * all versions of a {@code NamespaceId} fall in the same range.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class DigestRange {
+
+    private final String namespace;
+    private final int depth;
+    private final int firstLeaf;
+    private final int lastLeaf;
+
+    DigestRange(final String namespace,
+                final int depth,
+                final int firstLeaf,
+                final int lastLeaf) {
+        this.namespace = requireNonEmpty(namespace, "Namespace cannot be empty");
+        this.depth = depth;
+        this.firstLeaf = firstLeaf;
+        this.lastLeaf = lastLeaf;
+    }
+
+    /**
+     * Get the namespace of this range.
+     *
+     * @return namespace (never null)
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Get the index of the first leaf of this range, counting from 0.
+     *
+     * @return first leaf index (inclusive)
+     */
+    public int getFirstLeaf() {
+        return firstLeaf;
+    }
+
+    /**
+     * Get the index of the last leaf of this range, counting from 0.
+     *
+     * @return last leaf index (inclusive)
+     */
+    public int getLastLeaf() {
+        return lastLeaf;
+    }
+
+    /**
+     * Determine whether the specified ID falls within this range.
+     *
+     * @param id ID to be checked
+     * @return true if <tt>id</tt> is in this range, false otherwise
+     */
+    public boolean contains(final NamespaceId<?> id) {
+        if (!namespace.equals(id.getNamespace())) {
+            return false;
+        }
+        int leaf = MerkleDigest.leafOf(MerkleDigest.token(id), depth);
+        return (firstLeaf <= leaf && leaf <= lastLeaf);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DigestRange that = (DigestRange) o;
+        return depth == that.depth
+               && firstLeaf == that.firstLeaf
+               && lastLeaf == that.lastLeaf
+               && namespace.equals(that.namespace);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = namespace.hashCode();
+        result = 31 * result + depth;
+        result = 31 * result + firstLeaf;
+        result = 31 * result + lastLeaf;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return namespace + "[" + firstLeaf + ".." + lastLeaf + "]";
+    }
+
+}
@@ -0,0 +1,381 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.sync;
+
+import io.github.davejoyce.id.IdCodec;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.hash.IdFingerprint;
+import io.github.davejoyce.util.Hash64;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Merkle tree digest of a set of IDs, partitioned by namespace and by key
+ * range. Each namespace has a complete binary tree of fixed depth, whose
+ * leaves partition the 64-bit {@link IdFingerprint#of(NamespaceId) key
+ * fingerprint} (<i>token</i>) space; all versions of a {@code NamespaceId}
+ * therefore fall in the same leaf. Each leaf holds the
+ * sum of the hashes of the full binary encodings of its IDs, so that adding
+ * or removing an ID updates the digest incrementally in <i>O(depth)</i> time.
+ * <p>
+ * A digest mirrors a set maintained elsewhere: each ID must be added no more
+ * than once, and only IDs previously added may be removed. Instances of this
+ * class are not thread-safe.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class MerkleDigest implements MerkleView {
+
+    /**
+     * Maximum depth of each namespace tree.
+     */
+    public static final int MAX_DEPTH = 24;
+
+    /**
+     * Compute the differences between the specified views. The walk descends
+     * only into nodes whose hashes differ, so the number of node hashes read
+     * from either view is proportional to the number of differing leaves
+     * multiplied by the tree depth. Adjacent differing leaves are coalesced
+     * into a single range.
+     *
+     * @param a first view to be compared
+     * @param b second view to be compared
+     * @return differing ranges, ordered by namespace and leaf
+     * @throws IllegalArgumentException if either view is null or the views
+     *                                  have different depths
+     */
+    public static List<DigestRange> diff(final MerkleView a, final MerkleView b) {
+        requireNonNull(a, "Digest view cannot be null");
+        requireNonNull(b, "Digest view cannot be null");
+        final int depth = a.getDepth();
+        if (depth != b.getDepth()) {
+            throw new IllegalArgumentException("Cannot compare digests of depth "
+                                               + depth + " and " + b.getDepth());
+        }
+        Set<String> namespaces = new TreeSet<>(a.getNamespaces());
+        namespaces.addAll(b.getNamespaces());
+        List<DigestRange> ranges = new ArrayList<>();
+        for (String ns : namespaces) {
+            RangeCollector collector = new RangeCollector(ns, depth, ranges);
+            descend(a, b, ns, 1, 0, depth, collector);
+            collector.flush();
+        }
+        return ranges;
+    }
+
+    /**
+     * Compute the key token of the specified ID.
+     *
+     * @param id ID to be tokenized
+     * @return 64-bit key token
+     */
+    static long token(final NamespaceId<?> id) {
+        return IdFingerprint.of(id);
+    }
+
+    /**
+     * Get the index of the leaf which covers the specified token.
+     *
+     * @param token 64-bit key token
+     * @param depth tree depth
+     * @return leaf index, counting from 0
+     */
+    static int leafOf(final long token, final int depth) {
+        return (int)(token >>> (Long.SIZE - depth));
+    }
+
+    private static void descend(final MerkleView a,
+                                final MerkleView b,
+                                final String ns,
+                                final int node,
+                                final int level,
+                                final int depth,
+                                final RangeCollector collector) {
+        long hashA = a.nodeHash(ns, node);
+        long hashB = b.nodeHash(ns, node);
+        if (hashA == hashB) {
+            return;
+        }
+        int span = depth - level;
+        if (0 == span || 0L == hashA || 0L == hashB) {
+            // Leaf reached, or one side is empty below this node: the whole
+            // subtree differs and need not be walked
+            int first = (node << span) - (1 << depth);
+            collector.add(first, first + (1 << span) - 1);
+            return;
+        }
+        descend(a, b, ns, node << 1, level + 1, depth, collector);
+        descend(a, b, ns, (node << 1) | 1, level + 1, depth, collector);
+    }
+
+    private final int depth;
+    private final Map<String, NamespaceTree> trees = new TreeMap<>();
+
+    /**
+     * Construct a {@code MerkleDigest} with namespace trees of the specified
+     * depth. Each namespace tree has <i>2<sup>depth</sup></i> leaves.
+     *
+     * @param depth depth of each namespace tree
+     * @throws IllegalArgumentException if <tt>depth</tt> is less than 1 or
+     *                                  greater than {@link #MAX_DEPTH}
+     */
+    public MerkleDigest(final int depth) {
+        if (1 > depth || MAX_DEPTH < depth) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Add the specified ID to this digest.
+     *
+     * @param id ID to be added
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public void add(final NamespaceId<?> id) {
+        update(id, 1);
+    }
+
+    /**
+     * Remove the specified, previously added ID from this digest.
+     *
+     * @param id ID to be removed
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public void remove(final NamespaceId<?> id) {
+        update(id, -1);
+    }
+
+    /**
+     * Add all of the specified IDs to this digest.
+     *
+     * @param ids IDs to be added
+     * @throws IllegalArgumentException if <tt>ids</tt> is null or contains a
+     *                                  null ID
+     */
+    public void addAll(final Iterable<? extends NamespaceId<?>> ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        for (NamespaceId<?> id : ids) {
+            add(id);
+        }
+    }
+
+    /**
+     * Get the number of IDs of the specified namespace in this digest.
+     *
+     * @param namespace namespace to be counted
+     * @return ID count
+     */
+    public long size(final String namespace) {
+        NamespaceTree tree = trees.get(namespace);
+        return (null == tree) ? 0L : tree.size;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public Set<String> getNamespaces() {
+        return Collections.unmodifiableSet(trees.keySet());
+    }
+
+    @Override
+    public long nodeHash(final String namespace, final int node) {
+        NamespaceTree tree = trees.get(namespace);
+        return (null == tree) ? 0L : tree.get(node);
+    }
+
+    private void update(final NamespaceId<?> id, final int delta) {
+        requireNonNull(id, "ID cannot be null");
+        final long token = IdFingerprint.of(id);
+        final long hash = Hash64.hash(IdCodec.encode(id));
+        final String ns = id.getNamespace();
+        NamespaceTree tree = trees.get(ns);
+        if (null == tree) {
+            if (0 > delta) {
+                throw new IllegalArgumentException("ID was not added: " + id);
+            }
+            tree = new NamespaceTree(depth);
+            trees.put(ns, tree);
+        }
+        tree.update(leafOf(token, depth), (0 < delta) ? hash : -hash, delta);
+        if (0L == tree.size) {
+            trees.remove(ns);
+        }
+    }
+
+    /**
+     * Binary tree of hashes over the leaves of one namespace, addressed in
+     * heap order. Only non-zero node hashes are stored, in an open-addressing
+     * table keyed by node index, so memory grows with the number of IDs
+     * (at most <i>depth + 1</i> nodes per leaf in use) rather than with the
+     * number of leaves.
+     */
+    private static final class NamespaceTree {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final int firstLeafNode;
+        private int[] keys = new int[INITIAL_CAPACITY];
+        private long[] hashes = new long[INITIAL_CAPACITY];
+        private int count;
+        private long size;
+
+        NamespaceTree(final int depth) {
+            this.firstLeafNode = 1 << depth;
+        }
+
+        void update(final int leaf, final long hashDelta, final int sizeDelta) {
+            int node = firstLeafNode + leaf;
+            put(node, get(node) + hashDelta);
+            for (node >>>= 1; node > 0; node >>>= 1) {
+                long left = get(node << 1);
+                long right = get((node << 1) | 1);
+                put(node, (0L == left && 0L == right) ? 0L : Hash64.combine(left, right));
+            }
+            size += sizeDelta;
+        }
+
+        long get(final int node) {
+            final int mask = keys.length - 1;
+            for (int i = slot(node, mask); 0 != keys[i]; i = (i + 1) & mask) {
+                if (node == keys[i]) {
+                    return hashes[i];
+                }
+            }
+            return 0L;
+        }
+
+        private void put(final int node, final long hash) {
+            final int mask = keys.length - 1;
+            int i = slot(node, mask);
+            for (; 0 != keys[i]; i = (i + 1) & mask) {
+                if (node == keys[i]) {
+                    if (0L == hash) {
+                        delete(i);
+                    } else {
+                        hashes[i] = hash;
+                    }
+                    return;
+                }
+            }
+            if (0L == hash) {
+                return;
+            }
+            keys[i] = node;
+            hashes[i] = hash;
+            if (++count << 1 > keys.length) {
+                resize(keys.length << 1);
+            }
+        }
+
+        /**
+         * Remove the entry at the specified slot, shifting back any later
+         * entries of the same probe run so that lookups need no tombstones.
+         */
+        private void delete(int hole) {
+            final int mask = keys.length - 1;
+            for (int i = (hole + 1) & mask; 0 != keys[i]; i = (i + 1) & mask) {
+                int home = slot(keys[i], mask);
+                // Move the entry back unless its home lies cyclically within
+                // (hole, i]
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    hashes[hole] = hashes[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            hashes[hole] = 0L;
+            count--;
+        }
+
+        private void resize(final int capacity) {
+            final int[] oldKeys = keys;
+            final long[] oldHashes = hashes;
+            keys = new int[capacity];
+            hashes = new long[capacity];
+            final int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (0 != oldKeys[j]) {
+                    int i = slot(oldKeys[j], mask);
+                    while (0 != keys[i]) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
+
+        private static int slot(final int node, final int mask) {
+            int h = node * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+    }
+
+    /**
+     * Accumulator which coalesces adjacent differing leaves into ranges.
+     */
+    private static final class RangeCollector {
+
+        private final String namespace;
+        private final int depth;
+        private final List<DigestRange> ranges;
+        private int first = -1;
+        private int last = -1;
+
+        RangeCollector(final String namespace,
+                       final int depth,
+                       final List<DigestRange> ranges) {
+            this.namespace = namespace;
+            this.depth = depth;
+            this.ranges = ranges;
+        }
+
+        void add(final int firstLeaf, final int lastLeaf) {
+            if (-1 != last && last + 1 == firstLeaf) {
+                last = lastLeaf;
+                return;
+            }
+            flush();
+            first = firstLeaf;
+            last = lastLeaf;
+        }
+
+        void flush() {
+            if (-1 != first) {
+                ranges.add(new DigestRange(namespace, depth, first, last));
+                first = -1;
+                last = -1;
+            }
+        }
+
+    }
+
+}
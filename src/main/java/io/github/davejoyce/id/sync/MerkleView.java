@@ -0,0 +1,60 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.sync;
+
+import java.util.Set;
+
+/**
+ * Read-only view of the node hashes of a {@link MerkleDigest}. The view is
+ * the unit of exchange between replicas: a replica compares its own digest
+ * against a view of its peer's, whose node hashes may be fetched lazily, so
+ * that only the nodes along differing paths are ever transferred.
+ * <p>
+ * Nodes of each namespace tree are numbered as in a binary heap: node 1 is
+ * the root, the children of node <i>n</i> are nodes <i>2n</i> and
+ * <i>2n+1</i>, and the leaves are nodes <i>2<sup>depth</sup></i> through
+ * <i>2<sup>depth+1</sup>-1</i>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public interface MerkleView {
+
+    /**
+     * Get the depth of each namespace tree of this view.
+     *
+     * @return tree depth
+     */
+    int getDepth();
+
+    /**
+     * Get the namespaces which have at least 1 ID in this view.
+     *
+     * @return namespaces of this view
+     */
+    Set<String> getNamespaces();
+
+    /**
+     * Get the hash of the specified node of the specified namespace tree. The
+     * hash of an empty subtree, or of any node of an absent namespace, is 0.
+     *
+     * @param namespace namespace of tree
+     * @param node heap index of node
+     * @return node hash
+     */
+    long nodeHash(String namespace, int node);
+
+}
@@ -0,0 +1,405 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.IdComparators;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * As-of join of two sources of records keyed by temporal IDs. Each left
+ * record is matched to the right record with the same
+ * {@link io.github.davejoyce.id.NamespaceId NamespaceId} projection and the
+ * latest 'as of' time not after that of the left record; a left record
+ * without such a right record is matched to null. A {@link
+ * #withTolerance(Duration) tolerance} limits how far back a match may be.
+ * <p>
+ * The {@link #bitemporal(Function, Function) bi-temporal} join also ignores
+ * right records recorded (as at) after the left record, so that each left
+ * record sees the right side as it was known at the time; a fixed
+ * {@link #withAsAtCutoff(Instant) cutoff} ignores right records recorded
+ * after it. Of right records with the same 'as of' time, the latest recorded
+ * eligible record is the match. Right records whose keys are not bi-temporal
+ * are always eligible.
+ * </p>
+ * <p>
+ * Both sources must be sorted in 'natural' order of their keys. They are
+ * merged in a single pass, which holds only the right records of the
+ * current ID which may still be matched: one record, or for a bi-temporal
+ * join, the records not superseded by a later 'as of' time recorded no
+ * later. Sources partitioned so that all records of an ID are in the same
+ * partition, as when partitioned by namespace, are joined pairwise and in
+ * parallel if requested.
+ * </p>
+ * <p>
+ * Instances of this class are immutable and thread-safe.
+ * </p>
+ *
+ * @param <L> type of left record
+ * @param <R> type of right record
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class AsOfJoin<L, R, T extends Comparable<T>> {
+
+    /**
+     * Create an as-of join of records with the specified keys.
+     *
+     * @param leftKey key of left record
+     * @param rightKey key of right record
+     * @param <L> type of left record
+     * @param <R> type of right record
+     * @param <T> comparable type of ID attribute
+     * @return new as-of join
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public static <L, R, T extends Comparable<T>> AsOfJoin<L, R, T> of(
+            final Function<? super L, ? extends TemporalNamespaceId<T>> leftKey,
+            final Function<? super R, ? extends TemporalNamespaceId<T>> rightKey) {
+        requireNonNull(leftKey, "Left key cannot be null");
+        requireNonNull(rightKey, "Right key cannot be null");
+        return new AsOfJoin<>(leftKey, rightKey, false, null, null);
+    }
+
+    /**
+     * Create a bi-temporal as-of join of records with the specified keys,
+     * which ignores right records recorded after the left record.
+     *
+     * @param leftKey key of left record
+     * @param rightKey key of right record
+     * @param <L> type of left record
+     * @param <R> type of right record
+     * @param <T> comparable type of ID attribute
+     * @return new bi-temporal as-of join
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public static <L, R, T extends Comparable<T>> AsOfJoin<L, R, T> bitemporal(
+            final Function<? super L, ? extends BiTemporalNamespaceId<T>> leftKey,
+            final Function<? super R, ? extends BiTemporalNamespaceId<T>> rightKey) {
+        requireNonNull(leftKey, "Left key cannot be null");
+        requireNonNull(rightKey, "Right key cannot be null");
+        return new AsOfJoin<>(leftKey, rightKey, true, null, null);
+    }
+
+    private final Function<? super L, ? extends TemporalNamespaceId<T>> leftKey;
+    private final Function<? super R, ? extends TemporalNamespaceId<T>> rightKey;
+    private final boolean bitemporal;
+    private final Duration tolerance;
+    private final Instant asAtCutoff;
+
+    private AsOfJoin(final Function<? super L, ? extends TemporalNamespaceId<T>> leftKey,
+                     final Function<? super R, ? extends TemporalNamespaceId<T>> rightKey,
+                     final boolean bitemporal,
+                     final Duration tolerance,
+                     final Instant asAtCutoff) {
+        this.leftKey = leftKey;
+        this.rightKey = rightKey;
+        this.bitemporal = bitemporal;
+        this.tolerance = tolerance;
+        this.asAtCutoff = asAtCutoff;
+    }
+
+    /**
+     * Get a copy of this join which matches only right records at most the
+     * specified duration before the left record.
+     *
+     * @param tolerance maximum difference of 'as of' times
+     * @return new as-of join
+     * @throws IllegalArgumentException if <tt>tolerance</tt> is null or
+     *                                  negative
+     */
+    public AsOfJoin<L, R, T> withTolerance(final Duration tolerance) {
+        requireNonNull(tolerance, "Tolerance cannot be null");
+        if (tolerance.isNegative()) {
+            throw new IllegalArgumentException("Tolerance cannot be negative");
+        }
+        return new AsOfJoin<>(leftKey, rightKey, bitemporal, tolerance, asAtCutoff);
+    }
+
+    /**
+     * Get a copy of this join which ignores right records recorded (as at)
+     * after the specified time.
+     *
+     * @param asAtCutoff latest recorded time of right records, inclusive
+     * @return new as-of join
+     * @throws IllegalArgumentException if <tt>asAtCutoff</tt> is null
+     */
+    public AsOfJoin<L, R, T> withAsAtCutoff(final Instant asAtCutoff) {
+        requireNonNull(asAtCutoff, "As at cutoff cannot be null");
+        return new AsOfJoin<>(leftKey, rightKey, bitemporal, tolerance, asAtCutoff);
+    }
+
+    /**
+     * Join the specified sorted sources. The result has one element per left
+     * record, in order of left record.
+     *
+     * @param left left records, sorted by key
+     * @param right right records, sorted by key
+     * @param combiner function of left record and matched right record (or
+     *                 null if none) to result
+     * @param <O> type of result
+     * @return iterator of results; it throws {@code IllegalStateException}
+     *         if either source is not sorted
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public <O> Iterator<O> join(final Iterator<? extends L> left,
+                                final Iterator<? extends R> right,
+                                final BiFunction<? super L, ? super R, ? extends O> combiner) {
+        requireNonNull(left, "Left records cannot be null");
+        requireNonNull(right, "Right records cannot be null");
+        requireNonNull(combiner, "Combiner cannot be null");
+        return new JoinIterator<>(left, right, combiner);
+    }
+
+    /**
+     * Join the specified sorted sources. Closing the returned stream closes
+     * both sources.
+     *
+     * @param left left records, sorted by key
+     * @param right right records, sorted by key
+     * @param combiner function of left record and matched right record (or
+     *                 null if none) to result
+     * @param <O> type of result
+     * @return sequential stream of results, in order of left record
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public <O> Stream<O> join(final Stream<? extends L> left,
+                              final Stream<? extends R> right,
+                              final BiFunction<? super L, ? super R, ? extends O> combiner) {
+        requireNonNull(left, "Left records cannot be null");
+        requireNonNull(right, "Right records cannot be null");
+        return toStream(this.<O>join(left.iterator(), right.iterator(), combiner))
+                .onClose(left::close)
+                .onClose(right::close);
+    }
+
+    /**
+     * Join the specified partitioned sources, pairing the partitions of each
+     * side by position. All records of an ID must be in the same partition
+     * on both sides.
+     *
+     * @param left partitions of left records, each sorted by key
+     * @param right partitions of right records, each sorted by key
+     * @param parallel if true, join partitions in parallel
+     * @param combiner function of left record and matched right record (or
+     *                 null if none) to result
+     * @param <O> type of result
+     * @return stream of results, in order of partition and then of left
+     *         record
+     * @throws IllegalArgumentException if any argument is null, or the
+     *                                  sides have different numbers of
+     *                                  partitions
+     */
+    public <O> Stream<O> join(final List<? extends Iterable<? extends L>> left,
+                              final List<? extends Iterable<? extends R>> right,
+                              final boolean parallel,
+                              final BiFunction<? super L, ? super R, ? extends O> combiner) {
+        requireNonNull(left, "Left partitions cannot be null");
+        requireNonNull(right, "Right partitions cannot be null");
+        requireNonNull(combiner, "Combiner cannot be null");
+        if (left.size() != right.size()) {
+            throw new IllegalArgumentException("Sides must have the same number of partitions");
+        }
+        IntStream partitions = IntStream.range(0, left.size());
+        if (parallel) {
+            partitions = partitions.parallel();
+        }
+        return partitions.boxed()
+                         .flatMap(i -> toStream(this.<O>join(left.get(i).iterator(), right.get(i).iterator(), combiner)));
+    }
+
+    private static <E> Stream<E> toStream(final Iterator<E> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
+    private static long asAtSecond(final TemporalNamespaceId<?> key) {
+        return (key instanceof BiTemporalNamespaceId)
+               ? ((BiTemporalNamespaceId<?>)key).getAsAtEpochSecond()
+               : Long.MIN_VALUE;
+    }
+
+    private static int asAtNano(final TemporalNamespaceId<?> key) {
+        return (key instanceof BiTemporalNamespaceId) ? ((BiTemporalNamespaceId<?>)key).getAsAtNano() : 0;
+    }
+
+    private static int compare(final long s1, final int n1, final long s2, final int n2) {
+        final int comp = Long.compare(s1, s2);
+        return (0 != comp) ? comp : Integer.compare(n1, n2);
+    }
+
+    private static int compareAsOf(final TemporalNamespaceId<?> a, final TemporalNamespaceId<?> b) {
+        return compare(a.getAsOfEpochSecond(), a.getAsOfNano(), b.getAsOfEpochSecond(), b.getAsOfNano());
+    }
+
+    private static int compareAsAt(final TemporalNamespaceId<?> a, final long second, final int nano) {
+        return compare(asAtSecond(a), asAtNano(a), second, nano);
+    }
+
+    private final class JoinIterator<O> implements Iterator<O> {
+
+        private final Iterator<? extends L> left;
+        private final Iterator<? extends R> right;
+        private final BiFunction<? super L, ? super R, ? extends O> combiner;
+        private TemporalNamespaceId<T> lastLeftKey;
+        private TemporalNamespaceId<T> lastRightKey;
+        private R rightHead;
+        private TemporalNamespaceId<T> rightHeadKey;
+        /**
+         * Right records of the current ID which may still be matched, in
+         * increasing order of both 'as of' and 'as at' time.
+         */
+        private final List<R> candidates = new ArrayList<>();
+        private final List<TemporalNamespaceId<T>> candidateKeys = new ArrayList<>();
+
+        JoinIterator(final Iterator<? extends L> left,
+                     final Iterator<? extends R> right,
+                     final BiFunction<? super L, ? super R, ? extends O> combiner) {
+            this.left = left;
+            this.right = right;
+            this.combiner = combiner;
+            readRight();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return left.hasNext();
+        }
+
+        @Override
+        public O next() {
+            if (!left.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final L l = left.next();
+            final TemporalNamespaceId<T> lk = requireNonNull(leftKey.apply(l), "Left key cannot be null");
+            if (null != lastLeftKey && 0 < lastLeftKey.compareTo(lk)) {
+                throw new IllegalStateException("Left records are not sorted: " + lastLeftKey + " precedes " + lk);
+            }
+            lastLeftKey = lk;
+            if (!candidateKeys.isEmpty() && 0 != IdComparators.compareNamespaceIds(candidateKeys.get(0), lk)) {
+                clearCandidates();
+            }
+            while (null != rightHead) {
+                int comp = IdComparators.compareNamespaceIds(rightHeadKey, lk);
+                if (0 < comp || (0 == comp && 0 < compareAsOf(rightHeadKey, lk))) {
+                    break;
+                }
+                if (0 == comp) {
+                    addCandidate(rightHead, rightHeadKey);
+                }
+                readRight();
+            }
+            return combiner.apply(l, match(lk));
+        }
+
+        private R match(final TemporalNamespaceId<T> lk) {
+            int i = candidateKeys.size() - 1;
+            if (bitemporal) {
+                // Last candidate recorded no later than left record
+                final long second = asAtSecond(lk);
+                final int nano = asAtNano(lk);
+                int low = 0;
+                int high = i;
+                i = -1;
+                while (low <= high) {
+                    final int mid = (low + high) >>> 1;
+                    if (0 >= compareAsAt(candidateKeys.get(mid), second, nano)) {
+                        i = mid;
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+            }
+            if (0 > i) {
+                return null;
+            }
+            final TemporalNamespaceId<T> rk = candidateKeys.get(i);
+            if (null != tolerance) {
+                long seconds = lk.getAsOfEpochSecond() - rk.getAsOfEpochSecond();
+                int nanos = lk.getAsOfNano() - rk.getAsOfNano();
+                if (0 > nanos) {
+                    seconds--;
+                    nanos += 1_000_000_000;
+                }
+                if (0 < compare(seconds, nanos, tolerance.getSeconds(), tolerance.getNano())) {
+                    return null;
+                }
+            }
+            return candidates.get(i);
+        }
+
+        private void addCandidate(final R r, final TemporalNamespaceId<T> rk) {
+            if (null != asAtCutoff && 0 < compareAsAt(rk, asAtCutoff.getEpochSecond(), asAtCutoff.getNano())) {
+                return;
+            }
+            if (!bitemporal || (!candidateKeys.isEmpty()
+                                && 0 != IdComparators.compareNamespaceIds(candidateKeys.get(0), rk))) {
+                clearCandidates();
+            }
+            // Candidates recorded no earlier than r are superseded by it
+            final long second = asAtSecond(rk);
+            final int nano = asAtNano(rk);
+            int size = candidateKeys.size();
+            while (0 < size && 0 <= compareAsAt(candidateKeys.get(size - 1), second, nano)) {
+                size--;
+                candidates.remove(size);
+                candidateKeys.remove(size);
+            }
+            candidates.add(r);
+            candidateKeys.add(rk);
+        }
+
+        private void clearCandidates() {
+            candidates.clear();
+            candidateKeys.clear();
+        }
+
+        private void readRight() {
+            if (!right.hasNext()) {
+                rightHead = null;
+                rightHeadKey = null;
+                return;
+            }
+            rightHead = right.next();
+            rightHeadKey = requireNonNull(rightKey.apply(rightHead), "Right key cannot be null");
+            if (null != lastRightKey && 0 < lastRightKey.compareTo(rightHeadKey)) {
+                throw new IllegalStateException("Right records are not sorted: "
+                                                + lastRightKey + " precedes " + rightHeadKey);
+            }
+            lastRightKey = rightHeadKey;
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Rectangle of valid time and recorded time in which a version of an ID is
+ * effective. The recorded time of a version runs from its 'as at' time,
+ * inclusive, to the 'as at' time of its restatement, exclusive, that is of
+ * the next record with the same 'as of' time; it is open-ended if the
+ * version has not been restated. Its valid time runs from its 'as of' time
+ * to the earliest later 'as of' time of the ID <i>recorded by then</i>, so a
+ * version's recorded time is split into several rectangles where later
+ * versions were recorded during it: before the next version was recorded, a
+ * version is valid indefinitely.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see ValidityIntervals
+ */
+public final class BitemporalInterval<T extends Comparable<T>> extends ValidityInterval<T> {
+
+    private final long recordedFromSecond;
+    private final int recordedFromNano;
+    private final long recordedToSecond;
+    private final int recordedToNano;
+
+    BitemporalInterval(final BiTemporalNamespaceId<T> version,
+                       final long validToSecond,
+                       final int validToNano,
+                       final long recordedFromSecond,
+                       final int recordedFromNano,
+                       final long recordedToSecond,
+                       final int recordedToNano) {
+        super(version, validToSecond, validToNano);
+        this.recordedFromSecond = recordedFromSecond;
+        this.recordedFromNano = recordedFromNano;
+        this.recordedToSecond = recordedToSecond;
+        this.recordedToNano = recordedToNano;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BiTemporalNamespaceId<T> getVersion() {
+        return (BiTemporalNamespaceId<T>)super.getVersion();
+    }
+
+    /**
+     * Get the start of the recorded time of this rectangle, inclusive. This
+     * is the 'as at' time of the version, or the time at which a later
+     * version was recorded which closed its valid time.
+     *
+     * @return start of recorded time
+     */
+    public Instant getRecordedFrom() {
+        return Instant.ofEpochSecond(recordedFromSecond, recordedFromNano);
+    }
+
+    /**
+     * Get the end of the recorded time of this rectangle, exclusive. This
+     * is the 'as at' time of the restatement of the version, or the time at
+     * which a later version was recorded which closed its valid time.
+     *
+     * @return end of recorded time, or null if the recorded time of this
+     *         rectangle is open-ended
+     */
+    public Instant getRecordedTo() {
+        return isRecordedOpenEnded() ? null : Instant.ofEpochSecond(recordedToSecond, recordedToNano);
+    }
+
+    /**
+     * Determine whether the recorded time of this rectangle is open-ended,
+     * that is whether it is the last rectangle of a version which has not
+     * been restated.
+     *
+     * @return true if the recorded time of this rectangle has no end
+     */
+    public boolean isRecordedOpenEnded() {
+        return OPEN == recordedToSecond;
+    }
+
+    /**
+     * Determine whether the specified point of valid time and recorded time
+     * is within this rectangle.
+     *
+     * @param validTime valid time to be tested
+     * @param recordedTime recorded time to be tested
+     * @return true if the point is within this rectangle
+     * @throws NullPointerException if any argument is null
+     */
+    public boolean contains(final Instant validTime, final Instant recordedTime) {
+        return contains(validTime)
+               && isWithin(recordedTime.getEpochSecond(), recordedTime.getNano(),
+                           recordedFromSecond, recordedFromNano,
+                           recordedToSecond, recordedToNano);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        BitemporalInterval<?> that = (BitemporalInterval<?>) o;
+        return recordedFromSecond == that.recordedFromSecond && recordedFromNano == that.recordedFromNano
+               && recordedToSecond == that.recordedToSecond && recordedToNano == that.recordedToNano;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode()
+               + Objects.hash(recordedFromSecond, recordedFromNano, recordedToSecond, recordedToNano);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " recorded [" + getRecordedFrom() + ", "
+               + (isRecordedOpenEnded() ? "" : getRecordedTo()) + ')';
+    }
+
+}
@@ -0,0 +1,366 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.IdComparators;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Incrementally maintained view of the latest known record of each version
+ * (ID and 'as of' time) of a feed of bi-temporal IDs: the record with the
+ * latest 'as at' time. Each record applied updates the view in
+ * <i>O(log n)</i> time.
+ * <p>
+ * The view is held in a persistent balanced tree. An update copies the path
+ * from the root to the changed version and publishes a new immutable
+ * {@link Snapshot}, which shares all other nodes with its predecessor.
+ * Readers take and keep snapshots without locking, for as long as they
+ * need a consistent view; a retained snapshot holds only the nodes since
+ * replaced. Updates are serialized.
+ * </p>
+ * <p>
+ * Each change of the view is reported, after it is published, to the
+ * registered {@link ViewChangeListener listeners} on the updating thread, in
+ * order of sequence, so that downstream caches can apply deltas instead of
+ * rereading the view. Listeners should return quickly, since they delay
+ * further updates.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class BitemporalSnapshotView<T extends Comparable<T>> {
+
+    private final List<ViewChangeListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(null, 0L);
+
+    /**
+     * Apply the specified record to this view. The record replaces the
+     * latest known record of its version if it was recorded later, and is
+     * ignored otherwise.
+     *
+     * @param id record to be applied
+     * @return true if this view changed as a result
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean apply(final BiTemporalNamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        synchronized (this) {
+            final Snapshot<T> current = snapshot;
+            final BiTemporalNamespaceId<T> previous = Snapshot.find(current.root, id);
+            if (null != previous && 0 <= compareAsAt(previous, id)) {
+                return false;
+            }
+            final long sequence = current.sequence + 1L;
+            snapshot = new Snapshot<>(put(current.root, id), sequence);
+            for (ViewChangeListener<T> listener : listeners) {
+                listener.changed(previous, id, sequence);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Apply the specified records to this view, in order.
+     *
+     * @param ids records to be applied
+     * @return number of records which changed this view
+     * @throws IllegalArgumentException if <tt>ids</tt> is null or contains
+     *                                  null
+     */
+    public int applyAll(final Iterable<? extends BiTemporalNamespaceId<T>> ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        int changed = 0;
+        for (BiTemporalNamespaceId<T> id : ids) {
+            if (apply(id)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Get the current snapshot of this view. The snapshot is unaffected by
+     * later updates.
+     *
+     * @return current snapshot
+     */
+    public Snapshot<T> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Register a receiver of the changes of this view.
+     *
+     * @param listener receiver of changes
+     * @throws IllegalArgumentException if <tt>listener</tt> is null
+     */
+    public void addListener(final ViewChangeListener<T> listener) {
+        listeners.add(requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    /**
+     * Unregister a receiver of the changes of this view.
+     *
+     * @param listener receiver of changes
+     * @return true if <tt>listener</tt> was registered
+     */
+    public boolean removeListener(final ViewChangeListener<T> listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * Compare the versions of the specified IDs: their {@code NamespaceId}
+     * projections, then their 'as of' times.
+     */
+    static int compareVersions(final TemporalNamespaceId<?> a, final TemporalNamespaceId<?> b) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int comp = IdComparators.compareNamespaceIds((NamespaceId) a, (NamespaceId) b);
+        if (0 == comp) {
+            comp = Long.compare(a.getAsOfEpochSecond(), b.getAsOfEpochSecond());
+            if (0 == comp) {
+                comp = Integer.compare(a.getAsOfNano(), b.getAsOfNano());
+            }
+        }
+        return comp;
+    }
+
+    private static int compareAsAt(final BiTemporalNamespaceId<?> a, final BiTemporalNamespaceId<?> b) {
+        final int comp = Long.compare(a.getAsAtEpochSecond(), b.getAsAtEpochSecond());
+        return (0 != comp) ? comp : Integer.compare(a.getAsAtNano(), b.getAsAtNano());
+    }
+
+    /**
+     * Path-copying insert or replace in an AVL tree.
+     */
+    private static <T extends Comparable<T>> Node<T> put(final Node<T> node, final BiTemporalNamespaceId<T> id) {
+        if (null == node) {
+            return new Node<>(id, null, null);
+        }
+        final int comp = compareVersions(id, node.record);
+        if (0 == comp) {
+            return new Node<>(id, node.left, node.right);
+        }
+        return (0 > comp)
+               ? balance(node.record, put(node.left, id), node.right)
+               : balance(node.record, node.left, put(node.right, id));
+    }
+
+    private static <T extends Comparable<T>> Node<T> balance(final BiTemporalNamespaceId<T> record,
+                                                             final Node<T> left,
+                                                             final Node<T> right) {
+        final int hl = height(left);
+        final int hr = height(right);
+        if (hl > hr + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.record, left.left, new Node<>(record, left.right, right));
+            }
+            return new Node<>(left.right.record,
+                              new Node<>(left.record, left.left, left.right.left),
+                              new Node<>(record, left.right.right, right));
+        }
+        if (hr > hl + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.record, new Node<>(record, left, right.left), right.right);
+            }
+            return new Node<>(right.left.record,
+                              new Node<>(record, left, right.left.left),
+                              new Node<>(right.record, right.left.right, right.right));
+        }
+        return new Node<>(record, left, right);
+    }
+
+    private static int height(final Node<?> node) {
+        return (null == node) ? 0 : node.height;
+    }
+
+    private static int size(final Node<?> node) {
+        return (null == node) ? 0 : node.size;
+    }
+
+    /**
+     * Immutable snapshot of a {@link BitemporalSnapshotView}. Snapshots are
+     * thread-safe.
+     *
+     * @param <T> comparable type of ID attribute
+     */
+    public static final class Snapshot<T extends Comparable<T>> {
+
+        private final Node<T> root;
+        private final long sequence;
+
+        private Snapshot(final Node<T> root, final long sequence) {
+            this.root = root;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Get the sequence number of this snapshot: the number of changes of
+         * the view which it includes.
+         *
+         * @return sequence number
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Get number of versions of this snapshot.
+         *
+         * @return version count
+         */
+        public int size() {
+            return BitemporalSnapshotView.size(root);
+        }
+
+        /**
+         * Get the latest known record of the specified version. The 'as at'
+         * time of <tt>version</tt>, if any, is disregarded.
+         *
+         * @param version ID and 'as of' time
+         * @return latest known record, or null if none
+         * @throws IllegalArgumentException if <tt>version</tt> is null
+         */
+        public BiTemporalNamespaceId<T> get(final TemporalNamespaceId<T> version) {
+            requireNonNull(version, "Version cannot be null");
+            return find(root, version);
+        }
+
+        /**
+         * Get the latest known record of the version of the specified ID
+         * effective at the specified time: the version with the latest 'as
+         * of' time not after it.
+         *
+         * @param id ID to be looked up
+         * @param asOfTime effective time
+         * @return latest known record, or null if none
+         * @throws IllegalArgumentException if any argument is null
+         */
+        public BiTemporalNamespaceId<T> getEffective(final NamespaceId<T> id, final Instant asOfTime) {
+            requireNonNull(id, "ID cannot be null");
+            requireNonNull(asOfTime, "Time cannot be null");
+            final TemporalNamespaceId<T> probe = new TemporalNamespaceId<>(id.getNamespace(), id.getId(), asOfTime);
+            BiTemporalNamespaceId<T> floor = null;
+            Node<T> node = root;
+            while (null != node) {
+                final int comp = compareVersions(probe, node.record);
+                if (0 == comp) {
+                    return node.record;
+                } else if (0 > comp) {
+                    node = node.left;
+                } else {
+                    floor = node.record;
+                    node = node.right;
+                }
+            }
+            return (null != floor && 0 == IdComparators.compareNamespaceIds(floor, id)) ? floor : null;
+        }
+
+        /**
+         * Create a stream of the latest known records of this snapshot, in
+         * 'natural' order.
+         *
+         * @return stream of records
+         */
+        public Stream<BiTemporalNamespaceId<T>> stream() {
+            final Spliterator<BiTemporalNamespaceId<T>> spliterator = Spliterators.spliterator(
+                    new NodeIterator<>(root), size(),
+                    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+            return StreamSupport.stream(spliterator, false);
+        }
+
+        private static <T extends Comparable<T>> BiTemporalNamespaceId<T> find(final Node<T> root,
+                                                                              final TemporalNamespaceId<T> version) {
+            Node<T> node = root;
+            while (null != node) {
+                final int comp = compareVersions(version, node.record);
+                if (0 == comp) {
+                    return node.record;
+                }
+                node = (0 > comp) ? node.left : node.right;
+            }
+            return null;
+        }
+
+    }
+
+    private static final class Node<T extends Comparable<T>> {
+
+        final BiTemporalNamespaceId<T> record;
+        final Node<T> left;
+        final Node<T> right;
+        final int height;
+        final int size;
+
+        Node(final BiTemporalNamespaceId<T> record, final Node<T> left, final Node<T> right) {
+            this.record = record;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = BitemporalSnapshotView.size(left) + BitemporalSnapshotView.size(right) + 1;
+        }
+
+    }
+
+    private static final class NodeIterator<T extends Comparable<T>> implements Iterator<BiTemporalNamespaceId<T>> {
+
+        private final Deque<Node<T>> stack = new ArrayDeque<>();
+
+        NodeIterator(final Node<T> root) {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public BiTemporalNamespaceId<T> next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            final Node<T> node = stack.pop();
+            pushLeft(node.right);
+            return node.record;
+        }
+
+        private void pushLeft(final Node<T> from) {
+            for (Node<T> node = from; null != node; node = node.left) {
+                stack.push(node);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.IdComparators;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Streaming detector of restatements of bi-temporal IDs: records of a
+ * version (ID and 'as of' time) after the first recorded (as at) record of
+ * it. Each restatement is reported to a {@link RestatementListener}, and
+ * counted with its lag in per-namespace {@link RestatementStatistics}.
+ * <p>
+ * IDs are expected in 'natural' order, which groups the records of each
+ * version in order of 'as at' time, so that detection holds a single
+ * record. IDs out of order by no more than a reordering window of positions
+ * are restored to order in a bounded buffer first, by insertion from its
+ * tail, so that an ID in order costs one extra comparison. Duplicate
+ * records are ignored.
+ * </p>
+ * <p>
+ * Instances of this class are not thread-safe; to detect restatements in
+ * parallel, use one detector per partition of IDs by namespace. The
+ * statistics of a detector may be read by other threads, as approximate
+ * snapshots, while it runs.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class RestatementDetector<T extends Comparable<T>> implements Consumer<BiTemporalNamespaceId<T>> {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Create a detector of restatements in IDs sorted in 'natural' order.
+     *
+     * @param listener receiver of restatements
+     * @param <T> comparable type of ID attribute
+     * @return new detector
+     * @throws IllegalArgumentException if <tt>listener</tt> is null
+     */
+    public static <T extends Comparable<T>> RestatementDetector<T> sorted(final RestatementListener<T> listener) {
+        return reordering(0, listener);
+    }
+
+    /**
+     * Create a detector of restatements in IDs out of 'natural' order by no
+     * more than the specified number of positions.
+     *
+     * @param window size of reordering window
+     * @param listener receiver of restatements
+     * @param <T> comparable type of ID attribute
+     * @return new detector
+     * @throws IllegalArgumentException if <tt>window</tt> is negative, or
+     *                                  <tt>listener</tt> is null
+     */
+    public static <T extends Comparable<T>> RestatementDetector<T> reordering(final int window,
+                                                                            final RestatementListener<T> listener) {
+        if (0 > window) {
+            throw new IllegalArgumentException("Reordering window cannot be negative");
+        }
+        requireNonNull(listener, "Listener cannot be null");
+        return new RestatementDetector<>(window, listener);
+    }
+
+    private final int window;
+    private final RestatementListener<T> listener;
+    /** Reordering window: ring of IDs in 'natural' order, from head. */
+    private final BiTemporalNamespaceId<T>[] buffer;
+    private int head;
+    private int size;
+    /** Published concurrently, for reads of statistics by other threads. */
+    private final Map<String, RestatementStatistics> statistics = new ConcurrentHashMap<>();
+    private BiTemporalNamespaceId<T> previous;
+    private RestatementStatistics current;
+    private boolean restated;
+
+    private RestatementDetector(final int window, final RestatementListener<T> listener) {
+        this.window = window;
+        this.listener = listener;
+        this.buffer = newBuffer(window);
+    }
+
+    /**
+     * Consume the next ID.
+     *
+     * @param id ID to be examined
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     * @throws IllegalStateException if <tt>id</tt> is out of order by more
+     *                               than the reordering window
+     */
+    @Override
+    public void accept(final BiTemporalNamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        if (size == window) {
+            if (0 == size || 0 >= compareNatural(id, buffer[head])) {
+                detect(id);
+                return;
+            }
+            detect(buffer[head]);
+            buffer[head] = null;
+            head = (head + 1) % window;
+            size--;
+        }
+        // Insertion from the tail costs one comparison for an ID in order
+        int pos = size;
+        int slot = (head + pos) % window;
+        while (0 < pos) {
+            final int prev = (0 == slot) ? window - 1 : slot - 1;
+            if (0 >= compareNatural(buffer[prev], id)) {
+                break;
+            }
+            buffer[slot] = buffer[prev];
+            slot = prev;
+            pos--;
+        }
+        buffer[slot] = id;
+        size++;
+    }
+
+    /**
+     * Examine the IDs held in the reordering window. Call at the end of
+     * input; IDs consumed afterwards must not precede those flushed.
+     */
+    public void flush() {
+        while (0 < size) {
+            detect(buffer[head]);
+            buffer[head] = null;
+            head = (head + 1) % window;
+            size--;
+        }
+    }
+
+    /**
+     * Get the restatement statistics of the specified namespace.
+     *
+     * @param namespace namespace of statistics
+     * @return statistics, or null if no IDs of <tt>namespace</tt> have been
+     *         examined
+     */
+    public RestatementStatistics getStatistics(final String namespace) {
+        return statistics.get(namespace);
+    }
+
+    /**
+     * Get the restatement statistics of all namespaces examined, in order of
+     * namespace.
+     *
+     * @return unmodifiable map of namespace to statistics
+     */
+    public SortedMap<String, RestatementStatistics> getStatistics() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(statistics));
+    }
+
+    private void detect(final BiTemporalNamespaceId<T> id) {
+        final BiTemporalNamespaceId<T> prev = previous;
+        // Natural order, compared on primitives once the NamespaceId matches
+        int comp = 1;
+        int sameAsOf = 1;
+        if (null != prev) {
+            comp = IdComparators.compareNamespaceIds(id, prev);
+            if (0 == comp) {
+                comp = compare(id.getAsOfEpochSecond(), id.getAsOfNano(),
+                               prev.getAsOfEpochSecond(), prev.getAsOfNano());
+                sameAsOf = comp;
+                if (0 == comp) {
+                    comp = compare(id.getAsAtEpochSecond(), id.getAsAtNano(),
+                                   prev.getAsAtEpochSecond(), prev.getAsAtNano());
+                }
+            }
+            if (0 == comp) {
+                return;
+            }
+            if (0 > comp) {
+                throw new IllegalStateException("ID out of order beyond reordering window: "
+                                                + prev + " precedes " + id);
+            }
+        }
+        previous = id;
+        RestatementStatistics stats = current;
+        if (null == stats || (prev.getNamespace() != id.getNamespace()
+                              && !stats.getNamespace().equals(id.getNamespace()))) {
+            stats = statistics.computeIfAbsent(id.getNamespace(), RestatementStatistics::new);
+            current = stats;
+        }
+        stats.recordCount++;
+        if (0 == sameAsOf) {
+            final long lag = lagNanos(id);
+            stats.restated(!restated, lag);
+            restated = true;
+            listener.restated(prev, id, lag);
+        } else {
+            stats.versionCount++;
+            restated = false;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T extends Comparable<T>> BiTemporalNamespaceId<T>[] newBuffer(final int window) {
+        return new BiTemporalNamespaceId[window];
+    }
+
+    /**
+     * Natural order of bi-temporal IDs, as {@code compareTo} without boxing.
+     */
+    private static <T extends Comparable<T>> int compareNatural(final BiTemporalNamespaceId<T> a,
+                                                                final BiTemporalNamespaceId<T> b) {
+        int comp = IdComparators.compareNamespaceIds(a, b);
+        if (0 == comp) {
+            comp = compare(a.getAsOfEpochSecond(), a.getAsOfNano(), b.getAsOfEpochSecond(), b.getAsOfNano());
+            if (0 == comp) {
+                comp = compare(a.getAsAtEpochSecond(), a.getAsAtNano(), b.getAsAtEpochSecond(), b.getAsAtNano());
+            }
+        }
+        return comp;
+    }
+
+    private static int compare(final long s1, final int n1, final long s2, final int n2) {
+        final int comp = Long.compare(s1, s2);
+        return (0 != comp) ? comp : Integer.compare(n1, n2);
+    }
+
+    private static long lagNanos(final BiTemporalNamespaceId<?> id) {
+        final long seconds = id.getAsAtEpochSecond() - id.getAsOfEpochSecond();
+        final long nanos = id.getAsAtNano() - id.getAsOfNano();
+        if (Long.MAX_VALUE / NANOS_PER_SECOND < Math.abs(seconds)) {
+            return (0L > seconds) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return seconds * NANOS_PER_SECOND + nanos;
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+
+/**
+ * Receiver of the restatements found by a {@link RestatementDetector}.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@FunctionalInterface
+public interface RestatementListener<T extends Comparable<T>> {
+
+    /**
+     * Receive a restatement: a record of a version of an ID which follows an
+     * earlier recorded (as at) record of the same 'as of' time.
+     *
+     * @param previous record restated
+     * @param restatement restating record
+     * @param lagNanos nanoseconds from 'as of' time to 'as at' time of
+     *                 <tt>restatement</tt>; negative if recorded before it
+     *                 was effective
+     */
+    void restated(BiTemporalNamespaceId<T> previous, BiTemporalNamespaceId<T> restatement, long lagNanos);
+
+}
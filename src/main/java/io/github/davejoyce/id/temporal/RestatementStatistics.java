@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.metrics.LatencyHistogram;
+
+/**
+ * Restatement statistics of the IDs of one namespace, as accumulated by a
+ * {@link RestatementDetector}. Lags of restatements recorded before their
+ * 'as of' time are counted as zero in the lag histogram.
+ * <p>
+ * Statistics are written by the single thread running their detector, and
+ * may be read by other threads while it runs; each count is then current,
+ * but counts read together may be of different moments.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class RestatementStatistics {
+
+    private final String namespace;
+    private final LatencyHistogram lags = new LatencyHistogram();
+    // Volatile, not atomic: increments are made only by the detector thread
+    volatile long recordCount;
+    volatile long versionCount;
+    volatile long restatedVersionCount;
+    volatile long restatementCount;
+
+    RestatementStatistics(final String namespace) {
+        this.namespace = namespace;
+    }
+
+    /**
+     * Get the namespace of these statistics.
+     *
+     * @return namespace
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Get number of distinct records, that is of distinct 'as at' times of
+     * all versions.
+     *
+     * @return record count
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Get number of distinct versions, that is of distinct 'as of' times of
+     * all IDs.
+     *
+     * @return version count
+     */
+    public long getVersionCount() {
+        return versionCount;
+    }
+
+    /**
+     * Get number of versions restated at least once.
+     *
+     * @return restated version count
+     */
+    public long getRestatedVersionCount() {
+        return restatedVersionCount;
+    }
+
+    /**
+     * Get number of restatements; a version recorded <i>n</i> times is
+     * restated <i>n</i> - 1 times.
+     *
+     * @return restatement count
+     */
+    public long getRestatementCount() {
+        return restatementCount;
+    }
+
+    /**
+     * Get the fraction of versions restated at least once.
+     *
+     * @return restatement rate, from 0 to 1
+     */
+    public double getRestatementRate() {
+        final long versions = versionCount;
+        return (0L == versions) ? 0.0 : Math.min(1.0, (double) restatedVersionCount / versions);
+    }
+
+    /**
+     * Get the histogram of restatement lags, in nanoseconds from 'as of'
+     * time to 'as at' time of each restatement.
+     *
+     * @return lag histogram
+     */
+    public LatencyHistogram getLagHistogram() {
+        return lags;
+    }
+
+    void restated(final boolean first, final long lagNanos) {
+        restatementCount++;
+        if (first) {
+            restatedVersionCount++;
+        }
+        lags.record(Math.max(0L, lagNanos));
+    }
+
+    @Override
+    public String toString() {
+        return namespace + ": " + restatementCount + " restatements of " + restatedVersionCount
+               + '/' + versionCount + " versions, p50 lag " + lags.getValueAtPercentile(50.0)
+               + " ns, max lag " + lags.getMax() + " ns";
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Policy deciding which versions of the history of an ID are retained by
+ * compaction of a {@link VersionHistoryStore}. A policy examines the whole
+ * history of one ID at a time, in 'natural' order, and releases the
+ * versions it does not retain; a version is retained only if every policy
+ * applied retains it.
+ * <p>
+ * Instances of this class must be immutable and thread-safe.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public abstract class RetentionPolicy {
+
+    private static final RetentionPolicy KEEP_ALL = new RetentionPolicy() {
+        @Override
+        public void retain(final List<? extends TemporalNamespaceId<?>> history,
+                           final long nowEpochSecond,
+                           final boolean[] retained) {
+            // Retain everything
+        }
+    };
+
+    private static final RetentionPolicy LATEST_AS_AT = new RetentionPolicy() {
+        @Override
+        public void retain(final List<? extends TemporalNamespaceId<?>> history,
+                           final long nowEpochSecond,
+                           final boolean[] retained) {
+            // Records of one 'as of' time are adjacent, in order of 'as at' time
+            for (int i = 0; i + 1 < history.size(); i++) {
+                final TemporalNamespaceId<?> v = history.get(i);
+                final TemporalNamespaceId<?> next = history.get(i + 1);
+                if (v instanceof BiTemporalNamespaceId
+                    && v.getAsOfEpochSecond() == next.getAsOfEpochSecond()
+                    && v.getAsOfNano() == next.getAsOfNano()) {
+                    retained[i] = false;
+                }
+            }
+        }
+    };
+
+    /**
+     * Get a policy which retains all versions.
+     *
+     * @return retain-all policy
+     */
+    public static RetentionPolicy keepAll() {
+        return KEEP_ALL;
+    }
+
+    /**
+     * Get a policy which retains the latest versions of each ID, each with
+     * its restatements.
+     *
+     * @param count number of versions to be retained
+     * @return keep-last policy
+     * @throws IllegalArgumentException if <tt>count</tt> is less than 1
+     */
+    public static RetentionPolicy keepLast(final int count) {
+        if (1 > count) {
+            throw new IllegalArgumentException("Version count must be positive");
+        }
+        return new RetentionPolicy() {
+            @Override
+            public void retain(final List<? extends TemporalNamespaceId<?>> history,
+                               final long nowEpochSecond,
+                               final boolean[] retained) {
+                // Last versions, each with its restatements
+                int firstRetained = history.size();
+                for (int versions = 0; 0 < firstRetained && count > versions; versions++) {
+                    final TemporalNamespaceId<?> version = history.get(--firstRetained);
+                    while (0 < firstRetained && sameAsOf(version, history.get(firstRetained - 1))) {
+                        firstRetained--;
+                    }
+                }
+                Arrays.fill(retained, 0, firstRetained, false);
+            }
+        };
+    }
+
+    /**
+     * Get a policy which retains the versions effective within the
+     * specified duration before now: those with later 'as of' times, and the
+     * latest version before them, which is effective at the start of the
+     * duration.
+     *
+     * @param age duration of retention
+     * @return keep-newer-than policy
+     * @throws IllegalArgumentException if <tt>age</tt> is null or negative
+     */
+    public static RetentionPolicy keepNewerThan(final Duration age) {
+        requireNonNull(age, "Age cannot be null");
+        if (age.isNegative()) {
+            throw new IllegalArgumentException("Age cannot be negative");
+        }
+        final long seconds = age.getSeconds() + ((0 == age.getNano()) ? 0L : 1L);
+        return new RetentionPolicy() {
+            @Override
+            public void retain(final List<? extends TemporalNamespaceId<?>> history,
+                               final long nowEpochSecond,
+                               final boolean[] retained) {
+                final long cutoff = nowEpochSecond - seconds;
+                // Last version effective at cutoff, with its restatements
+                int firstRetained = history.size();
+                while (0 < firstRetained && history.get(firstRetained - 1).getAsOfEpochSecond() >= cutoff) {
+                    firstRetained--;
+                }
+                if (0 < firstRetained) {
+                    final TemporalNamespaceId<?> effective = history.get(--firstRetained);
+                    while (0 < firstRetained && sameAsOf(effective, history.get(firstRetained - 1))) {
+                        firstRetained--;
+                    }
+                }
+                Arrays.fill(retained, 0, firstRetained, false);
+            }
+        };
+    }
+
+    /**
+     * Get a policy which retains one version per time bucket: the latest
+     * version of each bucket, which is effective at the end of it, with its
+     * restatements.
+     *
+     * @param bucketing bucketing of 'as of' times
+     * @return downsampling policy
+     * @throws IllegalArgumentException if <tt>bucketing</tt> is null
+     */
+    public static RetentionPolicy keepOnePerBucket(final TimeBucketing bucketing) {
+        requireNonNull(bucketing, "Bucketing cannot be null");
+        return new RetentionPolicy() {
+            @Override
+            public void retain(final List<? extends TemporalNamespaceId<?>> history,
+                               final long nowEpochSecond,
+                               final boolean[] retained) {
+                for (int i = 0; i + 1 < history.size(); i++) {
+                    final TemporalNamespaceId<?> v = history.get(i);
+                    final TemporalNamespaceId<?> next = history.get(i + 1);
+                    if (!sameAsOf(v, next)
+                        && bucketing.bucketStart(v.getAsOfEpochSecond())
+                           == bucketing.bucketStart(next.getAsOfEpochSecond())) {
+                        // Release v and its restatements, superseded within the bucket
+                        for (int j = i; 0 <= j && sameAsOf(v, history.get(j)); j--) {
+                            retained[j] = false;
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Get a policy which retains only the latest recorded (as at) record of
+     * each version of bi-temporal IDs. Histories of other IDs are unaffected.
+     *
+     * @return latest-as-at policy
+     */
+    public static RetentionPolicy keepLatestAsAt() {
+        return LATEST_AS_AT;
+    }
+
+    /**
+     * Get a policy which retains only the versions retained by all the
+     * specified policies.
+     *
+     * @param policies policies to be combined
+     * @return combined policy
+     * @throws IllegalArgumentException if <tt>policies</tt> is null or
+     *                                  contains null
+     */
+    public static RetentionPolicy allOf(final RetentionPolicy... policies) {
+        requireNonNull(policies, "Policies cannot be null");
+        final RetentionPolicy[] copy = policies.clone();
+        for (RetentionPolicy policy : copy) {
+            requireNonNull(policy, "Policy cannot be null");
+        }
+        return new RetentionPolicy() {
+            @Override
+            public void retain(final List<? extends TemporalNamespaceId<?>> history,
+                               final long nowEpochSecond,
+                               final boolean[] retained) {
+                for (RetentionPolicy policy : copy) {
+                    policy.retain(history, nowEpochSecond, retained);
+                }
+            }
+        };
+    }
+
+    /**
+     * Release the versions of the specified history which this policy does
+     * not retain, by clearing their flags. Flags already cleared must be left
+     * cleared.
+     *
+     * @param history versions of one ID, in 'natural' order
+     * @param nowEpochSecond current time in seconds since UNIX epoch
+     * @param retained retention flag of each version of <tt>history</tt>
+     */
+    public abstract void retain(List<? extends TemporalNamespaceId<?>> history,
+                                long nowEpochSecond,
+                                boolean[] retained);
+
+    static boolean sameAsOf(final TemporalNamespaceId<?> a, final TemporalNamespaceId<?> b) {
+        return a.getAsOfEpochSecond() == b.getAsOfEpochSecond() && a.getAsOfNano() == b.getAsOfNano();
+    }
+
+}
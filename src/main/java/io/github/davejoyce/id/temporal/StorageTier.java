@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+/**
+ * Representation in which the IDs of a time bucket are stored, from hottest
+ * to coldest.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public enum StorageTier {
+
+    /** Mutable, sorted in-memory set, for buckets still receiving IDs. */
+    HOT,
+
+    /** Immutable, columnar in-memory {@code IdBatch}. */
+    WARM,
+
+    /** Immutable, memory-mapped {@code MappedIdFile} on disk. */
+    COLD
+
+}
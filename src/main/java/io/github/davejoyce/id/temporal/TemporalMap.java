@@ -0,0 +1,562 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import io.github.davejoyce.id.stream.MutableTemporalIdView;
+import io.github.davejoyce.id.stream.TemporalIdView;
+import io.github.davejoyce.util.Hash64;
+
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Map of versioned values keyed by {@code NamespaceId}, with time travel:
+ * each value is put at a version (the 'as of' time of a temporal ID), and
+ * read as of any time, yielding the value of the latest version not after
+ * it. The 'as at' time of bi-temporal IDs is disregarded.
+ * <p>
+ * The map is a persistent hash array mapped trie of IDs, each holding an
+ * immutable vector of its versions in order of 'as of' time. A put copies
+ * the path from the root to the ID and the version vector of the ID, then
+ * publishes the new root with compare-and-set, so neither readers nor
+ * writers lock. A {@link Snapshot} is the root current when it is taken,
+ * taken in <i>O(1)</i> time and unaffected by later puts.
+ * </p>
+ * <p>
+ * Values cannot be null. All IDs of a map should have IDs of one class,
+ * since IDs of different classes are not mutually comparable.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @param <V> type of value
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class TemporalMap<T extends Comparable<T>, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final BitmapNode EMPTY_NODE = new BitmapNode(0, new Object[0]);
+
+    private final AtomicReference<Snapshot<T, V>> current =
+            new AtomicReference<>(new Snapshot<>(EMPTY_NODE, 0, 0L));
+
+    /**
+     * Put the specified value at the specified version of its ID.
+     *
+     * @param version ID and 'as of' time of value
+     * @param value value to be put
+     * @return value previously put at <tt>version</tt>, or null if none
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public V put(final TemporalNamespaceId<T> version, final V value) {
+        requireNonNull(version, "Version cannot be null");
+        requireNonNull(value, "Value cannot be null");
+        final int hash = hash(version);
+        final long second = version.getAsOfEpochSecond();
+        final int nano = version.getAsOfNano();
+        while (true) {
+            final Snapshot<T, V> snapshot = current.get();
+            final Object[] replaced = new Object[2];
+            final BitmapNode root = (BitmapNode) put(snapshot.root, 0, hash, version, second, nano, value, replaced);
+            final int idCount = snapshot.idCount + ((null == replaced[0]) ? 1 : 0);
+            final long versionCount = snapshot.versionCount + ((null == replaced[1]) ? 1L : 0L);
+            if (current.compareAndSet(snapshot, new Snapshot<>(root, idCount, versionCount))) {
+                @SuppressWarnings("unchecked")
+                final V previous = (V) replaced[1];
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Get the value of the specified ID as of the specified time.
+     *
+     * @param id ID to be looked up
+     * @param asOfTime time of value
+     * @return value of the latest version of <tt>id</tt> not after
+     *         <tt>asOfTime</tt>, or null if none
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public V get(final NamespaceId<T> id, final Instant asOfTime) {
+        return current.get().get(id, asOfTime);
+    }
+
+    /**
+     * Get the value of the ID of the specified version as of its 'as of'
+     * time.
+     *
+     * @param version ID and 'as of' time
+     * @return value of the latest version of the ID not after
+     *         <tt>version</tt>, or null if none
+     * @throws IllegalArgumentException if <tt>version</tt> is null
+     */
+    public V get(final TemporalNamespaceId<T> version) {
+        return current.get().get(version);
+    }
+
+    /**
+     * Get the value of the latest version of the specified ID.
+     *
+     * @param id ID to be looked up
+     * @return latest value, or null if none
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public V getLatest(final NamespaceId<T> id) {
+        return current.get().getLatest(id);
+    }
+
+    /**
+     * Get number of versions of this map.
+     *
+     * @return version count
+     */
+    public long size() {
+        return current.get().size();
+    }
+
+    /**
+     * Take a snapshot of this map, unaffected by later puts.
+     *
+     * @return current snapshot
+     */
+    public Snapshot<T, V> snapshot() {
+        return current.get();
+    }
+
+    static int hash(final NamespaceId<?> id) {
+        return (int) Hash64.combine(id.getNamespace().hashCode(), id.getId().hashCode());
+    }
+
+    private static Object put(final Object node,
+                              final int shift,
+                              final int hash,
+                              final NamespaceId<?> id,
+                              final long second,
+                              final int nano,
+                              final Object value,
+                              final Object[] replaced) {
+        if (node instanceof BitmapNode) {
+            final BitmapNode bitmapNode = (BitmapNode) node;
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            final int index = Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+            if (0 == (bitmapNode.bitmap & bit)) {
+                final Object[] slots = new Object[bitmapNode.slots.length + 1];
+                System.arraycopy(bitmapNode.slots, 0, slots, 0, index);
+                System.arraycopy(bitmapNode.slots, index, slots, index + 1, bitmapNode.slots.length - index);
+                slots[index] = Leaf.of(hash, id, second, nano, value);
+                return new BitmapNode(bitmapNode.bitmap | bit, slots);
+            }
+            final Object[] slots = bitmapNode.slots.clone();
+            slots[index] = put(slots[index], shift + BITS, hash, id, second, nano, value, replaced);
+            return new BitmapNode(bitmapNode.bitmap, slots);
+        }
+        if (node instanceof Leaf) {
+            final Leaf leaf = (Leaf) node;
+            if (leaf.hash == hash && leaf.matches(id)) {
+                replaced[0] = leaf;
+                return leaf.with(second, nano, value, replaced);
+            }
+            if (32 <= shift) {
+                return new Leaf[] {leaf, Leaf.of(hash, id, second, nano, value)};
+            }
+            // Push the existing leaf one level down, then insert beside it
+            final Object pushed = new BitmapNode(1 << ((leaf.hash >>> shift) & MASK), new Object[] {leaf});
+            return put(pushed, shift, hash, id, second, nano, value, replaced);
+        }
+        // Leaves with identical hashes, below the last level of the trie
+        final Leaf[] leaves = (Leaf[]) node;
+        for (int i = 0; i < leaves.length; i++) {
+            if (leaves[i].matches(id)) {
+                final Leaf[] updated = leaves.clone();
+                replaced[0] = leaves[i];
+                updated[i] = leaves[i].with(second, nano, value, replaced);
+                return updated;
+            }
+        }
+        final Leaf[] updated = Arrays.copyOf(leaves, leaves.length + 1);
+        updated[leaves.length] = Leaf.of(hash, id, second, nano, value);
+        return updated;
+    }
+
+    /**
+     * Immutable snapshot of a {@link TemporalMap}. Snapshots are thread-safe.
+     *
+     * @param <T> comparable type of ID attribute
+     * @param <V> type of value
+     */
+    public static final class Snapshot<T extends Comparable<T>, V>
+            implements Iterable<Map.Entry<TemporalNamespaceId<T>, V>> {
+
+        private final BitmapNode root;
+        private final int idCount;
+        private final long versionCount;
+
+        private Snapshot(final BitmapNode root, final int idCount, final long versionCount) {
+            this.root = root;
+            this.idCount = idCount;
+            this.versionCount = versionCount;
+        }
+
+        /**
+         * Get the value of the specified ID as of the specified time.
+         *
+         * @param id ID to be looked up
+         * @param asOfTime time of value
+         * @return value of the latest version of <tt>id</tt> not after
+         *         <tt>asOfTime</tt>, or null if none
+         * @throws IllegalArgumentException if any argument is null
+         */
+        public V get(final NamespaceId<T> id, final Instant asOfTime) {
+            requireNonNull(id, "ID cannot be null");
+            requireNonNull(asOfTime, "Time cannot be null");
+            final Leaf leaf = find(id);
+            return (null == leaf) ? null : this.<V>cast(leaf.floor(asOfTime.getEpochSecond(), asOfTime.getNano()));
+        }
+
+        /**
+         * Get the value of the ID of the specified version as of its 'as of'
+         * time.
+         *
+         * @param version ID and 'as of' time
+         * @return value of the latest version of the ID not after
+         *         <tt>version</tt>, or null if none
+         * @throws IllegalArgumentException if <tt>version</tt> is null
+         */
+        public V get(final TemporalNamespaceId<T> version) {
+            requireNonNull(version, "Version cannot be null");
+            final Leaf leaf = find(version);
+            return (null == leaf)
+                   ? null
+                   : this.<V>cast(leaf.floor(version.getAsOfEpochSecond(), version.getAsOfNano()));
+        }
+
+        /**
+         * Get the value of the latest version of the specified ID.
+         *
+         * @param id ID to be looked up
+         * @return latest value, or null if none
+         * @throws IllegalArgumentException if <tt>id</tt> is null
+         */
+        public V getLatest(final NamespaceId<T> id) {
+            requireNonNull(id, "ID cannot be null");
+            final Leaf leaf = find(id);
+            return (null == leaf) ? null : this.<V>cast(leaf.values[leaf.values.length - 1]);
+        }
+
+        /**
+         * Get number of IDs of this snapshot.
+         *
+         * @return ID count
+         */
+        public int getIdCount() {
+            return idCount;
+        }
+
+        /**
+         * Get number of versions of this snapshot.
+         *
+         * @return version count
+         */
+        public long size() {
+            return versionCount;
+        }
+
+        /**
+         * Create an iterator over the versions and values of this snapshot,
+         * in 'natural' order of version. The IDs are first collected and
+         * sorted, in <i>O(n log n)</i> time for <i>n</i> IDs.
+         *
+         * @return iterator of entries of version and value
+         */
+        @Override
+        public Iterator<Map.Entry<TemporalNamespaceId<T>, V>> iterator() {
+            final List<Leaf> leaves = new ArrayList<>(idCount);
+            collect(root, leaves);
+            leaves.sort((a, b) -> {
+                @SuppressWarnings("unchecked")
+                final NamespaceId<T> ka = (NamespaceId<T>) a.id;
+                @SuppressWarnings("unchecked")
+                final NamespaceId<T> kb = (NamespaceId<T>) b.id;
+                return ka.compareTo(kb);
+            });
+            return new EntryIterator<>(leaves);
+        }
+
+        /**
+         * Perform the specified action on the version and value of each
+         * entry of this snapshot, in no particular order. Each version is
+         * presented through one view, re-pointed for each entry, so that the
+         * scan allocates nothing per version; the view must not be retained
+         * past the call, and {@link TemporalIdView#toImmutable()} copies a
+         * version which must be.
+         *
+         * @param action action to be performed on each version and value
+         * @throws IllegalArgumentException if <tt>action</tt> is null
+         */
+        public void forEachView(final BiConsumer<? super TemporalIdView<T>, ? super V> action) {
+            requireNonNull(action, "Action cannot be null");
+            scan(root, new MutableTemporalIdView<>(), action);
+        }
+
+        private void scan(final Object node,
+                          final MutableTemporalIdView<T> view,
+                          final BiConsumer<? super TemporalIdView<T>, ? super V> action) {
+            if (node instanceof BitmapNode) {
+                for (Object slot : ((BitmapNode) node).slots) {
+                    scan(slot, view, action);
+                }
+                return;
+            }
+            if (node instanceof Leaf) {
+                scan((Leaf) node, view, action);
+                return;
+            }
+            for (Leaf leaf : (Leaf[]) node) {
+                scan(leaf, view, action);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void scan(final Leaf leaf,
+                          final MutableTemporalIdView<T> view,
+                          final BiConsumer<? super TemporalIdView<T>, ? super V> action) {
+            final NamespaceId<T> id = (NamespaceId<T>) leaf.id;
+            for (int version = 0; leaf.values.length > version; version++) {
+                view.set(id.getNamespace(), id.getId(), leaf.second(version), leaf.nano(version));
+                action.accept(view, (V) leaf.values[version]);
+            }
+        }
+
+        private Leaf find(final NamespaceId<?> id) {
+            final int hash = hash(id);
+            Object node = root;
+            int shift = 0;
+            while (true) {
+                if (node instanceof BitmapNode) {
+                    final BitmapNode bitmapNode = (BitmapNode) node;
+                    final int bit = 1 << ((hash >>> shift) & MASK);
+                    if (0 == (bitmapNode.bitmap & bit)) {
+                        return null;
+                    }
+                    node = bitmapNode.slots[Integer.bitCount(bitmapNode.bitmap & (bit - 1))];
+                    shift += BITS;
+                } else if (node instanceof Leaf) {
+                    final Leaf leaf = (Leaf) node;
+                    return (leaf.hash == hash && leaf.matches(id)) ? leaf : null;
+                } else {
+                    for (Leaf leaf : (Leaf[]) node) {
+                        if (leaf.matches(id)) {
+                            return leaf;
+                        }
+                    }
+                    return null;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> R cast(final Object value) {
+            return (R) value;
+        }
+
+        private static void collect(final Object node, final List<Leaf> leaves) {
+            if (node instanceof BitmapNode) {
+                for (Object slot : ((BitmapNode) node).slots) {
+                    collect(slot, leaves);
+                }
+            } else if (node instanceof Leaf) {
+                leaves.add((Leaf) node);
+            } else {
+                leaves.addAll(Arrays.asList((Leaf[]) node));
+            }
+        }
+
+    }
+
+    /**
+     * Interior node of the trie: a slot per set bit of the bitmap, each a
+     * node, a leaf, or an array of leaves with identical hashes.
+     */
+    private static final class BitmapNode {
+
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(final int bitmap, final Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+    }
+
+    /**
+     * ID with its immutable version vector, in order of 'as of' time. The
+     * times are interleaved as pairs of epoch second and nanosecond, so that
+     * a lookup touches one array of times and one of values.
+     */
+    private static final class Leaf {
+
+        final int hash;
+        final NamespaceId<?> id;
+        final long[] times;
+        final Object[] values;
+
+        private Leaf(final int hash,
+                     final NamespaceId<?> id,
+                     final long[] times,
+                     final Object[] values) {
+            this.hash = hash;
+            this.id = id;
+            this.times = times;
+            this.values = values;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static Leaf of(final int hash,
+                       final NamespaceId<?> id,
+                       final long second,
+                       final int nano,
+                       final Object value) {
+            final NamespaceId<?> key = (NamespaceId.class == id.getClass())
+                                       ? id
+                                       : new NamespaceId(id.getNamespace(), id.getId());
+            return new Leaf(hash, key, new long[] {second, nano}, new Object[] {value});
+        }
+
+        boolean matches(final NamespaceId<?> other) {
+            return id.getNamespace().equals(other.getNamespace()) && id.getId().equals(other.getId());
+        }
+
+        long second(final int version) {
+            return times[version << 1];
+        }
+
+        int nano(final int version) {
+            return (int) times[(version << 1) + 1];
+        }
+
+        /**
+         * Index of the version at the specified time, or its insertion point
+         * as by {@code Arrays.binarySearch}.
+         */
+        int search(final long second, final int nano) {
+            int low = 0;
+            int high = values.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                int comp = Long.compare(times[mid << 1], second);
+                if (0 == comp) {
+                    comp = Long.compare(times[(mid << 1) + 1], nano);
+                }
+                if (0 > comp) {
+                    low = mid + 1;
+                } else if (0 < comp) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        Object floor(final long second, final int nano) {
+            final int n = values.length;
+            // Reads of the latest version need no search
+            final long last = times[(n - 1) << 1];
+            if (last < second || (last == second && times[((n - 1) << 1) + 1] <= nano)) {
+                return values[n - 1];
+            }
+            int i = search(second, nano);
+            if (0 > i) {
+                i = -(i + 1) - 1;
+            }
+            return (0 > i) ? null : values[i];
+        }
+
+        Leaf with(final long second, final int nano, final Object value, final Object[] replaced) {
+            int i = search(second, nano);
+            if (0 <= i) {
+                replaced[1] = values[i];
+                final Object[] updated = values.clone();
+                updated[i] = value;
+                return new Leaf(hash, id, times, updated);
+            }
+            i = -(i + 1);
+            final int n = values.length;
+            final long[] t = new long[(n + 1) << 1];
+            final Object[] v = new Object[n + 1];
+            System.arraycopy(times, 0, t, 0, i << 1);
+            System.arraycopy(values, 0, v, 0, i);
+            t[i << 1] = second;
+            t[(i << 1) + 1] = nano;
+            v[i] = value;
+            System.arraycopy(times, i << 1, t, (i + 1) << 1, (n - i) << 1);
+            System.arraycopy(values, i, v, i + 1, n - i);
+            return new Leaf(hash, id, t, v);
+        }
+
+    }
+
+    private static final class EntryIterator<T extends Comparable<T>, V>
+            implements Iterator<Map.Entry<TemporalNamespaceId<T>, V>> {
+
+        private final List<Leaf> leaves;
+        private int leaf;
+        private int version;
+
+        EntryIterator(final List<Leaf> leaves) {
+            this.leaves = leaves;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf < leaves.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<TemporalNamespaceId<T>, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Leaf l = leaves.get(leaf);
+            final NamespaceId<T> id = (NamespaceId<T>) l.id;
+            final Map.Entry<TemporalNamespaceId<T>, V> entry = new AbstractMap.SimpleImmutableEntry<>(
+                    new TemporalNamespaceId<>(id.getNamespace(), id.getId(), l.second(version), l.nano(version)),
+                    (V) l.values[version]);
+            if (++version == l.values.length) {
+                leaf++;
+                version = 0;
+            }
+            return entry;
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import java.time.Duration;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Division of the time line into contiguous, non-overlapping buckets, each
+ * identified by its start in seconds since the epoch. Bucketing works on
+ * primitive epoch seconds, so that no {@code Instant} or calendar objects
+ * are allocated per ID. Buckets are in UTC.
+ * <p>
+ * Subclasses define custom bucketing; {@link #bucketStart(long)} must be
+ * monotonic, and {@link #nextBucketStart(long)} must return the start of
+ * the bucket which follows a bucket.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public abstract class TimeBucketing {
+
+    private static final long SECONDS_PER_HOUR = 3600L;
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    private static final TimeBucketing HOURS = new FixedWidth(SECONDS_PER_HOUR);
+    private static final TimeBucketing DAYS = new FixedWidth(SECONDS_PER_DAY);
+    private static final TimeBucketing MONTHS = new Months();
+
+    /**
+     * Get bucketing by hour.
+     *
+     * @return hourly bucketing
+     */
+    public static TimeBucketing hours() {
+        return HOURS;
+    }
+
+    /**
+     * Get bucketing by day.
+     *
+     * @return daily bucketing
+     */
+    public static TimeBucketing days() {
+        return DAYS;
+    }
+
+    /**
+     * Get bucketing by calendar month.
+     *
+     * @return monthly bucketing
+     */
+    public static TimeBucketing months() {
+        return MONTHS;
+    }
+
+    /**
+     * Get bucketing by the specified fixed width, with buckets aligned to the
+     * epoch.
+     *
+     * @param width width of buckets, of whole seconds
+     * @return fixed width bucketing
+     * @throws IllegalArgumentException if <tt>width</tt> is null, shorter
+     *                                  than one second or not of whole
+     *                                  seconds
+     */
+    public static TimeBucketing fixedWidth(final Duration width) {
+        requireNonNull(width, "Width cannot be null");
+        if (1L > width.getSeconds() || 0 != width.getNano()) {
+            throw new IllegalArgumentException("Width must be a positive whole number of seconds: " + width);
+        }
+        return new FixedWidth(width.getSeconds());
+    }
+
+    /**
+     * Get the start of the bucket containing the specified time.
+     *
+     * @param epochSecond seconds since the epoch
+     * @return start of bucket, in seconds since the epoch
+     */
+    public abstract long bucketStart(long epochSecond);
+
+    /**
+     * Get the start of the bucket following the specified bucket, which is
+     * the exclusive end of the specified bucket.
+     *
+     * @param bucketStart start of bucket, in seconds since the epoch
+     * @return start of next bucket, in seconds since the epoch
+     */
+    public abstract long nextBucketStart(long bucketStart);
+
+    /**
+     * Bucketing by fixed width, aligned to the epoch.
+     */
+    private static final class FixedWidth extends TimeBucketing {
+
+        private final long width;
+
+        FixedWidth(final long width) {
+            this.width = width;
+        }
+
+        @Override
+        public long bucketStart(final long epochSecond) {
+            return Math.floorDiv(epochSecond, width) * width;
+        }
+
+        @Override
+        public long nextBucketStart(final long bucketStart) {
+            return bucketStart + width;
+        }
+
+        @Override
+        public String toString() {
+            return "FixedWidth[" + width + "s]";
+        }
+
+    }
+
+    /**
+     * Bucketing by calendar month of the proleptic Gregorian calendar, by
+     * integer civil calendar arithmetic.
+     */
+    private static final class Months extends TimeBucketing {
+
+        @Override
+        public long bucketStart(final long epochSecond) {
+            final long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+            // Days since 0000-03-01, in 400 year eras of 146097 days
+            final long z = epochDay + 719468L;
+            final long era = Math.floorDiv(z, 146097L);
+            final long doe = z - era * 146097L;
+            final long yoe = (doe - doe / 1460L + doe / 36524L - doe / 146096L) / 365L;
+            final long doy = doe - (365L * yoe + yoe / 4L - yoe / 100L);
+            final long mp = (5L * doy + 2L) / 153L;
+            final long dayOfMonth = doy - (153L * mp + 2L) / 5L;
+            return (epochDay - dayOfMonth) * SECONDS_PER_DAY;
+        }
+
+        @Override
+        public long nextBucketStart(final long bucketStart) {
+            // Any time 32 days after the first of a month is in the next
+            // month
+            return bucketStart(bucketStart + 32L * SECONDS_PER_DAY);
+        }
+
+        @Override
+        public String toString() {
+            return "Months";
+        }
+
+    }
+
+}
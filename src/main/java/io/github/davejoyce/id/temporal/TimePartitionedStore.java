@@ -0,0 +1,637 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import io.github.davejoyce.id.stream.IdBatch;
+import io.github.davejoyce.id.stream.MappedIdFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Store of temporal IDs partitioned into time buckets by their 'as of'
+ * time. Each bucket holds its IDs in a {@link StorageTier tier}: new
+ * buckets are {@link StorageTier#HOT hot}, and {@link #age() aging} moves
+ * buckets which ended long enough ago to the {@link StorageTier#WARM warm}
+ * and then the {@link StorageTier#COLD cold} tier. Aging may run in the
+ * background with {@link #startAging(Duration)}.
+ * <p>
+ * A query by 'as of' range visits only the buckets which overlap the range,
+ * and streams the IDs of each bucket in 'natural' order, bucket by bucket.
+ * IDs may still be added to a bucket after it has aged; they are held hot
+ * alongside the aged IDs until the next aging pass merges them.
+ * </p>
+ * <p>
+ * Readers never block. The IDs of a bucket are published as an immutable
+ * pair of the aged segment and the hot set; aging builds the new segment
+ * from a snapshot of the hot set without locking, then briefly excludes
+ * writers of that bucket only, to publish a new pair. A stream sees the
+ * pair current when it reaches the bucket. All IDs of a store should be of
+ * one class, since IDs of different classes are not mutually comparable.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class TimePartitionedStore<T extends Comparable<T>> implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(TimePartitionedStore.class.getName());
+
+    /**
+     * Create a store with hot and warm tiers only.
+     *
+     * @param bucketing bucketing of 'as of' times
+     * @param warmAfter time after the end of a bucket at which it ages to
+     *                  the warm tier
+     * @param <T> comparable type of ID attribute
+     * @return new store
+     * @throws IllegalArgumentException if any argument is null, or
+     *                                  <tt>warmAfter</tt> is negative
+     */
+    public static <T extends Comparable<T>> TimePartitionedStore<T> inMemory(final TimeBucketing bucketing,
+                                                                           final Duration warmAfter) {
+        requireNonNull(warmAfter, "Warm age cannot be null");
+        return new TimePartitionedStore<>(null, bucketing, warmAfter, null, null, Clock.systemUTC());
+    }
+
+    /**
+     * Create a store with hot, warm and cold tiers. Files of cold buckets
+     * are written to the specified directory, and remain there when the
+     * store is closed.
+     *
+     * @param idType class of ID attribute type
+     * @param bucketing bucketing of 'as of' times
+     * @param warmAfter time after the end of a bucket at which it ages to
+     *                  the warm tier
+     * @param coldAfter time after the end of a bucket at which it ages to
+     *                  the cold tier
+     * @param directory directory of files of cold buckets
+     * @param <T> comparable type of ID attribute
+     * @return new store
+     * @throws IllegalArgumentException if any argument is null, or
+     *                                  <tt>coldAfter</tt> is less than
+     *                                  <tt>warmAfter</tt>
+     */
+    public static <T extends Comparable<T>> TimePartitionedStore<T> tiered(final Class<T> idType,
+                                                                         final TimeBucketing bucketing,
+                                                                         final Duration warmAfter,
+                                                                         final Duration coldAfter,
+                                                                         final Path directory) {
+        return tiered(idType, bucketing, warmAfter, coldAfter, directory, Clock.systemUTC());
+    }
+
+    static <T extends Comparable<T>> TimePartitionedStore<T> tiered(final Class<T> idType,
+                                                                  final TimeBucketing bucketing,
+                                                                  final Duration warmAfter,
+                                                                  final Duration coldAfter,
+                                                                  final Path directory,
+                                                                  final Clock clock) {
+        requireNonNull(idType, "ID type cannot be null");
+        requireNonNull(warmAfter, "Warm age cannot be null");
+        requireNonNull(coldAfter, "Cold age cannot be null");
+        requireNonNull(directory, "Directory cannot be null");
+        if (0 > coldAfter.compareTo(warmAfter)) {
+            throw new IllegalArgumentException("Cold age cannot be less than warm age");
+        }
+        return new TimePartitionedStore<>(idType, bucketing, warmAfter, coldAfter, directory, clock);
+    }
+
+    private final Class<T> idType;
+    private final TimeBucketing bucketing;
+    private final Duration warmAfter;
+    private final Duration coldAfter;
+    private final Path directory;
+    private final Clock clock;
+    private final ConcurrentSkipListMap<Long, Partition<T>> partitions = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService scheduler;
+
+    TimePartitionedStore(final Class<T> idType,
+                         final TimeBucketing bucketing,
+                         final Duration warmAfter,
+                         final Duration coldAfter,
+                         final Path directory,
+                         final Clock clock) {
+        requireNonNull(bucketing, "Bucketing cannot be null");
+        if (warmAfter.isNegative()) {
+            throw new IllegalArgumentException("Warm age cannot be negative");
+        }
+        this.idType = idType;
+        this.bucketing = bucketing;
+        this.warmAfter = warmAfter;
+        this.coldAfter = coldAfter;
+        this.directory = directory;
+        this.clock = clock;
+    }
+
+    /**
+     * Add the specified ID to the bucket of its 'as of' time.
+     *
+     * @param id ID to be added
+     * @return true if this store changed as a result
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean add(final TemporalNamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        final long start = bucketing.bucketStart(id.getAsOfEpochSecond());
+        return partitions.computeIfAbsent(start, s -> new Partition<>(s, bucketing.nextBucketStart(s),
+                                                                      idType, directory))
+                         .add(id);
+    }
+
+    /**
+     * Add the specified IDs.
+     *
+     * @param ids IDs to be added
+     * @return true if this store changed as a result
+     * @throws IllegalArgumentException if <tt>ids</tt> is null or contains
+     *                                  null
+     */
+    public boolean addAll(final Collection<? extends TemporalNamespaceId<T>> ids) {
+        requireNonNull(ids, "IDs cannot be null");
+        boolean changed = false;
+        for (TemporalNamespaceId<T> id : ids) {
+            changed |= add(id);
+        }
+        return changed;
+    }
+
+    /**
+     * Determine whether the specified ID is in this store.
+     *
+     * @param id ID to be looked up
+     * @return true if <tt>id</tt> is in this store
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public boolean contains(final TemporalNamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        final Partition<T> partition = partitions.get(bucketing.bucketStart(id.getAsOfEpochSecond()));
+        return null != partition && partition.state.contains(id);
+    }
+
+    /**
+     * Get number of IDs of this store.
+     *
+     * @return ID count
+     */
+    public long size() {
+        long size = 0L;
+        for (Partition<T> partition : partitions.values()) {
+            size += partition.count.get();
+        }
+        return size;
+    }
+
+    /**
+     * Get number of buckets of this store.
+     *
+     * @return bucket count
+     */
+    public int getBucketCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Get the tier of the bucket containing the specified time.
+     *
+     * @param asOfTime time within bucket
+     * @return tier of bucket, or null if this store has no such bucket
+     * @throws IllegalArgumentException if <tt>asOfTime</tt> is null
+     */
+    public StorageTier getTier(final Instant asOfTime) {
+        requireNonNull(asOfTime, "Time cannot be null");
+        final Partition<T> partition = partitions.get(bucketing.bucketStart(asOfTime.getEpochSecond()));
+        return (null == partition) ? null : partition.state.tier;
+    }
+
+    /**
+     * Create a stream of the IDs with 'as of' times in the specified range.
+     * IDs are in order of bucket, and in 'natural' order within a bucket.
+     *
+     * @param fromInclusive start of range, inclusive
+     * @param toExclusive end of range, exclusive
+     * @return stream of IDs
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public Stream<TemporalNamespaceId<T>> stream(final Instant fromInclusive, final Instant toExclusive) {
+        requireNonNull(fromInclusive, "Start of range cannot be null");
+        requireNonNull(toExclusive, "End of range cannot be null");
+        final long fromSecond = fromInclusive.getEpochSecond();
+        final int fromNano = fromInclusive.getNano();
+        final long toSecond = toExclusive.getEpochSecond();
+        final int toNano = toExclusive.getNano();
+        final NavigableMap<Long, Partition<T>> overlapping =
+                partitions.subMap(bucketing.bucketStart(fromSecond), true, toSecond, 0 < toNano);
+        return overlapping.values().stream().flatMap(partition -> {
+            Stream<TemporalNamespaceId<T>> ids = partition.state.stream();
+            if (partition.start < fromSecond || (partition.start == fromSecond && 0 < fromNano)
+                || partition.end > toSecond) {
+                ids = ids.filter(id -> isInRange(id, fromSecond, fromNano, toSecond, toNano));
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * Create a stream of all IDs of this store. IDs are in order of bucket,
+     * and in 'natural' order within a bucket.
+     *
+     * @return stream of IDs
+     */
+    public Stream<TemporalNamespaceId<T>> stream() {
+        return partitions.values().stream().flatMap(partition -> partition.state.stream());
+    }
+
+    /**
+     * Age the buckets of this store, moving each bucket which ended long
+     * enough ago to a colder tier, and merging IDs added to aged buckets
+     * since they aged.
+     *
+     * @return number of buckets rewritten
+     * @throws UncheckedIOException if a cold bucket file cannot be written
+     */
+    public int age() {
+        final Instant now = clock.instant();
+        int rewritten = 0;
+        for (Partition<T> partition : partitions.values()) {
+            final Duration age = Duration.between(Instant.ofEpochSecond(partition.end), now);
+            StorageTier target = StorageTier.HOT;
+            if (null != coldAfter && 0 <= age.compareTo(coldAfter)) {
+                target = StorageTier.COLD;
+            } else if (0 <= age.compareTo(warmAfter)) {
+                target = StorageTier.WARM;
+            }
+            if (partition.age(target)) {
+                rewritten++;
+            }
+        }
+        return rewritten;
+    }
+
+    /**
+     * Start aging this store in the background, at the specified period.
+     * Failures of aging are logged, and retried at the next period.
+     *
+     * @param period period of aging
+     * @throws IllegalArgumentException if <tt>period</tt> is null or not
+     *                                  positive
+     * @throws IllegalStateException if aging has already been started
+     */
+    public synchronized void startAging(final Duration period) {
+        requireNonNull(period, "Period cannot be null");
+        if (period.isZero() || period.isNegative()) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        if (null != scheduler) {
+            throw new IllegalStateException("Aging already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "id-partition-aging");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                age();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Aging of time partitions failed", e);
+            }
+        }, period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop background aging, if started. The IDs of this store remain
+     * readable.
+     */
+    @Override
+    public synchronized void close() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static boolean isInRange(final TemporalNamespaceId<?> id,
+                                     final long fromSecond,
+                                     final int fromNano,
+                                     final long toSecond,
+                                     final int toNano) {
+        final long s = id.getAsOfEpochSecond();
+        final int n = id.getAsOfNano();
+        return (s > fromSecond || (s == fromSecond && n >= fromNano))
+               && (s < toSecond || (s == toSecond && n < toNano));
+    }
+
+    /**
+     * IDs of one bucket.
+     */
+    private static final class Partition<U extends Comparable<U>> {
+
+        final long start;
+        final long end;
+        private final Class<U> idType;
+        private final Path directory;
+        final AtomicInteger count = new AtomicInteger();
+        /** Excludes writers (shared) from the publication of aging (exclusive). */
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile State<U> state = new State<>(StorageTier.HOT, null, new ConcurrentSkipListSet<>());
+        private int generation;
+
+        Partition(final long start, final long end, final Class<U> idType, final Path directory) {
+            this.start = start;
+            this.end = end;
+            this.idType = idType;
+            this.directory = directory;
+        }
+
+        boolean add(final TemporalNamespaceId<U> id) {
+            lock.readLock().lock();
+            try {
+                final State<U> s = state;
+                if (null != s.segment && s.segment.contains(id)) {
+                    return false;
+                }
+                if (s.hot.add(id)) {
+                    count.incrementAndGet();
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        synchronized boolean age(final StorageTier target) {
+            final State<U> current = state;
+            final StorageTier tier = (0 < target.compareTo(current.tier)) ? target : current.tier;
+            if (StorageTier.HOT == tier || (tier == current.tier && current.hot.isEmpty())) {
+                return false;
+            }
+            // The hot set iterates in order, so the snapshot is sorted. The
+            // new segment is built from the snapshot alone, never from the
+            // live hot set, so that IDs added meanwhile stay only in the rest
+            final List<TemporalNamespaceId<U>> snapshot = new ArrayList<>(current.hot);
+            final List<TemporalNamespaceId<U>> merged = new ArrayList<>(current.size() + snapshot.size());
+            if (null == current.segment) {
+                merged.addAll(snapshot);
+            } else {
+                new MergingIterator<>(current.segment.stream().iterator(), snapshot.iterator())
+                        .forEachRemaining(merged::add);
+            }
+            final Segment<U> segment;
+            if (StorageTier.COLD == tier) {
+                final Path file = directory.resolve(start + "-" + (generation++) + ".ids");
+                try {
+                    MappedIdFile.write(file, merged);
+                    segment = new ColdSegment<>(MappedIdFile.open(file, idType), file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot write bucket file " + file, e);
+                }
+            } else {
+                segment = new WarmSegment<>(IdBatch.of(merged));
+            }
+            lock.writeLock().lock();
+            try {
+                final ConcurrentSkipListSet<TemporalNamespaceId<U>> rest = new ConcurrentSkipListSet<>(state.hot);
+                rest.removeAll(snapshot);
+                state = new State<>(tier, segment, rest);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (null != current.segment) {
+                current.segment.release();
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Immutable pair of the aged segment of a bucket and the disjoint set of
+     * its IDs added since it aged. The hot set is not modified once the
+     * state is replaced.
+     */
+    private static final class State<U extends Comparable<U>> {
+
+        final StorageTier tier;
+        final Segment<U> segment;
+        final ConcurrentSkipListSet<TemporalNamespaceId<U>> hot;
+
+        State(final StorageTier tier,
+              final Segment<U> segment,
+              final ConcurrentSkipListSet<TemporalNamespaceId<U>> hot) {
+            this.tier = tier;
+            this.segment = segment;
+            this.hot = hot;
+        }
+
+        boolean contains(final TemporalNamespaceId<U> id) {
+            return hot.contains(id) || (null != segment && segment.contains(id));
+        }
+
+        int size() {
+            return (null == segment) ? 0 : segment.size();
+        }
+
+        Stream<TemporalNamespaceId<U>> stream() {
+            if (null == segment) {
+                return hot.stream();
+            }
+            if (hot.isEmpty()) {
+                return segment.stream();
+            }
+            Iterator<TemporalNamespaceId<U>> merged = new MergingIterator<>(segment.stream().iterator(),
+                                                                            hot.iterator());
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged,
+                                                                            Spliterator.ORDERED
+                                                                            | Spliterator.SORTED
+                                                                            | Spliterator.DISTINCT
+                                                                            | Spliterator.NONNULL),
+                                        false);
+        }
+
+    }
+
+    /**
+     * Immutable, sorted IDs of an aged bucket.
+     */
+    private abstract static class Segment<U extends Comparable<U>> {
+
+        abstract int size();
+
+        abstract NamespaceId<U> get(int i);
+
+        abstract Stream<NamespaceId<U>> ids();
+
+        @SuppressWarnings("unchecked")
+        Stream<TemporalNamespaceId<U>> stream() {
+            return ids().map(id -> (TemporalNamespaceId<U>)id);
+        }
+
+        boolean contains(final TemporalNamespaceId<U> id) {
+            int low = 0;
+            int high = size() - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int c = get(mid).compareTo(id);
+                if (0 > c) {
+                    low = mid + 1;
+                } else if (0 < c) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void release() {
+            // Nothing to release by default
+        }
+
+    }
+
+    private static final class WarmSegment<U extends Comparable<U>> extends Segment<U> {
+
+        private final IdBatch<U> batch;
+
+        WarmSegment(final IdBatch<U> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        int size() {
+            return batch.size();
+        }
+
+        @Override
+        NamespaceId<U> get(final int i) {
+            return batch.get(i);
+        }
+
+        @Override
+        Stream<NamespaceId<U>> ids() {
+            return batch.stream(false);
+        }
+
+    }
+
+    private static final class ColdSegment<U extends Comparable<U>> extends Segment<U> {
+
+        private final MappedIdFile<U> file;
+        private final Path path;
+
+        ColdSegment(final MappedIdFile<U> file, final Path path) {
+            this.file = file;
+            this.path = path;
+        }
+
+        @Override
+        int size() {
+            return file.size();
+        }
+
+        @Override
+        NamespaceId<U> get(final int i) {
+            return file.get(i);
+        }
+
+        @Override
+        Stream<NamespaceId<U>> ids() {
+            return file.stream(false);
+        }
+
+        @Override
+        void release() {
+            // Readers of the mapping are unaffected by removal of the file
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Cannot delete replaced bucket file " + path, e);
+            }
+        }
+
+    }
+
+    /**
+     * Merge of two iterators over disjoint, sorted IDs.
+     */
+    private static final class MergingIterator<U extends Comparable<U>> implements Iterator<TemporalNamespaceId<U>> {
+
+        private final Iterator<TemporalNamespaceId<U>> a;
+        private final Iterator<TemporalNamespaceId<U>> b;
+        private TemporalNamespaceId<U> nextA;
+        private TemporalNamespaceId<U> nextB;
+
+        MergingIterator(final Iterator<TemporalNamespaceId<U>> a, final Iterator<TemporalNamespaceId<U>> b) {
+            this.a = a;
+            this.b = b;
+            this.nextA = a.hasNext() ? a.next() : null;
+            this.nextB = b.hasNext() ? b.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return null != nextA || null != nextB;
+        }
+
+        @Override
+        public TemporalNamespaceId<U> next() {
+            TemporalNamespaceId<U> next;
+            if (null == nextA && null == nextB) {
+                throw new NoSuchElementException();
+            } else if (null == nextB || (null != nextA && 0 > nextA.compareTo(nextB))) {
+                next = nextA;
+                nextA = a.hasNext() ? a.next() : null;
+            } else {
+                next = nextB;
+                nextB = b.hasNext() ? b.next() : null;
+            }
+            return next;
+        }
+
+    }
+
+}
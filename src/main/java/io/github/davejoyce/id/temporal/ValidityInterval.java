@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Interval of valid time in which a version of an ID is effective: from the
+ * 'as of' time of the version, inclusive, to the 'as of' time of the next
+ * version of the same ID, exclusive. The interval of the latest version of
+ * an ID is open-ended.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ * @see ValidityIntervals
+ */
+public class ValidityInterval<T extends Comparable<T>> {
+
+    /** End second of an open-ended interval. */
+    static final long OPEN = Long.MAX_VALUE;
+
+    private final TemporalNamespaceId<T> version;
+    private final long validToSecond;
+    private final int validToNano;
+
+    ValidityInterval(final TemporalNamespaceId<T> version,
+                     final long validToSecond,
+                     final int validToNano) {
+        this.version = version;
+        this.validToSecond = validToSecond;
+        this.validToNano = validToNano;
+    }
+
+    /**
+     * Get the version of the ID from which this interval was derived.
+     *
+     * @return ID version
+     */
+    public TemporalNamespaceId<T> getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the start of this interval, inclusive.
+     *
+     * @return start of valid time
+     */
+    public final Instant getValidFrom() {
+        return version.getAsOfTime();
+    }
+
+    /**
+     * Get the end of this interval, exclusive.
+     *
+     * @return end of valid time, or null if this interval is open-ended
+     */
+    public final Instant getValidTo() {
+        return isOpenEnded() ? null : Instant.ofEpochSecond(validToSecond, validToNano);
+    }
+
+    /**
+     * Determine whether this interval is open-ended, that is whether its
+     * version is the latest version of the ID known in the recorded time of
+     * the interval.
+     *
+     * @return true if this interval has no end
+     */
+    public final boolean isOpenEnded() {
+        return OPEN == validToSecond;
+    }
+
+    /**
+     * Determine whether the specified valid time is within this interval.
+     *
+     * @param validTime valid time to be tested
+     * @return true if <tt>validTime</tt> is within this interval
+     * @throws NullPointerException if <tt>validTime</tt> is null
+     */
+    public final boolean contains(final Instant validTime) {
+        return isWithin(validTime.getEpochSecond(), validTime.getNano(),
+                        version.getAsOfEpochSecond(), version.getAsOfNano(),
+                        validToSecond, validToNano);
+    }
+
+    static boolean isWithin(final long second,
+                            final int nano,
+                            final long fromSecond,
+                            final int fromNano,
+                            final long toSecond,
+                            final int toNano) {
+        return (second > fromSecond || (second == fromSecond && nano >= fromNano))
+               && (OPEN == toSecond || second < toSecond || (second == toSecond && nano < toNano));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ValidityInterval<?> that = (ValidityInterval<?>) o;
+        return validToSecond == that.validToSecond
+               && validToNano == that.validToNano
+               && version.equals(that.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, validToSecond, validToNano);
+    }
+
+    @Override
+    public String toString() {
+        return version.getNamespace() + ':' + version.getId()
+               + " [" + getValidFrom() + ", " + (isOpenEnded() ? "" : getValidTo()) + ')';
+    }
+
+}
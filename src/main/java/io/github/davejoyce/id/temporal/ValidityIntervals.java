@@ -0,0 +1,421 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.IdComparators;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Streaming derivation of {@link ValidityInterval validity intervals} and
+ * {@link BitemporalInterval bitemporal rectangles} from versions of IDs
+ * sorted in 'natural' order. Intervals are derived in a single pass, and in
+ * the order of their versions.
+ * <p>
+ * Derivation of validity intervals holds one version at a time. Where a
+ * source holds several records of the same 'as of' time (restatements of
+ * bi-temporal IDs), the interval is derived from the latest record. For
+ * bitemporal rectangles, the records of one 'as of' time are held, and later
+ * versions of the ID are read ahead until one is found which was recorded no
+ * later than the first of those records. Where versions are recorded in
+ * order of 'as of' time, memory is therefore bounded by the number of
+ * restatements of a single version, not by the history of an ID.
+ * </p>
+ * <p>
+ * Partitioned sources, in which all versions of any ID are in the same
+ * partition (as when IDs are partitioned by namespace), are derived from
+ * independently, and in parallel if requested.
+ * </p>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class ValidityIntervals {
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private ValidityIntervals() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("ValidityIntervals instances not allowed");
+    }
+
+    /**
+     * Derive the validity intervals of the specified sorted versions.
+     *
+     * @param versions versions of IDs in 'natural' order
+     * @param <T> comparable type of ID attribute
+     * @return iterator of validity intervals, in order of version; it throws
+     *         {@code IllegalStateException} if the versions are not sorted
+     * @throws IllegalArgumentException if <tt>versions</tt> is null
+     */
+    public static <T extends Comparable<T>> Iterator<ValidityInterval<T>> validity(
+            final Iterator<? extends TemporalNamespaceId<T>> versions) {
+        return new ValidityIterator<>(versions);
+    }
+
+    /**
+     * Derive the validity intervals of the specified sorted versions.
+     * Closing the returned stream closes <tt>versions</tt>.
+     *
+     * @param versions versions of IDs in 'natural' order
+     * @param <T> comparable type of ID attribute
+     * @return sequential stream of validity intervals, in order of version
+     * @throws IllegalArgumentException if <tt>versions</tt> is null
+     */
+    public static <T extends Comparable<T>> Stream<ValidityInterval<T>> validity(
+            final Stream<? extends TemporalNamespaceId<T>> versions) {
+        requireNonNull(versions, "Versions cannot be null");
+        return toStream(validity(versions.iterator())).onClose(versions::close);
+    }
+
+    /**
+     * Derive the validity intervals of the specified partitions of sorted
+     * versions. All versions of an ID must be in the same partition.
+     *
+     * @param partitions partitions of versions of IDs, each in 'natural'
+     *                   order
+     * @param parallel if true, derive from partitions in parallel
+     * @param <T> comparable type of ID attribute
+     * @return stream of validity intervals, in order of partition and then
+     *         of version
+     * @throws IllegalArgumentException if <tt>partitions</tt> is null
+     */
+    public static <T extends Comparable<T>> Stream<ValidityInterval<T>> validity(
+            final List<? extends Iterable<? extends TemporalNamespaceId<T>>> partitions,
+            final boolean parallel) {
+        requireNonNull(partitions, "Partitions cannot be null");
+        return StreamSupport.stream(partitions.spliterator(), parallel)
+                            .flatMap(p -> toStream(validity(p.iterator())));
+    }
+
+    /**
+     * Derive the bitemporal rectangles of the specified sorted versions.
+     *
+     * @param versions versions of bi-temporal IDs in 'natural' order
+     * @param <T> comparable type of ID attribute
+     * @return iterator of bitemporal rectangles, in order of version; it
+     *         throws {@code IllegalStateException} if the versions are not
+     *         sorted
+     * @throws IllegalArgumentException if <tt>versions</tt> is null
+     */
+    public static <T extends Comparable<T>> Iterator<BitemporalInterval<T>> bitemporal(
+            final Iterator<? extends BiTemporalNamespaceId<T>> versions) {
+        return new BitemporalIterator<>(versions);
+    }
+
+    /**
+     * Derive the bitemporal rectangles of the specified sorted versions.
+     * Closing the returned stream closes <tt>versions</tt>.
+     *
+     * @param versions versions of bi-temporal IDs in 'natural' order
+     * @param <T> comparable type of ID attribute
+     * @return sequential stream of bitemporal rectangles, in order of version
+     * @throws IllegalArgumentException if <tt>versions</tt> is null
+     */
+    public static <T extends Comparable<T>> Stream<BitemporalInterval<T>> bitemporal(
+            final Stream<? extends BiTemporalNamespaceId<T>> versions) {
+        requireNonNull(versions, "Versions cannot be null");
+        return toStream(bitemporal(versions.iterator())).onClose(versions::close);
+    }
+
+    /**
+     * Derive the bitemporal rectangles of the specified partitions of sorted
+     * versions. All versions of an ID must be in the same partition.
+     *
+     * @param partitions partitions of versions of bi-temporal IDs, each in
+     *                   'natural' order
+     * @param parallel if true, derive from partitions in parallel
+     * @param <T> comparable type of ID attribute
+     * @return stream of bitemporal rectangles, in order of partition and then
+     *         of version
+     * @throws IllegalArgumentException if <tt>partitions</tt> is null
+     */
+    public static <T extends Comparable<T>> Stream<BitemporalInterval<T>> bitemporal(
+            final List<? extends Iterable<? extends BiTemporalNamespaceId<T>>> partitions,
+            final boolean parallel) {
+        requireNonNull(partitions, "Partitions cannot be null");
+        return StreamSupport.stream(partitions.spliterator(), parallel)
+                            .flatMap(p -> toStream(bitemporal(p.iterator())));
+    }
+
+    private static <E> Stream<E> toStream(final Iterator<E> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, CHARACTERISTICS), false);
+    }
+
+    private static boolean sameAsOf(final TemporalNamespaceId<?> a, final TemporalNamespaceId<?> b) {
+        return a.getAsOfEpochSecond() == b.getAsOfEpochSecond() && a.getAsOfNano() == b.getAsOfNano();
+    }
+
+    /**
+     * Sorted source of versions, read one version ahead.
+     */
+    private static final class Source<R extends TemporalNamespaceId<?>> {
+
+        private final Iterator<? extends R> iterator;
+        private R last;
+
+        Source(final Iterator<? extends R> iterator) {
+            this.iterator = requireNonNull(iterator, "Versions cannot be null");
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        R read() {
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            final R version = requireNonNull(iterator.next(), "Versions cannot contain null");
+            if (null != last && 0 < ((Comparable)last).compareTo(version)) {
+                throw new IllegalStateException("Versions are not sorted: " + last + " precedes " + version);
+            }
+            last = version;
+            return version;
+        }
+
+    }
+
+    private abstract static class DerivingIterator<E> implements Iterator<E> {
+
+        private E next;
+
+        /**
+         * Derive the next element.
+         *
+         * @return next element, or null if there is none
+         */
+        abstract E derive();
+
+        @Override
+        public final boolean hasNext() {
+            if (null == next) {
+                next = derive();
+            }
+            return null != next;
+        }
+
+        @Override
+        public final E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final E e = next;
+            next = null;
+            return e;
+        }
+
+    }
+
+    private static final class ValidityIterator<T extends Comparable<T>>
+            extends DerivingIterator<ValidityInterval<T>> {
+
+        private final Source<TemporalNamespaceId<T>> source;
+        private TemporalNamespaceId<T> pending;
+
+        ValidityIterator(final Iterator<? extends TemporalNamespaceId<T>> versions) {
+            this.source = new Source<>(versions);
+            this.pending = source.read();
+        }
+
+        @Override
+        ValidityInterval<T> derive() {
+            while (null != pending) {
+                final TemporalNamespaceId<T> current = pending;
+                pending = source.read();
+                if (null == pending || 0 != IdComparators.compareNamespaceIds(current, pending)) {
+                    return new ValidityInterval<>(current, ValidityInterval.OPEN, 0);
+                }
+                if (!sameAsOf(current, pending)) {
+                    return new ValidityInterval<>(current, pending.getAsOfEpochSecond(), pending.getAsOfNano());
+                }
+                // Restatement of the same 'as of' time supersedes current
+            }
+            return null;
+        }
+
+    }
+
+    private static final class BitemporalIterator<T extends Comparable<T>>
+            extends DerivingIterator<BitemporalInterval<T>> {
+
+        private final Source<BiTemporalNamespaceId<T>> source;
+        /** Records read from the source but not yet derived from. */
+        private final List<BiTemporalNamespaceId<T>> ahead = new ArrayList<>();
+        private final List<BiTemporalNamespaceId<T>> group = new ArrayList<>();
+        /** First records of later versions which close valid time, by 'as at' time descending. */
+        private final List<BiTemporalNamespaceId<T>> closers = new ArrayList<>();
+        private final List<BitemporalInterval<T>> rectangles = new ArrayList<>();
+        private int aheadStart;
+        private int position;
+
+        BitemporalIterator(final Iterator<? extends BiTemporalNamespaceId<T>> versions) {
+            this.source = new Source<>(versions);
+        }
+
+        @Override
+        BitemporalInterval<T> derive() {
+            if (position == rectangles.size() && !deriveGroup()) {
+                return null;
+            }
+            return rectangles.get(position++);
+        }
+
+        /**
+         * Read the records of the next 'as of' time of an ID, find the later
+         * versions which close their valid time, and derive their
+         * rectangles.
+         */
+        private boolean deriveGroup() {
+            rectangles.clear();
+            position = 0;
+            group.clear();
+            final BiTemporalNamespaceId<T> first = peek(0);
+            if (null == first) {
+                return false;
+            }
+            int i = 0;
+            for (BiTemporalNamespaceId<T> next = first;
+                 null != next && sameVersion(first, next);
+                 next = peek(++i)) {
+                if (group.isEmpty() || 0 != group.get(group.size() - 1).compareTo(next)) {
+                    group.add(next);
+                }
+            }
+            aheadStart += i;
+            if (aheadStart > (ahead.size() >>> 1)) {
+                ahead.subList(0, aheadStart).clear();
+                aheadStart = 0;
+            }
+            findClosers(first);
+            for (int r = 0; r < group.size(); r++) {
+                addRectangles(group.get(r), (r + 1 < group.size()) ? group.get(r + 1) : null);
+            }
+            return true;
+        }
+
+        /**
+         * Collect the later versions of the ID of <tt>first</tt> which close
+         * its valid time at some recorded time. At recorded time <i>t</i> the
+         * valid time ends at the earliest later 'as of' time recorded by
+         * <i>t</i>; as later versions are read in 'as of' order, only those
+         * recorded before every version read so far do so. Reading ahead
+         * stops at the first version recorded no later than <tt>first</tt>.
+         */
+        private void findClosers(final BiTemporalNamespaceId<T> first) {
+            closers.clear();
+            BiTemporalNamespaceId<T> closer = null;
+            int i = 0;
+            BiTemporalNamespaceId<T> next = peek(i);
+            while (null != next && 0 == IdComparators.compareNamespaceIds(first, next)) {
+                // Records of a version are in order of 'as at' time, so its
+                // first record is when it was first recorded
+                if (null == closer || 0 > compareAsAt(next, closer)) {
+                    closer = next;
+                    closers.add(closer);
+                    if (0 >= compareAsAt(closer, first)) {
+                        break;
+                    }
+                }
+                final BiTemporalNamespaceId<T> version = next;
+                do {
+                    next = peek(++i);
+                } while (null != next && sameVersion(version, next));
+            }
+        }
+
+        /**
+         * Add the rectangles of one record, whose recorded time ends at the
+         * 'as at' time of its restatement, if any; its recorded time is split
+         * wherever a later version closes its valid time.
+         */
+        private void addRectangles(final BiTemporalNamespaceId<T> record,
+                                   final BiTemporalNamespaceId<T> restatement) {
+            // Closers are in descending 'as at' order; find the latest one
+            // recorded by the start of this record
+            int c = closers.size() - 1;
+            while (0 <= c && 0 >= compareAsAt(closers.get(c), record)) {
+                c--;
+            }
+            BiTemporalNamespaceId<T> closer = (c + 1 < closers.size()) ? closers.get(c + 1) : null;
+            BiTemporalNamespaceId<T> from = record;
+            for (; 0 <= c && (null == restatement || 0 > compareAsAt(closers.get(c), restatement)); c--) {
+                final BiTemporalNamespaceId<T> to = closers.get(c);
+                rectangles.add(rectangle(record, closer, from, to));
+                closer = to;
+                from = to;
+            }
+            rectangles.add(rectangle(record, closer, from, restatement));
+        }
+
+        private BitemporalInterval<T> rectangle(final BiTemporalNamespaceId<T> record,
+                                                final BiTemporalNamespaceId<T> closer,
+                                                final BiTemporalNamespaceId<T> from,
+                                                final BiTemporalNamespaceId<T> to) {
+            return new BitemporalInterval<>(record,
+                                            (null == closer) ? ValidityInterval.OPEN : closer.getAsOfEpochSecond(),
+                                            (null == closer) ? 0 : closer.getAsOfNano(),
+                                            from.getAsAtEpochSecond(),
+                                            from.getAsAtNano(),
+                                            (null == to) ? ValidityInterval.OPEN : to.getAsAtEpochSecond(),
+                                            (null == to) ? 0 : to.getAsAtNano());
+        }
+
+        /**
+         * Get the record at the specified index of those read ahead, reading
+         * from the source as needed.
+         *
+         * @return record, or null if the source is exhausted
+         */
+        private BiTemporalNamespaceId<T> peek(final int index) {
+            if (aheadStart == ahead.size()) {
+                ahead.clear();
+                aheadStart = 0;
+            }
+            while (ahead.size() <= aheadStart + index) {
+                final BiTemporalNamespaceId<T> record = source.read();
+                if (null == record) {
+                    return null;
+                }
+                ahead.add(record);
+            }
+            return ahead.get(aheadStart + index);
+        }
+
+        private static <T extends Comparable<T>> boolean sameVersion(final BiTemporalNamespaceId<T> a,
+                                                                        final BiTemporalNamespaceId<T> b) {
+            return 0 == IdComparators.compareNamespaceIds(a, b) && sameAsOf(a, b);
+        }
+
+        private static int compareAsAt(final BiTemporalNamespaceId<?> a, final BiTemporalNamespaceId<?> b) {
+            final int c = Long.compare(a.getAsAtEpochSecond(), b.getAsAtEpochSecond());
+            return (0 != c) ? c : Integer.compare(a.getAsAtNano(), b.getAsAtNano());
+        }
+
+    }
+
+}
@@ -0,0 +1,379 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * In-memory store of the version histories of IDs, with retention enforced
+ * by incremental compaction. A {@link RetentionPolicy} may be set per
+ * namespace, and a default for other namespaces; compaction releases the
+ * versions which the policy of their namespace does not retain.
+ * <p>
+ * The history of each ID is an immutable array, replaced whole on update,
+ * so readers see each history either before or after a compaction, never
+ * part way. Compaction proceeds a bounded number of IDs per step, resuming
+ * where the previous step stopped, and locks only the ID being compacted,
+ * so that pauses of writers are bounded; it may run in the background with
+ * {@link #startCompaction(Duration, int)}. The bytes reclaimed are
+ * estimated from the shallow size of the versions released, excluding
+ * namespaces and ID values, which are usually shared with retained
+ * versions.
+ * </p>
+ * <p>
+ * All versions of an ID should be of one class, since IDs of different
+ * classes are not mutually comparable.
+ * </p>
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class VersionHistoryStore<T extends Comparable<T>> implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(VersionHistoryStore.class.getName());
+
+    /** Object header and references to namespace, ID value and time array. */
+    private static final long VERSION_BYTES = 12L + 4L + 4L + 4L;
+    /** Array header and two longs. */
+    private static final long TIME_BYTES = 16L + 16L;
+    /** Slot of history array. */
+    private static final long SLOT_BYTES = 4L;
+
+    private static final TemporalNamespaceId<?>[] EMPTY = new TemporalNamespaceId<?>[0];
+
+    private final Clock clock;
+    private final Map<NamespaceId<T>, TemporalNamespaceId<T>[]> histories = new ConcurrentHashMap<>();
+    private final Map<String, RetentionPolicy> policies = new ConcurrentHashMap<>();
+    private volatile RetentionPolicy defaultPolicy = RetentionPolicy.keepAll();
+    private final AtomicLong versionCount = new AtomicLong();
+    private final LongAdder removedCount = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private Iterator<NamespaceId<T>> cursor;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Construct an empty store, which retains all versions until policies
+     * are set.
+     */
+    public VersionHistoryStore() {
+        this(Clock.systemUTC());
+    }
+
+    VersionHistoryStore(final Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Set the retention policy of the specified namespace.
+     *
+     * @param namespace namespace of policy
+     * @param policy retention policy, or null to apply the default policy
+     * @throws IllegalArgumentException if <tt>namespace</tt> is null
+     */
+    public void setRetention(final String namespace, final RetentionPolicy policy) {
+        requireNonNull(namespace, "Namespace cannot be null");
+        if (null == policy) {
+            policies.remove(namespace);
+        } else {
+            policies.put(namespace, policy);
+        }
+    }
+
+    /**
+     * Set the retention policy of namespaces without a policy of their own.
+     *
+     * @param policy default retention policy
+     * @throws IllegalArgumentException if <tt>policy</tt> is null
+     */
+    public void setDefaultRetention(final RetentionPolicy policy) {
+        defaultPolicy = requireNonNull(policy, "Policy cannot be null");
+    }
+
+    /**
+     * Add the specified version to the history of its ID.
+     *
+     * @param version version to be added
+     * @return true if this store changed as a result
+     * @throws IllegalArgumentException if <tt>version</tt> is null
+     */
+    public boolean add(final TemporalNamespaceId<T> version) {
+        requireNonNull(version, "Version cannot be null");
+        final boolean[] added = new boolean[1];
+        histories.compute(new NamespaceId<>(version.getNamespace(), version.getId()), (id, history) -> {
+            final TemporalNamespaceId<T>[] current = (null == history) ? empty() : history;
+            int i = Arrays.binarySearch(current, version);
+            if (0 <= i) {
+                return current;
+            }
+            i = -(i + 1);
+            final TemporalNamespaceId<T>[] updated = Arrays.copyOf(current, current.length + 1);
+            System.arraycopy(current, i, updated, i + 1, current.length - i);
+            updated[i] = version;
+            added[0] = true;
+            return updated;
+        });
+        if (added[0]) {
+            versionCount.incrementAndGet();
+        }
+        return added[0];
+    }
+
+    /**
+     * Get the history of the specified ID.
+     *
+     * @param id ID of history
+     * @return unmodifiable list of versions in 'natural' order, empty if none
+     * @throws IllegalArgumentException if <tt>id</tt> is null
+     */
+    public List<TemporalNamespaceId<T>> getHistory(final NamespaceId<T> id) {
+        requireNonNull(id, "ID cannot be null");
+        final TemporalNamespaceId<T>[] history = histories.get(key(id));
+        return (null == history) ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(history));
+    }
+
+    /**
+     * Get the latest version of the specified ID effective at the specified
+     * time.
+     *
+     * @param id ID to be looked up
+     * @param asOfTime effective time
+     * @return version with the latest 'as of' time not after
+     *         <tt>asOfTime</tt>, or null if none is retained
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public TemporalNamespaceId<T> getEffective(final NamespaceId<T> id, final Instant asOfTime) {
+        requireNonNull(id, "ID cannot be null");
+        requireNonNull(asOfTime, "Time cannot be null");
+        final TemporalNamespaceId<T>[] history = histories.get(key(id));
+        if (null == history) {
+            return null;
+        }
+        final long second = asOfTime.getEpochSecond();
+        final int nano = asOfTime.getNano();
+        for (int i = history.length - 1; i >= 0; i--) {
+            final TemporalNamespaceId<T> v = history[i];
+            if (v.getAsOfEpochSecond() < second
+                || (v.getAsOfEpochSecond() == second && v.getAsOfNano() <= nano)) {
+                return v;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get number of IDs with histories in this store.
+     *
+     * @return ID count
+     */
+    public int getIdCount() {
+        return histories.size();
+    }
+
+    /**
+     * Get number of versions in this store.
+     *
+     * @return version count
+     */
+    public long getVersionCount() {
+        return versionCount.get();
+    }
+
+    /**
+     * Get number of versions released by compaction.
+     *
+     * @return released version count
+     */
+    public long getRemovedVersionCount() {
+        return removedCount.sum();
+    }
+
+    /**
+     * Get the estimated number of bytes reclaimed by compaction.
+     *
+     * @return estimated bytes reclaimed
+     */
+    public long getReclaimedBytes() {
+        return reclaimedBytes.sum();
+    }
+
+    /**
+     * Compact the histories of up to the specified number of IDs, resuming
+     * after the last ID compacted by the previous step.
+     *
+     * @param maxIds maximum number of IDs to be compacted
+     * @return number of versions released
+     * @throws IllegalArgumentException if <tt>maxIds</tt> is less than 1
+     */
+    public synchronized long compact(final int maxIds) {
+        if (1 > maxIds) {
+            throw new IllegalArgumentException("ID count must be positive");
+        }
+        final long now = clock.instant().getEpochSecond();
+        long removed = 0L;
+        for (int n = 0; n < maxIds; n++) {
+            if (null == cursor || !cursor.hasNext()) {
+                cursor = histories.keySet().iterator();
+                if (!cursor.hasNext() || 0 < n) {
+                    // Complete pass; the next step starts a new one
+                    break;
+                }
+            }
+            removed += compact(cursor.next(), now);
+        }
+        return removed;
+    }
+
+    /**
+     * Compact the histories of all IDs.
+     *
+     * @return number of versions released
+     */
+    public synchronized long compactAll() {
+        final long now = clock.instant().getEpochSecond();
+        long removed = 0L;
+        for (NamespaceId<T> id : histories.keySet()) {
+            removed += compact(id, now);
+        }
+        cursor = null;
+        return removed;
+    }
+
+    /**
+     * Start compacting this store in the background, at the specified
+     * period. Each run compacts up to the specified number of IDs, bounding
+     * its duration. Failures of compaction are logged, and retried at the
+     * next period.
+     *
+     * @param period period of compaction
+     * @param maxIdsPerRun maximum number of IDs compacted per run
+     * @throws IllegalArgumentException if <tt>period</tt> is null or not
+     *                                  positive, or <tt>maxIdsPerRun</tt> is
+     *                                  less than 1
+     * @throws IllegalStateException if compaction has already been started
+     */
+    public synchronized void startCompaction(final Duration period, final int maxIdsPerRun) {
+        requireNonNull(period, "Period cannot be null");
+        if (period.isZero() || period.isNegative()) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        if (1 > maxIdsPerRun) {
+            throw new IllegalArgumentException("ID count must be positive");
+        }
+        if (null != scheduler) {
+            throw new IllegalStateException("Compaction already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "id-history-compaction");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact(maxIdsPerRun);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Compaction of version histories failed", e);
+            }
+        }, period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop background compaction, if started. The histories of this store
+     * remain readable.
+     */
+    @Override
+    public synchronized void close() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private long compact(final NamespaceId<T> id, final long now) {
+        final long[] released = new long[2];
+        histories.computeIfPresent(id, (key, history) -> {
+            final RetentionPolicy policy = policies.getOrDefault(key.getNamespace(), defaultPolicy);
+            final boolean[] retained = new boolean[history.length];
+            Arrays.fill(retained, true);
+            policy.retain(Collections.unmodifiableList(Arrays.asList(history)), now, retained);
+            int count = 0;
+            for (boolean r : retained) {
+                if (r) {
+                    count++;
+                }
+            }
+            if (count == history.length) {
+                return history;
+            }
+            final TemporalNamespaceId<T>[] compacted = Arrays.copyOf(history, count);
+            int j = 0;
+            for (int i = 0; i < history.length; i++) {
+                if (retained[i]) {
+                    compacted[j++] = history[i];
+                } else {
+                    released[1] += estimateBytes(history[i]);
+                }
+            }
+            released[0] = history.length - count;
+            return (0 == count) ? null : compacted;
+        });
+        if (0L < released[0]) {
+            versionCount.addAndGet(-released[0]);
+            removedCount.add(released[0]);
+            reclaimedBytes.add(released[1]);
+        }
+        return released[0];
+    }
+
+    private static long estimateBytes(final TemporalNamespaceId<?> version) {
+        long bytes = VERSION_BYTES + TIME_BYTES + SLOT_BYTES;
+        if (version instanceof BiTemporalNamespaceId) {
+            bytes += 8L + TIME_BYTES; // Reference to 'as at' time array, padded
+        }
+        return bytes;
+    }
+
+    private NamespaceId<T> key(final NamespaceId<T> id) {
+        return (NamespaceId.class == id.getClass()) ? id : new NamespaceId<>(id.getNamespace(), id.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> TemporalNamespaceId<T>[] empty() {
+        return (TemporalNamespaceId<T>[]) EMPTY;
+    }
+
+}
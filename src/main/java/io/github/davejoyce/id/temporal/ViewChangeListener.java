@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+
+/**
+ * Receiver of the changes of a {@link BitemporalSnapshotView}.
+ *
+ * @param <T> comparable type of ID attribute
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@FunctionalInterface
+public interface ViewChangeListener<T extends Comparable<T>> {
+
+    /**
+     * Receive a change of the latest known record of a version.
+     *
+     * @param previous record replaced, or null if the version is new
+     * @param current record now latest known
+     * @param sequence sequence number of the snapshot which first includes
+     *                 the change
+     */
+    void changed(BiTemporalNamespaceId<T> previous, BiTemporalNamespaceId<T> current, long sequence);
+
+}
@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.util;
+
+/**
+ * Utility methods for computing well-mixed 64-bit hash values. Byte sequences
+ * are hashed with the XXH64 algorithm, whose output is stable across JVM
+ * versions and platforms and is therefore suitable for values which are
+ * persisted or exchanged between processes.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class Hash64 {
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private Hash64() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("Hash64 instances not allowed");
+    }
+
+    /**
+     * Compute the XXH64 hash of the specified bytes, with seed 0.
+     *
+     * @param bytes bytes to be hashed
+     * @return 64-bit hash value
+     */
+    public static long hash(final byte[] bytes) {
+        return hash(bytes, 0, bytes.length, 0L);
+    }
+
+    /**
+     * Compute the XXH64 hash of the specified range of bytes.
+     *
+     * @param bytes array containing bytes to be hashed
+     * @param offset index of first byte to be hashed
+     * @param length number of bytes to be hashed
+     * @param seed hash seed
+     * @return 64-bit hash value
+     */
+    public static long hash(final byte[] bytes,
+                            final int offset,
+                            final int length,
+                            final long seed) {
+        final int end = offset + length;
+        int p = offset;
+        long h;
+        if (32 <= length) {
+            final int limit = end - 32;
+            long v1 = seed + PRIME64_1 + PRIME64_2;
+            long v2 = seed + PRIME64_2;
+            long v3 = seed;
+            long v4 = seed - PRIME64_1;
+            do {
+                v1 = round(v1, getLong(bytes, p));
+                v2 = round(v2, getLong(bytes, p + 8));
+                v3 = round(v3, getLong(bytes, p + 16));
+                v4 = round(v4, getLong(bytes, p + 24));
+                p += 32;
+            } while (p <= limit);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME64_5;
+        }
+        h += length;
+        while (p + 8 <= end) {
+            h ^= round(0L, getLong(bytes, p));
+            h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+            p += 8;
+        }
+        if (p + 4 <= end) {
+            h ^= (getInt(bytes, p) & 0xFFFFFFFFL) * PRIME64_1;
+            h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+            p += 4;
+        }
+        while (p < end) {
+            h ^= (bytes[p] & 0xFFL) * PRIME64_5;
+            h = Long.rotateLeft(h, 11) * PRIME64_1;
+            p++;
+        }
+        return avalanche(h);
+    }
+
+    /**
+     * Scramble the bits of the specified value, such that each input bit
+     * affects every output bit. This is the finalization step of the
+     * SplitMix64 generator; it is a bijection, so distinct inputs always
+     * produce distinct outputs.
+     *
+     * @param value value to be mixed
+     * @return mixed value
+     */
+    public static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Combine two hash values into one. The combination is order-sensitive:
+     * <code>combine(a, b)</code> generally differs from
+     * <code>combine(b, a)</code>.
+     *
+     * @param h1 first hash value
+     * @param h2 second hash value
+     * @return combined hash value
+     */
+    public static long combine(final long h1, final long h2) {
+        return mix(h1 * PRIME64_1 + Long.rotateLeft(h2, 31) + PRIME64_4);
+    }
+
+    private static long round(final long acc, final long input) {
+        return Long.rotateLeft(acc + input * PRIME64_2, 31) * PRIME64_1;
+    }
+
+    private static long mergeRound(final long acc, final long val) {
+        return (acc ^ round(0L, val)) * PRIME64_1 + PRIME64_4;
+    }
+
+    private static long avalanche(final long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long getLong(final byte[] b, final int i) {
+        return (b[i] & 0xFFL)
+               | ((b[i + 1] & 0xFFL) << 8)
+               | ((b[i + 2] & 0xFFL) << 16)
+               | ((b[i + 3] & 0xFFL) << 24)
+               | ((b[i + 4] & 0xFFL) << 32)
+               | ((b[i + 5] & 0xFFL) << 40)
+               | ((b[i + 6] & 0xFFL) << 48)
+               | ((b[i + 7] & 0xFFL) << 56);
+    }
+
+    private static int getInt(final byte[] b, final int i) {
+        return (b[i] & 0xFF)
+               | ((b[i + 1] & 0xFF) << 8)
+               | ((b[i + 2] & 0xFF) << 16)
+               | ((b[i + 3] & 0xFF) << 24);
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event of an attempt to convert an ID attribute value by one strategy.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@Name(ConversionEvent.NAME)
+@Label("ID Value Conversion")
+@Description("Attempt to convert an ID attribute value from its string form")
+@Category({"Versioned IDs"})
+final class ConversionEvent extends jdk.jfr.Event {
+
+    static final String NAME = "io.github.davejoyce.id.Conversion";
+
+    @Label("ID Attribute Type")
+    Class<?> idType;
+
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Success")
+    boolean success;
+
+}
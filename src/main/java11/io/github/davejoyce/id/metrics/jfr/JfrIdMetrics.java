@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics.jfr;
+
+import io.github.davejoyce.id.metrics.ConversionStrategy;
+import io.github.davejoyce.id.metrics.IdMetrics;
+
+/**
+ * {@link IdMetrics} sink which emits JDK Flight Recorder events. Events are
+ * only populated and committed while a recording has them enabled.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class JfrIdMetrics implements IdMetrics {
+
+    @Override
+    public void parsed(final Class<?> idClass, final Class<?> idType, final long nanos, final boolean success) {
+        ParseEvent event = new ParseEvent();
+        if (event.shouldCommit()) {
+            event.idClass = idClass;
+            event.idType = idType;
+            event.parseTime = nanos;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void converted(final Class<?> idType, final ConversionStrategy strategy, final boolean success) {
+        ConversionEvent event = new ConversionEvent();
+        if (event.shouldCommit()) {
+            event.idType = idType;
+            event.strategy = strategy.name();
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void projected(final Class<?> fromClass, final Class<?> toClass) {
+        ProjectionEvent event = new ProjectionEvent();
+        if (event.shouldCommit()) {
+            event.fromClass = fromClass;
+            event.toClass = toClass;
+            event.commit();
+        }
+    }
+
+}
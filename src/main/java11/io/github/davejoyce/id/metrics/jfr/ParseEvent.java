@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Event of a call of a {@code fromString} factory method.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@Name(ParseEvent.NAME)
+@Label("ID Parse")
+@Description("Call of a NamespaceId fromString factory method")
+@Category({"Versioned IDs"})
+final class ParseEvent extends jdk.jfr.Event {
+
+    static final String NAME = "io.github.davejoyce.id.Parse";
+
+    @Label("ID Class")
+    Class<?> idClass;
+
+    @Label("ID Attribute Type")
+    Class<?> idType;
+
+    @Label("Parse Time")
+    @Description("Duration of the call, or -1 if not timed")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    @Label("Success")
+    boolean success;
+
+}
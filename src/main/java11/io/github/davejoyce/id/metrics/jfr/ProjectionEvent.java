@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event of the allocation of a projection of an ID to a less specific ID
+ * class.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@Name(ProjectionEvent.NAME)
+@Label("ID Projection")
+@Description("Allocation of a projection of an ID, such as by toNamespaceId()")
+@Category({"Versioned IDs"})
+final class ProjectionEvent extends jdk.jfr.Event {
+
+    static final String NAME = "io.github.davejoyce.id.Projection";
+
+    @Label("From Class")
+    Class<?> fromClass;
+
+    @Label("To Class")
+    Class<?> toClass;
+
+}
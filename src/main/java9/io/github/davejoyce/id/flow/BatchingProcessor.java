@@ -0,0 +1,251 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.flow;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * {@code Flow.Processor} which applies a function to each item. A null
+ * result drops the item. The function is only ever invoked by one thread at
+ * a time, so it may keep unsynchronized state.
+ * <p>
+ * Up to <tt>batchSize</tt> items are requested from upstream at once; once
+ * three quarters of them have been consumed, the same number is requested
+ * again. Items are buffered until the single downstream subscriber requests
+ * them. A function failure cancels upstream and is signaled downstream with
+ * {@code onError}.
+ * </p>
+ *
+ * @param <T> upstream item type
+ * @param <R> downstream item type
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class BatchingProcessor<T, R> implements Flow.Processor<T, R> {
+
+    private final Function<? super T, ? extends R> function;
+    private final int batchSize;
+    private final int limit;
+    private final SpscQueue<T> queue;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Flow.Subscriber<? super R>> downstream = new AtomicReference<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    private volatile Throwable requestError;
+    private int consumed;
+
+    BatchingProcessor(final Function<? super T, ? extends R> function, final int batchSize) {
+        if (0 >= batchSize) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.function = requireNonNull(function, "Function cannot be null");
+        this.batchSize = batchSize;
+        this.limit = batchSize - (batchSize >> 2);
+        this.queue = new SpscQueue<>(batchSize);
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public void onNext(final T item) {
+        Objects.requireNonNull(item);
+        if (done) {
+            return;
+        }
+        if (!queue.offer(item)) {
+            upstream.get().cancel();
+            onError(new IllegalStateException("Upstream exceeded requested demand"));
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        if (done) {
+            return;
+        }
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super R> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                    // Rejected subscriber
+                }
+
+                @Override
+                public void cancel() {
+                    // Rejected subscriber
+                }
+            });
+            subscriber.onError(new IllegalStateException("Processor allows only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(final long n) {
+                if (0L >= n) {
+                    requestError = new IllegalArgumentException(
+                            "Requested demand must be positive: " + n);
+                    Flow.Subscription s = upstream.get();
+                    if (null != s) {
+                        s.cancel();
+                    }
+                    drain();
+                    return;
+                }
+                requested.getAndAccumulate(n, BatchingProcessor::addCap);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                if (!cancelled) {
+                    cancelled = true;
+                    Flow.Subscription s = upstream.get();
+                    if (null != s) {
+                        s.cancel();
+                    }
+                    drain();
+                }
+            }
+        });
+        drain();
+    }
+
+    private void drain() {
+        if (0 != wip.getAndIncrement()) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            Flow.Subscriber<? super R> subscriber = downstream.get();
+            if (null != subscriber) {
+                Throwable t = requestError;
+                if (null != t && !cancelled) {
+                    cancelled = true;
+                    queue.clear();
+                    subscriber.onError(t);
+                    return;
+                }
+                long r = requested.get();
+                long e = 0L;
+                while (e != r) {
+                    if (cancelled) {
+                        queue.clear();
+                        return;
+                    }
+                    boolean d = done;
+                    T item = queue.poll();
+                    if (null == item) {
+                        if (d) {
+                            terminate(subscriber);
+                            return;
+                        }
+                        break;
+                    }
+                    if (++consumed == limit) {
+                        consumed = 0;
+                        upstream.get().request(limit);
+                    }
+                    R result;
+                    try {
+                        result = function.apply(item);
+                    } catch (RuntimeException ex) {
+                        cancelled = true;
+                        upstream.get().cancel();
+                        queue.clear();
+                        subscriber.onError(ex);
+                        return;
+                    }
+                    if (null != result) {
+                        subscriber.onNext(result);
+                        e++;
+                    }
+                }
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+                if (done && queue.isEmpty()) {
+                    terminate(subscriber);
+                    return;
+                }
+                if (0L != e && Long.MAX_VALUE != r) {
+                    requested.addAndGet(-e);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+            if (0 == missed) {
+                return;
+            }
+        }
+    }
+
+    private void terminate(final Flow.Subscriber<? super R> subscriber) {
+        cancelled = true;
+        Throwable t = error;
+        if (null != t) {
+            subscriber.onError(t);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private static long addCap(final long a, final long b) {
+        long sum = a + b;
+        return (0L > sum) ? Long.MAX_VALUE : sum;
+    }
+
+}
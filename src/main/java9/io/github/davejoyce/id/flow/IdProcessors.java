@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.flow;
+
+import io.github.davejoyce.id.IdCodec;
+import io.github.davejoyce.id.NamespaceId;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+import static io.github.davejoyce.util.Arguments.requireNonNull;
+
+/**
+ * Factory of {@code Flow.Processor} stages over the {@code NamespaceId}
+ * hierarchy. Each processor accepts exactly one subscriber, requests items
+ * from upstream in batches of the given size, and buffers at most that many
+ * items. A failure to process an item cancels upstream and is signaled
+ * downstream with {@code onError}.
+ * <p>
+ * For example, to parse, de-duplicate and encode temporal IDs:
+ * </p>
+ * <pre>
+ *     Flow.Processor&lt;String, TemporalNamespaceId&lt;String&gt;&gt; parse =
+ *             IdProcessors.parse(TemporalNamespaceId::fromString);
+ *     Flow.Processor&lt;TemporalNamespaceId&lt;String&gt;, TemporalNamespaceId&lt;String&gt;&gt; latest =
+ *             IdProcessors.dropStaleVersions();
+ *     Flow.Processor&lt;TemporalNamespaceId&lt;String&gt;, byte[]&gt; encode = IdProcessors.encode();
+ *     lines.subscribe(parse);
+ *     parse.subscribe(latest);
+ *     latest.subscribe(encode);
+ *     encode.subscribe(sink);
+ * </pre>
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public final class IdProcessors {
+
+    /**
+     * Default number of items requested from upstream at once.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Private constructor to prevent instantiation of this class.
+     */
+    private IdProcessors() {
+        // This causes InvocationTargetException from Reflection API
+        throw new AssertionError("IdProcessors instances not allowed");
+    }
+
+    /**
+     * Create a stage which parses ID strings with the specified function,
+     * typically a {@code fromString} factory method. Strings which cannot be
+     * parsed fail the stream.
+     *
+     * @param parser function which parses an ID string
+     * @param <R> NamespaceId type produced
+     * @return parsing processor
+     * @throws IllegalArgumentException if <tt>parser</tt> is null
+     */
+    public static <R extends NamespaceId<?>> Flow.Processor<String, R> parse(
+            final Function<? super String, ? extends R> parser) {
+        return parse(parser, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a stage which parses ID strings with the specified function,
+     * requesting strings in batches of the given size.
+     *
+     * @param parser function which parses an ID string
+     * @param batchSize number of strings requested from upstream at once
+     * @param <R> NamespaceId type produced
+     * @return parsing processor
+     * @throws IllegalArgumentException if <tt>parser</tt> is null or
+     *                                  <tt>batchSize</tt> is not positive
+     */
+    public static <R extends NamespaceId<?>> Flow.Processor<String, R> parse(
+            final Function<? super String, ? extends R> parser,
+            final int batchSize) {
+        requireNonNull(parser, "Parser cannot be null");
+        return new BatchingProcessor<>(parser, batchSize);
+    }
+
+    /**
+     * Create a stage which encodes IDs with {@link IdCodec#encode(NamespaceId)}.
+     *
+     * @param <R> NamespaceId type consumed
+     * @return encoding processor
+     */
+    public static <R extends NamespaceId<?>> Flow.Processor<R, byte[]> encode() {
+        return encode(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a stage which encodes IDs with {@link IdCodec#encode(NamespaceId)},
+     * requesting IDs in batches of the given size.
+     *
+     * @param batchSize number of IDs requested from upstream at once
+     * @param <R> NamespaceId type consumed
+     * @return encoding processor
+     * @throws IllegalArgumentException if <tt>batchSize</tt> is not positive
+     */
+    public static <R extends NamespaceId<?>> Flow.Processor<R, byte[]> encode(final int batchSize) {
+        return new BatchingProcessor<>(IdCodec::encode, batchSize);
+    }
+
+    /**
+     * Create a stage which drops stale versions: an ID is passed on only if
+     * it is {@link NamespaceId#after(NamespaceId) after} every earlier ID of
+     * the same {@code NamespaceId}. The latest version of each
+     * {@code NamespaceId} seen is retained for the life of the stream.
+     *
+     * @param <T> comparable type of ID attribute
+     * @param <R> NamespaceId type filtered
+     * @return filtering processor
+     */
+    public static <T extends Comparable<T>, R extends NamespaceId<T>> Flow.Processor<R, R> dropStaleVersions() {
+        return dropStaleVersions(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a stage which drops stale versions, requesting IDs in batches of
+     * the given size.
+     *
+     * @param batchSize number of IDs requested from upstream at once
+     * @param <T> comparable type of ID attribute
+     * @param <R> NamespaceId type filtered
+     * @return filtering processor
+     * @throws IllegalArgumentException if <tt>batchSize</tt> is not positive
+     * @see #dropStaleVersions()
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Comparable<T>, R extends NamespaceId<T>> Flow.Processor<R, R> dropStaleVersions(
+            final int batchSize) {
+        // Processor invokes function from one thread at a time
+        final Map<NamespaceId<T>, R> latest = new HashMap<>();
+        return new BatchingProcessor<R, R>(id -> {
+            final NamespaceId<T> key = id.toNamespaceId();
+            R previous = latest.get(key);
+            if (null != previous && !id.after((NamespaceId<T>) previous)) {
+                return null;
+            }
+            latest.put(key, id);
+            return id;
+        }, batchSize);
+    }
+
+}
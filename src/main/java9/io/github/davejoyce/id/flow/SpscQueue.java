@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.flow;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue for exactly one producer thread and one consumer
+ * thread at a time.
+ *
+ * @param <E> element type
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+final class SpscQueue<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    SpscQueue(final int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(1, minCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Add an element; called by the producer only.
+     *
+     * @param e non-null element
+     * @return false if the queue is full
+     */
+    boolean offer(final E e) {
+        long p = producerIndex.get();
+        int slot = (int)p & mask;
+        if (null != slots.get(slot)) {
+            return false;
+        }
+        slots.lazySet(slot, e);
+        producerIndex.lazySet(p + 1);
+        return true;
+    }
+
+    /**
+     * Remove the head element; called by the consumer only.
+     *
+     * @return head element, or null if the queue is empty
+     */
+    E poll() {
+        long c = consumerIndex.get();
+        int slot = (int)c & mask;
+        E e = slots.get(slot);
+        if (null != e) {
+            slots.lazySet(slot, null);
+            consumerIndex.lazySet(c + 1);
+        }
+        return e;
+    }
+
+    boolean isEmpty() {
+        return null == slots.get((int)consumerIndex.get() & mask);
+    }
+
+    /**
+     * Discard all elements; called by the consumer only.
+     */
+    void clear() {
+        while (null != poll()) {
+            // Discard
+        }
+    }
+
+}
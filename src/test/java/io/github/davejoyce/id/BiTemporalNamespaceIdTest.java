@@ -70,6 +70,17 @@ public class BiTemporalNamespaceIdTest extends AbstractIdTest {
         fail("Expected IllegalArgumentException on less than 3 separators");
     }
 
+    @Test
+    public void testPrimitiveAsAtTime() {
+        Instant timestamp1 = Instant.parse("1977-11-13T14:18:00Z");
+        Instant timestamp2 = Instant.parse("2008-01-05T22:00:00.000000001Z");
+        BiTemporalNamespaceId<Integer> btnsId = new BiTemporalNamespaceId<Integer>("bitemporal", 1, timestamp1, timestamp2);
+        assertEquals(btnsId.getAsOfEpochSecond(), timestamp1.getEpochSecond());
+        assertEquals(btnsId.getAsOfNano(), 0);
+        assertEquals(btnsId.getAsAtEpochSecond(), timestamp2.getEpochSecond());
+        assertEquals(btnsId.getAsAtNano(), 1);
+    }
+
     @Test
     public void testConstructorEpochSeconds() {
         Instant timestamp1 = Instant.parse("1977-11-13T14:18:00Z");
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@code IdArrays} radix sort compared with
+ * {@code Arrays.sort} and {@code Arrays.parallelSort}, over shuffled version
+ * histories of integer and string IDs. Each invocation sorts a fresh copy of
+ * the shuffled array. Run from the IDE, or with <code>mvn test-compile</code>
+ * followed by running this class's <code>main</code> method on the test
+ * classpath.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@SuppressWarnings("rawtypes")
+public class IdArraysBenchmark {
+
+    private static final int VERSIONS = 8;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"integer", "string"})
+    public String idType;
+
+    private TemporalNamespaceId[] shuffled;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1L);
+        shuffled = new TemporalNamespaceId[size];
+        for (int i = 0; i < size; i++) {
+            int id = i / VERSIONS;
+            String ns = "ns" + (id % 16);
+            long asOf = 1_500_000_000L + (i % VERSIONS) * 3600L + random.nextInt(3600);
+            shuffled[i] = "integer".equals(idType)
+                          ? new TemporalNamespaceId<>(ns, id, asOf, random.nextInt(1_000_000_000))
+                          : new TemporalNamespaceId<>(ns, "id-" + id, asOf, random.nextInt(1_000_000_000));
+        }
+        for (int i = size - 1; 0 < i; i--) {
+            int j = random.nextInt(i + 1);
+            TemporalNamespaceId swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+    }
+
+    @Benchmark
+    public Object[] arraysSort() {
+        TemporalNamespaceId[] ids = shuffled.clone();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object[] arraysParallelSort() {
+        TemporalNamespaceId[] ids = shuffled.clone();
+        Arrays.parallelSort(ids);
+        return ids;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object[] idArraysSort() {
+        TemporalNamespaceId[] ids = shuffled.clone();
+        IdArrays.sort(ids);
+        return ids;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object[] idArraysParallelSort() {
+        TemporalNamespaceId[] ids = shuffled.clone();
+        IdArrays.parallelSort(ids);
+        return ids;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(IdArraysBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+
+}
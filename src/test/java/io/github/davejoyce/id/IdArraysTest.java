@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdArrays}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdArraysTest {
+
+    @Test(groups = "id")
+    @SuppressWarnings("unchecked")
+    public void testRadixSortOfIntegerIds() throws Exception {
+        Random random = new Random(1L);
+        TemporalNamespaceId<Integer>[] ids = new TemporalNamespaceId[2000];
+        for (int i = 0; ids.length > i; i++) {
+            // Narrow ranges, so that equal IDs and negative components occur
+            ids[i] = new TemporalNamespaceId<>("ns" + random.nextInt(3), random.nextInt(50) - 25,
+                                               random.nextInt(4) - 2, random.nextInt(3));
+        }
+        assertRadixSortMatchesNaturalOrder(ids);
+    }
+
+    @Test(groups = "id")
+    @SuppressWarnings("unchecked")
+    public void testRadixSortOfWideKeys() throws Exception {
+        Random random = new Random(2L);
+        long[] seconds = {Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE};
+        int[] nanos = {Integer.MIN_VALUE, 0, 999_999_999, Integer.MAX_VALUE};
+        BiTemporalNamespaceId<Long>[] ids = new BiTemporalNamespaceId[2000];
+        for (int i = 0; ids.length > i; i++) {
+            // Components spanning their full ranges need several key words
+            ids[i] = new BiTemporalNamespaceId<>("ns" + random.nextInt(2),
+                                                 0 == random.nextInt(2) ? random.nextLong() : random.nextInt(3),
+                                                 seconds[random.nextInt(seconds.length)],
+                                                 nanos[random.nextInt(nanos.length)],
+                                                 seconds[random.nextInt(seconds.length)],
+                                                 nanos[random.nextInt(nanos.length)]);
+        }
+        assertRadixSortMatchesNaturalOrder(ids);
+    }
+
+    @Test(groups = "id")
+    @SuppressWarnings("unchecked")
+    public void testRadixSortOfRankedIds() throws Exception {
+        Random random = new Random(3L);
+        TemporalNamespaceId<String>[] strings = new TemporalNamespaceId[2000];
+        for (int i = 0; strings.length > i; i++) {
+            strings[i] = new TemporalNamespaceId<>("ns", "id-" + random.nextInt(300),
+                                                   random.nextInt(5), random.nextInt(2));
+        }
+        assertRadixSortMatchesNaturalOrder(strings);
+
+        // Values which compare equal but are not equal are ranked together
+        BigDecimal[] decimals = {new BigDecimal("1.0"), new BigDecimal("1.00"), new BigDecimal("-2")};
+        TemporalNamespaceId<BigDecimal>[] ids = new TemporalNamespaceId[300];
+        for (int i = 0; ids.length > i; i++) {
+            ids[i] = new TemporalNamespaceId<>("ns", decimals[random.nextInt(decimals.length)],
+                                               random.nextInt(5), 0);
+        }
+        assertRadixSortMatchesNaturalOrder(ids);
+    }
+
+    @Test(groups = "id")
+    @SuppressWarnings("unchecked")
+    public void testIneligibleIds() throws Exception {
+        TemporalNamespaceId<Integer>[] mixedTypes = new TemporalNamespaceId[] {
+                new TemporalNamespaceId<>("ns", 2, 1L, 0),
+                new BiTemporalNamespaceId<>("ns", 1, 1L, 0, 2L, 0)
+        };
+        assertFalse(IdArrays.radixSort(mixedTypes.clone(), false));
+        TemporalNamespaceId[] mixedValues = new TemporalNamespaceId[] {
+                new TemporalNamespaceId<>("ns", 2, 1L, 0),
+                new TemporalNamespaceId<>("ns", 1L, 1L, 0)
+        };
+        assertFalse(IdArrays.radixSort(mixedValues.clone(), false));
+        TemporalNamespaceId<Integer>[] withNull = new TemporalNamespaceId[] {
+                new TemporalNamespaceId<>("ns", 2, 1L, 0),
+                null
+        };
+        assertFalse(IdArrays.radixSort(withNull.clone(), false));
+        expectThrows(NullPointerException.class, () -> IdArrays.sort(withNull));
+        expectThrows(IllegalArgumentException.class, () -> IdArrays.sort(null));
+        expectThrows(IllegalArgumentException.class, () -> IdArrays.parallelSort(null));
+
+        // Small and ineligible arrays are sorted by comparison
+        IdArrays.sort(mixedTypes);
+        assertEquals(mixedTypes[0].getId(), Integer.valueOf(1));
+    }
+
+    @Test(groups = "id")
+    @SuppressWarnings("unchecked")
+    public void testSortAndParallelSort() throws Exception {
+        Random random = new Random(4L);
+        TemporalNamespaceId<Integer>[] ids = new TemporalNamespaceId[IdArrays.RADIX_THRESHOLD * 16];
+        for (int i = 0; ids.length > i; i++) {
+            ids[i] = new TemporalNamespaceId<>("ns" + random.nextInt(4), random.nextInt(10_000),
+                                               1_500_000_000L + random.nextInt(1_000_000), 0);
+        }
+        TemporalNamespaceId<Integer>[] expected = ids.clone();
+        Arrays.sort(expected);
+        TemporalNamespaceId<Integer>[] sorted = ids.clone();
+        IdArrays.sort(sorted);
+        assertIdentical(sorted, expected);
+        sorted = ids.clone();
+        IdArrays.parallelSort(sorted);
+        assertIdentical(sorted, expected);
+    }
+
+    private static <T extends Comparable<T>> void assertRadixSortMatchesNaturalOrder(final TemporalNamespaceId<T>[] ids) {
+        TemporalNamespaceId<T>[] expected = ids.clone();
+        Arrays.sort(expected);
+        for (boolean parallel : new boolean[]{false, true}) {
+            TemporalNamespaceId<T>[] sorted = ids.clone();
+            assertTrue(IdArrays.radixSort(sorted, parallel));
+            assertIdentical(sorted, expected);
+        }
+    }
+
+    private static void assertIdentical(final Object[] actual, final Object[] expected) {
+        assertEquals(actual.length, expected.length);
+        for (int i = 0; expected.length > i; i++) {
+            // Equal IDs keep their relative order, as by a stable sort
+            assertSame(actual[i], expected[i], "Element " + i);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdCodec}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdCodecTest {
+
+    private static final Instant AS_OF_TIME = Instant.parse("1977-11-13T14:18:00.123456789Z");
+    private static final Instant AS_AT_TIME = Instant.parse("2008-01-05T22:00:00Z");
+
+    @DataProvider
+    public Object[][] roundTripData() {
+        return new Object[][] {
+                new Object[]{ new NamespaceId<>("namespace", "id"), String.class },
+                new Object[]{ new NamespaceId<>("namespace", 42), Integer.class },
+                new Object[]{ new TemporalNamespaceId<>("temporal", 3.141592F, AS_OF_TIME), Float.class },
+                new Object[]{ new BiTemporalNamespaceId<>("bitemporal", "été", AS_OF_TIME, AS_AT_TIME), String.class },
+                new Object[]{ new NamespaceId<>(repeat('n', 200), repeat('i', 20000)), String.class },
+        };
+    }
+
+    @Test(dataProvider = "roundTripData", groups = "id")
+    public <T extends Comparable<T>> void testRoundTrip(NamespaceId<T> id, Class<T> idType) throws Exception {
+        byte[] encoded = IdCodec.encode(id);
+        NamespaceId<T> decoded = IdCodec.decode(encoded, idType);
+        assertEquals(decoded, id);
+        assertEquals(decoded.getClass(), id.getClass());
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(encoded.length + 1);
+        IdCodec.encode(id, buf);
+        assertEquals(buf.position(), encoded.length);
+        buf.flip();
+        assertEquals(IdCodec.decode(buf, idType), id);
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test(groups = "id")
+    public void testKeyIsSharedByAllVersions() throws Exception {
+        byte[] ns = IdCodec.encode(new NamespaceId<>("ns", "id"));
+        byte[] tns = IdCodec.encode(new TemporalNamespaceId<>("ns", "id", AS_OF_TIME));
+        byte[] btns = IdCodec.encode(new BiTemporalNamespaceId<>("ns", "id", AS_OF_TIME, AS_AT_TIME));
+        int keyEnd = IdCodec.keyEnd(ns, 0);
+        assertEquals(keyEnd, ns.length);
+        assertEquals(IdCodec.keyEnd(tns, 0), keyEnd);
+        assertEquals(IdCodec.keyEnd(btns, 0), keyEnd);
+        assertEquals(Arrays.copyOfRange(tns, 1, keyEnd), Arrays.copyOfRange(ns, 1, keyEnd));
+        assertEquals(Arrays.copyOfRange(btns, 1, keyEnd), Arrays.copyOfRange(ns, 1, keyEnd));
+        assertEquals(tns[0], IdCodec.TYPE_TEMPORAL);
+        assertEquals(btns[0], IdCodec.TYPE_BITEMPORAL);
+    }
+
+    @Test(groups = "id", expectedExceptions = IllegalArgumentException.class)
+    public void testDecodeTruncated() throws Exception {
+        byte[] encoded = IdCodec.encode(new TemporalNamespaceId<>("ns", "id", AS_OF_TIME));
+        IdCodec.decode(Arrays.copyOf(encoded, encoded.length - 1), String.class);
+    }
+
+    @Test(groups = "id", expectedExceptions = IllegalArgumentException.class)
+    public void testDecodeBadType() throws Exception {
+        IdCodec.decode(new byte[]{ 9, 1, 'n', 1, 'i' }, String.class);
+    }
+
+    @Test(groups = "id", expectedExceptions = IllegalArgumentException.class)
+    public void testDecodeBadIdType() throws Exception {
+        byte[] encoded = IdCodec.encode(new NamespaceId<>("ns", "id"));
+        IdCodec.decode(encoded, Integer.class);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+}
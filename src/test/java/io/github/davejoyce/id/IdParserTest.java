@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdParser}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdParserTest {
+
+    @DataProvider
+    public Object[][] idStrings() {
+        return new Object[][] {
+                new Object[]{ "namespace/id" },
+                new Object[]{ "namespace/été" },
+                new Object[]{ "namespace/42" },
+                new Object[]{ "namespace/id/1977-11-13T14:18:00.123456789Z" },
+                new Object[]{ "namespace/42/1977-11-13T14:18:00Z/2008-01-05T22:00:00Z" },
+                new Object[]{ "namespace/a/b/1977-11-13T14:18:00Z/2008-01-05T22:00:00Z" },
+                new Object[]{ "namespace//1977-11-13T14:18:00Z" },
+                new Object[]{ "namespace/id/not-a-time" },
+                new Object[]{ "namespace/id/1977-11-13T14:18:00Z/2008-01-05T22:00:00Zé" },
+                new Object[]{ "/id" },
+                new Object[]{ " /id" },
+                new Object[]{ "namespace/ " },
+                new Object[]{ "namespace" },
+                new Object[]{ "  \t" },
+                new Object[]{ "" },
+        };
+    }
+
+    @Test(dataProvider = "idStrings", groups = "id")
+    public void testNamespaceIdsMatchFromString(String s) throws Exception {
+        assertSameOutcome(s, IdParser.namespaceIds(String.class), x -> NamespaceId.fromString(x, String.class));
+        assertSameOutcome(s, IdParser.namespaceIds(Integer.class), x -> NamespaceId.fromString(x, Integer.class));
+    }
+
+    @Test(dataProvider = "idStrings", groups = "id")
+    public void testTemporalIdsMatchFromString(String s) throws Exception {
+        assertSameOutcome(s, IdParser.temporalIds(String.class), x -> TemporalNamespaceId.fromString(x, String.class));
+        assertSameOutcome(s, IdParser.temporalIds(Integer.class), x -> TemporalNamespaceId.fromString(x, Integer.class));
+    }
+
+    @Test(dataProvider = "idStrings", groups = "id")
+    public void testBiTemporalIdsMatchFromString(String s) throws Exception {
+        assertSameOutcome(s, IdParser.biTemporalIds(String.class), x -> BiTemporalNamespaceId.fromString(x, String.class));
+        assertSameOutcome(s, IdParser.biTemporalIds(Integer.class), x -> BiTemporalNamespaceId.fromString(x, Integer.class));
+    }
+
+    @Test(groups = "id")
+    public void testParseRange() throws Exception {
+        byte[] bytes = "xxns/id/1977-11-13T14:18:00Zyy".getBytes(StandardCharsets.UTF_8);
+        TemporalNamespaceId<String> id = IdParser.temporalIds(String.class).parse(bytes, 2, bytes.length - 4);
+        assertEquals(id, TemporalNamespaceId.fromString("ns/id/1977-11-13T14:18:00Z"));
+    }
+
+    @Test(groups = "id", expectedExceptions = IllegalArgumentException.class)
+    public void testNullIdType() throws Exception {
+        IdParser.namespaceIds(null);
+    }
+
+    private static void assertSameOutcome(String s,
+                                          IdParser<?> parser,
+                                          Function<String, NamespaceId<?>> fromString) {
+        NamespaceId<?> expected = null;
+        try {
+            expected = fromString.apply(s);
+        } catch (IllegalArgumentException expectedFailure) {
+            // Parser must fail too
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        try {
+            NamespaceId<?> actual = parser.parse(bytes, 0, bytes.length);
+            assertNotNull(expected, "fromString rejected '" + s + "' but parser accepted it");
+            assertEquals(actual, expected);
+            assertEquals(actual.getClass(), expected.getClass());
+        } catch (IllegalArgumentException iae) {
+            assertNull(expected, "fromString accepted '" + s + "' but parser rejected it");
+        }
+    }
+
+}
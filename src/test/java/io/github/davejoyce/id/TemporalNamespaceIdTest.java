@@ -77,6 +77,14 @@ public class TemporalNamespaceIdTest extends AbstractIdTest {
         assertEquals(asOfTime, timestamp);
     }
 
+    @Test
+    public void testPrimitiveAsOfTime() {
+        Instant timestamp = Instant.parse("1977-11-13T14:18:00.123456789Z");
+        TemporalNamespaceId<Integer> tnsId = new TemporalNamespaceId<Integer>("temporal", 1, timestamp);
+        assertEquals(tnsId.getAsOfEpochSecond(), timestamp.getEpochSecond());
+        assertEquals(tnsId.getAsOfNano(), timestamp.getNano());
+    }
+
     @Test
     public void testEquals() throws Exception {
         TemporalNamespaceId<Integer> tnsId = TemporalNamespaceId.fromString("temporal/1/1977-11-13T14:18:00Z", Integer.class);
@@ -0,0 +1,295 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.cache;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import io.github.davejoyce.id.feed.VersionFeed;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code LatestVersionCache}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class LatestVersionCacheTest {
+
+    @Test(groups = "cache")
+    public void testReadThrough() throws Exception {
+        InMemoryVersionLoader<Integer> store = new InMemoryVersionLoader<>();
+        assertTrue(store.put(new TemporalNamespaceId<>("ns", 1, 10L)));
+        assertTrue(store.put(new TemporalNamespaceId<>("ns", 1, 20L)));
+        assertFalse(store.put(new TemporalNamespaceId<>("ns", 1, 15L)));
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(store, 100);
+        assertEquals(cache.get(new NamespaceId<>("ns", 1)), new TemporalNamespaceId<>("ns", 1, 20L));
+        // Looked up by NamespaceId projection of a temporal ID
+        assertEquals(cache.get(new TemporalNamespaceId<>("ns", 1, 5L)), new TemporalNamespaceId<>("ns", 1, 20L));
+        assertNull(cache.get(new NamespaceId<>("ns", 2)));
+        assertNull(cache.get(new NamespaceId<>("ns", 2)));
+        assertEquals(store.getLoadCount(), 3L);
+        assertEquals(cache.getLoadCount(), 3L);
+        assertEquals(cache.getHitCount(), 1L);
+        assertEquals(cache.getMissCount(), 3L);
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.invalidate(new NamespaceId<>("ns", 1)), new TemporalNamespaceId<>("ns", 1, 20L));
+        assertNull(cache.getIfPresent(new NamespaceId<>("ns", 1)));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test(groups = "cache")
+    public void testSingleFlight() throws Exception {
+        InMemoryVersionLoader<Integer> store = new InMemoryVersionLoader<>();
+        store.put(new TemporalNamespaceId<>("ns", 1, 10L));
+        store.setLatency(Duration.ofMillis(100L));
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(store, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Callable<TemporalNamespaceId<Integer>>> tasks = new ArrayList<>();
+            for (int i = 0; 8 > i; i++) {
+                tasks.add(() -> {
+                    start.await();
+                    return cache.get(new NamespaceId<>("ns", 1));
+                });
+            }
+            List<Future<TemporalNamespaceId<Integer>>> futures = new ArrayList<>();
+            for (Callable<TemporalNamespaceId<Integer>> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<TemporalNamespaceId<Integer>> future : futures) {
+                assertEquals(future.get(10L, TimeUnit.SECONDS), new TemporalNamespaceId<>("ns", 1, 10L));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(store.getLoadCount(), 1L);
+        assertEquals(cache.getHitCount() + cache.getMissCount(), 8L);
+    }
+
+    @Test(groups = "cache")
+    public void testLoaderFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        VersionLoader<Integer> failing = id -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("Failure expected by test");
+        };
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(failing, 10);
+        expectThrows(IllegalStateException.class, () -> cache.get(new NamespaceId<>("ns", 1)));
+        expectThrows(IllegalStateException.class, () -> cache.getAll(Arrays.asList(new NamespaceId<>("ns", 1))));
+        // Failures are not cached
+        expectThrows(IllegalStateException.class, () -> cache.get(new NamespaceId<>("ns", 1)));
+        assertEquals(calls.get(), 3);
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test(groups = "cache")
+    public void testGetAll() throws Exception {
+        InMemoryVersionLoader<Integer> store = new InMemoryVersionLoader<>();
+        for (int i = 0; 10 > i; i++) {
+            store.put(new TemporalNamespaceId<>("ns", i, 100L + i));
+        }
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(store, 100);
+        cache.get(new NamespaceId<>("ns", 0));
+        cache.get(new NamespaceId<>("ns", 1));
+        List<NamespaceId<Integer>> ids = new ArrayList<>();
+        for (int i = 0; 12 > i; i++) {
+            ids.add(new NamespaceId<>("ns", i));
+        }
+        ids.add(new TemporalNamespaceId<>("ns", 5, 1L));
+        Map<NamespaceId<Integer>, TemporalNamespaceId<Integer>> versions = cache.getAll(ids);
+        assertEquals(versions.size(), 10);
+        for (int i = 0; 10 > i; i++) {
+            assertEquals(versions.get(new NamespaceId<>("ns", i)), new TemporalNamespaceId<>("ns", i, 100L + i));
+        }
+        assertEquals(store.getLoadCount(), 2L);
+        assertEquals(store.getLoadAllCount(), 1L);
+        assertEquals(cache.getHitCount(), 2L);
+        assertEquals(cache.getMissCount(), 12L);
+        assertEquals(cache.size(), 10);
+        assertEquals(cache.getAll(ids).size(), 10);
+        assertEquals(store.getLoadAllCount(), 2L);
+        expectThrows(IllegalArgumentException.class, () -> cache.getAll(Arrays.asList(new NamespaceId<>("ns", 1), null)));
+    }
+
+    @Test(groups = "cache")
+    public void testAccept() throws Exception {
+        InMemoryVersionLoader<Integer> store = new InMemoryVersionLoader<>();
+        store.put(new BiTemporalNamespaceId<>("ns", 1, 10L, 10L));
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(store, 100);
+        // Versions of IDs not cached are ignored
+        assertFalse(cache.accept(new BiTemporalNamespaceId<>("ns", 2, 10L, 10L)));
+        assertNull(cache.getIfPresent(new NamespaceId<>("ns", 2)));
+        cache.get(new NamespaceId<>("ns", 1));
+        assertTrue(cache.accept(new BiTemporalNamespaceId<>("ns", 1, 10L, 12L)));
+        assertFalse(cache.accept(new BiTemporalNamespaceId<>("ns", 1, 10L, 11L)));
+        assertFalse(cache.accept(new BiTemporalNamespaceId<>("ns", 1, 10L, 12L)));
+        assertEquals(cache.get(new NamespaceId<>("ns", 1)), new BiTemporalNamespaceId<>("ns", 1, 10L, 12L));
+        assertEquals(store.getLoadCount(), 1L);
+
+        VersionFeed<Integer> feed = new VersionFeed<>(16);
+        feed.subscribe(cache);
+        feed.publishAll(Arrays.asList(new BiTemporalNamespaceId<>("ns", 1, 11L, 11L),
+                                      new BiTemporalNamespaceId<>("ns", 1, 9L, 20L)));
+        feed.close();
+        assertEquals(cache.getIfPresent(new NamespaceId<>("ns", 1)), new BiTemporalNamespaceId<>("ns", 1, 11L, 11L));
+    }
+
+    @Test(groups = "cache")
+    public void testAcceptDuringLoad() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch acceptDone = new CountDownLatch(1);
+        VersionLoader<Integer> slow = id -> {
+            loadStarted.countDown();
+            try {
+                acceptDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new TemporalNamespaceId<>("ns", 1, 10L);
+        };
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(slow, 10);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<TemporalNamespaceId<Integer>> loaded = executor.submit(() -> cache.get(new NamespaceId<>("ns", 1)));
+            assertTrue(loadStarted.await(10L, TimeUnit.SECONDS));
+            assertTrue(cache.accept(new TemporalNamespaceId<>("ns", 1, 20L)));
+            acceptDone.countDown();
+            // Stale load does not roll back the accepted version
+            assertEquals(loaded.get(10L, TimeUnit.SECONDS), new TemporalNamespaceId<>("ns", 1, 20L));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(cache.getIfPresent(new NamespaceId<>("ns", 1)), new TemporalNamespaceId<>("ns", 1, 20L));
+    }
+
+    @Test(groups = "cache")
+    public void testFrequencyEviction() throws Exception {
+        InMemoryVersionLoader<Integer> store = new InMemoryVersionLoader<>();
+        for (int i = 0; 1000 > i; i++) {
+            store.put(new TemporalNamespaceId<>("ns", i, 1L));
+        }
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(store, 64);
+        // Popular IDs are read repeatedly between one-off reads of others
+        for (int i = 0; 1000 > i; i++) {
+            for (int p = 0; 8 > p; p++) {
+                cache.get(new NamespaceId<>("ns", p));
+            }
+            cache.get(new NamespaceId<>("ns", i));
+            assertTrue(cache.size() <= 64);
+        }
+        assertTrue(cache.getEvictionCount() > 0L);
+        for (int p = 0; 8 > p; p++) {
+            assertNotNull(cache.getIfPresent(new NamespaceId<>("ns", p)), "Popular ID " + p + " evicted");
+        }
+        long loads = store.getLoadCount();
+        cache.get(new NamespaceId<>("ns", 0));
+        assertEquals(store.getLoadCount(), loads);
+    }
+
+    @Test(groups = "cache")
+    public void testRefreshAhead() throws Exception {
+        InMemoryVersionLoader<Integer> store = new InMemoryVersionLoader<>();
+        store.put(new TemporalNamespaceId<>("ns", 1, 10L));
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(1000L));
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(store, 10, Duration.ofSeconds(30L), clock);
+        try {
+            NamespaceId<Integer> id = new NamespaceId<>("ns", 1);
+            assertEquals(cache.get(id), new TemporalNamespaceId<>("ns", 1, 10L));
+            store.put(new TemporalNamespaceId<>("ns", 1, 20L));
+            clock.now = Instant.ofEpochSecond(1010L);
+            assertEquals(cache.get(id), new TemporalNamespaceId<>("ns", 1, 10L));
+            assertEquals(cache.getRefreshCount(), 0L);
+            clock.now = Instant.ofEpochSecond(1031L);
+            // Stale entry is returned at once, and reloaded in the background
+            assertEquals(cache.get(id), new TemporalNamespaceId<>("ns", 1, 10L));
+            assertEquals(cache.getRefreshCount(), 1L);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (new TemporalNamespaceId<>("ns", 1, 20L).after(cache.getIfPresent(id))
+                   || 2L > store.getLoadCount()) {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(1L);
+            }
+            assertEquals(cache.get(id), new TemporalNamespaceId<>("ns", 1, 20L));
+            assertEquals(store.getLoadCount(), 2L);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test(groups = "cache")
+    public void testInvalidArguments() throws Exception {
+        InMemoryVersionLoader<Integer> store = new InMemoryVersionLoader<>();
+        expectThrows(IllegalArgumentException.class, () -> new LatestVersionCache<Integer>(null, 10));
+        expectThrows(IllegalArgumentException.class, () -> new LatestVersionCache<>(store, 0));
+        expectThrows(IllegalArgumentException.class, () -> new LatestVersionCache<>(store, 10, null));
+        expectThrows(IllegalArgumentException.class, () -> new LatestVersionCache<>(store, 10, Duration.ZERO));
+        expectThrows(IllegalArgumentException.class, () -> store.setLatency(Duration.ofMillis(-1L)));
+        expectThrows(IllegalArgumentException.class, () -> store.put(null));
+        LatestVersionCache<Integer> cache = new LatestVersionCache<>(store, 10);
+        expectThrows(IllegalArgumentException.class, () -> cache.get(null));
+        expectThrows(IllegalArgumentException.class, () -> cache.getAll(null));
+        expectThrows(IllegalArgumentException.class, () -> cache.accept(null));
+        expectThrows(IllegalArgumentException.class, () -> cache.invalidate(null));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        volatile Instant now;
+
+        MutableClock(final Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.collect;
+
+import io.github.davejoyce.id.NamespaceId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of random lookups in a {@code FrontCodedIdDictionary} compared
+ * with a {@code TreeSet} of the same hierarchical SKUs. The dictionary's
+ * encoded size per ID is printed at setup. Run from the IDE, or with
+ * <code>mvn test-compile</code> followed by running this class's
+ * <code>main</code> method on the test classpath.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontCodedIdDictionaryBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final String[] DEPARTMENTS = { "APPAREL", "FOOTWEAR", "HOME", "OUTDOOR" };
+    private static final String[] CATEGORIES = { "MENS", "WOMENS", "KIDS", "UNISEX" };
+
+    @Param({"1000000"})
+    public int idCount;
+
+    private FrontCodedIdDictionary dictionary;
+    private TreeSet<NamespaceId<String>> treeSet;
+    private List<NamespaceId<String>> lookups;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1L);
+        List<NamespaceId<String>> ids = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            ids.add(sku(i));
+        }
+        dictionary = FrontCodedIdDictionary.of(ids);
+        treeSet = new TreeSet<>(ids);
+        lookups = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            // Half present, half absent
+            int n = random.nextInt(idCount);
+            lookups.add(random.nextBoolean() ? sku(n) : sku(idCount + n));
+        }
+        System.out.printf("%nDictionary: %d IDs in %d bytes, %.1f bytes per ID%n",
+                          dictionary.size(), dictionary.getByteSize(),
+                          (double) dictionary.getByteSize() / dictionary.size());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int containsDictionary() {
+        int found = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (dictionary.contains(lookups.get(i))) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int containsTreeSet() {
+        int found = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (treeSet.contains(lookups.get(i))) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static NamespaceId<String> sku(int n) {
+        return new NamespaceId<>("sku", DEPARTMENTS[n & 3] + "-" + CATEGORIES[(n >>> 2) & 3] + "-"
+                                        + String.format("%03d-%08d", (n >>> 4) % 500, n));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(FrontCodedIdDictionaryBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+
+}
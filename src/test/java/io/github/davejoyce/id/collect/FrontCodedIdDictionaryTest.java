@@ -0,0 +1,190 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.collect;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code FrontCodedIdDictionary}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class FrontCodedIdDictionaryTest {
+
+    private static final String[] SEGMENTS = { "APPAREL", "FOOTWEAR", "ÉQUIPEMENT", "家居", "😀" };
+
+    @DataProvider
+    public Object[][] blockSizes() {
+        return new Object[][] {
+                new Object[]{ 1 },
+                new Object[]{ 3 },
+                new Object[]{ FrontCodedIdDictionary.DEFAULT_BLOCK_SIZE },
+        };
+    }
+
+    @Test(dataProvider = "blockSizes", groups = "collect")
+    public void testMatchesTreeSet(int blockSize) throws Exception {
+        List<NamespaceId<String>> ids = skus(5000, 11L);
+        TreeSet<NamespaceId<String>> expected = new TreeSet<>(ids);
+        FrontCodedIdDictionary dictionary = FrontCodedIdDictionary.of(ids, blockSize);
+
+        assertEquals(dictionary.size(), expected.size());
+        assertEquals(dictionary.stream(false).collect(Collectors.toList()), new ArrayList<>(expected));
+        int rank = 0;
+        for (NamespaceId<String> id : expected) {
+            assertEquals(dictionary.get(rank), id);
+            assertEquals(dictionary.indexOf(id), rank);
+            assertEquals(dictionary.rank(id), rank);
+            rank++;
+        }
+        for (NamespaceId<String> absent : skus(2000, 12L)) {
+            if (!expected.contains(absent)) {
+                assertEquals(dictionary.indexOf(absent), -1);
+                assertFalse(dictionary.contains(absent));
+                assertEquals(dictionary.rank(absent), expected.headSet(absent).size());
+            }
+        }
+    }
+
+    @Test(dataProvider = "blockSizes", groups = "collect")
+    public void testWithPrefix(int blockSize) throws Exception {
+        List<NamespaceId<String>> ids = skus(5000, 13L);
+        TreeSet<NamespaceId<String>> all = new TreeSet<>(ids);
+        FrontCodedIdDictionary dictionary = FrontCodedIdDictionary.of(ids, blockSize);
+        for (String ns : Arrays.asList("sku", "upc", "absent")) {
+            for (String prefix : Arrays.asList("", "APPAREL", "APPAREL-1", "家居-", "\uD83D", "ZZZ")) {
+                List<NamespaceId<String>> expected = all.stream()
+                        .filter(id -> id.getNamespace().equals(ns) && id.getId().startsWith(prefix))
+                        .collect(Collectors.toList());
+                assertEquals(dictionary.withPrefix(ns, prefix).collect(Collectors.toList()), expected,
+                             ns + "/" + prefix);
+            }
+        }
+    }
+
+    @Test(groups = "collect")
+    public void testParallelStream() throws Exception {
+        FrontCodedIdDictionary dictionary = FrontCodedIdDictionary.of(skus(20000, 14L));
+        assertEquals(dictionary.stream(true).collect(Collectors.toList()),
+                     dictionary.stream(false).collect(Collectors.toList()));
+    }
+
+    @Test(groups = "collect")
+    public void testCompression() throws Exception {
+        List<NamespaceId<String>> ids = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            ids.add(new NamespaceId<>("sku", String.format("APPAREL-MENS-OUTERWEAR-JACKETS-%08d", i)));
+        }
+        FrontCodedIdDictionary dictionary = FrontCodedIdDictionary.of(ids);
+        // A TreeSet entry alone (TreeMap.Entry, NamespaceId, String and its
+        // array) takes over 100 bytes for these IDs
+        assertTrue(dictionary.getByteSize() < 10L * ids.size(),
+                   "Bytes per ID: " + (double)dictionary.getByteSize() / ids.size());
+    }
+
+    @Test(groups = "collect")
+    public void testProjectionAndDuplicates() throws Exception {
+        List<NamespaceId<String>> ids = Arrays.asList(new TemporalNamespaceId<>("ns", "b", 1L),
+                                                      new NamespaceId<>("ns", "a"),
+                                                      new TemporalNamespaceId<>("ns", "b", 2L),
+                                                      new NamespaceId<>("ns", "a"));
+        FrontCodedIdDictionary dictionary = FrontCodedIdDictionary.of(ids);
+        assertEquals(dictionary.size(), 2);
+        assertEquals(dictionary.get(1), new NamespaceId<>("ns", "b"));
+        assertTrue(dictionary.contains(new TemporalNamespaceId<>("ns", "b", 3L)));
+    }
+
+    @Test(groups = "collect")
+    public void testEmpty() throws Exception {
+        FrontCodedIdDictionary dictionary = FrontCodedIdDictionary.of(Collections.<NamespaceId<String>>emptyList());
+        assertEquals(dictionary.size(), 0);
+        assertEquals(dictionary.rank(new NamespaceId<>("ns", "a")), 0);
+        assertEquals(dictionary.stream(false).count(), 0L);
+        assertEquals(dictionary.withPrefix("ns", "").count(), 0L);
+    }
+
+    @Test(groups = "collect", expectedExceptions = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() throws Exception {
+        FrontCodedIdDictionary.of(Arrays.asList(new NamespaceId<>("ns", "a"))).get(1);
+    }
+
+    @Test(groups = "collect", expectedExceptions = IllegalArgumentException.class)
+    public void testBadBlockSize() throws Exception {
+        FrontCodedIdDictionary.of(Collections.<NamespaceId<String>>emptyList(), 0);
+    }
+
+    @Test(groups = "collect")
+    public void testEncodingPreservesOrder() throws Exception {
+        Random random = new Random(15L);
+        for (int i = 0; i < 10000; i++) {
+            String a = randomString(random);
+            String b = randomString(random);
+            byte[] ea = FrontCodedIdDictionary.encode(a);
+            byte[] eb = FrontCodedIdDictionary.encode(b);
+            assertEquals(FrontCodedIdDictionary.decode(ea, ea.length), a);
+            assertEquals(Integer.signum(compareUnsigned(ea, eb)), Integer.signum(a.compareTo(b)), a + " vs " + b);
+        }
+    }
+
+    private static List<NamespaceId<String>> skus(int count, long seed) {
+        Random random = new Random(seed);
+        List<NamespaceId<String>> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String ns = random.nextBoolean() ? "sku" : "upc";
+            String segment = SEGMENTS[random.nextInt(SEGMENTS.length)];
+            ids.add(new NamespaceId<>(ns, segment + "-" + random.nextInt(50) + "-" + random.nextInt(1000)));
+        }
+        return ids;
+    }
+
+    private static String randomString(Random random) {
+        char[] chars = new char[random.nextInt(6)];
+        for (int i = 0; i < chars.length; i++) {
+            switch (random.nextInt(4)) {
+                case 0: chars[i] = (char)random.nextInt(0x80); break;
+                case 1: chars[i] = (char)(0x80 + random.nextInt(0x780)); break;
+                case 2: chars[i] = (char)(0xD800 + random.nextInt(0x800)); break;
+                default: chars[i] = (char)random.nextInt(0x10000); break;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (0 != c) {
+                return c;
+            }
+        }
+        return a.length - b.length;
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.collect;
+
+import io.github.davejoyce.id.NamespaceId;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code NamespaceTrie}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class NamespaceTrieTest {
+
+    private static final List<String> PREFIXES = Arrays.asList(
+            "", "e", "emea", "emea.", "emea.trading", "emea.trading.fx", "emea.tradingdesk",
+            "apac.ops", "amer.trading.rates.x", "zzz");
+
+    @Test(groups = "collect")
+    public void testQueriesMatchScan() throws Exception {
+        List<NamespaceId<Integer>> ids = randomIds(20000, 21L);
+        NamespaceTrie<Integer> trie = new NamespaceTrie<>();
+        for (NamespaceId<Integer> id : ids) {
+            trie.add(id);
+        }
+        assertMatchesScan(trie, new TreeSet<>(ids));
+    }
+
+    @Test(groups = "collect")
+    public void testAddAllAndRemove() throws Exception {
+        List<NamespaceId<Integer>> ids = randomIds(20000, 22L);
+        NamespaceTrie<Integer> trie = new NamespaceTrie<>();
+        assertTrue(trie.addAll(ids.subList(0, 10000)));
+        assertTrue(trie.addAll(ids.subList(5000, 20000)));
+        assertFalse(trie.addAll(ids.subList(0, 100)));
+        TreeSet<NamespaceId<Integer>> expected = new TreeSet<>(ids);
+        assertMatchesScan(trie, expected);
+
+        Random random = new Random(23L);
+        for (NamespaceId<Integer> id : ids) {
+            if (random.nextBoolean()) {
+                assertEquals(trie.remove(id), expected.remove(id));
+            }
+        }
+        assertFalse(trie.remove(new NamespaceId<>("absent.ns", 1)));
+        assertMatchesScan(trie, expected);
+
+        for (NamespaceId<Integer> id : new ArrayList<>(expected)) {
+            assertTrue(trie.remove(id));
+        }
+        assertEquals(trie.size(), 0);
+        assertEquals(trie.stream().count(), 0L);
+    }
+
+    @Test(groups = "collect")
+    public void testDuplicateAdd() throws Exception {
+        NamespaceTrie<String> trie = new NamespaceTrie<>();
+        assertTrue(trie.add(new NamespaceId<>("emea.trading", "a")));
+        assertFalse(trie.add(new NamespaceId<>("emea.trading", "a")));
+        assertTrue(trie.contains(new NamespaceId<>("emea.trading", "a")));
+        assertFalse(trie.contains(new NamespaceId<>("emea.tradin", "a")));
+        assertEquals(trie.size(), 1);
+    }
+
+    @Test(groups = "collect")
+    public void testUnderRespectsSeparator() throws Exception {
+        NamespaceTrie<String> trie = new NamespaceTrie<>('/');
+        trie.add(new NamespaceId<>("emea/trading", "1"));
+        trie.add(new NamespaceId<>("emea/trading/fx", "2"));
+        trie.add(new NamespaceId<>("emea/tradingdesk", "3"));
+        trie.add(new NamespaceId<>("emea/trading.fx", "4"));
+        assertEquals(trie.under("emea/trading").map(NamespaceId::getId).collect(Collectors.toList()),
+                     Arrays.asList("1", "2"));
+        assertEquals(trie.withPrefix("emea/trading").count(), 4L);
+    }
+
+    @Test(groups = "collect")
+    public void testStreamIsSnapshot() throws Exception {
+        NamespaceTrie<Integer> trie = new NamespaceTrie<>();
+        trie.addAll(randomIds(1000, 24L));
+        int size = trie.size();
+        Stream<NamespaceId<Integer>> snapshot = trie.withPrefix("");
+        trie.addAll(randomIds(1000, 25L));
+        assertEquals(snapshot.count(), (long)size);
+    }
+
+    @Test(groups = "collect")
+    public void testConcurrentReads() throws Exception {
+        final NamespaceTrie<Integer> trie = new NamespaceTrie<>();
+        final List<NamespaceId<Integer>> ids = randomIds(20000, 26L);
+        final AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        List<NamespaceId<Integer>> seen = trie.withPrefix("emea").collect(Collectors.toList());
+                        for (int i = 1; i < seen.size(); i++) {
+                            assertTrue(seen.get(i - 1).compareTo(seen.get(i)) < 0);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (NamespaceId<Integer> id : ids) {
+                trie.add(id);
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertMatchesScan(trie, new TreeSet<>(ids));
+    }
+
+    private static void assertMatchesScan(NamespaceTrie<Integer> trie, TreeSet<NamespaceId<Integer>> all) {
+        assertEquals(trie.size(), all.size());
+        assertEquals(trie.stream().collect(Collectors.toList()), new ArrayList<>(all));
+        for (String prefix : PREFIXES) {
+            List<NamespaceId<Integer>> expected = filter(all, id -> id.getNamespace().startsWith(prefix));
+            assertEquals(trie.withPrefix(prefix).collect(Collectors.toList()), expected, prefix);
+            assertEquals(trie.countWithPrefix(prefix), expected.size());
+            List<NamespaceId<Integer>> under = filter(all, id -> id.getNamespace().equals(prefix)
+                                                                  || id.getNamespace().startsWith(prefix + "."));
+            assertEquals(trie.under(prefix).collect(Collectors.toList()), under, prefix);
+            assertEquals(trie.get(prefix), filter(all, id -> id.getNamespace().equals(prefix)));
+        }
+    }
+
+    private static List<NamespaceId<Integer>> filter(TreeSet<NamespaceId<Integer>> all,
+                                                     Predicate<NamespaceId<Integer>> predicate) {
+        return all.stream().filter(predicate).collect(Collectors.toList());
+    }
+
+    private static List<NamespaceId<Integer>> randomIds(int count, long seed) {
+        String[] regions = { "emea", "apac", "amer", "e" };
+        String[] desks = { "trading", "tradingdesk", "ops", "trading.fx", "trading.rates", "trading.rates.x" };
+        Random random = new Random(seed);
+        List<NamespaceId<Integer>> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String ns = regions[random.nextInt(regions.length)];
+            if (0 != random.nextInt(5)) {
+                ns = ns + "." + desks[random.nextInt(desks.length)];
+            }
+            ids.add(new NamespaceId<>(ns, random.nextInt(5000)));
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import io.github.davejoyce.id.NamespaceId;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code BulkConversionService}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class BulkConversionServiceTest {
+
+    @DataProvider
+    public Object[][] services() {
+        return new Object[][] {
+                new Object[]{ BulkConversionService.create(32) },
+                new Object[]{ BulkConversionService.createWithPlatformThreads(32) },
+        };
+    }
+
+    @Test(dataProvider = "services", groups = "convert")
+    public void testPerElementResults(BulkConversionService service) throws Exception {
+        try {
+            List<String> inputs = Arrays.asList("ns/1", "bad", "ns/3");
+            List<ConversionResult<NamespaceId<Integer>>> results = service
+                    .submit(inputs, (String s) -> NamespaceId.fromString(s, Integer.class))
+                    .await();
+            assertEquals(results.size(), 3);
+            assertEquals(results.get(0).getValue(), new NamespaceId<>("ns", 1));
+            assertEquals(results.get(1).getStatus(), ConversionResult.Status.FAILED);
+            assertTrue(results.get(1).getFailure() instanceof IllegalArgumentException);
+            assertEquals(results.get(1).getIndex(), 1);
+            assertEquals(results.get(2).getValue(), new NamespaceId<>("ns", 3));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test(dataProvider = "services", groups = "convert")
+    public void testBlockingConvertersRunConcurrently(BulkConversionService service) throws Exception {
+        try {
+            List<String> inputs = IntStream.range(0, 320).mapToObj(Integer::toString).collect(Collectors.toList());
+            IdConverter<Integer> converter = IdConverters.forType(Integer.class);
+            AtomicInteger inFlight = new AtomicInteger();
+            AtomicInteger maxInFlight = new AtomicInteger();
+            Function<String, Integer> blocking = s -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                return converter.convert(s);
+            };
+            long start = System.nanoTime();
+            List<ConversionResult<Integer>> results = service.submit(inputs, blocking).await();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            for (int i = 0; i < 320; i++) {
+                assertEquals(results.get(i).getValue().intValue(), i);
+            }
+            assertTrue(maxInFlight.get() <= 32);
+            assertTrue(maxInFlight.get() > 1);
+            // Sequential conversion would take 3.2 seconds
+            assertTrue(elapsedMillis < 2000L, "Took " + elapsedMillis + "ms");
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test(dataProvider = "services", groups = "convert")
+    public void testDeadline(BulkConversionService service) throws Exception {
+        try {
+            CountDownLatch never = new CountDownLatch(1);
+            List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+            BulkConversion<Integer, Integer> conversion = service.submit(inputs, i -> {
+                if (0 == i % 10) {
+                    return i;
+                }
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }, Duration.ofMillis(200));
+            List<ConversionResult<Integer>> results = conversion.await();
+
+            assertTrue(conversion.isDone());
+            long timedOut = results.stream()
+                                   .filter(r -> ConversionResult.Status.TIMED_OUT == r.getStatus())
+                                   .count();
+            assertTrue(timedOut >= 90L);
+            for (ConversionResult<Integer> r : results) {
+                if (r.isConverted()) {
+                    assertEquals(r.getValue().intValue() % 10, 0);
+                }
+            }
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test(dataProvider = "services", groups = "convert")
+    public void testDeadlineWithoutAwait(BulkConversionService service) throws Exception {
+        try {
+            CountDownLatch never = new CountDownLatch(1);
+            CountDownLatch interrupted = new CountDownLatch(2);
+            BulkConversion<Integer, Integer> conversion = service.submit(Arrays.asList(1, 2), i -> {
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return i;
+            }, Duration.ofMillis(100));
+            // Nothing awaits the batch; its deadline alone must complete it
+            long limit = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (!conversion.isDone() && 0L > System.nanoTime() - limit) {
+                TimeUnit.MILLISECONDS.sleep(10L);
+            }
+            assertTrue(conversion.isDone());
+            assertTrue(interrupted.await(10L, TimeUnit.SECONDS));
+            for (ConversionResult<Integer> r : conversion.await()) {
+                assertEquals(r.getStatus(), ConversionResult.Status.TIMED_OUT);
+            }
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test(dataProvider = "services", groups = "convert")
+    public void testCancel(BulkConversionService service) throws Exception {
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            List<Integer> inputs = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+            BulkConversion<Integer, Integer> conversion = service.submit(inputs, i -> {
+                started.countDown();
+                try {
+                    Thread.sleep(60000L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return i;
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            try {
+                conversion.await(10, TimeUnit.MILLISECONDS);
+                fail("Expected TimeoutException");
+            } catch (TimeoutException expected) {
+                // Still running
+            }
+            assertTrue(conversion.cancel());
+            assertFalse(conversion.cancel());
+            List<ConversionResult<Integer>> results = conversion.await(10, TimeUnit.SECONDS);
+            assertEquals(results.size(), 1000);
+            assertTrue(results.stream().allMatch(r -> ConversionResult.Status.CANCELLED == r.getStatus()));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test(groups = "convert")
+    public void testVirtualThreadsUsedWhenAvailable() throws Exception {
+        boolean available;
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            available = true;
+        } catch (NoSuchMethodException e) {
+            available = false;
+        }
+        try (BulkConversionService service = BulkConversionService.create()) {
+            assertEquals(service.isUsingVirtualThreads(), available);
+            assertEquals(service.getConcurrency(), BulkConversionService.DEFAULT_CONCURRENCY);
+        }
+        try (BulkConversionService service = BulkConversionService.createWithPlatformThreads(4)) {
+            assertFalse(service.isUsingVirtualThreads());
+        }
+    }
+
+    @Test(groups = "convert")
+    public void testEmptyBatch() throws Exception {
+        try (BulkConversionService service = BulkConversionService.createWithPlatformThreads(1)) {
+            BulkConversion<String, String> conversion =
+                    service.submit(Collections.<String>emptyList(), Function.identity());
+            assertTrue(conversion.isDone());
+            assertTrue(conversion.await().isEmpty());
+        }
+    }
+
+    @Test(groups = "convert", expectedExceptions = IllegalArgumentException.class)
+    public void testBadConcurrency() throws Exception {
+        BulkConversionService.create(0);
+    }
+
+    @Test(groups = "convert", expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeTimeout() throws Exception {
+        try (BulkConversionService service = BulkConversionService.createWithPlatformThreads(1)) {
+            service.submit(Collections.singletonList("x"), Function.identity(), Duration.ofSeconds(-1));
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import io.github.davejoyce.id.NamespaceId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of time-to-first-parse: the time taken by the first
+ * {@code NamespaceId.fromString} call in a fresh JVM, including class
+ * loading and converter lookup. Each fork measures one cold call, of a type
+ * with a registered converter and of a type converted by reflection.
+ * <p>
+ * Run with <code>mvn test-compile</code> followed by running this class's
+ * <code>main</code> method on the test classpath. To compare with a native
+ * image, build one of this class with GraalVM <code>native-image</code> from
+ * the test classpath and run it with argument <code>--once</code>, which
+ * prints the time of a single first parse in nanoseconds; run this class on
+ * the JVM with <code>--once</code> for the equivalent JVM figure.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class FirstParseBenchmark {
+
+    @Param({"registered", "reflective"})
+    public String converter;
+
+    private Class<? extends Comparable<?>> idType;
+
+    @Setup
+    public void setUp() {
+        idType = "registered".equals(converter) ? Long.class : IdConvertersTest.Code.class;
+    }
+
+    @Benchmark
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public NamespaceId<?> firstParse() {
+        return NamespaceId.fromString("ns/12345", (Class)idType);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        if (0 < args.length && "--once".equals(args[0])) {
+            long start = System.nanoTime();
+            NamespaceId<Long> id = NamespaceId.fromString("ns/12345", Long.class);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(id + " parsed in " + elapsed + " ns");
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                           .include(FirstParseBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdConverters} with reflective lookup disabled, as in
+ * a native image. Run in a JVM with system property
+ * {@value IdConverters#REFLECTION_PROPERTY} set to <tt>false</tt>.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdConvertersNoReflectionTest {
+
+    @BeforeClass(groups = "convert")
+    public void checkReflectionDisabled() throws Exception {
+        if (IdConverters.isReflectionEnabled()) {
+            throw new SkipException("Reflection enabled; set " + IdConverters.REFLECTION_PROPERTY + "=false");
+        }
+    }
+
+    @Test(groups = "convert")
+    public void testBuiltInConverters() throws Exception {
+        assertEquals(IdConverters.forType(String.class).convert("abc"), "abc");
+        assertEquals(IdConverters.forType(Integer.class).convert("42"), Integer.valueOf(42));
+        assertEquals(IdConverters.forType(Long.class).convert("-7"), Long.valueOf(-7L));
+        assertEquals(IdConverters.forType(Boolean.class).convert("true"), Boolean.TRUE);
+        assertEquals(IdConverters.forType(BigInteger.class).convert("12345678901234567890"),
+                     new BigInteger("12345678901234567890"));
+        assertEquals(IdConverters.forType(BigDecimal.class).convert("3.14"), new BigDecimal("3.14"));
+        assertEquals(NamespaceId.fromString("ns/42", Integer.class), new NamespaceId<>("ns", 42));
+        assertEquals(TemporalNamespaceId.fromString("ns/a/1977-11-13T14:18:00Z", String.class).getId(), "a");
+    }
+
+    @Test(groups = "convert")
+    public void testServiceLoaderProvider() throws Exception {
+        // Registered by TestConverterProvider, listed in META-INF/services
+        IdConvertersTest.Sku sku = NamespaceId.fromString("ns/42", IdConvertersTest.Sku.class).getId();
+        assertEquals(sku.compareTo(IdConverters.forType(IdConvertersTest.Sku.class).convert("42")), 0);
+    }
+
+    @Test(groups = "convert")
+    public void testRegisteredConverter() throws Exception {
+        try {
+            IdConverters.forType(Tag.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        IdConverters.register(Tag.class, Tag::new);
+        assertEquals(NamespaceId.fromString("ns/x", Tag.class).getId().value, "x");
+    }
+
+    @Test(groups = "convert")
+    public void testReflectiveOnlyTypeFails() throws Exception {
+        try {
+            IdConverters.forType(UUID.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(expected.getMessage(), "No converter registered for type: java.util.UUID");
+        }
+        try {
+            NamespaceId.fromString("ns/" + UUID.randomUUID(), UUID.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("java.util.UUID"), expected.getMessage());
+        }
+    }
+
+    /**
+     * Type with a string constructor, which is convertible by reflection but
+     * here only once a converter is registered.
+     */
+    public static final class Tag implements Comparable<Tag> {
+
+        private final String value;
+
+        public Tag(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Tag o) {
+            return value.compareTo(o.value);
+        }
+
+    }
+
+}
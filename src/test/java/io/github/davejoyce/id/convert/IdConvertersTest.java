@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.convert;
+
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdConverters}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdConvertersTest {
+
+    @Test(groups = "convert")
+    public void testValueOf() throws Exception {
+        assertEquals(IdConverters.forType(Integer.class).convert("42"), Integer.valueOf(42));
+    }
+
+    @Test(groups = "convert")
+    public void testConstructor() throws Exception {
+        assertEquals(IdConverters.forType(BigDecimal.class).convert("3.14"), new BigDecimal("3.14"));
+        assertEquals(IdConverters.forType(Code.class).convert("abc").value, "abc");
+    }
+
+    @Test(groups = "convert")
+    public void testCast() throws Exception {
+        assertEquals(IdConverters.forType(String.class).convert("abc"), "abc");
+    }
+
+    @Test(groups = "convert")
+    public void testFallThroughFailedFactory() throws Exception {
+        // UUID.fromString is not 'valueOf'; no String constructor; not a String
+        try {
+            IdConverters.forType(UUID.class).convert(UUID.randomUUID().toString());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("java.util.UUID"));
+        }
+    }
+
+    @Test(groups = "convert", expectedExceptions = IllegalArgumentException.class)
+    public void testBadValue() throws Exception {
+        IdConverters.forType(Integer.class).convert("forty-two");
+    }
+
+    @Test(groups = "convert", expectedExceptions = IllegalArgumentException.class)
+    public void testNullType() throws Exception {
+        IdConverters.forType(null);
+    }
+
+    @Test(groups = "convert")
+    public void testConverterIsShared() throws Exception {
+        assertSame(IdConverters.forType(Integer.class), IdConverters.forType(Integer.class));
+    }
+
+    @Test(groups = "convert")
+    public void testBuiltInConverters() throws Exception {
+        assertFalse(IdConverters.forType(Integer.class) instanceof IdConverters.ReflectiveConverter);
+        assertEquals(IdConverters.forType(Long.class).convert("-7"), Long.valueOf(-7L));
+        assertEquals(IdConverters.forType(Short.class).convert("7"), Short.valueOf((short)7));
+        assertEquals(IdConverters.forType(Byte.class).convert("7"), Byte.valueOf((byte)7));
+        assertEquals(IdConverters.forType(Double.class).convert("2.5"), 2.5d);
+        assertEquals(IdConverters.forType(Float.class).convert("2.5"), 2.5f);
+        assertEquals(IdConverters.forType(Boolean.class).convert("TRUE"), Boolean.TRUE);
+        assertEquals(IdConverters.forType(BigInteger.class).convert("12345678901234567890"),
+                     new BigInteger("12345678901234567890"));
+    }
+
+    @Test(groups = "convert")
+    public void testBuiltInBadValue() throws Exception {
+        try {
+            IdConverters.forType(Long.class).convert("x");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(expected.getMessage(), "Identifier segment cannot be converted to type: java.lang.Long");
+        }
+    }
+
+    @Test(groups = "convert")
+    public void testRegister() throws Exception {
+        IdConverter<Code> reflective = IdConverters.forType(Code.class);
+        try {
+            IdConverters.register(Code.class, s -> new Code(s.toUpperCase()));
+            assertNotSame(IdConverters.forType(Code.class), reflective);
+            assertEquals(IdConverters.forType(Code.class).convert("abc").value, "ABC");
+        } finally {
+            IdConverters.register(Code.class, Code::new);
+        }
+    }
+
+    @Test(groups = "convert")
+    public void testServiceLoaderProvider() throws Exception {
+        // Registered by TestConverterProvider, listed in META-INF/services
+        assertEquals(IdConverters.forType(Sku.class).convert("42").value, 42L);
+    }
+
+    @Test(groups = "convert", expectedExceptions = IllegalArgumentException.class)
+    public void testRegisterNullConverter() throws Exception {
+        IdConverters.register(Code.class, null);
+    }
+
+    @Test(groups = "convert")
+    public void testReflectionEnabledByDefault() throws Exception {
+        assertTrue(IdConverters.isReflectionEnabled());
+    }
+
+    public static final class Code implements Comparable<Code> {
+
+        private final String value;
+
+        public Code(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Code o) {
+            return value.compareTo(o.value);
+        }
+
+    }
+
+    /**
+     * Type without <code>valueOf(String)</code> or a string constructor,
+     * convertible only by a registered converter.
+     */
+    public static final class Sku implements Comparable<Sku> {
+
+        private final long value;
+
+        Sku(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Sku o) {
+            return Long.compare(value, o.value);
+        }
+
+    }
+
+    public static final class TestConverterProvider implements IdConverterProvider {
+
+        @Override
+        public void registerConverters(IdConverterRegistry registry) {
+            registry.register(Sku.class, s -> new Sku(Long.parseLong(s)));
+        }
+
+    }
+
+}
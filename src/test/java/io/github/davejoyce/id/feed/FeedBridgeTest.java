@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.feed;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.IdCodec;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code FeedBridge}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class FeedBridgeTest {
+
+    @Test(groups = "feed")
+    public void testEncodeDecode() throws Exception {
+        List<TemporalNamespaceId<Long>> batch = Arrays.asList(
+                new TemporalNamespaceId<>("a", 1L, 10L, 5),
+                new BiTemporalNamespaceId<>("b", 2L, 10L, 12L),
+                new TemporalNamespaceId<>("c", 3L, 11L));
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        FeedBridge.encode(batch, buf);
+        FeedBridge.encode(Collections.<TemporalNamespaceId<Long>>emptyList(), buf);
+        buf.flip();
+        List<TemporalNamespaceId<Long>> decoded = FeedBridge.decode(buf, Long.class);
+        assertEquals(decoded, batch);
+        assertTrue(decoded.get(1) instanceof BiTemporalNamespaceId);
+        assertTrue(FeedBridge.decode(buf, Long.class).isEmpty());
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test(groups = "feed")
+    public void testDecodeInvalid() throws Exception {
+        expectThrows(IllegalArgumentException.class, () -> FeedBridge.decode(ByteBuffer.allocate(2), Long.class));
+        expectThrows(IllegalArgumentException.class,
+                     () -> FeedBridge.decode((ByteBuffer)ByteBuffer.allocate(4).putInt(-1).flip(), Long.class));
+        byte[] id = IdCodec.encode(new NamespaceId<>("a", 1L));
+        ByteBuffer buf = ByteBuffer.allocate(4 + id.length);
+        buf.putInt(1).put(id).flip();
+        expectThrows(IllegalArgumentException.class, () -> FeedBridge.decode(buf, Long.class));
+        expectThrows(IllegalArgumentException.class, () -> FeedBridge.encode(null, ByteBuffer.allocate(4)));
+        expectThrows(IllegalArgumentException.class, () -> FeedBridge.loopback(Long.class, null));
+    }
+
+    @Test(groups = "feed")
+    public void testLoopback() throws Exception {
+        VersionFeed<Long> source = new VersionFeed<>(32);
+        VersionFeed<Long> target = new VersionFeed<>(32);
+        List<TemporalNamespaceId<Long>> received = Collections.synchronizedList(new ArrayList<>());
+        target.subscribe(received::addAll);
+        FeedBridge<Long> bridge = FeedBridge.loopback(Long.class, target);
+        source.subscribe(bridge, 8, true, WaitStrategy.busySpin());
+        List<TemporalNamespaceId<Long>> published = new ArrayList<>();
+        StringBuilder ns = new StringBuilder();
+        for (int i = 0; 500 > i; i++) {
+            // Long namespaces force the frame buffer to grow
+            ns.append('n');
+            TemporalNamespaceId<Long> version = new TemporalNamespaceId<>(ns.toString(), (long)i, i);
+            published.add(version);
+            source.publish(version);
+        }
+        source.close();
+        target.close();
+        assertEquals(received, published);
+        assertTrue(bridge.getFrameCount() >= 500L / 8L);
+        assertTrue(bridge.getByteCount() > 500L * 250L);
+    }
+
+}
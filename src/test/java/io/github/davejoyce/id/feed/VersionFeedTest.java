@@ -0,0 +1,317 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.feed;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code VersionFeed}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class VersionFeedTest {
+
+    @DataProvider
+    public Object[][] waitStrategies() {
+        return new Object[][] {
+                new Object[] { WaitStrategy.busySpin() },
+                new Object[] { WaitStrategy.yielding() },
+                new Object[] { WaitStrategy.parking(Duration.ofNanos(50_000L)) }
+        };
+    }
+
+    @Test(groups = "feed", dataProvider = "waitStrategies")
+    public void testFanOut(final WaitStrategy waitStrategy) throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(64, waitStrategy);
+        assertEquals(feed.getCapacity(), 64);
+        List<List<TemporalNamespaceId<Integer>>> received = new ArrayList<>();
+        for (int i = 0; 3 > i; i++) {
+            List<TemporalNamespaceId<Integer>> versions = Collections.synchronizedList(new ArrayList<>());
+            received.add(versions);
+            feed.subscribe(versions::addAll, 16, false, waitStrategy);
+        }
+        assertEquals(feed.getSubscriptions().size(), 3);
+        List<TemporalNamespaceId<Integer>> published = new ArrayList<>();
+        for (int i = 0; 10_000 > i; i++) {
+            TemporalNamespaceId<Integer> version = new TemporalNamespaceId<>("ns", i % 97, i);
+            published.add(version);
+            assertEquals(feed.publish(version), (long)i);
+        }
+        feed.close();
+        assertEquals(feed.getCursor(), 9_999L);
+        for (List<TemporalNamespaceId<Integer>> versions : received) {
+            assertEquals(versions, published);
+        }
+        assertTrue(feed.getSubscriptions().isEmpty());
+    }
+
+    @Test(groups = "feed")
+    public void testPublishAll() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(5);
+        assertEquals(feed.getCapacity(), 8);
+        List<TemporalNamespaceId<Integer>> received = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        feed.subscribe(batch -> {
+            sizes.add(batch.size());
+            received.addAll(batch);
+        }, 3, false, WaitStrategy.yielding());
+        List<TemporalNamespaceId<Integer>> published = new ArrayList<>();
+        for (int i = 0; 20 > i; i++) {
+            published.add(new TemporalNamespaceId<>("ns", i, 1L));
+        }
+        assertEquals(feed.publishAll(Collections.emptyList()), -1L);
+        assertEquals(feed.publishAll(published), 19L);
+        feed.close();
+        assertEquals(received, published);
+        for (int size : sizes) {
+            assertTrue(3 >= size && 0 < size);
+        }
+    }
+
+    @Test(groups = "feed")
+    public void testCoalesce() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(16);
+        List<List<TemporalNamespaceId<Integer>>> batches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        VersionFeed.Subscription<Integer> subscription = feed.subscribe(batch -> {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(new ArrayList<>(batch));
+        }, 16, true, WaitStrategy.yielding());
+        // Held by the gate, the first batch holds the first version only
+        feed.publish(new BiTemporalNamespaceId<>("a", 0, 1L, 1L));
+        assertTrue(entered.await(10L, TimeUnit.SECONDS));
+        feed.publishAll(Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 1L, 1L),
+                new BiTemporalNamespaceId<>("b", 1, 1L, 1L),
+                new BiTemporalNamespaceId<>("a", 1, 2L, 2L),
+                new BiTemporalNamespaceId<>("a", 1, 1L, 5L),
+                new BiTemporalNamespaceId<>("b", 1, 0L, 0L)));
+        gate.countDown();
+        feed.close();
+        assertEquals(batches.size(), 2);
+        assertEquals(batches.get(0), Collections.singletonList(new BiTemporalNamespaceId<>("a", 0, 1L, 1L)));
+        assertEquals(batches.get(1), Arrays.asList(new BiTemporalNamespaceId<>("a", 1, 2L, 2L),
+                                                   new BiTemporalNamespaceId<>("b", 1, 1L, 1L)));
+        assertEquals(subscription.getBatchCount(), 2L);
+        assertEquals(subscription.getDeliveredCount(), 3L);
+        assertEquals(subscription.getCoalescedCount(), 3L);
+        assertEquals(subscription.getSequence(), 5L);
+    }
+
+    @Test(groups = "feed")
+    public void testBackpressure() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(4, WaitStrategy.parking(Duration.ofMillis(1L)));
+        CountDownLatch gate = new CountDownLatch(1);
+        List<TemporalNamespaceId<Integer>> received = Collections.synchronizedList(new ArrayList<>());
+        VersionFeed.Subscription<Integer> slow = feed.subscribe(batch -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.addAll(batch);
+        }, 4, false, WaitStrategy.yielding());
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; 100 > i; i++) {
+                feed.publish(new TemporalNamespaceId<>("ns", i, 1L));
+            }
+        });
+        publisher.start();
+        TimeUnit.MILLISECONDS.sleep(100L);
+        // Publisher cannot run further ahead than one ring beyond the held batch
+        assertTrue(publisher.isAlive());
+        assertTrue(feed.getCursor() < 4L + feed.getCapacity());
+        gate.countDown();
+        publisher.join(10_000L);
+        assertFalse(publisher.isAlive());
+        feed.close();
+        assertEquals(received.size(), 100);
+        assertEquals(slow.getDeliveredCount(), 100L);
+        for (int i = 0; 100 > i; i++) {
+            assertEquals(received.get(i).getId(), Integer.valueOf(i));
+        }
+    }
+
+    @Test(groups = "feed")
+    public void testCloseSubscriptionReleasesPublisher() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(2);
+        CountDownLatch stuck = new CountDownLatch(1);
+        AtomicBoolean released = new AtomicBoolean();
+        VersionFeed.Subscription<Integer> subscription = feed.subscribe(batch -> {
+            stuck.countDown();
+            while (!released.get()) {
+                Thread.yield();
+            }
+        }, 1, false, WaitStrategy.yielding());
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; 10 > i; i++) {
+                feed.publish(new TemporalNamespaceId<>("ns", i, 1L));
+            }
+        });
+        publisher.start();
+        assertTrue(stuck.await(10L, TimeUnit.SECONDS));
+        TimeUnit.MILLISECONDS.sleep(50L);
+        assertTrue(publisher.isAlive());
+        // Closing waits for the held batch, but releases the publisher at once
+        Thread closer = new Thread(subscription::close);
+        closer.start();
+        publisher.join(10_000L);
+        assertFalse(publisher.isAlive());
+        assertEquals(feed.getCursor(), 9L);
+        assertTrue(feed.getSubscriptions().isEmpty());
+        assertTrue(closer.isAlive());
+        released.set(true);
+        closer.join(10_000L);
+        assertFalse(closer.isAlive());
+        assertEquals(subscription.getBatchCount(), 1L);
+        feed.close();
+    }
+
+    @Test(groups = "feed")
+    public void testSubscribeAfterPublish() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(8);
+        feed.publish(new TemporalNamespaceId<>("ns", 1, 1L));
+        List<TemporalNamespaceId<Integer>> received = Collections.synchronizedList(new ArrayList<>());
+        feed.subscribe(received::addAll);
+        feed.publish(new TemporalNamespaceId<>("ns", 2, 1L));
+        feed.close();
+        assertEquals(received, Collections.singletonList(new TemporalNamespaceId<>("ns", 2, 1L)));
+    }
+
+    @Test(groups = "feed")
+    public void testListenerFailure() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(8);
+        List<TemporalNamespaceId<Integer>> received = Collections.synchronizedList(new ArrayList<>());
+        feed.subscribe(batch -> {
+            received.addAll(batch);
+            throw new IllegalStateException("Failure expected by test");
+        }, 1, false, WaitStrategy.yielding());
+        feed.publish(new TemporalNamespaceId<>("ns", 1, 1L));
+        feed.publish(new TemporalNamespaceId<>("ns", 2, 1L));
+        feed.close();
+        assertEquals(received.size(), 2);
+    }
+
+    @Test(groups = "feed")
+    public void testCoalesceMixedClasses() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(4);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<TemporalNamespaceId<Integer>> received = Collections.synchronizedList(new ArrayList<>());
+        feed.subscribe(batch -> {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.addAll(batch);
+        }, 4, true, WaitStrategy.yielding());
+        feed.publish(new TemporalNamespaceId<>("a", 0, 1L));
+        assertTrue(entered.await(10L, TimeUnit.SECONDS));
+        // Same ID and 'as of' time in one batch, of different classes
+        feed.publishAll(Arrays.asList(
+                new TemporalNamespaceId<>("a", 1, 1L),
+                new BiTemporalNamespaceId<>("a", 1, 1L, 5L),
+                new BiTemporalNamespaceId<>("a", 1, 2L, 2L)));
+        gate.countDown();
+        Thread publisher = publishInBackground(feed, 10);
+        publisher.join(10_000L);
+        assertFalse(publisher.isAlive());
+        feed.close();
+        assertEquals(received.subList(0, 2), Arrays.asList(new TemporalNamespaceId<>("a", 0, 1L),
+                                                           new BiTemporalNamespaceId<>("a", 1, 2L, 2L)));
+        assertEquals(received.size(), 12);
+    }
+
+    @Test(groups = "feed")
+    public void testListenerErrorReleasesPublisher() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(2);
+        AtomicInteger calls = new AtomicInteger();
+        feed.subscribe(batch -> {
+            calls.incrementAndGet();
+            throw new AssertionError("Error expected by test");
+        }, 1, false, WaitStrategy.yielding());
+        Thread publisher = publishInBackground(feed, 10);
+        publisher.join(10_000L);
+        assertFalse(publisher.isAlive());
+        assertTrue(feed.getSubscriptions().isEmpty());
+        assertEquals(calls.get(), 1);
+        feed.close();
+    }
+
+    @Test(groups = "feed")
+    public void testClosed() throws Exception {
+        VersionFeed<Integer> feed = new VersionFeed<>(8);
+        feed.close();
+        feed.close();
+        expectThrows(IllegalStateException.class, () -> feed.publish(new TemporalNamespaceId<>("ns", 1, 1L)));
+        expectThrows(IllegalStateException.class, () -> feed.subscribe(batch -> { }));
+    }
+
+    @Test(groups = "feed")
+    public void testInvalidArguments() throws Exception {
+        expectThrows(IllegalArgumentException.class, () -> new VersionFeed<Integer>(0));
+        expectThrows(IllegalArgumentException.class, () -> new VersionFeed<Integer>(8, null));
+        expectThrows(IllegalArgumentException.class, () -> WaitStrategy.parking(null));
+        expectThrows(IllegalArgumentException.class, () -> WaitStrategy.parking(Duration.ZERO));
+        VersionFeed<Integer> feed = new VersionFeed<>(1);
+        assertEquals(feed.getCapacity(), 1);
+        expectThrows(IllegalArgumentException.class, () -> feed.publish(null));
+        expectThrows(IllegalArgumentException.class,
+                     () -> feed.publishAll(Arrays.asList(new TemporalNamespaceId<>("ns", 1, 1L), null)));
+        assertEquals(feed.getCursor(), -1L);
+        expectThrows(IllegalArgumentException.class, () -> feed.subscribe(null));
+        expectThrows(IllegalArgumentException.class,
+                     () -> feed.subscribe(batch -> { }, 0, false, WaitStrategy.busySpin()));
+        expectThrows(IllegalArgumentException.class, () -> feed.subscribe(batch -> { }, 1, false, null));
+        feed.close();
+    }
+
+    private static Thread publishInBackground(final VersionFeed<Integer> feed, final int count) {
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; count > i; i++) {
+                feed.publish(new TemporalNamespaceId<>("ns", i, 1L));
+            }
+        });
+        publisher.setDaemon(true);
+        publisher.start();
+        return publisher;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code HyperLogLog} and {@code NamespaceCardinalities},
+ * including validation of estimate error bounds.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class HyperLogLogTest {
+
+    @DataProvider
+    public Object[][] cardinalities() {
+        return new Object[][] {
+                new Object[]{ 10, 0 },
+                new Object[]{ 12, 1 },
+                new Object[]{ 12, 100 },
+                new Object[]{ 12, 5000 },
+                new Object[]{ 14, 50000 },
+                new Object[]{ 14, 1000000 },
+                new Object[]{ 10, 1000000 },
+        };
+    }
+
+    @Test(dataProvider = "cardinalities", groups = "hash")
+    public void testEstimateWithinErrorBound(int precision, int cardinality) throws Exception {
+        HyperLogLog hll = new HyperLogLog(precision);
+        for (int i = 0; i < cardinality; i++) {
+            long fp = IdFingerprint.of(new NamespaceId<>("ns", i));
+            hll.addFingerprint(fp);
+            // Duplicates must not affect the estimate
+            hll.addFingerprint(fp);
+        }
+        long estimate = hll.cardinality();
+        // 4 standard errors, or an absolute error of 1 for tiny cardinalities
+        double bound = Math.max(1.0, 4.0 * hll.relativeStandardError() * cardinality);
+        assertEquals((double)estimate, (double)cardinality, bound);
+    }
+
+    @Test(groups = "hash")
+    public void testMergeEstimatesUnion() throws Exception {
+        HyperLogLog a = new HyperLogLog(14);
+        HyperLogLog b = new HyperLogLog(14);
+        HyperLogLog union = new HyperLogLog(14);
+        for (int i = 0; i < 30000; i++) {
+            long fp = IdFingerprint.of(new NamespaceId<>("ns", i));
+            (0 == (i % 3) ? a : b).addFingerprint(fp);
+            if (i < 10000) {
+                // Overlap between the sketches
+                a.addFingerprint(fp);
+                b.addFingerprint(fp);
+            }
+            union.addFingerprint(fp);
+        }
+        a.merge(b);
+        assertEquals(a.toBytes(), union.toBytes());
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testMergeDifferentPrecision() throws Exception {
+        new HyperLogLog(10).merge(new HyperLogLog(11));
+    }
+
+    @DataProvider
+    public Object[][] serializationSizes() {
+        return new Object[][] {
+                new Object[]{ 0 },
+                new Object[]{ 10 },
+                new Object[]{ 100000 },
+        };
+    }
+
+    @Test(dataProvider = "serializationSizes", groups = "hash")
+    public void testSerializationRoundTrip(int cardinality) throws Exception {
+        HyperLogLog hll = new HyperLogLog(12);
+        for (int i = 0; i < cardinality; i++) {
+            hll.addFingerprint(IdFingerprint.of(new NamespaceId<>("ns", i)));
+        }
+        byte[] bytes = hll.toBytes();
+        assertTrue(bytes.length <= 2 + (4096 / 4) * 3);
+        if (10 >= cardinality) {
+            assertTrue(bytes.length < 64, "Sparse sketch should be small: " + bytes.length);
+        }
+        HyperLogLog copy = HyperLogLog.fromBytes(bytes);
+        assertEquals(copy.getPrecision(), 12);
+        assertEquals(copy.cardinality(), hll.cardinality());
+        assertEquals(copy.toBytes(), bytes);
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testFromBytesCorrupt() throws Exception {
+        HyperLogLog hll = new HyperLogLog(8);
+        for (int i = 0; i < 1000; i++) {
+            hll.addFingerprint(IdFingerprint.of(new NamespaceId<>("ns", i)));
+        }
+        byte[] bytes = hll.toBytes();
+        HyperLogLog.fromBytes(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testBadPrecision() throws Exception {
+        new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+    }
+
+    @Test(groups = "hash")
+    public void testNamespaceCardinalitiesParallelCollect() throws Exception {
+        final int ids = 20000;
+        final int versions = 5;
+        NamespaceCardinalities counts = IntStream.range(0, ids * versions)
+                .parallel()
+                .mapToObj(i -> new TemporalNamespaceId<>("ns" + ((i / versions) % 2), i / versions, i % versions))
+                .collect(NamespaceCardinalities.collector(14));
+        assertEquals(counts.getNamespaces().size(), 2);
+        double error = 4.0 * counts.idSketch("ns0").relativeStandardError();
+        // Each namespace holds every other ID value, each in all versions
+        assertEquals((double)counts.distinctIds("ns0"), ids / 2.0, error * ids / 2.0);
+        assertEquals((double)counts.distinctVersions("ns1"), ids * versions / 2.0, error * ids * versions / 2.0);
+        assertEquals(counts.meanVersionsPerId("ns1"), (double)versions, versions * 2.0 * error);
+        assertEquals(counts.distinctIds("absent"), 0L);
+        assertNull(counts.versionSketch("absent"));
+    }
+
+    @Test(groups = "hash")
+    public void testNamespaceCardinalitiesMerge() throws Exception {
+        NamespaceCardinalities a = new NamespaceCardinalities(12);
+        NamespaceCardinalities b = new NamespaceCardinalities(12);
+        for (int i = 0; i < 1000; i++) {
+            a.add(new NamespaceId<>("a", i));
+            b.add(new NamespaceId<>("b", i));
+            b.add(new NamespaceId<>("a", i + 500));
+        }
+        a.merge(b);
+        assertEquals((double)a.distinctIds("a"), 1500.0, 1500.0 * 0.07);
+        assertEquals((double)a.distinctIds("b"), 1000.0, 1000.0 * 0.07);
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdBloomFilter}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdBloomFilterTest {
+
+    @DataProvider
+    public Object[][] falsePositiveRates() {
+        return new Object[][] {
+                new Object[]{ 0.1 },
+                new Object[]{ 0.01 },
+                new Object[]{ 0.001 },
+        };
+    }
+
+    @Test(dataProvider = "falsePositiveRates", groups = "hash")
+    public void testFalsePositiveRate(double rate) throws Exception {
+        final int count = 100000;
+        IdBloomFilter filter = IdBloomFilter.create(count, rate, IdKey.NAMESPACE_ID);
+        for (int i = 0; i < count; i++) {
+            filter.add(new NamespaceId<>("present", i));
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.mightContain(new NamespaceId<>("present", i)));
+        }
+        int falsePositives = 0;
+        final int probes = 200000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(new NamespaceId<>("absent", i))) {
+                falsePositives++;
+            }
+        }
+        double actual = (double)falsePositives / probes;
+        assertTrue(actual <= rate * 1.25, "False positive rate " + actual + " exceeds " + rate);
+        assertTrue(filter.estimatedFalsePositiveRate() <= rate * 1.25);
+    }
+
+    @Test(groups = "hash")
+    public void testKeyOnNamespaceId() throws Exception {
+        IdBloomFilter filter = IdBloomFilter.create(100, 0.001, IdKey.NAMESPACE_ID);
+        assertTrue(filter.add(new TemporalNamespaceId<>("ns", "id", 1L)));
+        assertFalse(filter.add(new TemporalNamespaceId<>("ns", "id", 2L)));
+        assertTrue(filter.mightContain(new NamespaceId<>("ns", "id")));
+        assertTrue(filter.mightContain(new TemporalNamespaceId<>("ns", "id", 3L)));
+    }
+
+    @Test(groups = "hash")
+    public void testKeyOnVersion() throws Exception {
+        IdBloomFilter filter = IdBloomFilter.create(100, 0.0001, IdKey.VERSION);
+        filter.add(new TemporalNamespaceId<>("ns", "id", 1L));
+        assertTrue(filter.mightContain(new TemporalNamespaceId<>("ns", "id", 1L)));
+        assertFalse(filter.mightContain(new TemporalNamespaceId<>("ns", "id", 2L)));
+        assertFalse(filter.mightContain(new NamespaceId<>("ns", "id")));
+    }
+
+    @Test(groups = "hash")
+    public void testConcurrentAdd() throws Exception {
+        final int threads = 4;
+        final int perThread = 25000;
+        IdBloomFilter filter = IdBloomFilter.create(threads * perThread, 0.01, IdKey.NAMESPACE_ID);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        filter.add(new NamespaceId<>("ns", thread * perThread + i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < threads * perThread; i++) {
+            assertTrue(filter.mightContain(new NamespaceId<>("ns", i)));
+        }
+    }
+
+    @Test(groups = "hash")
+    public void testMergeOfParallelBuilds() throws Exception {
+        IdBloomFilter whole = IdBloomFilter.create(20000, 0.01, IdKey.VERSION);
+        IdBloomFilter left = whole.emptyCopy();
+        IdBloomFilter right = whole.emptyCopy();
+        for (int i = 0; i < 20000; i++) {
+            TemporalNamespaceId<Integer> id = new TemporalNamespaceId<>("ns", i, i);
+            whole.add(id);
+            ((0 == i % 2) ? left : right).add(id);
+        }
+        left.merge(right);
+        assertEquals(left.toBytes(), whole.toBytes());
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testMergeDifferentGeometry() throws Exception {
+        IdBloomFilter.create(1000, 0.01, IdKey.VERSION)
+                     .merge(IdBloomFilter.create(1000, 0.01, IdKey.NAMESPACE_ID));
+    }
+
+    @Test(groups = "hash")
+    public void testSerializationRoundTrip() throws Exception {
+        IdBloomFilter filter = IdBloomFilter.create(1000, 0.01, IdKey.NAMESPACE_ID);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(new NamespaceId<>("ns", i));
+        }
+        byte[] bytes = filter.toBytes();
+        IdBloomFilter copy = IdBloomFilter.fromBytes(bytes);
+        assertEquals(copy.getKey(), filter.getKey());
+        assertEquals(copy.getHashCount(), filter.getHashCount());
+        assertEquals(copy.getBitSize(), filter.getBitSize());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(copy.mightContain(new NamespaceId<>("ns", i)));
+        }
+        assertEquals(copy.toBytes(), bytes);
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testFromBytesCorrupt() throws Exception {
+        byte[] bytes = IdBloomFilter.create(1000, 0.01, IdKey.NAMESPACE_ID).toBytes();
+        IdBloomFilter.fromBytes(Arrays.copyOf(bytes, bytes.length - 3));
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testBadFalsePositiveRate() throws Exception {
+        IdBloomFilter.create(1000, 1.0, IdKey.NAMESPACE_ID);
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.IdCodec;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import io.github.davejoyce.util.Hash64;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdFingerprint}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdFingerprintTest {
+
+    @DataProvider
+    public Object[][] ids() {
+        char[] longChars = new char[1000];
+        Arrays.fill(longChars, 'x');
+        return new Object[][] {
+                new Object[]{ new NamespaceId<>("namespace", "id") },
+                new Object[]{ new NamespaceId<>("namespace", 42) },
+                new Object[]{ new NamespaceId<>("ñámespace", "€😀") },
+                new Object[]{ new NamespaceId<>("malformed", "\uD83D") },
+                new Object[]{ new NamespaceId<>("long", new String(longChars)) },
+        };
+    }
+
+    @Test(dataProvider = "ids", groups = "hash")
+    public void testFingerprintIsHashOfCodecKey(NamespaceId<?> id) throws Exception {
+        byte[] encoded = IdCodec.encode(id);
+        long expected = Hash64.hash(encoded, 1, IdCodec.keyEnd(encoded, 0) - 1, 0L);
+        assertEquals(IdFingerprint.of(id), expected);
+    }
+
+    @Test(groups = "hash")
+    public void testFingerprintIgnoresTemporalComponents() throws Exception {
+        long fp = IdFingerprint.of(new NamespaceId<>("ns", "id"));
+        assertEquals(IdFingerprint.of(new TemporalNamespaceId<>("ns", "id", 1L)), fp);
+        assertEquals(IdFingerprint.of(new BiTemporalNamespaceId<>("ns", "id", 1L, 2L)), fp);
+        assertNotEquals(IdFingerprint.of(new NamespaceId<>("ns", "ID")), fp);
+        assertNotEquals(IdFingerprint.of(new NamespaceId<>("ns2", "id")), fp);
+    }
+
+    @Test(groups = "hash")
+    public void testFingerprintIndependentOfIdType() throws Exception {
+        assertEquals(IdFingerprint.of(new NamespaceId<>("ns", 2)),
+                     IdFingerprint.of(new NamespaceId<>("ns", "2")));
+    }
+
+    @Test(groups = "hash")
+    public void testVersionFingerprint() throws Exception {
+        NamespaceId<String> nsId = new NamespaceId<>("ns", "id");
+        TemporalNamespaceId<String> tnsId1 = new TemporalNamespaceId<>("ns", "id", 1L);
+        TemporalNamespaceId<String> tnsId2 = new TemporalNamespaceId<>("ns", "id", 2L);
+        BiTemporalNamespaceId<String> btnsId = new BiTemporalNamespaceId<>("ns", "id", 1L, 2L);
+        assertEquals(IdFingerprint.ofVersion(nsId), IdFingerprint.of(nsId));
+        assertNotEquals(IdFingerprint.ofVersion(tnsId1), IdFingerprint.ofVersion(tnsId2));
+        assertNotEquals(IdFingerprint.ofVersion(tnsId1), IdFingerprint.ofVersion(btnsId));
+        assertEquals(IdFingerprint.ofVersion(tnsId1),
+                     IdFingerprint.ofVersion(new TemporalNamespaceId<>("ns", "id", 1L)));
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdLookupTable} and {@code IdIndex}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdLookupTableTest {
+
+    @Test(groups = "hash")
+    public void testLookup() throws Exception {
+        final int count = 200000;
+        List<NamespaceId<Integer>> ids = new ArrayList<>(count);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(new NamespaceId<>("ref", i));
+            values.add("value-" + i);
+        }
+        IdLookupTable<String> table = IdLookupTable.build(ids, values, IdKey.NAMESPACE_ID);
+        assertEquals(table.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(table.get(new NamespaceId<>("ref", i)), "value-" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertNull(table.get(new NamespaceId<>("absent", i)));
+            assertFalse(table.containsId(new NamespaceId<>("ref", count + i)));
+        }
+        assertTrue(table.getIndex().getByteSize() < 9L * count,
+                   "Index bytes per ID: " + (double)table.getIndex().getByteSize() / count);
+    }
+
+    @Test(groups = "hash")
+    public void testBuildFromMap() throws Exception {
+        Map<NamespaceId<String>, Integer> entries = new HashMap<>();
+        entries.put(new NamespaceId<>("ns", "a"), 1);
+        entries.put(new NamespaceId<>("ns", "b"), null);
+        IdLookupTable<Integer> table = IdLookupTable.build(entries, IdKey.NAMESPACE_ID);
+        assertEquals(table.get(new NamespaceId<>("ns", "a")), Integer.valueOf(1));
+        assertNull(table.get(new NamespaceId<>("ns", "b")));
+        assertTrue(table.containsId(new NamespaceId<>("ns", "b")));
+        assertFalse(table.containsId(new NamespaceId<>("ns", "c")));
+    }
+
+    @Test(groups = "hash")
+    public void testKeyOnNamespaceId() throws Exception {
+        IdLookupTable<String> table = IdLookupTable.build(
+                Arrays.asList(new TemporalNamespaceId<>("ns", "id", 1L)),
+                Arrays.asList("x"),
+                IdKey.NAMESPACE_ID);
+        assertEquals(table.get(new NamespaceId<>("ns", "id")), "x");
+        assertEquals(table.get(new TemporalNamespaceId<>("ns", "id", 2L)), "x");
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class,
+          expectedExceptionsMessageRegExp = "IDs contain duplicates by key NAMESPACE_ID")
+    public void testDuplicateByKey() throws Exception {
+        IdIndex.build(Arrays.asList(new TemporalNamespaceId<>("ns", "id", 1L),
+                                    new TemporalNamespaceId<>("ns", "id", 2L)),
+                      IdKey.NAMESPACE_ID);
+    }
+
+    @Test(groups = "hash")
+    public void testDistinctByVersion() throws Exception {
+        IdIndex index = IdIndex.build(Arrays.asList(new TemporalNamespaceId<>("ns", "id", 1L),
+                                                    new TemporalNamespaceId<>("ns", "id", 2L)),
+                                      IdKey.VERSION);
+        assertEquals(index.size(), 2);
+        assertEquals(index.indexOf(new TemporalNamespaceId<>("ns", "id", 1L))
+                     + index.indexOf(new TemporalNamespaceId<>("ns", "id", 2L)), 1);
+        assertEquals(index.indexOf(new TemporalNamespaceId<>("ns", "id", 3L)), -1);
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testSizeMismatch() throws Exception {
+        IdLookupTable.build(Arrays.asList(new NamespaceId<>("ns", "a")), new ArrayList<String>(),
+                            IdKey.NAMESPACE_ID);
+    }
+
+    @Test(groups = "hash")
+    public void testWriteAndOpen() throws Exception {
+        List<NamespaceId<Integer>> ids = new ArrayList<>();
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            ids.add(new NamespaceId<>("ref", i));
+            values.add(i * 10L);
+        }
+        IdLookupTable<Long> table = IdLookupTable.build(ids, values, IdKey.NAMESPACE_ID);
+        Path file = Files.createTempFile("ids", ".idx");
+        try {
+            table.getIndex().write(file);
+            assertEquals(Files.size(file), (long)table.getIndex().getByteSize());
+            IdIndex mapped = IdIndex.open(file);
+            assertEquals(mapped.getKey(), IdKey.NAMESPACE_ID);
+            IdLookupTable<Long> reloaded = IdLookupTable.of(mapped, new ArrayList<>(table.values()));
+            for (int i = 0; i < 50000; i++) {
+                assertEquals(reloaded.get(new NamespaceId<>("ref", i)), Long.valueOf(i * 10L));
+            }
+            assertNull(reloaded.get(new NamespaceId<>("ref", -1)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testOpenNotIndex() throws Exception {
+        Path file = Files.createTempFile("ids", ".idx");
+        try {
+            Files.write(file, new byte[64]);
+            IdIndex.open(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark of {@code IdPartitioner} strategies, compared with
+ * routing by {@code hashCode()}. Run from the IDE, or with
+ * <code>mvn test-compile</code> followed by running this class's
+ * <code>main</code> method on the test classpath.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdPartitionerBenchmark {
+
+    private static final int BATCH_SIZE = 4096;
+
+    @Param({"16", "256"})
+    public int partitionCount;
+
+    private NamespaceId<?>[] ids;
+    private long[] fingerprints;
+    private int[] partitions;
+    private IdPartitioner jump;
+    private IdPartitioner rendezvous;
+
+    @Setup
+    public void setUp() {
+        ids = IdPartitionerTest.sequentialIds(BATCH_SIZE);
+        fingerprints = new long[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            fingerprints[i] = IdFingerprint.of(ids[i]);
+        }
+        partitions = new int[BATCH_SIZE];
+        jump = IdPartitioner.jump(partitionCount);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            names.add("node-" + i);
+        }
+        rendezvous = IdPartitioner.rendezvous(names);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] hashCodeModulo() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            partitions[i] = Math.floorMod(ids[i].hashCode(), partitionCount);
+        }
+        return partitions;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] fingerprintIds() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            partitions[i] = (int)IdFingerprint.of(ids[i]);
+        }
+        return partitions;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] jumpIds() {
+        jump.partitionAll(ids, partitions);
+        return partitions;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] jumpFingerprints() {
+        jump.partitionAll(fingerprints, partitions);
+        return partitions;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] rendezvousFingerprints() {
+        rendezvous.partitionAll(fingerprints, partitions);
+        return partitions;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(IdPartitionerBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+
+}
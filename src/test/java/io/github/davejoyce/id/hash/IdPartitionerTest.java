@@ -0,0 +1,182 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdPartitioner} implementations, including the quality
+ * of the distribution of IDs over partitions.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdPartitionerTest {
+
+    private static final int ID_COUNT = 200000;
+
+    @DataProvider
+    public Object[][] partitioners() {
+        return new Object[][] {
+                new Object[]{ IdPartitioner.jump(1) },
+                new Object[]{ IdPartitioner.jump(16) },
+                new Object[]{ IdPartitioner.jump(100) },
+                new Object[]{ IdPartitioner.rendezvous(nodeNames(1)) },
+                new Object[]{ IdPartitioner.rendezvous(nodeNames(16)) },
+                new Object[]{ IdPartitioner.rendezvous(nodeNames(37)) },
+        };
+    }
+
+    @Test(dataProvider = "partitioners", groups = "hash")
+    public void testDistribution(IdPartitioner partitioner) throws Exception {
+        int n = partitioner.getPartitionCount();
+        NamespaceId<?>[] ids = sequentialIds(ID_COUNT);
+        int[] partitions = partitioner.partitionAll(ids);
+        long[] counts = new long[n];
+        for (int p : partitions) {
+            assertTrue(0 <= p && p < n, "Partition out of range: " + p);
+            counts[p]++;
+        }
+        // Chi-square goodness of fit against the uniform distribution; the
+        // bound is far above the 99.99th percentile for these partition counts
+        double expected = (double)ID_COUNT / n;
+        double chiSquare = 0.0;
+        for (long count : counts) {
+            chiSquare += (count - expected) * (count - expected) / expected;
+        }
+        double bound = (n - 1) + 6.0 * Math.sqrt(2.0 * Math.max(1, n - 1));
+        assertTrue(chiSquare <= bound, "Chi-square " + chiSquare + " exceeds " + bound);
+    }
+
+    @Test(dataProvider = "partitioners", groups = "hash")
+    public void testVersionsCoLocate(IdPartitioner partitioner) throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            int p = partitioner.partition(new NamespaceId<>("ns", i));
+            assertEquals(partitioner.partition(new TemporalNamespaceId<>("ns", i, 1L)), p);
+            assertEquals(partitioner.partition(new TemporalNamespaceId<>("ns", i, 2L)), p);
+        }
+    }
+
+    @Test(groups = "hash")
+    public void testJumpMovesMinimalKeys() throws Exception {
+        IdPartitioner before = IdPartitioner.jump(10);
+        IdPartitioner after = IdPartitioner.jump(11);
+        long[] fingerprints = fingerprints(ID_COUNT);
+        int moved = 0;
+        for (long fp : fingerprints) {
+            int p1 = before.partition(fp);
+            int p2 = after.partition(fp);
+            if (p1 != p2) {
+                assertEquals(p2, 10, "Keys may only move to the new partition");
+                moved++;
+            }
+        }
+        double movedFraction = (double)moved / ID_COUNT;
+        assertEquals(movedFraction, 1.0 / 11, 0.01);
+    }
+
+    @Test(groups = "hash")
+    public void testRendezvousMovesOnlyRemovedNodeKeys() throws Exception {
+        List<String> names = nodeNames(8);
+        IdPartitioner before = IdPartitioner.rendezvous(names);
+        List<String> remaining = new ArrayList<>(names);
+        String removed = remaining.remove(3);
+        IdPartitioner after = IdPartitioner.rendezvous(remaining);
+        for (long fp : fingerprints(20000)) {
+            String nodeBefore = names.get(before.partition(fp));
+            String nodeAfter = remaining.get(after.partition(fp));
+            if (!nodeBefore.equals(removed)) {
+                assertEquals(nodeAfter, nodeBefore);
+            }
+        }
+    }
+
+    @Test(groups = "hash")
+    public void testRendezvousIndependentOfNodeOrder() throws Exception {
+        List<String> names = nodeNames(5);
+        List<String> reversed = new ArrayList<>(names);
+        Collections.reverse(reversed);
+        IdPartitioner p1 = IdPartitioner.rendezvous(names);
+        IdPartitioner p2 = IdPartitioner.rendezvous(reversed);
+        for (long fp : fingerprints(1000)) {
+            assertEquals(reversed.get(p2.partition(fp)), names.get(p1.partition(fp)));
+        }
+    }
+
+    @Test(groups = "hash")
+    public void testPartitionAllFingerprints() throws Exception {
+        IdPartitioner partitioner = IdPartitioner.jump(7);
+        NamespaceId<?>[] ids = sequentialIds(100);
+        long[] fingerprints = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            fingerprints[i] = IdFingerprint.of(ids[i]);
+        }
+        int[] partitions = new int[ids.length];
+        partitioner.partitionAll(fingerprints, partitions);
+        assertEquals(partitions, partitioner.partitionAll(ids));
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testJumpBadPartitionCount() throws Exception {
+        IdPartitioner.jump(0);
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testRendezvousDuplicateNode() throws Exception {
+        IdPartitioner.rendezvous(Arrays.asList("a", "b", "a"));
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testPartitionAllShortDestination() throws Exception {
+        IdPartitioner.jump(2).partitionAll(sequentialIds(3), new int[2]);
+    }
+
+    static NamespaceId<?>[] sequentialIds(int count) {
+        NamespaceId<?>[] ids = new NamespaceId<?>[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = new NamespaceId<>("ns" + (i % 4), i);
+        }
+        return ids;
+    }
+
+    private static long[] fingerprints(int count) {
+        NamespaceId<?>[] ids = sequentialIds(count);
+        long[] fingerprints = new long[count];
+        for (int i = 0; i < count; i++) {
+            fingerprints[i] = IdFingerprint.of(ids[i]);
+        }
+        return fingerprints;
+    }
+
+    private static List<String> nodeNames(int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add("node-" + i);
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.hash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code MinimalPerfectHash}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class MinimalPerfectHashTest {
+
+    @DataProvider
+    public Object[][] sizes() {
+        return new Object[][] {
+                new Object[]{ 0 },
+                new Object[]{ 1 },
+                new Object[]{ 100 },
+                new Object[]{ 300000 },
+        };
+    }
+
+    @Test(dataProvider = "sizes", groups = "hash")
+    public void testMinimalPerfect(int size) throws Exception {
+        long[] fingerprints = randomFingerprints(size, 42L);
+        MinimalPerfectHash hash = MinimalPerfectHash.build(fingerprints);
+        assertEquals(hash.size(), size);
+        assertIndexesArePermutation(hash, fingerprints);
+    }
+
+    @Test(groups = "hash")
+    public void testBitsPerFingerprint() throws Exception {
+        MinimalPerfectHash hash = MinimalPerfectHash.build(randomFingerprints(100000, 7L));
+        assertTrue(hash.getBitsPerFingerprint() < 5.0, "Bits per fingerprint: " + hash.getBitsPerFingerprint());
+    }
+
+    @Test(groups = "hash")
+    public void testAbsentFingerprint() throws Exception {
+        MinimalPerfectHash hash = MinimalPerfectHash.build(randomFingerprints(1000, 1L));
+        long[] absent = randomFingerprints(1000, 2L);
+        for (long fp : absent) {
+            int i = hash.indexOf(fp);
+            assertTrue(-1 <= i && i < 1000);
+        }
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testDuplicate() throws Exception {
+        MinimalPerfectHash.build(new long[]{ 1L, 2L, 3L, 2L });
+    }
+
+    @Test(groups = "hash")
+    public void testSerialization() throws Exception {
+        long[] fingerprints = randomFingerprints(50000, 3L);
+        MinimalPerfectHash hash = MinimalPerfectHash.build(fingerprints);
+        ByteBuffer buf = ByteBuffer.allocate(hash.getByteSize() + 16);
+        buf.putLong(-1L);
+        hash.writeTo(buf);
+        buf.putLong(-2L);
+        buf.flip();
+        assertEquals(buf.getLong(), -1L);
+        MinimalPerfectHash read = MinimalPerfectHash.read(buf);
+        assertEquals(buf.getLong(), -2L);
+        assertEquals(read.size(), hash.size());
+        for (long fp : fingerprints) {
+            assertEquals(read.indexOf(fp), hash.indexOf(fp));
+        }
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testReadCorrupt() throws Exception {
+        MinimalPerfectHash.read(ByteBuffer.wrap(new byte[32]));
+    }
+
+    @Test(groups = "hash", expectedExceptions = IllegalArgumentException.class)
+    public void testReadTruncated() throws Exception {
+        MinimalPerfectHash hash = MinimalPerfectHash.build(randomFingerprints(1000, 4L));
+        ByteBuffer buf = ByteBuffer.allocate(hash.getByteSize());
+        hash.writeTo(buf);
+        buf.flip();
+        buf.limit(buf.limit() - 1);
+        MinimalPerfectHash.read(buf);
+    }
+
+    static long[] randomFingerprints(int size, long seed) {
+        return new Random(seed).longs().distinct().limit(size).toArray();
+    }
+
+    private static void assertIndexesArePermutation(MinimalPerfectHash hash, long[] fingerprints) {
+        BitSet seen = new BitSet(fingerprints.length);
+        for (long fp : fingerprints) {
+            int i = hash.indexOf(fp);
+            assertTrue(0 <= i && i < fingerprints.length, "Index out of range: " + i);
+            assertFalse(seen.get(i), "Index assigned twice: " + i);
+            seen.set(i);
+        }
+    }
+
+}
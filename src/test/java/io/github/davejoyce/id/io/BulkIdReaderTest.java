@@ -0,0 +1,173 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.io;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.IdParser;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code BulkIdReader}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class BulkIdReaderTest {
+
+    private static final Instant AS_OF_TIME = Instant.parse("1977-11-13T14:18:00.123456789Z");
+
+    @Test(groups = "io")
+    public void testReadStreamWithErrors() throws Exception {
+        String input = "ns/1/1977-11-13T14:18:00Z\r\n"
+                + "ns/two/1977-11-13T14:18:00Z\n"
+                + "\n"
+                + "ns/3/1977-11-13T14:18:00Z\n"
+                + "ns/4/yesterday\n"
+                + "ns/5/1977-11-13T14:18:00Z";
+        BulkIdReader<TemporalNamespaceId<Integer>> reader =
+                new BulkIdReader<>(IdParser.temporalIds(Integer.class), 4);
+        List<TemporalNamespaceId<Integer>> ids = new ArrayList<>();
+        IdParseErrors errors = new IdParseErrors(10);
+        long count = reader.read(stream(input), ids::add, errors);
+
+        assertEquals(count, 3L);
+        Instant t = Instant.parse("1977-11-13T14:18:00Z");
+        assertEquals(ids.get(0), new TemporalNamespaceId<>("ns", 1, t));
+        assertEquals(ids.get(1), new TemporalNamespaceId<>("ns", 3, t));
+        assertEquals(ids.get(2), new TemporalNamespaceId<>("ns", 5, t));
+        assertEquals(errors.getCount(), 2L);
+        IdParseError first = errors.getErrors().get(0);
+        assertEquals(first.getLineNumber(), 2L);
+        assertEquals(first.getOffset(), 27L);
+        assertEquals(first.getLine(), "ns/two/1977-11-13T14:18:00Z");
+        assertEquals(errors.getErrors().get(1).getLineNumber(), 5L);
+    }
+
+    @Test(groups = "io")
+    public void testLongLinesGrowBuffer() throws Exception {
+        String longId = String.join("", Collections.nCopies(1000, "x"));
+        String input = "ns/" + longId + "\nns/short";
+        List<NamespaceId<String>> ids = new ArrayList<>();
+        new BulkIdReader<>(IdParser.namespaceIds(String.class), 16)
+                .read(stream(input), ids::add, e -> fail(e.toString()));
+        assertEquals(ids.size(), 2);
+        assertEquals(ids.get(0).getId(), longId);
+        assertEquals(ids.get(1).getId(), "short");
+    }
+
+    @Test(groups = "io")
+    public void testReadFileInParallel() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> expected = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            if (0 == i % 997) {
+                sb.append("ns/bad").append(i).append('\n');
+                continue;
+            }
+            BiTemporalNamespaceId<Integer> id = new BiTemporalNamespaceId<>(
+                    "ns" + (i % 7), i, AS_OF_TIME.plusSeconds(i), AS_OF_TIME.plusSeconds(2 * i));
+            expected.add(id);
+            sb.append(id).append('\n');
+        }
+        Path file = Files.createTempFile("ids", ".txt");
+        try {
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            BulkIdReader<BiTemporalNamespaceId<Integer>> reader =
+                    new BulkIdReader<>(IdParser.biTemporalIds(Integer.class), 1024);
+            ConcurrentLinkedQueue<BiTemporalNamespaceId<Integer>> ids = new ConcurrentLinkedQueue<>();
+            IdParseErrors errors = new IdParseErrors(100);
+            long count = reader.read(file, ids::add, errors);
+
+            assertEquals(count, (long)expected.size());
+            List<BiTemporalNamespaceId<Integer>> sorted = new ArrayList<>(ids);
+            Collections.sort(sorted, (a, b) -> a.getId().compareTo(b.getId()));
+            assertEquals(sorted, expected);
+            assertEquals(errors.getCount(), 21L);
+            for (IdParseError e : errors.getErrors()) {
+                assertEquals(e.getLineNumber(), -1L);
+                assertTrue(e.getLine().startsWith("ns/bad"));
+                byte[] all = Files.readAllBytes(file);
+                assertEquals(new String(all, (int)e.getOffset(), e.getLine().length(), StandardCharsets.UTF_8),
+                             e.getLine());
+            }
+
+            // Sequential stream preserves file order
+            try (Stream<BiTemporalNamespaceId<Integer>> s = reader.stream(file, e -> {})) {
+                assertEquals(s.collect(Collectors.toList()), expected);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(groups = "io")
+    public void testSpliteratorSplitsAtLineBoundaries() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("ns/").append(i).append('\n');
+        }
+        Path file = Files.createTempFile("ids", ".txt");
+        try {
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            BulkIdReader<NamespaceId<Integer>> reader =
+                    new BulkIdReader<>(IdParser.namespaceIds(Integer.class), 64);
+            try (Stream<NamespaceId<Integer>> s = reader.stream(file, e -> fail(e.toString()))) {
+                Spliterator<NamespaceId<Integer>> suffix = s.spliterator();
+                Spliterator<NamespaceId<Integer>> prefix = suffix.trySplit();
+                assertNotNull(prefix);
+                List<Integer> values = new ArrayList<>();
+                prefix.forEachRemaining(id -> values.add(id.getId()));
+                int prefixSize = values.size();
+                assertTrue(0 < prefixSize && prefixSize < 1000);
+                suffix.forEachRemaining(id -> values.add(id.getId()));
+                assertEquals(values.size(), 1000);
+                for (int i = 0; i < 1000; i++) {
+                    assertEquals(values.get(i).intValue(), i);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(groups = "io", expectedExceptions = IllegalArgumentException.class)
+    public void testBadChunkSize() throws Exception {
+        new BulkIdReader<>(IdParser.namespaceIds(String.class), 0);
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
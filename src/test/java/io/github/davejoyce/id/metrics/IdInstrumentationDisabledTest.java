@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of the default, uninstrumented path: with instrumentation not
+ * enabled, registered sinks receive nothing.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdInstrumentationDisabledTest {
+
+    private final IdStatistics statistics = new IdStatistics();
+
+    @BeforeClass(groups = "metrics")
+    public void register() throws Exception {
+        if (IdInstrumentation.ENABLED) {
+            throw new SkipException("Instrumentation enabled; unset " + IdInstrumentation.ENABLED_PROPERTY);
+        }
+        IdInstrumentation.register(statistics);
+    }
+
+    @AfterClass(groups = "metrics", alwaysRun = true)
+    public void unregister() throws Exception {
+        IdInstrumentation.unregister(statistics);
+    }
+
+    @Test(groups = "metrics")
+    public void testNothingRecorded() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(NamespaceId.fromString("ns/" + i, Integer.class).getId(), Integer.valueOf(i));
+        }
+        try {
+            NamespaceId.fromString("ns-bad", Integer.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        NamespaceId.fromString("ns/1", BigInteger.class);
+        TemporalNamespaceId.fromString("ns/a/1977-11-13T14:18:00Z", String.class).toNamespaceId();
+        BiTemporalNamespaceId.fromString("ns/a/1977-11-13T14:18:00Z/1977-11-14T14:18:00Z", String.class)
+                             .toTemporalNamespaceId();
+
+        assertEquals(statistics.getParseCount(NamespaceId.class, Integer.class), 0L);
+        assertEquals(statistics.getParseFailureCount(NamespaceId.class, Integer.class), 0L);
+        assertNull(statistics.getParseLatency(NamespaceId.class, Integer.class));
+        assertEquals(statistics.getParseCount(TemporalNamespaceId.class, String.class), 0L);
+        assertEquals(statistics.getConversionCount(BigInteger.class, ConversionStrategy.REGISTERED), 0L);
+        assertEquals(statistics.getProjectionCount(TemporalNamespaceId.class, NamespaceId.class), 0L);
+        assertEquals(statistics.getProjectionCount(BiTemporalNamespaceId.class, TemporalNamespaceId.class), 0L);
+    }
+
+}
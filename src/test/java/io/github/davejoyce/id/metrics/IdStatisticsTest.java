@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdStatistics} registered with
+ * {@code IdInstrumentation}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdStatisticsTest {
+
+    private final IdStatistics statistics = new IdStatistics();
+
+    @BeforeClass(groups = "metrics")
+    public void register() throws Exception {
+        if (!IdInstrumentation.ENABLED) {
+            throw new SkipException("Instrumentation not enabled; set " + IdInstrumentation.ENABLED_PROPERTY);
+        }
+        IdInstrumentation.register(statistics);
+    }
+
+    @AfterClass(groups = "metrics", alwaysRun = true)
+    public void unregister() throws Exception {
+        IdInstrumentation.unregister(statistics);
+    }
+
+    @Test(groups = "metrics")
+    public void testParse() throws Exception {
+        long count = statistics.getParseCount(NamespaceId.class, Integer.class);
+        long failures = statistics.getParseFailureCount(NamespaceId.class, Integer.class);
+        for (int i = 0; i < 10; i++) {
+            NamespaceId.fromString("ns/" + i, Integer.class);
+        }
+        try {
+            NamespaceId.fromString("ns-bad", Integer.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        assertEquals(statistics.getParseCount(NamespaceId.class, Integer.class), count + 10);
+        assertEquals(statistics.getParseFailureCount(NamespaceId.class, Integer.class), failures + 1);
+        assertTrue(statistics.getParseLatency(NamespaceId.class, Integer.class).getCount() >= 11);
+    }
+
+    @Test(groups = "metrics")
+    public void testParseTemporal() throws Exception {
+        long temporal = statistics.getParseCount(TemporalNamespaceId.class, String.class);
+        long biTemporal = statistics.getParseCount(BiTemporalNamespaceId.class, String.class);
+        TemporalNamespaceId.fromString("ns/a/1977-11-13T14:18:00Z", String.class);
+        BiTemporalNamespaceId.fromString("ns/a/1977-11-13T14:18:00Z/1977-11-14T14:18:00Z", String.class);
+        assertEquals(statistics.getParseCount(TemporalNamespaceId.class, String.class), temporal + 1);
+        assertEquals(statistics.getParseCount(BiTemporalNamespaceId.class, String.class), biTemporal + 1);
+    }
+
+    @Test(groups = "metrics")
+    public void testConversionStrategy() throws Exception {
+        long valueOf = statistics.getConversionCount(Sku.class, ConversionStrategy.VALUE_OF);
+        long valueOfFailures = statistics.getConversionFailureCount(Sku.class, ConversionStrategy.VALUE_OF);
+        long castFailures = statistics.getConversionFailureCount(Sku.class, ConversionStrategy.CAST);
+        long constructor = statistics.getConversionCount(Code.class, ConversionStrategy.CONSTRUCTOR);
+        long registered = statistics.getConversionCount(BigInteger.class, ConversionStrategy.REGISTERED);
+        NamespaceId.fromString("ns/1", Sku.class);
+        NamespaceId.fromString("ns/1", Code.class);
+        NamespaceId.fromString("ns/1", BigInteger.class);
+        try {
+            NamespaceId.fromString("ns/x", Sku.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        assertEquals(statistics.getConversionCount(Sku.class, ConversionStrategy.VALUE_OF), valueOf + 1);
+        assertEquals(statistics.getConversionFailureCount(Sku.class, ConversionStrategy.VALUE_OF),
+                     valueOfFailures + 1);
+        assertEquals(statistics.getConversionFailureCount(Sku.class, ConversionStrategy.CAST), castFailures + 1);
+        assertEquals(statistics.getConversionCount(Code.class, ConversionStrategy.CONSTRUCTOR), constructor + 1);
+        assertEquals(statistics.getConversionCount(BigInteger.class, ConversionStrategy.REGISTERED),
+                     registered + 1);
+    }
+
+    @Test(groups = "metrics")
+    public void testProjection() throws Exception {
+        long toNamespaceId = statistics.getProjectionCount(TemporalNamespaceId.class, NamespaceId.class);
+        long toTemporal = statistics.getProjectionCount(BiTemporalNamespaceId.class, TemporalNamespaceId.class);
+        TemporalNamespaceId<String> id = TemporalNamespaceId.fromString("ns/a/1977-11-13T14:18:00Z", String.class);
+        id.toNamespaceId();
+        BiTemporalNamespaceId.fromString("ns/a/1977-11-13T14:18:00Z/1977-11-14T14:18:00Z", String.class)
+                             .toTemporalNamespaceId();
+        assertEquals(statistics.getProjectionCount(TemporalNamespaceId.class, NamespaceId.class), toNamespaceId + 1);
+        assertEquals(statistics.getProjectionCount(BiTemporalNamespaceId.class, TemporalNamespaceId.class),
+                     toTemporal + 1);
+    }
+
+    @Test(groups = "metrics", expectedExceptions = IllegalArgumentException.class)
+    public void testRegisterNull() throws Exception {
+        IdInstrumentation.register(null);
+    }
+
+    public static final class Sku implements Comparable<Sku> {
+
+        private final long value;
+
+        private Sku(long value) {
+            this.value = value;
+        }
+
+        public static Sku valueOf(String s) {
+            return new Sku(Long.parseLong(s));
+        }
+
+        @Override
+        public int compareTo(Sku o) {
+            return Long.compare(value, o.value);
+        }
+
+    }
+
+    public static final class Code implements Comparable<Code> {
+
+        private final String value;
+
+        public Code(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Code o) {
+            return value.compareTo(o.value);
+        }
+
+    }
+
+}
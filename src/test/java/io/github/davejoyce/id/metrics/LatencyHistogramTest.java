@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code LatencyHistogram}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class LatencyHistogramTest {
+
+    @Test(groups = "metrics")
+    public void testEmpty() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.getCount(), 0L);
+        assertEquals(histogram.getMean(), 0.0d);
+        assertEquals(histogram.getValueAtPercentile(99.0d), 0L);
+        assertEquals(histogram.getMax(), 0L);
+    }
+
+    @Test(groups = "metrics")
+    public void testBucketBounds() throws Exception {
+        for (long v : new long[]{0L, 1L, 15L, 16L, 17L, 1000L, 123456789L, Long.MAX_VALUE}) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(v));
+            assertTrue(highest >= v, "Bucket of " + v + " ends at " + highest);
+            // Relative error of a bucket is bounded by 1/SUB_BUCKETS
+            assertTrue(highest - v <= v / LatencyHistogram.SUB_BUCKETS, "Bucket of " + v + " too wide");
+        }
+    }
+
+    @Test(groups = "metrics")
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 10000; v++) {
+            histogram.record(v);
+        }
+        assertEquals(histogram.getCount(), 10000L);
+        assertEquals(histogram.getMean(), 5000.5d, 5000.5d / LatencyHistogram.SUB_BUCKETS);
+        assertEquals((double) histogram.getValueAtPercentile(50.0d), 5000.0d, 5000.0d / LatencyHistogram.SUB_BUCKETS);
+        assertEquals((double) histogram.getValueAtPercentile(99.0d), 9900.0d, 9900.0d / LatencyHistogram.SUB_BUCKETS);
+        assertTrue(histogram.getMax() >= 10000L);
+    }
+
+    @Test(groups = "metrics", expectedExceptions = IllegalArgumentException.class)
+    public void testPercentileOutOfRange() throws Exception {
+        new LatencyHistogram().getValueAtPercentile(100.5d);
+    }
+
+}
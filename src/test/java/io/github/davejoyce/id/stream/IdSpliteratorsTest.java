@@ -0,0 +1,233 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdSpliterators}, {@code IdBatch} and
+ * {@code MappedIdFile}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdSpliteratorsTest {
+
+    private static final Instant AS_OF_TIME = Instant.parse("1977-11-13T14:18:00.123456789Z");
+    private static final Instant AS_AT_TIME = Instant.parse("2008-01-05T22:00:00Z");
+
+    @Test(groups = "stream")
+    @SuppressWarnings("unchecked")
+    public void testSortedArray() throws Exception {
+        List<NamespaceId<Integer>> ids = sortedIds(1001);
+        NamespaceId<Integer>[] array = ids.toArray(new NamespaceId[0]);
+        Spliterator<NamespaceId<Integer>> s = IdSpliterators.ofSorted(array);
+        assertSortedCharacteristics(s, 1001);
+        assertNull(s.getComparator());
+        assertBalancedSplit(s);
+        assertEquals(StreamSupport.stream(IdSpliterators.ofSorted(array), true).collect(Collectors.toList()),
+                     ids);
+        assertEquals(IdSpliterators.ofSorted(array, 10, 20, null).getExactSizeIfKnown(), 10L);
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalArgumentException.class)
+    @SuppressWarnings("unchecked")
+    public void testUnsortedArray() throws Exception {
+        IdSpliterators.ofSorted(new NamespaceId[]{ new NamespaceId<>("ns", 2), new NamespaceId<>("ns", 1) });
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalArgumentException.class)
+    @SuppressWarnings("unchecked")
+    public void testDuplicateInArray() throws Exception {
+        IdSpliterators.ofSorted(new NamespaceId[]{ new NamespaceId<>("ns", 1), new NamespaceId<>("ns", 1) });
+    }
+
+    @Test(groups = "stream")
+    public void testBatch() throws Exception {
+        List<NamespaceId<Integer>> ids = sortedIds(1001);
+        IdBatch<Integer> batch = IdBatch.of(ids);
+        assertEquals(batch.size(), 1001);
+        assertSortedCharacteristics(batch.spliterator(), 1001);
+        assertNull(batch.spliterator().getComparator());
+        assertBalancedSplit(batch.spliterator());
+        assertEquals(batch.stream(true).collect(Collectors.toList()), ids);
+        assertEquals(batch.viewStream(true).map(IdView::toId).collect(Collectors.toList()), ids);
+        assertViewsMatch(batch.viewSpliterator(), ids);
+        assertViewsReused(batch.viewSpliterator());
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalArgumentException.class)
+    public void testUnsortedBatch() throws Exception {
+        IdBatch.of(Arrays.asList(new NamespaceId<>("b", 1), new NamespaceId<>("a", 1)));
+    }
+
+    @Test(groups = "stream")
+    public void testMappedFile() throws Exception {
+        List<NamespaceId<Integer>> ids = sortedIds(1001);
+        Path file = Files.createTempFile("ids", ".idsf");
+        try {
+            MappedIdFile.write(file, ids);
+            MappedIdFile<Integer> mapped = MappedIdFile.open(file, Integer.class);
+            assertEquals(mapped.size(), 1001);
+            assertEquals(mapped.get(500), ids.get(500));
+            assertSortedCharacteristics(mapped.spliterator(), 1001);
+            assertNull(mapped.spliterator().getComparator());
+            assertBalancedSplit(mapped.spliterator());
+            assertEquals(mapped.stream(true).collect(Collectors.toList()), ids);
+            assertEquals(mapped.viewStream(true).map(IdView::toId).collect(Collectors.toList()), ids);
+            assertViewsMatch(mapped.viewSpliterator(), ids);
+            assertViewsReused(mapped.viewSpliterator());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(groups = "stream")
+    public void testMappedFileViewValues() throws Exception {
+        List<NamespaceId<String>> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // Values of growing length, some with multi-byte characters
+            StringBuilder value = new StringBuilder();
+            for (int j = 0; j <= i; j++) {
+                value.append((0 == j % 7) ? '\u00e9' : 'v');
+            }
+            ids.add(new NamespaceId<>("ns", i + ":" + value));
+        }
+        Collections.sort(ids);
+        Path file = Files.createTempFile("ids", ".idsf");
+        try {
+            MappedIdFile.write(file, ids);
+            MappedIdFile<String> mapped = MappedIdFile.open(file, String.class);
+            int[] i = { 0 };
+            mapped.viewSpliterator().forEachRemaining(v -> {
+                NamespaceId<String> id = ids.get(i[0]++);
+                assertEquals(v.getId(), id.getId());
+                assertEquals(v.compareTo(id), 0);
+                assertEquals(v.toId(), id);
+                assertEquals(v.getId(), id.getId());
+            });
+            assertEquals(i[0], ids.size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(groups = "stream")
+    public void testEmptyMappedFile() throws Exception {
+        Path file = Files.createTempFile("ids", ".idsf");
+        try {
+            MappedIdFile.write(file, Collections.<NamespaceId<String>>emptyList());
+            MappedIdFile<String> mapped = MappedIdFile.open(file, String.class);
+            assertEquals(mapped.size(), 0);
+            assertEquals(mapped.stream(true).count(), 0L);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalArgumentException.class)
+    public void testNotAnIdFile() throws Exception {
+        Path file = Files.createTempFile("ids", ".idsf");
+        try {
+            Files.write(file, "not an id file".getBytes("UTF-8"));
+            MappedIdFile.open(file, String.class);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalStateException.class)
+    public void testViewOfNonTemporalId() throws Exception {
+        IdBatch<String> batch = IdBatch.of(Collections.singletonList(new NamespaceId<>("ns", "id")));
+        batch.viewSpliterator().tryAdvance(IdView::getAsOfEpochSecond);
+    }
+
+    /**
+     * Bi-temporal IDs in natural order, with several versions of each
+     * NamespaceId.
+     */
+    private static List<NamespaceId<Integer>> sortedIds(int count) {
+        List<NamespaceId<Integer>> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int key = i / 3;
+            ids.add(new BiTemporalNamespaceId<>("ns" + (key / 100), key,
+                                                AS_OF_TIME.plusSeconds(i % 3), AS_AT_TIME));
+        }
+        List<NamespaceId<Integer>> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals(sorted, ids);
+        return ids;
+    }
+
+    private static void assertSortedCharacteristics(Spliterator<?> s, long size) {
+        assertTrue(s.hasCharacteristics(Spliterator.SIZED));
+        assertTrue(s.hasCharacteristics(Spliterator.SUBSIZED));
+        assertTrue(s.hasCharacteristics(Spliterator.SORTED));
+        assertTrue(s.hasCharacteristics(Spliterator.DISTINCT));
+        assertTrue(s.hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(s.getExactSizeIfKnown(), size);
+    }
+
+    private static void assertBalancedSplit(Spliterator<?> s) {
+        long size = s.estimateSize();
+        Spliterator<?> prefix = s.trySplit();
+        assertNotNull(prefix);
+        assertEquals(prefix.estimateSize() + s.estimateSize(), size);
+        assertTrue(Math.abs(prefix.estimateSize() - s.estimateSize()) <= 1L);
+    }
+
+    private static void assertViewsMatch(Spliterator<IdView<Integer>> views,
+                                         List<NamespaceId<Integer>> ids) {
+        int[] i = { 0 };
+        views.forEachRemaining(v -> {
+            NamespaceId<Integer> id = ids.get(i[0]++);
+            assertEquals(v.getNamespace(), id.getNamespace());
+            assertEquals(v.getId(), id.getId());
+            assertTrue(v.isTemporal());
+            assertTrue(v.isBiTemporal());
+            BiTemporalNamespaceId<Integer> btnsId = (BiTemporalNamespaceId<Integer>) id;
+            assertEquals(v.getAsOfEpochSecond(), btnsId.getAsOfEpochSecond());
+            assertEquals(v.getAsOfNano(), btnsId.getAsOfNano());
+            assertEquals(v.getAsAtEpochSecond(), btnsId.getAsAtEpochSecond());
+            assertEquals(v.getAsAtNano(), btnsId.getAsAtNano());
+        });
+        assertEquals(i[0], ids.size());
+    }
+
+    private static void assertViewsReused(Spliterator<IdView<Integer>> views) {
+        Set<IdView<Integer>> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        views.forEachRemaining(distinct::add);
+        assertEquals(distinct.size(), 1);
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code MutableIdView}, {@code MutableTemporalIdView} and
+ * {@code MutableBiTemporalIdView}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class MutableIdViewTest {
+
+    @Test(groups = "stream")
+    public void testMutableIdView() throws Exception {
+        MutableIdView<Integer> view = new MutableIdView<>();
+        expectThrows(IllegalStateException.class, view::toImmutable);
+        List<NamespaceId<Integer>> ids = Arrays.asList(
+                new NamespaceId<>("ns", 1),
+                new TemporalNamespaceId<>("ns", 2, 10L, 5),
+                new BiTemporalNamespaceId<>("ns", 3, 10L, 5, 12L, 7));
+        for (NamespaceId<Integer> id : ids) {
+            assertSame(view.set(id), view);
+            assertEquals(view.getNamespace(), "ns");
+            assertEquals(view.getId(), id.getId());
+            assertEquals(view.toImmutable(), id);
+            assertEquals(view.toImmutable().getClass(), id.getClass());
+            assertEquals(view.compareTo(id), 0);
+            assertEquals(view.toString(), id.toString());
+        }
+        view.set("ns", 1);
+        assertFalse(view.isTemporal());
+        expectThrows(IllegalStateException.class, view::getAsOfEpochSecond);
+        view.set("ns", 1, 10L, 5);
+        assertTrue(view.isTemporal());
+        assertFalse(view.isBiTemporal());
+        assertEquals(view.getAsOfEpochSecond(), 10L);
+        assertEquals(view.getAsOfNano(), 5);
+        expectThrows(IllegalStateException.class, view::getAsAtNano);
+        view.set("ns", 1, 10L, 5, 12L, 7);
+        assertTrue(view.isBiTemporal());
+        assertEquals(view.getAsAtEpochSecond(), 12L);
+        assertEquals(view.getAsAtNano(), 7);
+        expectThrows(IllegalArgumentException.class, () -> view.set(null, 1));
+        expectThrows(IllegalArgumentException.class, () -> view.set("ns", null));
+        expectThrows(IllegalArgumentException.class, () -> view.set(null));
+        // Components are validated on copy
+        view.set("", 1);
+        expectThrows(IllegalArgumentException.class, view::toImmutable);
+    }
+
+    @Test(groups = "stream")
+    public void testTypedViews() throws Exception {
+        MutableTemporalIdView<String> temporal = new MutableTemporalIdView<>();
+        expectThrows(IllegalStateException.class, temporal::toImmutable);
+        TemporalNamespaceId<String> t = new TemporalNamespaceId<>("ns", "a", 10L, 5);
+        temporal.set(t);
+        assertTrue(temporal.isTemporal());
+        assertFalse(temporal.isBiTemporal());
+        assertEquals(temporal.toImmutable(), t);
+        assertEquals(temporal.toId(), t);
+        assertEquals(temporal.getAsOfEpochSecond(), 10L);
+        assertEquals(temporal.getAsOfNano(), 5);
+        expectThrows(IllegalStateException.class, temporal::getAsAtEpochSecond);
+        // A bi-temporal ID is copied as its temporal projection
+        temporal.set(new BiTemporalNamespaceId<>("ns", "a", 10L, 5, 12L, 7));
+        assertEquals(temporal.toImmutable(), t);
+
+        MutableBiTemporalIdView<String> biTemporal = new MutableBiTemporalIdView<>();
+        expectThrows(IllegalStateException.class, biTemporal::toImmutable);
+        BiTemporalNamespaceId<String> b = new BiTemporalNamespaceId<>("ns", "a", 10L, 5, 12L, 7);
+        BiTemporalNamespaceId<String> copy = biTemporal.set(b).toImmutable();
+        assertEquals(copy, b);
+        assertTrue(biTemporal.isTemporal());
+        assertTrue(biTemporal.isBiTemporal());
+        assertEquals(biTemporal.getAsAtEpochSecond(), 12L);
+        assertEquals(biTemporal.getAsAtNano(), 7);
+        assertEquals(biTemporal.toString(), b.toString());
+        expectThrows(IllegalArgumentException.class, () -> biTemporal.set(null));
+    }
+
+    @Test(groups = "stream")
+    public void testCompareToMatchesNaturalOrder() throws Exception {
+        Random random = new Random(1L);
+        List<BiTemporalNamespaceId<Integer>> ids = new ArrayList<>();
+        for (int i = 0; 200 > i; i++) {
+            ids.add(new BiTemporalNamespaceId<>("ns" + random.nextInt(2), random.nextInt(3),
+                                                random.nextInt(2), random.nextInt(2),
+                                                random.nextInt(2), random.nextInt(2)));
+        }
+        MutableIdView<Integer> view = new MutableIdView<>();
+        MutableTemporalIdView<Integer> temporal = new MutableTemporalIdView<>();
+        MutableBiTemporalIdView<Integer> biTemporal = new MutableBiTemporalIdView<>();
+        for (BiTemporalNamespaceId<Integer> a : ids) {
+            view.set(a);
+            temporal.set(a);
+            biTemporal.set(a);
+            for (BiTemporalNamespaceId<Integer> b : ids) {
+                assertEquals(Integer.signum(view.compareTo(b)), Integer.signum(a.compareTo(b)));
+                assertEquals(Integer.signum(biTemporal.compareTo(b)), Integer.signum(a.compareTo(b)));
+                TemporalNamespaceId<Integer> tb = b.toTemporalNamespaceId();
+                assertEquals(Integer.signum(temporal.compareTo(b)),
+                             Integer.signum(a.toTemporalNamespaceId().compareTo(tb)));
+                // Timestamps absent from either ID are not compared
+                assertEquals(Integer.signum(view.compareTo(b.toNamespaceId())),
+                             Integer.signum(a.toNamespaceId().compareTo(b.toNamespaceId())));
+            }
+        }
+        expectThrows(IllegalArgumentException.class, () -> view.compareTo(null));
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code SortedIdDiff}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class SortedIdDiffTest {
+
+    @Test(groups = "stream")
+    public void testDiffNamespaceIds() throws Exception {
+        List<NamespaceId<Integer>> left = Arrays.asList(nsId("a", 1), nsId("a", 2), nsId("b", 1));
+        List<NamespaceId<Integer>> right = Arrays.asList(nsId("a", 2), nsId("b", 1), nsId("c", 7));
+        RecordingListener<NamespaceId<Integer>> listener = new RecordingListener<>();
+        SortedIdDiff.diff(left.iterator(), right.iterator(), listener);
+        assertEquals(listener.events, Arrays.asList("L:a/1", "B:a/2", "B:b/1", "R:c/7"));
+    }
+
+    @Test(groups = "stream")
+    public void testDiffLatestVersionChanged() throws Exception {
+        List<TemporalNamespaceId<String>> left = Arrays.asList(tnsId("a", 1L), tnsId("a", 2L), tnsId("b", 5L));
+        List<TemporalNamespaceId<String>> right = Arrays.asList(tnsId("a", 2L), tnsId("a", 3L), tnsId("b", 4L), tnsId("b", 5L));
+        RecordingListener<TemporalNamespaceId<String>> listener = new RecordingListener<>();
+        SortedIdDiff.diff(left.iterator(), right.iterator(), listener);
+        assertEquals(listener.events, Arrays.asList(
+                "L:" + tnsId("a", 1L),
+                "B:" + tnsId("a", 2L),
+                "R:" + tnsId("a", 3L),
+                "R:" + tnsId("b", 4L),
+                "B:" + tnsId("b", 5L)));
+    }
+
+    @Test(groups = "stream")
+    public void testDiffVersionChangedPairsLatestVersions() throws Exception {
+        List<TemporalNamespaceId<String>> left = Arrays.asList(tnsId("a", 1L), tnsId("a", 3L));
+        List<TemporalNamespaceId<String>> right = Arrays.asList(tnsId("a", 2L), tnsId("a", 4L), tnsId("a", 5L));
+        RecordingListener<TemporalNamespaceId<String>> listener = new RecordingListener<>();
+        SortedIdDiff.diff(left.iterator(), right.iterator(), listener);
+        assertEquals(listener.events, Arrays.asList(
+                "L:" + tnsId("a", 1L),
+                "R:" + tnsId("a", 2L),
+                "R:" + tnsId("a", 4L),
+                "V:" + tnsId("a", 3L) + "|" + tnsId("a", 5L)));
+    }
+
+    @Test(groups = "stream")
+    public void testDiffSingleVersionAgainstSeveral() throws Exception {
+        List<TemporalNamespaceId<String>> left = Collections.singletonList(tnsId("a", 1L));
+        List<TemporalNamespaceId<String>> right = Arrays.asList(tnsId("a", 2L), tnsId("a", 3L), tnsId("a", 4L));
+        RecordingListener<TemporalNamespaceId<String>> listener = new RecordingListener<>();
+        SortedIdDiff.diff(left.iterator(), right.iterator(), listener);
+        // Version change of the projection is reported after its other events
+        assertEquals(listener.events, Arrays.asList(
+                "R:" + tnsId("a", 2L),
+                "R:" + tnsId("a", 3L),
+                "V:" + tnsId("a", 1L) + "|" + tnsId("a", 4L)));
+        listener.events.clear();
+        SortedIdDiff.diff(right.iterator(), left.iterator(), listener);
+        assertEquals(listener.events, Arrays.asList(
+                "L:" + tnsId("a", 2L),
+                "L:" + tnsId("a", 3L),
+                "V:" + tnsId("a", 4L) + "|" + tnsId("a", 1L)));
+    }
+
+    @Test(groups = "stream")
+    public void testDiffOverlappingHistoriesNotVersionChanged() throws Exception {
+        List<TemporalNamespaceId<String>> left = Arrays.asList(tnsId("a", 1L), tnsId("a", 2L));
+        List<TemporalNamespaceId<String>> right = Arrays.asList(tnsId("a", 2L), tnsId("a", 3L));
+        RecordingListener<TemporalNamespaceId<String>> listener = new RecordingListener<>();
+        SortedIdDiff.diff(left.iterator(), right.iterator(), listener);
+        // Latest left version is matched on the right, so nothing is paired
+        assertEquals(listener.events, Arrays.asList(
+                "L:" + tnsId("a", 1L),
+                "B:" + tnsId("a", 2L),
+                "R:" + tnsId("a", 3L)));
+        listener.events.clear();
+        SortedIdDiff.diff(right.iterator(), left.iterator(), listener);
+        assertEquals(listener.events, Arrays.asList(
+                "R:" + tnsId("a", 1L),
+                "B:" + tnsId("a", 2L),
+                "L:" + tnsId("a", 3L)));
+    }
+
+    @Test(groups = "stream")
+    public void testDiffEmptySources() throws Exception {
+        List<NamespaceId<Integer>> ids = Arrays.asList(nsId("a", 1), nsId("b", 2));
+        RecordingListener<NamespaceId<Integer>> listener = new RecordingListener<>();
+        SortedIdDiff.diff(ids.iterator(), Collections.<NamespaceId<Integer>>emptyIterator(), listener);
+        SortedIdDiff.diff(Collections.<NamespaceId<Integer>>emptyIterator(), ids.iterator(), listener);
+        assertEquals(listener.events, Arrays.asList("L:a/1", "L:b/2", "R:a/1", "R:b/2"));
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalStateException.class)
+    public void testDiffUnsortedSource() throws Exception {
+        List<NamespaceId<Integer>> left = Arrays.asList(nsId("b", 1), nsId("a", 1));
+        SortedIdDiff.diff(left.iterator(), Collections.<NamespaceId<Integer>>emptyIterator(),
+                          new RecordingListener<>());
+        fail("Expected IllegalStateException on unsorted source");
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalArgumentException.class)
+    public void testDiffNullListener() throws Exception {
+        SortedIdDiff.diff(Collections.<NamespaceId<Integer>>emptyIterator(),
+                          Collections.<NamespaceId<Integer>>emptyIterator(),
+                          null);
+        fail("Expected IllegalArgumentException on null listener");
+    }
+
+    static NamespaceId<Integer> nsId(String ns, int id) {
+        return new NamespaceId<>(ns, id);
+    }
+
+    static TemporalNamespaceId<String> tnsId(String id, long asOfSeconds) {
+        return new TemporalNamespaceId<>("temporal", id, asOfSeconds);
+    }
+
+    static class RecordingListener<R extends NamespaceId<?>> implements IdDiffListener<R> {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onlyLeft(R left) {
+            events.add("L:" + left);
+        }
+
+        @Override
+        public void onlyRight(R right) {
+            events.add("R:" + right);
+        }
+
+        @Override
+        public void both(R left, R right) {
+            assertEquals(left, right);
+            events.add("B:" + left);
+        }
+
+        @Override
+        public void versionChanged(R left, R right) {
+            events.add("V:" + left + "|" + right);
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.stream;
+
+import io.github.davejoyce.id.IdComparators;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code SortedIdMerger}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class SortedIdMergerTest {
+
+    @DataProvider
+    public Object[][] sourceCounts() {
+        return new Object[][] {
+                new Object[]{ 0 },
+                new Object[]{ 1 },
+                new Object[]{ 2 },
+                new Object[]{ 3 },
+                new Object[]{ 8 },
+                new Object[]{ 13 },
+        };
+    }
+
+    @Test(dataProvider = "sourceCounts", groups = "stream")
+    public void testMergeMatchesSort(int sourceCount) throws Exception {
+        Random random = new Random(sourceCount);
+        List<List<NamespaceId<Integer>>> sources = new ArrayList<>();
+        List<NamespaceId<Integer>> expected = new ArrayList<>();
+        for (int s = 0; s < sourceCount; s++) {
+            List<NamespaceId<Integer>> source = new ArrayList<>();
+            int size = random.nextInt(50);
+            for (int i = 0; i < size; i++) {
+                source.add(new NamespaceId<>("ns" + random.nextInt(3), random.nextInt(100)));
+            }
+            Collections.sort(source);
+            sources.add(source);
+            expected.addAll(source);
+        }
+        Collections.sort(expected);
+
+        List<Iterator<NamespaceId<Integer>>> iterators = new ArrayList<>();
+        sources.forEach(source -> iterators.add(source.iterator()));
+        SortedIdMerger<Integer, NamespaceId<Integer>> merger = SortedIdMerger.of(iterators);
+        assertEquals(merger.getSourceCount(), sourceCount);
+        List<NamespaceId<Integer>> actual = new ArrayList<>();
+        while (merger.hasNext()) {
+            NamespaceId<Integer> id = merger.next();
+            assertTrue(sources.get(merger.lastSource()).contains(id));
+            actual.add(id);
+        }
+        assertEquals(actual, expected);
+    }
+
+    @Test(groups = "stream", expectedExceptions = NoSuchElementException.class)
+    public void testNextExhausted() throws Exception {
+        SortedIdMerger<Integer, NamespaceId<Integer>> merger =
+                SortedIdMerger.of(Collections.singletonList(Collections.<NamespaceId<Integer>>emptyIterator()));
+        assertFalse(merger.hasNext());
+        assertEquals(merger.lastSource(), -1);
+        merger.next();
+    }
+
+    @Test(groups = "stream")
+    public void testForEachGroupNatural() throws Exception {
+        List<TemporalNamespaceId<String>> s0 = Arrays.asList(tnsId("a", 1L), tnsId("b", 1L));
+        List<TemporalNamespaceId<String>> s1 = Arrays.asList(tnsId("a", 1L), tnsId("a", 2L));
+        List<TemporalNamespaceId<String>> s2 = Arrays.asList(tnsId("b", 1L));
+        SortedIdMerger<String, TemporalNamespaceId<String>> merger =
+                SortedIdMerger.of(Arrays.asList(s0.iterator(), s1.iterator(), s2.iterator()));
+        List<String> groups = new ArrayList<>();
+        merger.forEachGroup(IdComparators.natural(), (id, sources) -> groups.add(id + "=" + sources));
+        assertEquals(groups, Arrays.asList(
+                tnsId("a", 1L) + "={0, 1}",
+                tnsId("a", 2L) + "={1}",
+                tnsId("b", 1L) + "={0, 2}"));
+    }
+
+    @Test(groups = "stream")
+    public void testForEachGroupByNamespaceId() throws Exception {
+        List<TemporalNamespaceId<String>> s0 = Arrays.asList(tnsId("a", 1L), tnsId("c", 1L));
+        List<TemporalNamespaceId<String>> s1 = Arrays.asList(tnsId("a", 2L), tnsId("b", 3L));
+        SortedIdMerger<String, TemporalNamespaceId<String>> merger =
+                SortedIdMerger.of(Arrays.asList(s0.iterator(), s1.iterator()));
+        List<BitSet> groups = new ArrayList<>();
+        merger.forEachGroup(IdComparators.byNamespaceId(), (id, sources) -> groups.add((BitSet)sources.clone()));
+        assertEquals(groups.size(), 3);
+        assertEquals(groups.get(0).cardinality(), 2);
+        assertTrue(groups.get(1).get(1));
+        assertTrue(groups.get(2).get(0));
+    }
+
+    @Test(groups = "stream", expectedExceptions = IllegalStateException.class)
+    public void testUnsortedSource() throws Exception {
+        List<TemporalNamespaceId<String>> s0 = Arrays.asList(tnsId("a", 2L), tnsId("a", 1L));
+        SortedIdMerger<String, TemporalNamespaceId<String>> merger =
+                SortedIdMerger.of(Collections.singletonList(s0.iterator()));
+        while (merger.hasNext()) {
+            merger.next();
+        }
+    }
+
+    private static TemporalNamespaceId<String> tnsId(String id, long asOfSeconds) {
+        return new TemporalNamespaceId<>("temporal", id, asOfSeconds);
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.sync;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code MerkleDigest}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class MerkleDigestTest {
+
+    private static final int DEPTH = 12;
+
+    @Test(groups = "sync")
+    public void testIdenticalStoresHaveNoDifferences() throws Exception {
+        ReplicaStore a = new ReplicaStore();
+        ReplicaStore b = new ReplicaStore();
+        for (int i = 0; i < 1000; i++) {
+            a.add(tnsId("ns" + (i % 3), i, i));
+        }
+        // Add in different order
+        for (int i = 999; i >= 0; i--) {
+            b.add(tnsId("ns" + (i % 3), i, i));
+        }
+        assertTrue(MerkleDigest.diff(a.digest, b.digest).isEmpty());
+        assertEquals(a.digest.nodeHash("ns0", 1), b.digest.nodeHash("ns0", 1));
+        assertEquals(a.digest.size("ns0"), 334L);
+    }
+
+    @Test(groups = "sync")
+    public void testIncrementalAddAndRemove() throws Exception {
+        MerkleDigest digest = new MerkleDigest(DEPTH);
+        TemporalNamespaceId<Integer> id1 = tnsId("ns", 1, 100L);
+        TemporalNamespaceId<Integer> id2 = tnsId("ns", 2, 100L);
+        digest.add(id1);
+        long root = digest.nodeHash("ns", 1);
+        digest.add(id2);
+        assertNotEquals(digest.nodeHash("ns", 1), root);
+        digest.remove(id2);
+        assertEquals(digest.nodeHash("ns", 1), root);
+        digest.remove(id1);
+        assertEquals(digest.nodeHash("ns", 1), 0L);
+        assertTrue(digest.getNamespaces().isEmpty());
+    }
+
+    @Test(groups = "sync")
+    public void testVersionsShareRange() throws Exception {
+        MerkleDigest a = new MerkleDigest(DEPTH);
+        MerkleDigest b = new MerkleDigest(DEPTH);
+        a.add(new BiTemporalNamespaceId<>("ns", "id", 1L, 2L));
+        b.add(new BiTemporalNamespaceId<>("ns", "id", 1L, 3L));
+        List<DigestRange> ranges = MerkleDigest.diff(a, b);
+        assertEquals(ranges.size(), 1);
+        DigestRange range = ranges.get(0);
+        assertEquals(range.getFirstLeaf(), range.getLastLeaf());
+        assertTrue(range.contains(new NamespaceId<>("ns", "id")));
+        assertTrue(range.contains(new TemporalNamespaceId<>("ns", "id", 5L)));
+        assertFalse(range.contains(new NamespaceId<>("other", "id")));
+    }
+
+    @Test(groups = "sync")
+    public void testSyncCostProportionalToDifference() throws Exception {
+        ReplicaStore a = new ReplicaStore();
+        ReplicaStore b = new ReplicaStore();
+        for (int i = 0; i < 20000; i++) {
+            TemporalNamespaceId<Integer> id = tnsId("ns" + (i % 4), i, 1000L);
+            a.add(id);
+            b.add(id);
+        }
+        // Diverge by a handful of IDs, in both directions
+        a.add(tnsId("ns1", 7, 2000L));
+        a.add(tnsId("ns5", 1, 2000L));
+        b.add(tnsId("ns2", 20001, 1000L));
+        b.remove(tnsId("ns3", 11, 1000L));
+
+        CountingView remoteB = new CountingView(b.digest);
+        List<DigestRange> ranges = MerkleDigest.diff(a.digest, remoteB);
+        assertEquals(ranges.size(), 4);
+        // Each differing leaf costs at most 2 node reads per level
+        assertTrue(remoteB.reads.get() <= 5 + (4 * 2 * (DEPTH + 1)),
+                   "Too many node reads: " + remoteB.reads.get());
+
+        // Exchange only the IDs in the differing ranges
+        Set<NamespaceId<Integer>> fromA = a.idsIn(ranges);
+        Set<NamespaceId<Integer>> fromB = b.idsIn(ranges);
+        assertTrue(fromA.size() + fromB.size() < 100);
+        for (NamespaceId<Integer> id : fromA) {
+            if (!b.ids.contains(id)) {
+                b.add(id);
+            }
+        }
+        for (NamespaceId<Integer> id : fromB) {
+            if (!a.ids.contains(id)) {
+                a.add(id);
+            }
+        }
+        assertTrue(MerkleDigest.diff(a.digest, b.digest).isEmpty());
+        assertEquals(a.ids, b.ids);
+    }
+
+    @Test(groups = "sync")
+    public void testMaxDepthManyNamespaces() throws Exception {
+        // Node storage is sparse, so a deep tree per namespace is affordable
+        MerkleDigest a = new MerkleDigest(MerkleDigest.MAX_DEPTH);
+        MerkleDigest b = new MerkleDigest(MerkleDigest.MAX_DEPTH);
+        for (int i = 0; i < 5000; i++) {
+            a.add(tnsId("ns" + (i % 500), i, 1000L));
+        }
+        for (int i = 4999; i >= 0; i--) {
+            b.add(tnsId("ns" + (i % 500), i, 1000L));
+            b.add(tnsId("ns" + (i % 500), i, 2000L));
+        }
+        assertEquals(MerkleDigest.diff(a, b).size(), 5000);
+        for (int i = 0; i < 5000; i++) {
+            b.remove(tnsId("ns" + (i % 500), i, 2000L));
+        }
+        assertTrue(MerkleDigest.diff(a, b).isEmpty());
+        for (int i = 0; i < 5000; i++) {
+            a.remove(tnsId("ns" + (i % 500), i, 1000L));
+        }
+        assertTrue(a.getNamespaces().isEmpty());
+        assertEquals(a.nodeHash("ns0", 1), 0L);
+    }
+
+    @Test(groups = "sync", expectedExceptions = IllegalArgumentException.class)
+    public void testDiffDepthMismatch() throws Exception {
+        MerkleDigest.diff(new MerkleDigest(4), new MerkleDigest(5));
+    }
+
+    @Test(groups = "sync", expectedExceptions = IllegalArgumentException.class)
+    public void testBadDepth() throws Exception {
+        new MerkleDigest(MerkleDigest.MAX_DEPTH + 1);
+    }
+
+    private static TemporalNamespaceId<Integer> tnsId(String ns, int id, long asOfSeconds) {
+        return new TemporalNamespaceId<>(ns, id, asOfSeconds);
+    }
+
+    /**
+     * In-process stand-in for a replica: a sorted ID set and its digest.
+     */
+    private static final class ReplicaStore {
+
+        final TreeSet<NamespaceId<Integer>> ids = new TreeSet<>();
+        final MerkleDigest digest = new MerkleDigest(DEPTH);
+
+        void add(NamespaceId<Integer> id) {
+            if (ids.add(id)) {
+                digest.add(id);
+            }
+        }
+
+        void remove(NamespaceId<Integer> id) {
+            if (ids.remove(id)) {
+                digest.remove(id);
+            }
+        }
+
+        Set<NamespaceId<Integer>> idsIn(List<DigestRange> ranges) {
+            return ids.stream()
+                      .filter(id -> ranges.stream().anyMatch(r -> r.contains(id)))
+                      .collect(Collectors.toSet());
+        }
+
+    }
+
+    /**
+     * View which counts node hash reads, as a remote view would incur them.
+     */
+    private static final class CountingView implements MerkleView {
+
+        final MerkleView delegate;
+        final AtomicInteger reads = new AtomicInteger();
+
+        CountingView(MerkleView delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int getDepth() {
+            return delegate.getDepth();
+        }
+
+        @Override
+        public Set<String> getNamespaces() {
+            return delegate.getNamespaces();
+        }
+
+        @Override
+        public long nodeHash(String namespace, int node) {
+            reads.incrementAndGet();
+            return delegate.nodeHash(namespace, node);
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code AsOfJoin}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class AsOfJoinTest {
+
+    @Test(groups = "temporal")
+    public void testJoin() throws Exception {
+        List<TemporalNamespaceId<Integer>> trades = Arrays.asList(
+                new TemporalNamespaceId<>("a", 1, 5L),
+                new TemporalNamespaceId<>("a", 1, 10L),
+                new TemporalNamespaceId<>("a", 1, 25L),
+                new TemporalNamespaceId<>("a", 2, 25L),
+                new TemporalNamespaceId<>("c", 1, 25L));
+        List<TemporalNamespaceId<Integer>> refs = Arrays.asList(
+                new TemporalNamespaceId<>("a", 1, 10L),
+                new TemporalNamespaceId<>("a", 1, 20L),
+                new TemporalNamespaceId<>("a", 1, 30L),
+                new TemporalNamespaceId<>("b", 1, 0L),
+                new TemporalNamespaceId<>("c", 1, 0L));
+        AsOfJoin<TemporalNamespaceId<Integer>, TemporalNamespaceId<Integer>, Integer> join =
+                AsOfJoin.of(Function.identity(), Function.identity());
+        List<TemporalNamespaceId<Integer>> matches = join.join(trades.stream(), refs.stream(), (l, r) -> r)
+                                                         .collect(Collectors.toList());
+        assertEquals(matches, Arrays.asList(null, refs.get(0), refs.get(1), null, refs.get(4)));
+
+        matches = join.withTolerance(Duration.ofSeconds(5L))
+                      .join(trades.stream(), refs.stream(), (l, r) -> r)
+                      .collect(Collectors.toList());
+        assertEquals(matches, Arrays.asList(null, refs.get(0), refs.get(1), null, null));
+    }
+
+    @Test(groups = "temporal")
+    public void testBitemporalJoin() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> trades = Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 15L, 100L),
+                new BiTemporalNamespaceId<>("a", 1, 15L, 250L),
+                new BiTemporalNamespaceId<>("a", 1, 25L, 120L),
+                new BiTemporalNamespaceId<>("a", 1, 25L, 400L));
+        List<BiTemporalNamespaceId<Integer>> refs = Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 10L, 50L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 200L),
+                new BiTemporalNamespaceId<>("a", 1, 20L, 300L));
+        AsOfJoin<BiTemporalNamespaceId<Integer>, BiTemporalNamespaceId<Integer>, Integer> join =
+                AsOfJoin.bitemporal(Function.identity(), Function.identity());
+        assertEquals(join.join(trades.stream(), refs.stream(), (l, r) -> r).collect(Collectors.toList()),
+                     Arrays.asList(refs.get(0), refs.get(1), refs.get(0), refs.get(2)));
+        assertEquals(join.withAsAtCutoff(Instant.ofEpochSecond(250L))
+                         .join(trades.stream(), refs.stream(), (l, r) -> r)
+                         .collect(Collectors.toList()),
+                     Arrays.asList(refs.get(0), refs.get(1), refs.get(0), refs.get(1)));
+        // Fixed cutoff only
+        assertEquals(AsOfJoin.<BiTemporalNamespaceId<Integer>, BiTemporalNamespaceId<Integer>, Integer>of(
+                             Function.identity(), Function.identity())
+                         .withAsAtCutoff(Instant.ofEpochSecond(100L))
+                         .join(trades.stream(), refs.stream(), (l, r) -> r)
+                         .collect(Collectors.toList()),
+                     Arrays.asList(refs.get(0), refs.get(0), refs.get(0), refs.get(0)));
+    }
+
+    @Test(groups = "temporal")
+    public void testJoinMatchesNestedLookup() throws Exception {
+        Random random = new Random(1L);
+        List<Quote> trades = randomQuotes(random, 3000);
+        List<Quote> refs = randomQuotes(random, 3000);
+        Duration tolerance = Duration.ofSeconds(30L);
+        AsOfJoin<Quote, Quote, Integer> join = AsOfJoin.<Quote, Quote, Integer>bitemporal(q -> q.key, q -> q.key)
+                .withTolerance(tolerance);
+        List<Quote> actual = join.join(trades.stream(), refs.stream(), (l, r) -> r).collect(Collectors.toList());
+
+        TreeMap<String, List<Quote>> byId = new TreeMap<>();
+        for (Quote r : refs) {
+            byId.computeIfAbsent(r.key.getNamespace() + ':' + r.key.getId(), k -> new ArrayList<>()).add(r);
+        }
+        for (int i = 0; i < trades.size(); i++) {
+            BiTemporalNamespaceId<Integer> lk = trades.get(i).key;
+            Quote expected = null;
+            for (Quote r : byId.getOrDefault(lk.getNamespace() + ':' + lk.getId(), Collections.emptyList())) {
+                if (!r.key.getAsOfTime().isAfter(lk.getAsOfTime())
+                    && !r.key.getAsAtTime().isAfter(lk.getAsAtTime())
+                    && !r.key.getAsOfTime().plus(tolerance).isBefore(lk.getAsOfTime())) {
+                    expected = r;
+                }
+            }
+            assertSame(actual.get(i), expected, lk.toString());
+        }
+    }
+
+    @Test(groups = "temporal")
+    public void testParallelPartitions() throws Exception {
+        Random random = new Random(2L);
+        List<Quote> trades = randomQuotes(random, 5000);
+        List<Quote> refs = randomQuotes(random, 5000);
+        AsOfJoin<Quote, Quote, Integer> join = AsOfJoin.of(q -> q.key, q -> q.key);
+        List<List<Quote>> leftPartitions = partition(trades);
+        List<List<Quote>> rightPartitions = partition(refs);
+        assertEquals(join.join(leftPartitions, rightPartitions, true, (l, r) -> r).collect(Collectors.toList()),
+                     join.join(trades.stream(), refs.stream(), (l, r) -> r).collect(Collectors.toList()));
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalStateException.class)
+    public void testUnsortedRight() throws Exception {
+        List<TemporalNamespaceId<Integer>> left = Collections.singletonList(new TemporalNamespaceId<>("b", 1, 5L));
+        List<TemporalNamespaceId<Integer>> right = Arrays.asList(new TemporalNamespaceId<>("a", 1, 5L),
+                                                                 new TemporalNamespaceId<>("a", 0, 5L));
+        Iterator<Object> results = AsOfJoin.<TemporalNamespaceId<Integer>, TemporalNamespaceId<Integer>, Integer>of(
+                Function.identity(), Function.identity()).join(left.iterator(), right.iterator(), (l, r) -> r);
+        results.next();
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalArgumentException.class)
+    public void testMismatchedPartitions() throws Exception {
+        AsOfJoin.<Quote, Quote, Integer>of(q -> q.key, q -> q.key)
+                .join(Collections.singletonList(Collections.<Quote>emptyList()), Collections.<List<Quote>>emptyList(),
+                      false, (l, r) -> r);
+    }
+
+    private static List<List<Quote>> partition(final List<Quote> quotes) {
+        TreeMap<String, List<Quote>> partitions = new TreeMap<>();
+        for (int ns = 0; ns < 4; ns++) {
+            partitions.put("ns" + ns, new ArrayList<>());
+        }
+        for (Quote q : quotes) {
+            partitions.get(q.key.getNamespace()).add(q);
+        }
+        return new ArrayList<>(partitions.values());
+    }
+
+    private static List<Quote> randomQuotes(final Random random, final int count) {
+        List<Quote> quotes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            quotes.add(new Quote(new BiTemporalNamespaceId<>("ns" + random.nextInt(4), random.nextInt(20),
+                                                             random.nextInt(1000), random.nextInt(1000)),
+                                 random.nextDouble()));
+        }
+        quotes.sort((a, b) -> a.key.compareTo(b.key));
+        return quotes;
+    }
+
+    private static final class Quote {
+
+        final BiTemporalNamespaceId<Integer> key;
+        final double price;
+
+        Quote(final BiTemporalNamespaceId<Integer> key, final double price) {
+            this.key = key;
+            this.price = price;
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code BitemporalSnapshotView}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class BitemporalSnapshotViewTest {
+
+    @Test(groups = "temporal")
+    public void testApply() throws Exception {
+        BitemporalSnapshotView<Integer> view = new BitemporalSnapshotView<>();
+        BiTemporalNamespaceId<Integer> first = new BiTemporalNamespaceId<>("a", 1, 10L, 100L);
+        BiTemporalNamespaceId<Integer> restated = new BiTemporalNamespaceId<>("a", 1, 10L, 200L);
+        BiTemporalNamespaceId<Integer> stale = new BiTemporalNamespaceId<>("a", 1, 10L, 150L);
+        BiTemporalNamespaceId<Integer> later = new BiTemporalNamespaceId<>("a", 1, 20L, 120L);
+        List<String> changes = new ArrayList<>();
+        view.addListener((previous, current, sequence) ->
+                changes.add(sequence + ":" + (null == previous ? "-" : previous.getAsAtEpochSecond())
+                            + ">" + current.getAsAtEpochSecond()));
+
+        assertTrue(view.apply(first));
+        BitemporalSnapshotView.Snapshot<Integer> pinned = view.snapshot();
+        assertTrue(view.apply(restated));
+        assertFalse(view.apply(stale));
+        assertFalse(view.apply(restated));
+        assertTrue(view.apply(later));
+
+        assertEquals(changes, Arrays.asList("1:->100", "2:100>200", "3:->120"));
+        BitemporalSnapshotView.Snapshot<Integer> snapshot = view.snapshot();
+        assertEquals(snapshot.getSequence(), 3L);
+        assertEquals(snapshot.size(), 2);
+        assertEquals(snapshot.get(new TemporalNamespaceId<>("a", 1, 10L)), restated);
+        assertNull(snapshot.get(new TemporalNamespaceId<>("a", 1, 11L)));
+        NamespaceId<Integer> id = new NamespaceId<>("a", 1);
+        assertNull(snapshot.getEffective(id, Instant.ofEpochSecond(9L)));
+        assertEquals(snapshot.getEffective(id, Instant.ofEpochSecond(15L)), restated);
+        assertEquals(snapshot.getEffective(id, Instant.ofEpochSecond(25L)), later);
+        assertNull(snapshot.getEffective(new NamespaceId<>("a", 2), Instant.ofEpochSecond(25L)));
+
+        // Pinned snapshot is unaffected
+        assertEquals(pinned.getSequence(), 1L);
+        assertEquals(pinned.size(), 1);
+        assertEquals(pinned.get(restated), first);
+    }
+
+    @Test(groups = "temporal")
+    public void testMatchesRebuild() throws Exception {
+        Random random = new Random(1L);
+        BitemporalSnapshotView<Integer> view = new BitemporalSnapshotView<>();
+        TreeMap<TemporalNamespaceId<Integer>, BiTemporalNamespaceId<Integer>> cache = new TreeMap<>();
+        view.addListener((previous, current, sequence) -> {
+            assertEquals(cache.put(current.toTemporalNamespaceId(), current), previous);
+        });
+        List<BiTemporalNamespaceId<Integer>> feed = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            feed.add(new BiTemporalNamespaceId<>("ns" + random.nextInt(4), random.nextInt(200),
+                                                 random.nextInt(30), random.nextInt(1000)));
+        }
+        view.applyAll(feed);
+
+        Map<TemporalNamespaceId<Integer>, BiTemporalNamespaceId<Integer>> rebuilt = new TreeMap<>();
+        for (BiTemporalNamespaceId<Integer> id : feed) {
+            rebuilt.merge(id.toTemporalNamespaceId(), id, (a, b) -> b.getAsAtTime().isAfter(a.getAsAtTime()) ? b : a);
+        }
+        BitemporalSnapshotView.Snapshot<Integer> snapshot = view.snapshot();
+        assertEquals(snapshot.size(), rebuilt.size());
+        assertEquals(snapshot.stream().collect(Collectors.toList()), new ArrayList<>(rebuilt.values()));
+        assertEquals(new ArrayList<>(cache.values()), new ArrayList<>(rebuilt.values()));
+        for (BiTemporalNamespaceId<Integer> id : feed) {
+            assertEquals(snapshot.get(id), rebuilt.get(id.toTemporalNamespaceId()));
+        }
+    }
+
+    @Test(groups = "temporal")
+    public void testReadersDuringUpdates() throws Exception {
+        BitemporalSnapshotView<Integer> view = new BitemporalSnapshotView<>();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Boolean>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        BitemporalSnapshotView.Snapshot<Integer> snapshot = view.snapshot();
+                        if (snapshot.stream().count() != snapshot.size()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (int i = 0; i < 5000; i++) {
+                view.apply(new BiTemporalNamespaceId<>("a", i, 0L, 0L));
+            }
+            for (Future<Boolean> reader : readers) {
+                assertTrue(reader.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(view.snapshot().size(), 5000);
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code RestatementDetector}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class RestatementDetectorTest {
+
+    @Test(groups = "temporal")
+    public void testSorted() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> ids = Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 10L, 10L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 12L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 12L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 20L),
+                new BiTemporalNamespaceId<>("a", 1, 15L, 15L),
+                new BiTemporalNamespaceId<>("a", 2, 15L, 16L),
+                new BiTemporalNamespaceId<>("b", 2, 15L, 9L),
+                new BiTemporalNamespaceId<>("b", 2, 15L, 14L));
+        List<String> events = new ArrayList<>();
+        RestatementDetector<Integer> detector = RestatementDetector.sorted(
+                (previous, restatement, lag) -> events.add(previous.getAsAtEpochSecond() + ">"
+                                                           + restatement.getAsAtEpochSecond() + ":" + lag));
+        ids.forEach(detector);
+        detector.flush();
+        assertEquals(events, Arrays.asList("10>12:2000000000", "12>20:10000000000", "9>14:-1000000000"));
+
+        RestatementStatistics a = detector.getStatistics("a");
+        assertEquals(a.getRecordCount(), 5L);
+        assertEquals(a.getVersionCount(), 3L);
+        assertEquals(a.getRestatedVersionCount(), 1L);
+        assertEquals(a.getRestatementCount(), 2L);
+        assertEquals(a.getRestatementRate(), 1.0 / 3.0, 1e-9);
+        assertEquals(a.getLagHistogram().getCount(), 2L);
+        assertTrue(a.getLagHistogram().getMax() >= 10_000_000_000L);
+        RestatementStatistics b = detector.getStatistics("b");
+        assertEquals(b.getRestatementCount(), 1L);
+        assertEquals(b.getLagHistogram().getMax(), 0L);
+        assertEquals(new ArrayList<>(detector.getStatistics().keySet()), Arrays.asList("a", "b"));
+        assertNull(detector.getStatistics("c"));
+    }
+
+    @Test(groups = "temporal")
+    public void testReordering() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> ids = randomIds(20000, 1L);
+        Collections.sort(ids);
+        RestatementDetector<Integer> sorted = RestatementDetector.sorted((p, r, lag) -> { });
+        ids.forEach(sorted);
+
+        // Displace each ID by fewer than window positions
+        int window = 16;
+        List<BiTemporalNamespaceId<Integer>> shuffled = new ArrayList<>(ids);
+        Random random = new Random(2L);
+        for (int i = 0; i + window / 2 < shuffled.size(); i += window / 2) {
+            Collections.shuffle(shuffled.subList(i, i + window / 2), random);
+        }
+        long[] count = new long[1];
+        RestatementDetector<Integer> reordering = RestatementDetector.reordering(window, (p, r, lag) -> count[0]++);
+        shuffled.forEach(reordering);
+        reordering.flush();
+
+        long expected = 0L;
+        for (RestatementStatistics stats : sorted.getStatistics().values()) {
+            RestatementStatistics other = reordering.getStatistics(stats.getNamespace());
+            assertEquals(other.getRecordCount(), stats.getRecordCount());
+            assertEquals(other.getVersionCount(), stats.getVersionCount());
+            assertEquals(other.getRestatedVersionCount(), stats.getRestatedVersionCount());
+            assertEquals(other.getRestatementCount(), stats.getRestatementCount());
+            expected += stats.getRestatementCount();
+        }
+        assertTrue(0L < expected);
+        assertEquals(count[0], expected);
+    }
+
+    @Test(groups = "temporal")
+    public void testStatisticsReadConcurrently() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> ids = randomIds(200000, 7L);
+        Collections.sort(ids);
+        RestatementDetector<Integer> detector = RestatementDetector.sorted((p, r, lag) -> { });
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long last = 0L;
+            while (!done.get() && null == failure.get()) {
+                long total = 0L;
+                for (RestatementStatistics stats : detector.getStatistics().values()) {
+                    total += stats.getRecordCount();
+                    double rate = stats.getRestatementRate();
+                    if (0.0 > rate || 1.0 < rate) {
+                        failure.set("Rate out of range: " + stats);
+                    }
+                }
+                if (total < last) {
+                    failure.set("Record count decreased from " + last + " to " + total);
+                }
+                last = total;
+            }
+        });
+        reader.start();
+        ids.forEach(detector);
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+        long total = 0L;
+        for (RestatementStatistics stats : detector.getStatistics().values()) {
+            total += stats.getRecordCount();
+        }
+        assertEquals(total, new TreeSet<>(ids).size());
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalStateException.class)
+    public void testBeyondWindow() throws Exception {
+        RestatementDetector<Integer> detector = RestatementDetector.reordering(1, (p, r, lag) -> { });
+        detector.accept(new BiTemporalNamespaceId<>("a", 3, 0L, 0L));
+        detector.accept(new BiTemporalNamespaceId<>("a", 2, 0L, 0L));
+        detector.accept(new BiTemporalNamespaceId<>("a", 1, 0L, 0L));
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeWindow() throws Exception {
+        RestatementDetector.reordering(-1, (p, r, lag) -> { });
+    }
+
+    private static List<BiTemporalNamespaceId<Integer>> randomIds(final int count, final long seed) {
+        Random random = new Random(seed);
+        List<BiTemporalNamespaceId<Integer>> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long asOf = random.nextInt(50);
+            ids.add(new BiTemporalNamespaceId<>("ns" + random.nextInt(4), random.nextInt(100),
+                                                asOf, asOf + random.nextInt(20)));
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code RetentionPolicy}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class RetentionPolicyTest {
+
+    private static final List<BiTemporalNamespaceId<Integer>> HISTORY = Arrays.asList(
+            new BiTemporalNamespaceId<>("a", 1, 0L, 0L),
+            new BiTemporalNamespaceId<>("a", 1, 1000L, 1000L),
+            new BiTemporalNamespaceId<>("a", 1, 1000L, 5000L),
+            new BiTemporalNamespaceId<>("a", 1, 3000L, 3000L),
+            new BiTemporalNamespaceId<>("a", 1, 4000L, 4000L),
+            new BiTemporalNamespaceId<>("a", 1, 7300L, 7300L));
+
+    @Test(groups = "temporal")
+    public void testKeepAll() throws Exception {
+        assertRetained(RetentionPolicy.keepAll(), 0L, true, true, true, true, true, true);
+    }
+
+    @Test(groups = "temporal")
+    public void testKeepLast() throws Exception {
+        assertRetained(RetentionPolicy.keepLast(2), 0L, false, false, false, false, true, true);
+        assertRetained(RetentionPolicy.keepLast(10), 0L, true, true, true, true, true, true);
+        // Restatements are kept with their version, not counted as versions
+        assertRetained(RetentionPolicy.keepLast(4), 0L, false, true, true, true, true, true);
+        List<BiTemporalNamespaceId<Integer>> restated = Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 100L, 100L),
+                new BiTemporalNamespaceId<>("a", 1, 200L, 200L),
+                new BiTemporalNamespaceId<>("a", 1, 200L, 300L),
+                new BiTemporalNamespaceId<>("a", 1, 200L, 400L));
+        boolean[] retained = { true, true, true, true };
+        RetentionPolicy.keepLast(1).retain(restated, 0L, retained);
+        assertEquals(retained, new boolean[] { false, true, true, true });
+        Arrays.fill(retained, true);
+        RetentionPolicy.keepLast(2).retain(restated, 0L, retained);
+        assertEquals(retained, new boolean[] { true, true, true, true });
+    }
+
+    @Test(groups = "temporal")
+    public void testKeepNewerThan() throws Exception {
+        // Version effective at cutoff 3500 is that of 3000
+        assertRetained(RetentionPolicy.keepNewerThan(Duration.ofSeconds(4000L)), 7500L,
+                       false, false, false, true, true, true);
+        // Version effective at cutoff 2000 is that of 1000, with its restatement
+        assertRetained(RetentionPolicy.keepNewerThan(Duration.ofSeconds(5500L)), 7500L,
+                       false, true, true, true, true, true);
+        assertRetained(RetentionPolicy.keepNewerThan(Duration.ZERO), 8000L,
+                       false, false, false, false, false, true);
+    }
+
+    @Test(groups = "temporal")
+    public void testKeepOnePerBucket() throws Exception {
+        // Hourly: 0..3599 holds 0, 1000, 3000; 3600..7199 holds 4000; 7200.. holds 7300
+        assertRetained(RetentionPolicy.keepOnePerBucket(TimeBucketing.hours()), 0L,
+                       false, false, false, true, true, true);
+        assertRetained(RetentionPolicy.keepOnePerBucket(TimeBucketing.fixedWidth(Duration.ofSeconds(2000L))), 0L,
+                       false, true, true, true, true, true);
+    }
+
+    @Test(groups = "temporal")
+    public void testKeepLatestAsAt() throws Exception {
+        assertRetained(RetentionPolicy.keepLatestAsAt(), 0L, true, false, true, true, true, true);
+        List<TemporalNamespaceId<Integer>> unitemporal = Arrays.asList(new TemporalNamespaceId<>("a", 1, 0L),
+                                                                       new TemporalNamespaceId<>("a", 1, 1L));
+        boolean[] retained = {true, true};
+        RetentionPolicy.keepLatestAsAt().retain(unitemporal, 0L, retained);
+        assertEquals(retained, new boolean[] {true, true});
+    }
+
+    @Test(groups = "temporal")
+    public void testAllOf() throws Exception {
+        assertRetained(RetentionPolicy.allOf(RetentionPolicy.keepLatestAsAt(), RetentionPolicy.keepLast(4)), 0L,
+                       false, false, true, true, true, true);
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalArgumentException.class)
+    public void testKeepLastZero() throws Exception {
+        RetentionPolicy.keepLast(0);
+    }
+
+    private static void assertRetained(final RetentionPolicy policy, final long now, final boolean... expected) {
+        boolean[] retained = new boolean[HISTORY.size()];
+        Arrays.fill(retained, true);
+        policy.retain(HISTORY, now, retained);
+        assertEquals(retained, expected);
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@code TemporalMap} compared with a
+ * {@code ConcurrentHashMap} of {@code TreeMap} version histories: as-of
+ * reads, puts of new versions, and consistent snapshots, which the
+ * {@code ConcurrentHashMap} can provide only by copying. Run from the IDE,
+ * or with <code>mvn test-compile</code> followed by running this class's
+ * <code>main</code> method on the test classpath.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemporalMapBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int VERSIONS = 8;
+
+    @Param({"10000", "1000000"})
+    public int idCount;
+
+    private NamespaceId<Integer>[] ids;
+    private Instant[] times;
+    private TemporalMap<Integer, Long> temporalMap;
+    private ConcurrentHashMap<NamespaceId<Integer>, TreeMap<Instant, Long>> treeMaps;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Random random = new Random(1L);
+        temporalMap = new TemporalMap<>();
+        treeMaps = new ConcurrentHashMap<>();
+        for (int i = 0; i < idCount; i++) {
+            NamespaceId<Integer> id = new NamespaceId<>("ns" + (i % 16), i);
+            for (int v = 0; v < VERSIONS; v++) {
+                temporalMap.put(new TemporalNamespaceId<>(id.getNamespace(), id.getId(), v * 100L), (long) v);
+                treeMaps.computeIfAbsent(id, k -> new TreeMap<>()).put(Instant.ofEpochSecond(v * 100L), (long) v);
+            }
+        }
+        ids = new NamespaceId[BATCH_SIZE];
+        times = new Instant[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int id = random.nextInt(idCount);
+            ids[i] = new NamespaceId<>("ns" + (id % 16), id);
+            times[i] = Instant.ofEpochSecond(random.nextInt(VERSIONS * 100));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long getTemporalMap() {
+        long sum = 0L;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sum += temporalMap.get(ids[i], times[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long getTreeMaps() {
+        long sum = 0L;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sum += treeMaps.get(ids[i]).floorEntry(times[i]).getValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Long putTemporalMap() {
+        int i = next++ & (BATCH_SIZE - 1);
+        return temporalMap.put(new TemporalNamespaceId<>(ids[i].getNamespace(), ids[i].getId(), times[i]), 1L);
+    }
+
+    @Benchmark
+    public Long putTreeMaps() {
+        int i = next++ & (BATCH_SIZE - 1);
+        TreeMap<Instant, Long> history = treeMaps.get(ids[i]);
+        synchronized (history) {
+            return history.put(times[i], 1L);
+        }
+    }
+
+    @Benchmark
+    public TemporalMap.Snapshot<Integer, Long> snapshotTemporalMap() {
+        return temporalMap.snapshot();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<NamespaceId<Integer>, TreeMap<Instant, Long>> snapshotTreeMaps() {
+        Map<NamespaceId<Integer>, TreeMap<Instant, Long>> copy = new HashMap<>(treeMaps.size() * 2);
+        treeMaps.forEach((id, history) -> {
+            synchronized (history) {
+                copy.put(id, new TreeMap<>(history));
+            }
+        });
+        return copy;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(TemporalMapBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+
+}
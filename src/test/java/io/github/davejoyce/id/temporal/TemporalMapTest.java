@@ -0,0 +1,185 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code TemporalMap}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class TemporalMapTest {
+
+    @Test(groups = "temporal")
+    public void testPutAndGet() throws Exception {
+        TemporalMap<Integer, String> map = new TemporalMap<>();
+        NamespaceId<Integer> id = new NamespaceId<>("a", 1);
+        assertNull(map.put(new TemporalNamespaceId<>("a", 1, 20L), "v20"));
+        assertNull(map.put(new TemporalNamespaceId<>("a", 1, 10L), "v10"));
+        assertEquals(map.put(new TemporalNamespaceId<>("a", 1, 10L), "v10b"), "v10");
+        assertNull(map.put(new BiTemporalNamespaceId<>("b", 1, 10L, 99L), "b10"));
+        assertEquals(map.size(), 3L);
+        assertEquals(map.snapshot().getIdCount(), 2);
+
+        assertNull(map.get(id, Instant.ofEpochSecond(9L)));
+        assertEquals(map.get(id, Instant.ofEpochSecond(10L)), "v10b");
+        assertEquals(map.get(id, Instant.ofEpochSecond(19L, 999)), "v10b");
+        assertEquals(map.get(id, Instant.ofEpochSecond(25L)), "v20");
+        assertEquals(map.get(new TemporalNamespaceId<>("b", 1, 12L)), "b10");
+        assertEquals(map.getLatest(id), "v20");
+        assertNull(map.getLatest(new NamespaceId<>("c", 1)));
+    }
+
+    @Test(groups = "temporal")
+    public void testSnapshotIsolation() throws Exception {
+        TemporalMap<Integer, String> map = new TemporalMap<>();
+        map.put(new TemporalNamespaceId<>("a", 1, 10L), "one");
+        TemporalMap.Snapshot<Integer, String> snapshot = map.snapshot();
+        map.put(new TemporalNamespaceId<>("a", 1, 20L), "two");
+        map.put(new TemporalNamespaceId<>("a", 2, 20L), "other");
+        assertEquals(snapshot.getLatest(new NamespaceId<>("a", 1)), "one");
+        assertNull(snapshot.getLatest(new NamespaceId<>("a", 2)));
+        assertEquals(snapshot.size(), 1L);
+        assertEquals(map.getLatest(new NamespaceId<>("a", 1)), "two");
+    }
+
+    @Test(groups = "temporal")
+    public void testMatchesTreeMaps() throws Exception {
+        Random random = new Random(1L);
+        TemporalMap<Integer, Integer> map = new TemporalMap<>();
+        Map<NamespaceId<Integer>, TreeMap<Long, Integer>> expected = new TreeMap<>();
+        for (int i = 0; i < 50000; i++) {
+            NamespaceId<Integer> id = new NamespaceId<>("ns" + random.nextInt(10), random.nextInt(2000));
+            long t = random.nextInt(100);
+            Integer previous = expected.computeIfAbsent(id, k -> new TreeMap<>()).put(t, i);
+            assertEquals(map.put(new TemporalNamespaceId<>(id.getNamespace(), id.getId(), t), i), previous);
+        }
+        for (Map.Entry<NamespaceId<Integer>, TreeMap<Long, Integer>> e : expected.entrySet()) {
+            for (long t = 0L; t < 100L; t += 7L) {
+                Map.Entry<Long, Integer> floor = e.getValue().floorEntry(t);
+                assertEquals(map.get(e.getKey(), Instant.ofEpochSecond(t)), (null == floor) ? null : floor.getValue());
+            }
+        }
+
+        // Snapshot iteration is in natural order of version
+        List<TemporalNamespaceId<Integer>> versions = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        for (Map.Entry<TemporalNamespaceId<Integer>, Integer> entry : map.snapshot()) {
+            versions.add(entry.getKey());
+            values.add(entry.getValue());
+        }
+        List<Integer> expectedValues = new ArrayList<>();
+        expected.values().forEach(history -> expectedValues.addAll(history.values()));
+        assertEquals(values, expectedValues);
+        assertEquals(versions.size(), map.size());
+        for (int i = 1; i < versions.size(); i++) {
+            assertTrue(0 > versions.get(i - 1).compareTo(versions.get(i)));
+        }
+    }
+
+    @Test(groups = "temporal")
+    public void testForEachView() throws Exception {
+        Random random = new Random(2L);
+        TemporalMap<String, Integer> map = new TemporalMap<>();
+        for (int i = 0; i < 5000; i++) {
+            map.put(new TemporalNamespaceId<>("ns", "k" + random.nextInt(500), random.nextInt(50), i % 7), i);
+        }
+        // "Aa" and "BB" share a leaf array of colliding IDs
+        map.put(new TemporalNamespaceId<>("ns", "Aa", 1L), -1);
+        map.put(new TemporalNamespaceId<>("ns", "BB", 1L), -2);
+        TemporalMap.Snapshot<String, Integer> snapshot = map.snapshot();
+        Map<TemporalNamespaceId<String>, Integer> expected = new TreeMap<>();
+        for (Map.Entry<TemporalNamespaceId<String>, Integer> entry : snapshot) {
+            expected.put(entry.getKey(), entry.getValue());
+        }
+        Map<TemporalNamespaceId<String>, Integer> scanned = new TreeMap<>();
+        Set<Object> views = Collections.newSetFromMap(new IdentityHashMap<>());
+        snapshot.forEachView((view, value) -> {
+            views.add(view);
+            assertFalse(view.isBiTemporal());
+            TemporalNamespaceId<String> version = view.toImmutable();
+            assertEquals(view.compareTo(version), 0);
+            assertNull(scanned.put(version, value));
+        });
+        assertEquals(scanned, expected);
+        assertEquals(scanned.size(), snapshot.size());
+        assertEquals(views.size(), 1);
+    }
+
+    @Test(groups = "temporal")
+    public void testHashCollisions() throws Exception {
+        // "Aa" and "BB" have equal String hash codes
+        TemporalMap<String, String> map = new TemporalMap<>();
+        map.put(new TemporalNamespaceId<>("ns", "Aa", 1L), "Aa");
+        map.put(new TemporalNamespaceId<>("ns", "BB", 1L), "BB");
+        map.put(new TemporalNamespaceId<>("ns", "BB", 2L), "BB2");
+        assertEquals(TemporalMap.hash(new NamespaceId<>("ns", "Aa")), TemporalMap.hash(new NamespaceId<>("ns", "BB")));
+        assertEquals(map.getLatest(new NamespaceId<>("ns", "Aa")), "Aa");
+        assertEquals(map.getLatest(new NamespaceId<>("ns", "BB")), "BB2");
+        assertNull(map.getLatest(new NamespaceId<>("ns", "C#")));
+        assertEquals(map.snapshot().getIdCount(), 2);
+    }
+
+    @Test(groups = "temporal")
+    public void testConcurrentWriters() throws Exception {
+        TemporalMap<Integer, Integer> map = new TemporalMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                final int writer = w;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        map.put(new TemporalNamespaceId<>("ns", i % 500, writer * 5000L + i), i);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(map.size(), 20000L);
+        assertEquals(map.snapshot().getIdCount(), 500);
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalArgumentException.class)
+    public void testNullValue() throws Exception {
+        new TemporalMap<Integer, String>().put(new TemporalNamespaceId<>("a", 1, 0L), null);
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code TimeBucketing}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class TimeBucketingTest {
+
+    @Test(groups = "temporal")
+    public void testHours() throws Exception {
+        TimeBucketing hours = TimeBucketing.hours();
+        assertEquals(hours.bucketStart(0L), 0L);
+        assertEquals(hours.bucketStart(3599L), 0L);
+        assertEquals(hours.bucketStart(3600L), 3600L);
+        assertEquals(hours.bucketStart(-1L), -3600L);
+        assertEquals(hours.nextBucketStart(3600L), 7200L);
+    }
+
+    @Test(groups = "temporal")
+    public void testDays() throws Exception {
+        TimeBucketing days = TimeBucketing.days();
+        long start = LocalDate.of(2017, 6, 15).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        assertEquals(days.bucketStart(start + 86399L), start);
+        assertEquals(days.nextBucketStart(start), start + 86400L);
+        assertEquals(days.bucketStart(-86401L), -172800L);
+    }
+
+    @Test(groups = "temporal")
+    public void testMonths() throws Exception {
+        TimeBucketing months = TimeBucketing.months();
+        for (LocalDate date = LocalDate.of(1960, 1, 1);
+             date.isBefore(LocalDate.of(2040, 1, 1));
+             date = date.plusDays(13)) {
+            long second = date.atTime(13, 17, 5).toEpochSecond(ZoneOffset.UTC);
+            long expected = date.withDayOfMonth(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            long next = date.withDayOfMonth(1).plusMonths(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            assertEquals(months.bucketStart(second), expected, date.toString());
+            assertEquals(months.bucketStart(expected), expected, date.toString());
+            assertEquals(months.bucketStart(next - 1L), expected, date.toString());
+            assertEquals(months.nextBucketStart(expected), next, date.toString());
+        }
+    }
+
+    @Test(groups = "temporal")
+    public void testFixedWidth() throws Exception {
+        TimeBucketing fifteen = TimeBucketing.fixedWidth(Duration.ofMinutes(15));
+        assertEquals(fifteen.bucketStart(901L), 900L);
+        assertEquals(fifteen.bucketStart(-1L), -900L);
+        assertEquals(fifteen.nextBucketStart(900L), 1800L);
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalArgumentException.class)
+    public void testFixedWidthFractional() throws Exception {
+        TimeBucketing.fixedWidth(Duration.ofMillis(1500L));
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalArgumentException.class)
+    public void testFixedWidthZero() throws Exception {
+        TimeBucketing.fixedWidth(Duration.ZERO);
+    }
+
+}
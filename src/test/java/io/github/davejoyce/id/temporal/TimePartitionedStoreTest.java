@@ -0,0 +1,316 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code TimePartitionedStore}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class TimePartitionedStoreTest {
+
+    private static final long DAY = 86400L;
+
+    private final List<Path> tempDirectories = new ArrayList<>();
+
+    @AfterMethod(groups = "temporal", alwaysRun = true)
+    public void deleteTempDirectories() throws Exception {
+        for (Path dir : tempDirectories) {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                    Files.delete(d);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        tempDirectories.clear();
+    }
+
+    @Test(groups = "temporal")
+    public void testRangeQuery() throws Exception {
+        List<TemporalNamespaceId<Integer>> ids = randomIds(2000, 30 * DAY, 1L);
+        TimePartitionedStore<Integer> store = TimePartitionedStore.inMemory(TimeBucketing.days(),
+                                                                            Duration.ofDays(1L));
+        assertTrue(store.addAll(ids));
+        assertFalse(store.add(ids.get(0)));
+        assertEquals(store.size(), new TreeSet<>(ids).size());
+        assertEquals(store.getBucketCount(), 30);
+        assertRange(store, ids, Instant.ofEpochSecond(0L), Instant.ofEpochSecond(30 * DAY));
+        assertRange(store, ids, Instant.ofEpochSecond(3 * DAY + 7L, 500), Instant.ofEpochSecond(9 * DAY - 3L));
+        assertRange(store, ids, Instant.ofEpochSecond(5 * DAY), Instant.ofEpochSecond(6 * DAY));
+        assertRange(store, ids, Instant.ofEpochSecond(5 * DAY), Instant.ofEpochSecond(5 * DAY));
+        assertTrue(store.contains(ids.get(17)));
+        assertFalse(store.contains(new TemporalNamespaceId<>("zz", 1, 40 * DAY)));
+    }
+
+    @Test(groups = "temporal")
+    public void testAgeToWarm() throws Exception {
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(10 * DAY));
+        TimePartitionedStore<Integer> store = new TimePartitionedStore<>(null, TimeBucketing.days(),
+                                                                         Duration.ofDays(2L), null, null, clock);
+        List<TemporalNamespaceId<Integer>> ids = randomIds(1000, 10 * DAY, 2L);
+        store.addAll(ids);
+        assertEquals(store.age(), 8);
+        assertEquals(store.getTier(Instant.ofEpochSecond(7 * DAY)), StorageTier.WARM);
+        assertEquals(store.getTier(Instant.ofEpochSecond(8 * DAY)), StorageTier.HOT);
+        assertNull(store.getTier(Instant.ofEpochSecond(20 * DAY)));
+        assertRange(store, ids, Instant.ofEpochSecond(0L), Instant.ofEpochSecond(10 * DAY));
+        assertEquals(store.age(), 0);
+
+        // Late additions to an aged bucket are visible, and merged on aging
+        TemporalNamespaceId<Integer> late = new TemporalNamespaceId<>("late", 1, 3 * DAY + 5L);
+        assertTrue(store.add(late));
+        assertFalse(store.add(late));
+        assertFalse(store.add(ids.get(0)));
+        ids.add(late);
+        assertTrue(store.contains(late));
+        assertRange(store, ids, Instant.ofEpochSecond(0L), Instant.ofEpochSecond(10 * DAY));
+        assertEquals(store.age(), 1);
+        assertRange(store, ids, Instant.ofEpochSecond(0L), Instant.ofEpochSecond(10 * DAY));
+        assertEquals(store.size(), new TreeSet<>(ids).size());
+    }
+
+    @Test(groups = "temporal")
+    public void testAgeToCold() throws Exception {
+        Path dir = tempDirectory();
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(10 * DAY));
+        TimePartitionedStore<Integer> store = TimePartitionedStore.tiered(Integer.class, TimeBucketing.days(),
+                                                                          Duration.ofDays(1L), Duration.ofDays(5L),
+                                                                          dir, clock);
+        List<TemporalNamespaceId<Integer>> ids = randomIds(1000, 10 * DAY, 3L);
+        store.addAll(ids);
+        assertEquals(store.age(), 9);
+        assertEquals(store.getTier(Instant.ofEpochSecond(4 * DAY)), StorageTier.COLD);
+        assertEquals(store.getTier(Instant.ofEpochSecond(5 * DAY)), StorageTier.WARM);
+        assertRange(store, ids, Instant.ofEpochSecond(2 * DAY + 1L), Instant.ofEpochSecond(7 * DAY));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(files.count(), 5L);
+        }
+
+        TemporalNamespaceId<Integer> late = new TemporalNamespaceId<>("late", 9, 2 * DAY);
+        store.add(late);
+        ids.add(late);
+        clock.now = Instant.ofEpochSecond(20 * DAY);
+        assertEquals(store.age(), 6);
+        assertEquals(store.getTier(Instant.ofEpochSecond(9 * DAY)), StorageTier.COLD);
+        assertRange(store, ids, Instant.ofEpochSecond(0L), Instant.ofEpochSecond(10 * DAY));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(files.count(), 10L);
+        }
+    }
+
+    @Test(groups = "temporal")
+    public void testConcurrentReadsDuringAging() throws Exception {
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(0L));
+        TimePartitionedStore<Integer> store = new TimePartitionedStore<>(null, TimeBucketing.hours(),
+                                                                         Duration.ZERO, null, null, clock);
+        List<TemporalNamespaceId<Integer>> ids = randomIds(5000, DAY, 4L);
+        store.addAll(ids);
+        long expected = store.size();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 50; j++) {
+                        if (expected != store.stream().count()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            Future<?> ager = executor.submit(() -> {
+                start.await();
+                for (int hour = 1; hour <= 24; hour++) {
+                    clock.now = Instant.ofEpochSecond(hour * 3600L);
+                    store.age();
+                }
+                return null;
+            });
+            start.countDown();
+            ager.get();
+            for (Future<Boolean> reader : readers) {
+                assertTrue(reader.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(store.getTier(Instant.ofEpochSecond(DAY - 1L)), StorageTier.WARM);
+        assertRange(store, ids, Instant.ofEpochSecond(0L), Instant.ofEpochSecond(DAY));
+    }
+
+    @Test(groups = "temporal")
+    public void testConcurrentAddsDuringAging() throws Exception {
+        Path dir = tempDirectory();
+        MutableClock clock = new MutableClock(Instant.ofEpochSecond(DAY));
+        TimePartitionedStore<Integer> store = TimePartitionedStore.tiered(Integer.class, TimeBucketing.days(),
+                                                                          Duration.ZERO, Duration.ZERO,
+                                                                          dir, clock);
+        List<TemporalNamespaceId<Integer>> ids = randomIds(20000, DAY, 5L);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AtomicBoolean adding = new AtomicBoolean(true);
+            Future<Integer> ager = executor.submit(() -> {
+                int passes = 0;
+                while (adding.get()) {
+                    store.age();
+                    passes++;
+                }
+                return passes;
+            });
+            Future<?> writer = executor.submit(() -> {
+                try {
+                    // All IDs fall in one bucket, being aged meanwhile
+                    for (TemporalNamespaceId<Integer> id : ids) {
+                        store.add(id);
+                    }
+                } finally {
+                    adding.set(false);
+                }
+                return null;
+            });
+            writer.get();
+            assertTrue(ager.get() > 0);
+        } finally {
+            executor.shutdown();
+        }
+        store.age();
+        List<TemporalNamespaceId<Integer>> all = store.stream().collect(Collectors.toList());
+        assertEquals(all.size(), new TreeSet<>(all).size(), "Duplicate IDs after aging");
+        assertEquals(store.size(), new TreeSet<>(ids).size());
+        assertRange(store, ids, Instant.ofEpochSecond(0L), Instant.ofEpochSecond(DAY));
+        assertEquals(store.getTier(Instant.EPOCH), StorageTier.COLD);
+    }
+
+    @Test(groups = "temporal")
+    public void testStartAging() throws Exception {
+        TimePartitionedStore<Integer> store = TimePartitionedStore.inMemory(TimeBucketing.hours(), Duration.ZERO);
+        store.add(new TemporalNamespaceId<>("a", 1, 0L));
+        try {
+            store.startAging(Duration.ofMillis(5L));
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (StorageTier.HOT == store.getTier(Instant.EPOCH) && System.nanoTime() < deadline) {
+                Thread.sleep(5L);
+            }
+            assertEquals(store.getTier(Instant.EPOCH), StorageTier.WARM);
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalArgumentException.class)
+    public void testTieredColdBeforeWarm() throws Exception {
+        TimePartitionedStore.tiered(Integer.class, TimeBucketing.days(), Duration.ofDays(2L),
+                                    Duration.ofDays(1L), tempDirectory());
+    }
+
+    private Path tempDirectory() throws IOException {
+        Path dir = Files.createTempDirectory("partitions");
+        tempDirectories.add(dir);
+        return dir;
+    }
+
+    private static void assertRange(final TimePartitionedStore<Integer> store,
+                                    final List<TemporalNamespaceId<Integer>> ids,
+                                    final Instant from,
+                                    final Instant to) {
+        TreeSet<TemporalNamespaceId<Integer>> expected = ids.stream()
+                .filter(id -> !id.getAsOfTime().isBefore(from) && id.getAsOfTime().isBefore(to))
+                .collect(Collectors.toCollection(TreeSet::new));
+        List<TemporalNamespaceId<Integer>> actual = store.stream(from, to).collect(Collectors.toList());
+        assertEquals(actual.size(), expected.size());
+        assertEquals(new TreeSet<>(actual), expected);
+    }
+
+    private static List<TemporalNamespaceId<Integer>> randomIds(final int count,
+                                                                final long span,
+                                                                final long seed) {
+        Random random = new Random(seed);
+        List<TemporalNamespaceId<Integer>> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long second = (long)(random.nextDouble() * span);
+            ids.add(new TemporalNamespaceId<>("ns" + random.nextInt(5), random.nextInt(100), second,
+                                              random.nextInt(1000)));
+        }
+        return ids;
+    }
+
+    private static final class MutableClock extends Clock {
+
+        volatile Instant now;
+
+        MutableClock(final Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code ValidityIntervals}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class ValidityIntervalsTest {
+
+    @Test(groups = "temporal")
+    public void testValidity() throws Exception {
+        List<TemporalNamespaceId<Integer>> versions = Arrays.asList(
+                new TemporalNamespaceId<>("a", 1, 10L),
+                new TemporalNamespaceId<>("a", 1, 20L),
+                new TemporalNamespaceId<>("a", 1, 20L),
+                new TemporalNamespaceId<>("a", 1, 35L),
+                new TemporalNamespaceId<>("a", 2, 5L),
+                new TemporalNamespaceId<>("b", 1, 7L));
+        List<ValidityInterval<Integer>> intervals = ValidityIntervals.validity(versions.stream())
+                                                                     .collect(Collectors.toList());
+        assertEquals(intervals.size(), 5);
+        assertEquals(intervals.get(0).getValidFrom(), Instant.ofEpochSecond(10L));
+        assertEquals(intervals.get(0).getValidTo(), Instant.ofEpochSecond(20L));
+        assertEquals(intervals.get(1).getValidTo(), Instant.ofEpochSecond(35L));
+        assertTrue(intervals.get(2).isOpenEnded());
+        assertNull(intervals.get(2).getValidTo());
+        assertTrue(intervals.get(3).isOpenEnded());
+        assertEquals(intervals.get(4).getVersion(), versions.get(5));
+        assertTrue(intervals.get(0).contains(Instant.ofEpochSecond(19L, 999)));
+        assertFalse(intervals.get(0).contains(Instant.ofEpochSecond(20L)));
+        assertTrue(intervals.get(2).contains(Instant.MAX));
+    }
+
+    @Test(groups = "temporal")
+    public void testValidityOfRestatements() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> versions = Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 10L, 100L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 200L),
+                new BiTemporalNamespaceId<>("a", 1, 30L, 150L));
+        List<ValidityInterval<Integer>> intervals = ValidityIntervals.validity(versions.stream())
+                                                                     .collect(Collectors.toList());
+        assertEquals(intervals.size(), 2);
+        assertEquals(intervals.get(0).getVersion(), versions.get(1));
+        assertEquals(intervals.get(0).getValidTo(), Instant.ofEpochSecond(30L));
+    }
+
+    @Test(groups = "temporal")
+    public void testBitemporal() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> versions = Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 10L, 100L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 200L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 200L),
+                new BiTemporalNamespaceId<>("a", 1, 10L, 300L),
+                new BiTemporalNamespaceId<>("a", 1, 30L, 150L),
+                new BiTemporalNamespaceId<>("b", 1, 5L, 50L));
+        List<BitemporalInterval<Integer>> rectangles = ValidityIntervals.bitemporal(versions.stream())
+                                                                        .collect(Collectors.toList());
+        // First record of 'as of' 10 is split where 'as of' 30 was recorded
+        assertEquals(rectangles.size(), 6);
+        assertTrue(rectangles.get(0).isOpenEnded());
+        assertEquals(rectangles.get(0).getRecordedFrom(), Instant.ofEpochSecond(100L));
+        assertEquals(rectangles.get(0).getRecordedTo(), Instant.ofEpochSecond(150L));
+        assertEquals(rectangles.get(1).getVersion(), versions.get(0));
+        assertEquals(rectangles.get(1).getRecordedFrom(), Instant.ofEpochSecond(150L));
+        assertEquals(rectangles.get(1).getRecordedTo(), Instant.ofEpochSecond(200L));
+        for (int i = 1; i < 4; i++) {
+            assertEquals(rectangles.get(i).getValidTo(), Instant.ofEpochSecond(30L));
+        }
+        assertEquals(rectangles.get(2).getRecordedTo(), Instant.ofEpochSecond(300L));
+        assertTrue(rectangles.get(3).isRecordedOpenEnded());
+        assertTrue(rectangles.get(4).isOpenEnded());
+        assertTrue(rectangles.get(4).isRecordedOpenEnded());
+        assertTrue(rectangles.get(5).isOpenEnded());
+        assertTrue(rectangles.get(0).contains(Instant.ofEpochSecond(40L), Instant.ofEpochSecond(120L)));
+        assertFalse(rectangles.get(1).contains(Instant.ofEpochSecond(40L), Instant.ofEpochSecond(160L)));
+        assertTrue(rectangles.get(2).contains(Instant.ofEpochSecond(15L), Instant.ofEpochSecond(250L)));
+        assertFalse(rectangles.get(2).contains(Instant.ofEpochSecond(15L), Instant.ofEpochSecond(300L)));
+        assertFalse(rectangles.get(2).contains(Instant.ofEpochSecond(30L), Instant.ofEpochSecond(250L)));
+    }
+
+    @Test(groups = "temporal")
+    public void testBitemporalLateRecordedSuccessor() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> versions = Arrays.asList(
+                new BiTemporalNamespaceId<>("a", 1, 1L, 1L),
+                new BiTemporalNamespaceId<>("a", 1, 5L, 10L));
+        List<BitemporalInterval<Integer>> rectangles = ValidityIntervals.bitemporal(versions.stream())
+                                                                        .collect(Collectors.toList());
+        assertEquals(rectangles.size(), 3);
+        // Until the second version was recorded, the first was valid indefinitely
+        assertEquals(rectangles.get(0).getVersion(), versions.get(0));
+        assertTrue(rectangles.get(0).isOpenEnded());
+        assertEquals(rectangles.get(0).getRecordedFrom(), Instant.ofEpochSecond(1L));
+        assertEquals(rectangles.get(0).getRecordedTo(), Instant.ofEpochSecond(10L));
+        assertTrue(rectangles.get(0).contains(Instant.ofEpochSecond(7L), Instant.ofEpochSecond(9L)));
+        assertEquals(rectangles.get(1).getVersion(), versions.get(0));
+        assertEquals(rectangles.get(1).getValidTo(), Instant.ofEpochSecond(5L));
+        assertEquals(rectangles.get(1).getRecordedFrom(), Instant.ofEpochSecond(10L));
+        assertTrue(rectangles.get(1).isRecordedOpenEnded());
+        assertFalse(rectangles.get(1).contains(Instant.ofEpochSecond(7L), Instant.ofEpochSecond(10L)));
+        assertEquals(rectangles.get(2).getVersion(), versions.get(1));
+        assertTrue(rectangles.get(2).contains(Instant.ofEpochSecond(7L), Instant.ofEpochSecond(10L)));
+    }
+
+    @Test(groups = "temporal")
+    public void testValidityMatchesMaterialized() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> versions = randomVersions(5000, 1L);
+        List<ValidityInterval<Integer>> actual = new ArrayList<>();
+        ValidityIntervals.validity(versions.iterator()).forEachRemaining(actual::add);
+
+        // Whole history of each ID, latest record per 'as of' time
+        TreeMap<String, TreeMap<Instant, BiTemporalNamespaceId<Integer>>> histories = new TreeMap<>();
+        for (BiTemporalNamespaceId<Integer> v : versions) {
+            histories.computeIfAbsent(v.getNamespace() + ':' + String.format("%05d", v.getId()), k -> new TreeMap<>())
+                     .put(v.getAsOfTime(), v);
+        }
+        List<ValidityInterval<Integer>> expected = new ArrayList<>();
+        for (TreeMap<Instant, BiTemporalNamespaceId<Integer>> history : histories.values()) {
+            for (BiTemporalNamespaceId<Integer> v : history.values()) {
+                Instant next = history.higherKey(v.getAsOfTime());
+                expected.add(new ValidityInterval<>(v,
+                                                    (null == next) ? ValidityInterval.OPEN : next.getEpochSecond(),
+                                                    (null == next) ? 0 : next.getNano()));
+            }
+        }
+        assertEquals(actual, expected);
+    }
+
+    @Test(groups = "temporal")
+    public void testBitemporalCoversHistory() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> versions = randomVersions(2000, 2L);
+        List<BitemporalInterval<Integer>> rectangles = ValidityIntervals.bitemporal(versions.stream())
+                                                                        .collect(Collectors.toList());
+        assertTrue(rectangles.size() >= new TreeSet<>(versions).size());
+        // At any valid and recorded time, the version of an ID in effect is
+        // that with the latest 'as of' time among the records made by then,
+        // and it is in exactly one rectangle
+        TreeMap<String, List<BiTemporalNamespaceId<Integer>>> histories = new TreeMap<>();
+        for (BiTemporalNamespaceId<Integer> v : versions) {
+            histories.computeIfAbsent(key(v), k -> new ArrayList<>()).add(v);
+        }
+        Map<String, List<BitemporalInterval<Integer>>> rectanglesById = rectangles.stream()
+                .collect(Collectors.groupingBy(r -> key(r.getVersion())));
+        Random random = new Random(3L);
+        List<String> ids = new ArrayList<>(histories.keySet());
+        for (int i = 0; i < 2000; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            Instant valid = Instant.ofEpochSecond(random.nextInt(22), random.nextInt(3) * 500);
+            Instant recorded = Instant.ofEpochSecond(random.nextInt(12));
+            BiTemporalNamespaceId<Integer> expected = null;
+            for (BiTemporalNamespaceId<Integer> v : histories.get(id)) {
+                if (!v.getAsAtTime().isAfter(recorded) && !v.getAsOfTime().isAfter(valid)
+                    && (null == expected || !v.getAsOfTime().isBefore(expected.getAsOfTime()))) {
+                    expected = v;
+                }
+            }
+            List<BitemporalInterval<Integer>> matches = rectanglesById.get(id).stream()
+                    .filter(r -> r.contains(valid, recorded))
+                    .collect(Collectors.toList());
+            if (null == expected) {
+                assertTrue(matches.isEmpty(), id + " " + valid + " " + recorded);
+            } else {
+                assertEquals(matches.size(), 1, id + " " + valid + " " + recorded);
+                assertEquals(matches.get(0).getVersion(), expected);
+            }
+        }
+    }
+
+    @Test(groups = "temporal")
+    public void testParallelPartitions() throws Exception {
+        List<BiTemporalNamespaceId<Integer>> versions = randomVersions(10000, 4L);
+        List<List<BiTemporalNamespaceId<Integer>>> partitions = new ArrayList<>(versions.stream()
+                .collect(Collectors.groupingBy(BiTemporalNamespaceId::getNamespace, TreeMap::new, Collectors.toList()))
+                .values());
+        assertEquals(ValidityIntervals.validity(partitions, true).collect(Collectors.toList()),
+                     ValidityIntervals.validity(versions.stream()).collect(Collectors.toList()));
+        assertEquals(ValidityIntervals.bitemporal(partitions, true).collect(Collectors.toList()),
+                     ValidityIntervals.bitemporal(versions.stream()).collect(Collectors.toList()));
+    }
+
+    @Test(groups = "temporal", expectedExceptions = IllegalStateException.class)
+    public void testUnsorted() throws Exception {
+        Iterator<ValidityInterval<Integer>> intervals = ValidityIntervals.validity(Arrays.asList(
+                new TemporalNamespaceId<>("a", 1, 20L),
+                new TemporalNamespaceId<>("a", 1, 10L)).iterator());
+        while (intervals.hasNext()) {
+            intervals.next();
+        }
+    }
+
+    @Test(groups = "temporal")
+    public void testEmpty() throws Exception {
+        assertFalse(ValidityIntervals.bitemporal(Collections.<BiTemporalNamespaceId<Integer>>emptyIterator()).hasNext());
+    }
+
+    private static String key(final BiTemporalNamespaceId<Integer> version) {
+        return version.getNamespace() + ':' + version.getId();
+    }
+
+    private static List<BiTemporalNamespaceId<Integer>> randomVersions(final int count, final long seed) {
+        Random random = new Random(seed);
+        List<BiTemporalNamespaceId<Integer>> versions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            versions.add(new BiTemporalNamespaceId<>("ns" + random.nextInt(8), random.nextInt(200),
+                                                     random.nextInt(20), random.nextInt(3) * 500,
+                                                     random.nextInt(10), 0));
+        }
+        Collections.sort(versions);
+        return versions;
+    }
+
+}
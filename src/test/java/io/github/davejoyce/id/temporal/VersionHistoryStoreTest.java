@@ -0,0 +1,161 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.temporal;
+
+import io.github.davejoyce.id.BiTemporalNamespaceId;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code VersionHistoryStore}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class VersionHistoryStoreTest {
+
+    @Test(groups = "temporal")
+    public void testAddAndRead() throws Exception {
+        VersionHistoryStore<Integer> store = new VersionHistoryStore<>();
+        assertTrue(store.add(new TemporalNamespaceId<>("a", 1, 20L)));
+        assertTrue(store.add(new TemporalNamespaceId<>("a", 1, 10L)));
+        assertFalse(store.add(new TemporalNamespaceId<>("a", 1, 10L)));
+        assertTrue(store.add(new TemporalNamespaceId<>("b", 1, 10L)));
+        NamespaceId<Integer> id = new NamespaceId<>("a", 1);
+        assertEquals(store.getHistory(id).size(), 2);
+        assertEquals(store.getHistory(id).get(0).getAsOfEpochSecond(), 10L);
+        assertEquals(store.getHistory(new TemporalNamespaceId<>("a", 1, 0L)).size(), 2);
+        assertTrue(store.getHistory(new NamespaceId<>("c", 1)).isEmpty());
+        assertEquals(store.getEffective(id, Instant.ofEpochSecond(15L)).getAsOfEpochSecond(), 10L);
+        assertNull(store.getEffective(id, Instant.ofEpochSecond(5L)));
+        assertEquals(store.getIdCount(), 2);
+        assertEquals(store.getVersionCount(), 3L);
+    }
+
+    @Test(groups = "temporal")
+    public void testCompactPerNamespace() throws Exception {
+        VersionHistoryStore<Integer> store = new VersionHistoryStore<>(Clock.fixed(Instant.ofEpochSecond(1000L),
+                                                                                   ZoneOffset.UTC));
+        for (int id = 0; id < 10; id++) {
+            for (long t = 0L; t < 1000L; t += 10L) {
+                store.add(new TemporalNamespaceId<>("last", id, t));
+                store.add(new TemporalNamespaceId<>("recent", id, t));
+                store.add(new TemporalNamespaceId<>("kept", id, t));
+            }
+        }
+        store.setDefaultRetention(RetentionPolicy.keepLast(3));
+        store.setRetention("recent", RetentionPolicy.keepNewerThan(Duration.ofSeconds(100L)));
+        store.setRetention("kept", RetentionPolicy.keepAll());
+        assertEquals(store.getVersionCount(), 3000L);
+
+        // Incremental steps cover each ID once per pass
+        long removed = 0L;
+        for (int step = 0; step < 3; step++) {
+            removed += store.compact(10);
+        }
+        assertEquals(removed, 10 * (97 + 89));
+        assertEquals(store.compact(10), 0L);
+        assertEquals(store.getHistory(new NamespaceId<>("last", 3)).size(), 3);
+        assertEquals(store.getHistory(new NamespaceId<>("recent", 3)).size(), 11);
+        assertEquals(store.getHistory(new NamespaceId<>("kept", 3)).size(), 100);
+        assertEquals(store.getVersionCount(), 3000L - removed);
+        assertEquals(store.getRemovedVersionCount(), removed);
+        assertTrue(store.getReclaimedBytes() >= removed * 40L);
+    }
+
+    @Test(groups = "temporal")
+    public void testCompactBitemporal() throws Exception {
+        VersionHistoryStore<Integer> store = new VersionHistoryStore<>();
+        store.add(new BiTemporalNamespaceId<>("a", 1, 10L, 10L));
+        store.add(new BiTemporalNamespaceId<>("a", 1, 10L, 20L));
+        store.add(new BiTemporalNamespaceId<>("a", 1, 30L, 30L));
+        store.setDefaultRetention(RetentionPolicy.keepLatestAsAt());
+        List<TemporalNamespaceId<Integer>> before = store.getHistory(new NamespaceId<>("a", 1));
+        assertEquals(store.compactAll(), 1L);
+        List<TemporalNamespaceId<Integer>> after = store.getHistory(new NamespaceId<>("a", 1));
+        assertEquals(after.size(), 2);
+        assertEquals(((BiTemporalNamespaceId<Integer>)after.get(0)).getAsAtEpochSecond(), 20L);
+        // Histories read before compaction are unaffected
+        assertEquals(before.size(), 3);
+    }
+
+    @Test(groups = "temporal")
+    public void testConcurrentWritesDuringCompaction() throws Exception {
+        VersionHistoryStore<Integer> store = new VersionHistoryStore<>();
+        store.setDefaultRetention(RetentionPolicy.keepLast(5));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (long t = 0L; t < 2000L; t++) {
+                    for (int id = 0; id < 10; id++) {
+                        store.add(new TemporalNamespaceId<>("a", id, t));
+                    }
+                }
+            });
+            List<Future<?>> compactions = new ArrayList<>();
+            compactions.add(executor.submit(() -> {
+                while (!writer.isDone()) {
+                    store.compact(3);
+                }
+            }));
+            writer.get();
+            for (Future<?> compaction : compactions) {
+                compaction.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        store.compactAll();
+        for (int id = 0; id < 10; id++) {
+            List<TemporalNamespaceId<Integer>> history = store.getHistory(new NamespaceId<>("a", id));
+            assertEquals(history.size(), 5);
+            assertEquals(history.get(4).getAsOfEpochSecond(), 1999L);
+        }
+        assertEquals(store.getVersionCount() + store.getRemovedVersionCount(), 20000L);
+    }
+
+    @Test(groups = "temporal")
+    public void testStartCompaction() throws Exception {
+        VersionHistoryStore<Integer> store = new VersionHistoryStore<>();
+        store.setDefaultRetention(RetentionPolicy.keepLast(1));
+        store.add(new TemporalNamespaceId<>("a", 1, 1L));
+        store.add(new TemporalNamespaceId<>("a", 1, 2L));
+        try {
+            store.startCompaction(Duration.ofMillis(5L), 100);
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (2L == store.getVersionCount() && System.nanoTime() < deadline) {
+                Thread.sleep(5L);
+            }
+            assertEquals(store.getVersionCount(), 1L);
+        } finally {
+            store.close();
+        }
+    }
+
+}
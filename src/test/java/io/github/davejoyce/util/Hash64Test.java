@@ -0,0 +1,62 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.util;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code Hash64}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class Hash64Test {
+
+    @DataProvider
+    public Object[][] knownHashes() {
+        // Reference values of the XXH64 algorithm
+        return new Object[][] {
+                new Object[]{ "", 0xEF46DB3751D8E999L },
+                new Object[]{ "a", 0xD24EC4F1A98C6E5BL },
+                new Object[]{ "abc", 0x44BC2CF5AD770999L },
+                new Object[]{ "Nobody inspects the spammish repetition", 0xFBCEA83C8A378BF1L },
+        };
+    }
+
+    @Test(dataProvider = "knownHashes", groups = "util")
+    public void testHash(String input, long expected) throws Exception {
+        assertEquals(Hash64.hash(input.getBytes(StandardCharsets.UTF_8)), expected);
+    }
+
+    @Test(groups = "util")
+    public void testHashRange() throws Exception {
+        byte[] bytes = "xxabcxx".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Hash64.hash(bytes, 2, 3, 0L), 0x44BC2CF5AD770999L);
+        assertNotEquals(Hash64.hash(bytes, 2, 3, 1L), 0x44BC2CF5AD770999L);
+    }
+
+    @Test(groups = "util")
+    public void testCombineIsOrderSensitive() throws Exception {
+        assertNotEquals(Hash64.combine(1L, 2L), Hash64.combine(2L, 1L));
+        assertNotEquals(Hash64.mix(1L), Hash64.mix(2L));
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.metrics.jfr;
+
+import io.github.davejoyce.id.metrics.ConversionStrategy;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code JfrIdMetrics}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class JfrIdMetricsTest {
+
+    @Test(groups = "metrics")
+    public void testEvents() throws Exception {
+        JfrIdMetrics metrics = new JfrIdMetrics();
+        Path file = Files.createTempFile("ids", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(ParseEvent.NAME);
+                recording.enable(ConversionEvent.NAME);
+                recording.enable(ProjectionEvent.NAME);
+                recording.start();
+                metrics.parsed(String.class, Integer.class, 1234L, true);
+                metrics.converted(Integer.class, ConversionStrategy.CONSTRUCTOR, false);
+                metrics.projected(Long.class, String.class);
+                recording.stop();
+                recording.dump(file);
+            }
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().startsWith("io.github.davejoyce.id."))
+                    .collect(Collectors.toList());
+            assertEquals(events.size(), 3);
+
+            RecordedEvent parse = find(events, ParseEvent.NAME);
+            assertEquals(parse.getClass("idClass").getName(), String.class.getName());
+            assertEquals(parse.getClass("idType").getName(), Integer.class.getName());
+            assertEquals(parse.getLong("parseTime"), 1234L);
+            assertTrue(parse.getBoolean("success"));
+
+            RecordedEvent conversion = find(events, ConversionEvent.NAME);
+            assertEquals(conversion.getString("strategy"), "CONSTRUCTOR");
+            assertFalse(conversion.getBoolean("success"));
+
+            RecordedEvent projection = find(events, ProjectionEvent.NAME);
+            assertEquals(projection.getClass("fromClass").getName(), Long.class.getName());
+            assertEquals(projection.getClass("toClass").getName(), String.class.getName());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(groups = "metrics")
+    public void testNoEventsWhenNotRecording() throws Exception {
+        // Without an enabled recording the sink must not fail
+        JfrIdMetrics metrics = new JfrIdMetrics();
+        metrics.parsed(String.class, Integer.class, -1L, false);
+        metrics.converted(Integer.class, ConversionStrategy.CAST, true);
+        metrics.projected(Long.class, String.class);
+    }
+
+    private static RecordedEvent find(final List<RecordedEvent> events, final String name) {
+        return events.stream()
+                     .filter(e -> name.equals(e.getEventType().getName()))
+                     .findFirst()
+                     .orElseThrow(() -> new AssertionError("No event: " + name));
+    }
+
+}
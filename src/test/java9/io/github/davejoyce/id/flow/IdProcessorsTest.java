@@ -0,0 +1,266 @@
+/*
+ *  Copyright 2017 David Joyce
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.github.davejoyce.id.flow;
+
+import io.github.davejoyce.id.IdCodec;
+import io.github.davejoyce.id.NamespaceId;
+import io.github.davejoyce.id.TemporalNamespaceId;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests of {@code IdProcessors}.
+ *
+ * @author <a href="mailto:dave@osframework.org">Dave Joyce</a>
+ */
+public class IdProcessorsTest {
+
+    private static final Instant AS_OF_TIME = Instant.parse("1977-11-13T14:18:00Z");
+
+    @Test(groups = "flow")
+    public void testParseWithSmallDemand() throws Exception {
+        List<String> lines = IntStream.range(0, 10000)
+                                      .mapToObj(i -> "ns/" + i + "/" + AS_OF_TIME.plusSeconds(i))
+                                      .collect(Collectors.toList());
+        Flow.Processor<String, TemporalNamespaceId<Integer>> parse =
+                IdProcessors.parse(s -> TemporalNamespaceId.fromString(s, Integer.class), 16);
+        CollectingSubscriber<TemporalNamespaceId<Integer>> sink = new CollectingSubscriber<>(3);
+        parse.subscribe(sink);
+        publish(lines, parse);
+        sink.await();
+
+        assertNull(sink.error);
+        assertEquals(sink.items.size(), 10000);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(sink.items.get(i), new TemporalNamespaceId<>("ns", i, AS_OF_TIME.plusSeconds(i)));
+        }
+    }
+
+    @Test(groups = "flow")
+    public void testParseFailure() throws Exception {
+        Flow.Processor<String, NamespaceId<String>> parse = IdProcessors.parse(NamespaceId::fromString);
+        CollectingSubscriber<NamespaceId<String>> sink = new CollectingSubscriber<>(Long.MAX_VALUE);
+        parse.subscribe(sink);
+        ListPublisher<String> source = new ListPublisher<>(Arrays.asList("ns/1", "ns/2", "bad", "ns/4"));
+        source.subscribe(parse);
+        sink.await();
+
+        assertEquals(sink.items, Arrays.asList(new NamespaceId<>("ns", "1"), new NamespaceId<>("ns", "2")));
+        assertTrue(sink.error instanceof IllegalArgumentException);
+        assertTrue(source.cancelled);
+    }
+
+    @Test(groups = "flow")
+    public void testEncode() throws Exception {
+        List<NamespaceId<String>> ids = Arrays.asList(new NamespaceId<>("a", "1"),
+                                                      new TemporalNamespaceId<>("b", "2", AS_OF_TIME));
+        Flow.Processor<NamespaceId<String>, byte[]> encode = IdProcessors.encode();
+        CollectingSubscriber<byte[]> sink = new CollectingSubscriber<>(1);
+        encode.subscribe(sink);
+        new ListPublisher<>(ids).subscribe(encode);
+        sink.await();
+
+        assertNull(sink.error);
+        assertEquals(sink.items.size(), 2);
+        assertEquals(IdCodec.decode(sink.items.get(0), String.class), ids.get(0));
+        assertEquals(IdCodec.decode(sink.items.get(1), String.class), ids.get(1));
+    }
+
+    @Test(groups = "flow")
+    public void testDropStaleVersions() throws Exception {
+        TemporalNamespaceId<String> a1 = new TemporalNamespaceId<>("ns", "a", AS_OF_TIME);
+        TemporalNamespaceId<String> a2 = new TemporalNamespaceId<>("ns", "a", AS_OF_TIME.plusSeconds(1));
+        TemporalNamespaceId<String> b1 = new TemporalNamespaceId<>("ns", "b", AS_OF_TIME);
+        TemporalNamespaceId<String> b0 = new TemporalNamespaceId<>("ns", "b", AS_OF_TIME.minusSeconds(1));
+        Flow.Processor<TemporalNamespaceId<String>, TemporalNamespaceId<String>> latest =
+                IdProcessors.dropStaleVersions(2);
+        CollectingSubscriber<TemporalNamespaceId<String>> sink = new CollectingSubscriber<>(1);
+        latest.subscribe(sink);
+        new ListPublisher<>(Arrays.asList(a1, b1, a1, a2, b0, a1, b1)).subscribe(latest);
+        sink.await();
+
+        assertNull(sink.error);
+        assertEquals(sink.items, Arrays.asList(a1, b1, a2));
+    }
+
+    @Test(groups = "flow")
+    public void testUpstreamDemandIsBatched() throws Exception {
+        List<Integer> values = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        List<String> lines = values.stream().map(i -> "ns/" + i).collect(Collectors.toList());
+        ListPublisher<String> source = new ListPublisher<>(lines);
+        Flow.Processor<String, NamespaceId<String>> parse = IdProcessors.parse(NamespaceId::fromString, 64);
+        CollectingSubscriber<NamespaceId<String>> sink = new CollectingSubscriber<>(1);
+        parse.subscribe(sink);
+        source.subscribe(parse);
+        sink.await();
+
+        assertEquals(sink.items.size(), 1000);
+        // 1 initial request of 64, then 1 request of 48 per 48 items consumed
+        assertEquals(source.requests.get(), 1 + 1000 / 48);
+        assertTrue(source.maxOutstanding <= 64);
+    }
+
+    @Test(groups = "flow")
+    public void testNonPositiveRequest() throws Exception {
+        Flow.Processor<String, NamespaceId<String>> parse = IdProcessors.parse(NamespaceId::fromString);
+        CollectingSubscriber<NamespaceId<String>> sink = new CollectingSubscriber<>(0);
+        parse.subscribe(sink);
+        ListPublisher<String> source = new ListPublisher<>(Collections.singletonList("ns/1"));
+        source.subscribe(parse);
+        sink.await();
+
+        assertTrue(sink.error instanceof IllegalArgumentException);
+        assertTrue(sink.items.isEmpty());
+        assertTrue(source.cancelled);
+    }
+
+    @Test(groups = "flow")
+    public void testSecondSubscriberRejected() throws Exception {
+        Flow.Processor<String, NamespaceId<String>> parse = IdProcessors.parse(NamespaceId::fromString);
+        parse.subscribe(new CollectingSubscriber<>(1));
+        CollectingSubscriber<NamespaceId<String>> second = new CollectingSubscriber<>(1);
+        parse.subscribe(second);
+        second.await();
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test(groups = "flow", expectedExceptions = IllegalArgumentException.class)
+    public void testBadBatchSize() throws Exception {
+        IdProcessors.encode(0);
+    }
+
+    private static void publish(List<String> lines, Flow.Subscriber<String> subscriber) {
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            lines.forEach(publisher::submit);
+        }
+    }
+
+    /**
+     * Subscriber which requests a fixed number of items at a time.
+     */
+    private static final class CollectingSubscriber<E> implements Flow.Subscriber<E> {
+
+        private final long step;
+        private final List<E> items = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private volatile Throwable error;
+        private Flow.Subscription subscription;
+        private long outstanding;
+
+        CollectingSubscriber(long step) {
+            this.step = step;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            outstanding = step;
+            s.request(step);
+        }
+
+        @Override
+        public void onNext(E item) {
+            items.add(item);
+            if (Long.MAX_VALUE != step && 0 == --outstanding) {
+                outstanding = step;
+                subscription.request(step);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(terminated.await(10, TimeUnit.SECONDS), "Stream did not terminate");
+        }
+
+    }
+
+    /**
+     * Synchronous publisher of a list, which records upstream requests.
+     */
+    private static final class ListPublisher<E> implements Flow.Publisher<E> {
+
+        private final List<E> items;
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile boolean cancelled;
+        private long maxOutstanding;
+
+        ListPublisher(List<E> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super E> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int index;
+                private long demand;
+                private boolean emitting;
+
+                @Override
+                public void request(long n) {
+                    requests.incrementAndGet();
+                    demand += n;
+                    maxOutstanding = Math.max(maxOutstanding, demand);
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (0 < demand && !cancelled && index < items.size()) {
+                        demand--;
+                        subscriber.onNext(items.get(index++));
+                    }
+                    emitting = false;
+                    if (!cancelled && index == items.size()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+
+    }
+
+}